@@ -0,0 +1,133 @@
+package me.monkeyland.monkeylandeconomy.hooks;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.inflation.RateHistory;
+import me.monkeyland.monkeylandeconomy.inflation.RollingSeries;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.BalanceLeaderboard;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.file.Path;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * Placeholder requests per second, parsing every request the way the hook used to versus the
+ * cached {@link PlaceholderResolver}. Values stay fixed, which is the common case for a
+ * scoreboard refreshing faster than balances change.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class PlaceholderBenchmark {
+
+    @Param({"balance_gold", "exchange_silver", "gold_circulating_supply", "balance_unknown"})
+    public String identifier;
+
+    private final UUID playerId = UUID.randomUUID();
+    private final PlaceholderResolver.ValueSource values = new PlaceholderResolver.ValueSource() {
+        @Override
+        public long getBalance(UUID playerId, Currency currency) {
+            return AccountStore.toMinor(1234.5);
+        }
+
+        @Override
+        public long getCirculatingGoldSupply() {
+            return AccountStore.toMinor(250000.0);
+        }
+
+        @Override
+        public double getMaxGoldSupply() {
+            return 1000000.0;
+        }
+
+        @Override
+        public double getExchangeRate(Currency currency) {
+            return 0.1;
+        }
+
+        @Override
+        public double getGoldInflationRate() {
+            return 0.0015;
+        }
+
+        @Override
+        public RollingSeries.Aggregate getRateAggregate(int metric, RateHistory.Tier tier) {
+            return history.getAggregate(metric, tier);
+        }
+
+        @Override
+        public BalanceLeaderboard.Entry getTopEntry(Currency currency, int position) {
+            return null;
+        }
+
+        @Override
+        public long toBalance(Currency currency, long stored) {
+            return stored;
+        }
+
+        @Override
+        public String getPlayerName(UUID playerId) {
+            return "Player";
+        }
+    };
+    private final RateHistory history = new RateHistory(Path.of("build"), Logger.getLogger("PlaceholderBenchmark"));
+
+    private PlaceholderResolver resolver;
+
+    @Setup
+    public void setUp() {
+        resolver = new PlaceholderResolver(values);
+    }
+
+    @Benchmark
+    public String parsed() {
+        return resolveUncached(playerId, identifier);
+    }
+
+    @Benchmark
+    public String cached() {
+        return resolver.resolve(playerId, identifier);
+    }
+
+    // The previous PlaceholderAPIHook.onRequest, kept as the baseline
+    private String resolveUncached(UUID playerId, String identifier) {
+        if (identifier.startsWith("exchange_")) {
+            String currencyName = identifier.substring(9);
+            try {
+                Currency fromCurrency = Currency.valueOf(currencyName.toUpperCase());
+                return String.format("%.4f", values.getExchangeRate(fromCurrency));
+            } catch (IllegalArgumentException e) {
+                return "Invalid currency";
+            }
+        } else if (identifier.startsWith("balance_")) {
+            String currencyName = identifier.substring(8);
+            try {
+                Currency currency = Currency.valueOf(currencyName.toUpperCase());
+                if (playerId != null) {
+                    return String.format("%.2f", AccountStore.toMajor(values.getBalance(playerId, currency)));
+                } else {
+                    return "Player not found or offline";
+                }
+            } catch (IllegalArgumentException e) {
+                return "Invalid currency";
+            }
+        } else {
+            switch (identifier.toLowerCase()) {
+                case "gold_circulating_supply":
+                    return String.format("%.2f", AccountStore.toMajor(values.getCirculatingGoldSupply()));
+                case "max_gold_supply":
+                    return String.format("%.2f", values.getMaxGoldSupply());
+                case "gold_inflation_rate":
+                    return String.format("%.2f%%", values.getGoldInflationRate() * 100);
+                default:
+                    return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package me.monkeyland.monkeylandeconomy.hooks;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.lang.reflect.Proxy;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Vault calls the way shop and job plugins make them: balance checks, then a withdraw or a
+ * deposit, by player object and by name. The threaded variant has several plugins hitting the
+ * ledger at once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class VaultBenchmark {
+
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    private VaultEconomyProvider provider;
+    private OfflinePlayer[] players;
+    private String[] names;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        private final SplittableRandom random = new SplittableRandom();
+    }
+
+    @Setup
+    public void setUp() {
+        EconomyEngine engine = new EconomyEngine(playerId -> null, null);
+        engine.getLedger().setMaxOfflineAccounts(accounts);
+        provider = new VaultEconomyProvider(engine, Currency.gold(), null);
+        players = new OfflinePlayer[accounts];
+        names = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            UUID id = UUID.randomUUID();
+            players[i] = player(id);
+            names[i] = "Player" + i;
+            provider.rememberName(names[i], id);
+            engine.restore(id, Currency.gold(), AccountStore.toMinor(1000.0));
+        }
+    }
+
+    // Only the unique id is ever asked for
+    private static OfflinePlayer player(UUID id) {
+        return (OfflinePlayer) Proxy.newProxyInstance(OfflinePlayer.class.getClassLoader(), new Class<?>[]{OfflinePlayer.class},
+                (proxy, method, args) -> method.getName().equals("getUniqueId") ? id : null);
+    }
+
+    @Benchmark
+    public boolean has(Cursor cursor) {
+        return provider.has(players[cursor.random.nextInt(accounts)], 10.0);
+    }
+
+    @Benchmark
+    public double getBalanceByName(Cursor cursor) {
+        return provider.getBalance(names[cursor.random.nextInt(accounts)]);
+    }
+
+    // A purchase: check, then pay; the deposit keeps balances from draining
+    @Benchmark
+    public EconomyResponse withdrawAndDeposit(Cursor cursor) {
+        OfflinePlayer player = players[cursor.random.nextInt(accounts)];
+        provider.withdrawPlayer(player, 10.0);
+        return provider.depositPlayer(player, 10.0);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public EconomyResponse withdrawAndDepositContended(Cursor cursor) {
+        return withdrawAndDeposit(cursor);
+    }
+}
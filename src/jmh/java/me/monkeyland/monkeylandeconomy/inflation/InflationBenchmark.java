@@ -0,0 +1,58 @@
+package me.monkeyland.monkeylandeconomy.inflation;
+
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.logging.Logger;
+
+/**
+ * One inflation tick: computing the next rate snapshot, and recording it in the rate history.
+ * Ticks are an hour apart, so every recorded tick also closes an hourly bucket and appends it
+ * to the archive.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class InflationBenchmark {
+
+    private static final long HOUR_MILLIS = 60L * 60 * 1000;
+
+    private EconomyState state;
+    private Path directory;
+    private RateHistory history;
+    private long time;
+
+    @Setup
+    public void setUp() throws IOException {
+        state = new EconomyState(1000000.0, 0.0015, 0.005, 2.0, 0.0015, new double[]{1.0, 1.0, 1.0, 1.0}, new double[]{0.001, 0.01, 0.1, 1.0});
+        directory = Files.createTempDirectory("monkeyland-inflation-bench");
+        history = new RateHistory(directory, Logger.getLogger("InflationBenchmark"));
+        history.load();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        history.close();
+        Files.deleteIfExists(directory.resolve(HistoryArchive.ARCHIVE_FILE_NAME));
+        Files.deleteIfExists(directory);
+    }
+
+    @Benchmark
+    public EconomyState adjustInflationAndExchangeRates() {
+        return InflationModel.advance(state, 250000.0);
+    }
+
+    @Benchmark
+    public void recordHistory() {
+        time += HOUR_MILLIS;
+        history.record(time, state);
+    }
+}
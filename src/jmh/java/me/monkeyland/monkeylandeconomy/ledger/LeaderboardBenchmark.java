@@ -0,0 +1,78 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+
+/**
+ * Cost of keeping the leaderboard current on every balance change, and of reading it, against
+ * sorting every balance the way an on-demand ranking would.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class LeaderboardBenchmark {
+
+    @Param({"1000", "100000"})
+    public int accounts;
+
+    private BalanceLeaderboard leaderboard;
+    private UUID[] ids;
+    private long[] balances;
+    private final SplittableRandom random = new SplittableRandom(1);
+
+    @Setup
+    public void setUp() {
+        leaderboard = new BalanceLeaderboard(10);
+        ids = new UUID[accounts];
+        balances = new long[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = UUID.randomUUID();
+            balances[i] = AccountStore.toMinor(random.nextInt(1_000_000));
+            leaderboard.update(ids[i], Currency.gold(), balances[i]);
+        }
+    }
+
+    @Benchmark
+    public int update() {
+        int index = random.nextInt(accounts);
+        balances[index] += AccountStore.toMinor(1.0);
+        leaderboard.update(ids[index], Currency.gold(), balances[index]);
+        return index;
+    }
+
+    // Mining at the top keeps invalidating the cached positions
+    @Benchmark
+    public BalanceLeaderboard.Entry updateLeaderAndReadTop() {
+        BalanceLeaderboard.Entry leader = leaderboard.getTop(Currency.gold(), 1);
+        leaderboard.update(leader.getPlayerId(), Currency.gold(), leader.getBalance() + AccountStore.toMinor(1.0));
+        return leaderboard.getTop(Currency.gold(), 1);
+    }
+
+    @Benchmark
+    public BalanceLeaderboard.Entry topEntry() {
+        return leaderboard.getTop(Currency.gold(), 1);
+    }
+
+    @Benchmark
+    public List<BalanceLeaderboard.Entry> tenthPage() {
+        return leaderboard.getPage(Currency.gold(), 90, 10);
+    }
+
+    // The alternative: sort every balance for each ranking
+    @Benchmark
+    public long sortAllBalances() {
+        long[] sorted = balances.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length - 1];
+    }
+}
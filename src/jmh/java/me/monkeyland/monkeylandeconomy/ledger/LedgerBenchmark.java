@@ -0,0 +1,77 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+/**
+ * Balance reads and writes and the circulating supply, with every account resident. The
+ * loader and listener are no-ops, so only the in-memory ledger is measured. A factor other
+ * than 1.0 measures the conversion every access pays once balances have been revalued.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+public class LedgerBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int accounts;
+
+    @Param({"1.0", "1.0005"})
+    public double factor;
+
+    private AccountStore store;
+    private Ledger ledger;
+    private UUID[] ids;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        store = new AccountStore();
+        ledger = new Ledger(store, playerId -> null, (playerId, currency, delta, newBalance) -> {
+        });
+        ledger.setMaxOfflineAccounts(accounts);
+        ids = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = UUID.randomUUID();
+            ledger.restore(ids[i], Currency.gold(), AccountStore.toMinor(100.0));
+        }
+        double[] factors = new double[Currency.count()];
+        Arrays.fill(factors, factor);
+        ledger.setFactors(factors);
+    }
+
+    private UUID nextId() {
+        int index = next;
+        next = index + 1 == ids.length ? 0 : index + 1;
+        return ids[index];
+    }
+
+    @Benchmark
+    public long getBalance() {
+        return ledger.getBalance(nextId(), Currency.gold());
+    }
+
+    @Benchmark
+    public Ledger.Result addBalance() {
+        return ledger.adjust(nextId(), Currency.gold(), AccountStore.toMinor(1.0));
+    }
+
+    @Benchmark
+    public long circulatingSupply() {
+        return store.circulating(Currency.gold());
+    }
+
+    // What calculating the supply used to cost: a scan over every account
+    @Benchmark
+    public long circulatingSupplyFullScan() {
+        return store.total(Currency.gold());
+    }
+}
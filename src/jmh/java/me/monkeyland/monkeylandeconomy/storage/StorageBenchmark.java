@@ -0,0 +1,139 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Saving and loading through each storage backend at different data sizes. saveAll is what a
+ * full saveEconomyData used to do, saveDirtyBatch what a write-behind flush does now, and
+ * loadDatabaseData what startup does: read the parameters and sum the stored balances.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class StorageBenchmark {
+
+    private static final int DIRTY_BATCH = 256;
+    private static final Logger LOGGER = Logger.getLogger("StorageBenchmark");
+
+    @Param({"yaml", "binary", "sqlite"})
+    public String type;
+
+    @Param({"1000", "10000", "100000"})
+    public int accounts;
+
+    private Path directory;
+    private EconomyStorage storage;
+    private EconomyState state;
+    private Map<UUID, long[]> allAccounts;
+    private Map<UUID, long[]> dirtyBatch;
+    private UUID[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("monkeyland-storage-bench");
+        double[] rates = {0.001, 0.01, 0.1, 1.0};
+        double[] factors = {1.0, 1.0, 1.0, 1.0};
+        state = new EconomyState(1000000.0, 0.0015, 0.005, 2.0, 0.0015, factors, rates);
+
+        allAccounts = new HashMap<>();
+        ids = new UUID[accounts];
+        for (int i = 0; i < accounts; i++) {
+            ids[i] = UUID.randomUUID();
+            long[] balances = new long[Currency.count()];
+            for (int c = 0; c < balances.length; c++) {
+                balances[c] = AccountStore.toMinor(i % 1000 + c * 0.25);
+            }
+            allAccounts.put(ids[i], balances);
+        }
+        dirtyBatch = new HashMap<>();
+        for (int i = 0; i < Math.min(DIRTY_BATCH, accounts); i++) {
+            dirtyBatch.put(ids[i], allAccounts.get(ids[i]));
+        }
+
+        storage = open();
+        storage.loadState(state);
+        storage.saveState(state);
+        storage.upsertAccounts(allAccounts);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        storage.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    // A fresh instance over the files on disk, the way the plugin opens it at startup
+    private EconomyStorage open() throws IOException {
+        EconomyStorage opened;
+        switch (type) {
+            case YamlEconomyStorage.TYPE:
+                File file = directory.resolve("monkeyland_economy.yml").toFile();
+                opened = new YamlEconomyStorage(YamlConfiguration.loadConfiguration(file), file, LOGGER);
+                break;
+            case BinaryEconomyStorage.TYPE:
+                opened = new BinaryEconomyStorage(directory.resolve(BinarySnapshot.SNAPSHOT_FILE_NAME));
+                break;
+            default:
+                opened = new SqliteEconomyStorage(directory.resolve(SqliteEconomyStorage.DATABASE_FILE_NAME));
+        }
+        opened.open();
+        return opened;
+    }
+
+    @Benchmark
+    public void saveAll() throws IOException {
+        storage.upsertAccounts(allAccounts);
+    }
+
+    @Benchmark
+    public void saveDirtyBatch() throws IOException {
+        storage.upsertAccounts(dirtyBatch);
+    }
+
+    @Benchmark
+    public long[] loadDatabaseData() throws IOException {
+        EconomyStorage loaded = open();
+        try {
+            loaded.loadState(state);
+            return loaded.sumBalances();
+        } finally {
+            loaded.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public long[] loadAccount() throws IOException {
+        int index = next;
+        next = index + 1 == ids.length ? 0 : index + 1;
+        return storage.loadAccount(ids[index]);
+    }
+}
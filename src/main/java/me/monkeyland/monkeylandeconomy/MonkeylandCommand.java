@@ -6,8 +6,32 @@ import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.Bukkit;
+import me.monkeyland.monkeylandeconomy.audit.AuditEntry;
+import me.monkeyland.monkeylandeconomy.audit.AuditLog;
+import me.monkeyland.monkeylandeconomy.bulk.BulkJob;
+import me.monkeyland.monkeylandeconomy.bulk.BulkOperation;
+import me.monkeyland.monkeylandeconomy.bulk.BulkScheduler;
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.inflation.RateHistory;
+import me.monkeyland.monkeylandeconomy.inflation.RollingSeries;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.BalanceLeaderboard;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.metrics.EconomyMetrics;
+import me.monkeyland.monkeylandeconomy.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
 
 public class MonkeylandCommand implements CommandExecutor {
+    private static final int TOP_PAGE_SIZE = 10;
+    private static final int HISTORY_PAGE_SIZE = 10;
+    private static final DateTimeFormatter HISTORY_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm").withZone(ZoneId.systemDefault());
+
     private final MonkeylandEconomy plugin;
 
     public MonkeylandCommand(MonkeylandEconomy plugin) {
@@ -29,6 +53,7 @@ public class MonkeylandCommand implements CommandExecutor {
             return true;
         }
 
+        long start = EconomyMetrics.start();
         switch (args[0].toLowerCase()) {
             case "info":
                 handleInfoCommand(player);
@@ -46,9 +71,32 @@ public class MonkeylandCommand implements CommandExecutor {
             case "give":
                 handleGiveCommand(player, args);
                 break;
+            case "top":
+                handleTopCommand(player, args);
+                break;
+            case "history":
+                handleHistoryCommand(player, args);
+                break;
+            case "convert":
+                handleConvertCommand(player, args);
+                break;
+            case "export":
+            case "import":
+                handleYamlTransferCommand(player, args);
+                break;
+            case "metrics":
+                handleMetricsCommand(player);
+                break;
+            case "revalue":
+                handleRevalueCommand(player, args);
+                break;
+            case "bulk":
+                handleBulkCommand(player, args);
+                break;
             default:
                 player.sendMessage(ChatColor.RED + "Invalid command. Use /monkeyland for help.");
         }
+        plugin.getMetrics().record(EconomyMetrics.Timer.COMMAND, start);
         return true;
     }
 
@@ -58,10 +106,20 @@ public class MonkeylandCommand implements CommandExecutor {
         player.sendMessage(ChatColor.YELLOW + "/monkeyland balance [currency]" + ChatColor.WHITE + " - Check your balances.");
         player.sendMessage(ChatColor.YELLOW + "/monkeyland exchange <fromCurrency> <toCurrency> <amount>" + ChatColor.WHITE + " - Exchange currencies.");
         player.sendMessage(ChatColor.YELLOW + "/monkeyland give <player> <currency> <amount>" + ChatColor.WHITE + " - Give currency to another player.");
+        player.sendMessage(ChatColor.YELLOW + "/monkeyland top <currency> [page]" + ChatColor.WHITE + " - View the richest players.");
+        player.sendMessage(ChatColor.YELLOW + "/monkeyland history <player> [page]" + ChatColor.WHITE + " - View recent transactions; your own unless you are an admin.");
 
         if (player.hasPermission("monkeylandeconomy.admin")) {
             player.sendMessage(ChatColor.YELLOW + "/monkeyland info" + ChatColor.WHITE + " - View economy info.");
             player.sendMessage(ChatColor.YELLOW + "/monkeyland add <player> <currency> <amount>" + ChatColor.WHITE + " - Add to a player's balance.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland convert <yaml|binary|sqlite>" + ChatColor.WHITE + " - Copy economy data to another storage.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland export <file>" + ChatColor.WHITE + " - Write every account to exports/<file>.yml.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland import <file>" + ChatColor.WHITE + " - Load the accounts in exports/<file>.yml.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland metrics" + ChatColor.WHITE + " - View timings, counters and gauges.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland revalue <currency> <percent>" + ChatColor.WHITE + " - Change every balance of a currency by a percentage.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland bulk <add|set> <currency> <amount> [filters]" + ChatColor.WHITE + " - Change every matching account, online or not.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland bulk <reset|audit> <currency> [filters]" + ChatColor.WHITE + " - Zero or total every matching account.");
+            player.sendMessage(ChatColor.YELLOW + "/monkeyland bulk <list|pause|resume|cancel> [id]" + ChatColor.WHITE + " - Manage running bulk jobs.");
         }
     }
 
@@ -73,11 +131,28 @@ public class MonkeylandCommand implements CommandExecutor {
             player.sendMessage(ChatColor.YELLOW + "Gold Circulating Supply: " + ChatColor.WHITE + String.format("%.2f", plugin.getCirculatingGoldSupply()));
             player.sendMessage(ChatColor.YELLOW + "Gold Inflation Rate: " + ChatColor.WHITE + String.format("%.2f%%", plugin.getGoldInflationRate() * 100));
 
-            for (MonkeylandEconomy.Currency currency : MonkeylandEconomy.Currency.values()) {
-                if (currency != MonkeylandEconomy.Currency.GOLD) { // Only display non-gold currencies
+            for (Currency currency : Currency.values()) {
+                if (currency != Currency.gold()) { // Only display non-gold currencies
                     player.sendMessage(ChatColor.YELLOW + currency.name() + " exchange rate to Gold: " + ChatColor.WHITE + String.format("%.4f", plugin.getExchangeRate(currency)));
                 }
             }
+
+            // Rolling aggregates over the last 24 hourly samples
+            RateHistory history = plugin.getRateHistory();
+            RollingSeries.Aggregate inflation = history.getAggregate(RateHistory.inflationMetric(), RateHistory.Tier.HOURLY);
+            if (inflation.getCount() > 0) {
+                player.sendMessage(ChatColor.GOLD + "Last 24h:");
+                player.sendMessage(ChatColor.YELLOW + "Inflation Rate: " + ChatColor.WHITE + String.format("avg %.2f%%, min %.2f%%, max %.2f%%",
+                        inflation.getAverage() * 100, inflation.getMin() * 100, inflation.getMax() * 100));
+                for (Currency currency : Currency.values()) {
+                    if (currency != Currency.gold()) {
+                        RollingSeries.Aggregate rate = history.getAggregate(currency, RateHistory.Tier.HOURLY);
+                        String change = Double.isNaN(rate.getChange()) ? "N/A" : String.format("%+.2f%%", rate.getChange() * 100);
+                        player.sendMessage(ChatColor.YELLOW + currency.name() + ": " + ChatColor.WHITE + String.format("avg %.4f, min %.4f, max %.4f, change ",
+                                rate.getAverage(), rate.getMin(), rate.getMax()) + change);
+                    }
+                }
+            }
         } else {
             player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
         }
@@ -86,21 +161,19 @@ public class MonkeylandCommand implements CommandExecutor {
     // Method for handling the /monkeyland balance command
     private void handleBalanceCommand(Player player, String[] args) {
         if (args.length > 1) {
-            MonkeylandEconomy.Currency currency;
-            try {
-                currency = MonkeylandEconomy.Currency.valueOf(args[1].toUpperCase());
-            } catch (IllegalArgumentException e) {
+            Currency currency = Currency.find(args[1]);
+            if (currency == null) {
                 player.sendMessage(ChatColor.RED + "Invalid currency.");
                 return;
             }
             double balance = plugin.getBalance(player.getUniqueId(), currency);
-            player.sendMessage(ChatColor.GOLD + "Your " + currency + " Balance: " + ChatColor.WHITE + String.format("%.2f", balance));
+            player.sendMessage(ChatColor.GOLD + "Your " + currency + " Balance: " + ChatColor.WHITE + currency.format(balance));
         } else { // No currency specified, show all balances
             player.sendMessage(ChatColor.GOLD + "Your Balances:");
-            for (MonkeylandEconomy.Currency currency : MonkeylandEconomy.Currency.values()) {
+            for (Currency currency : Currency.values()) {
                 double balance = plugin.getBalance(player.getUniqueId(), currency);
                 if (balance > 0) {
-                    player.sendMessage(ChatColor.YELLOW + currency.name() + ": " + ChatColor.WHITE + String.format("%.2f", balance));
+                    player.sendMessage(ChatColor.YELLOW + currency.name() + ": " + ChatColor.WHITE + currency.format(balance));
                 }
             }
         }
@@ -128,12 +201,11 @@ public class MonkeylandCommand implements CommandExecutor {
             return;
         }
 
-        MonkeylandEconomy.Currency currency = MonkeylandEconomy.Currency.GOLD; // Default to gold
+        Currency currency = Currency.gold(); // Default to gold
 
         if (args.length > 1) {
-            try {
-                currency = MonkeylandEconomy.Currency.valueOf(args[1].toUpperCase());
-            } catch (IllegalArgumentException e) {
+            currency = Currency.find(args[1]);
+            if (currency == null) {
                 player.sendMessage(ChatColor.RED + "Invalid currency.");
                 return;
             }
@@ -141,7 +213,7 @@ public class MonkeylandCommand implements CommandExecutor {
 
 
         double balance = plugin.getBalance(player.getUniqueId(), currency);
-        player.sendMessage(ChatColor.GOLD + "Your " + currency + " Balance: " + ChatColor.WHITE + String.format("%.2f", balance));
+        player.sendMessage(ChatColor.GOLD + "Your " + currency + " Balance: " + ChatColor.WHITE + currency.format(balance));
     }
 
     private void handleAddCommand(Player player, String[] args) {
@@ -161,10 +233,8 @@ public class MonkeylandCommand implements CommandExecutor {
             return;
         }
 
-        MonkeylandEconomy.Currency currency;
-        try {
-            currency = MonkeylandEconomy.Currency.valueOf(args[2].toUpperCase());
-        } catch (IllegalArgumentException e) {
+        Currency currency = Currency.find(args[2]);
+        if (currency == null) {
             player.sendMessage(ChatColor.RED + "Invalid currency.");
             return;
         }
@@ -172,6 +242,10 @@ public class MonkeylandCommand implements CommandExecutor {
         double amount;
         try {
             amount = Double.parseDouble(args[3]);
+            if (!Double.isFinite(amount)) {
+                player.sendMessage(ChatColor.RED + "Invalid amount.");
+                return;
+            }
             if (amount <= 0) {
                 player.sendMessage(ChatColor.RED + "Amount must be positive.");
                 return;
@@ -181,22 +255,416 @@ public class MonkeylandCommand implements CommandExecutor {
             return;
         }
 
-        plugin.addBalance(targetPlayer.getUniqueId(), currency, amount);
+        plugin.addBalance(targetPlayer.getUniqueId(), currency, amount, player.getUniqueId());
         player.sendMessage(ChatColor.GREEN + "Added " + amount + " " + currency + " to " + targetPlayer.getName() + "'s balance.");
 
     }
 
+    private void handleConvertCommand(Player player, String[] args) {
+        if (!player.hasPermission("monkeylandeconomy.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        if (args.length != 2) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland convert <yaml|binary|sqlite>");
+            return;
+        }
+
+        player.sendMessage(ChatColor.YELLOW + "Converting economy data...");
+        plugin.convertEconomyData(player, args[1]);
+    }
+
+    private void handleYamlTransferCommand(Player player, String[] args) {
+        if (!player.hasPermission("monkeylandeconomy.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        if (args.length != 2) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland " + args[0].toLowerCase() + " <file>");
+            return;
+        }
+
+        if (args[0].equalsIgnoreCase("export")) {
+            player.sendMessage(ChatColor.YELLOW + "Exporting economy data...");
+            plugin.exportEconomyData(player, args[1]);
+        } else {
+            player.sendMessage(ChatColor.YELLOW + "Importing economy data...");
+            plugin.importEconomyData(player, args[1]);
+        }
+    }
+
+    private void handleRevalueCommand(Player player, String[] args) {
+        if (!player.hasPermission("monkeylandeconomy.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        if (args.length != 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland revalue <currency> <percent>");
+            return;
+        }
+
+        if (plugin.isReplica()) {
+            player.sendMessage(ChatColor.RED + "Revaluations can only be made on the replication primary.");
+            return;
+        }
+
+        Currency currency = Currency.find(args[1]);
+        if (currency == null) {
+            player.sendMessage(ChatColor.RED + "Invalid currency.");
+            return;
+        }
+
+        double percent;
+        try {
+            percent = Double.parseDouble(args[2]);
+            if (!(percent > -100.0) || Double.isInfinite(percent)) {
+                player.sendMessage(ChatColor.RED + "Percent must be greater than -100.");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Invalid percent.");
+            return;
+        }
+
+        // Applied lazily, so this is instant no matter how many accounts exist
+        plugin.revalue(currency, 1 + percent / 100.0);
+        player.sendMessage(ChatColor.GREEN + "Revalued every " + currency + " balance by " + String.format("%+.4f%%", percent) + ".");
+    }
+
+    // Filters: min=<amount>, max=<amount>, online, offline
+    private void handleBulkCommand(Player player, String[] args) {
+        if (!player.hasPermission("monkeylandeconomy.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        if (args.length < 2) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland bulk <add|set|reset|audit|list|pause|resume|cancel> ...");
+            return;
+        }
+
+        BulkScheduler scheduler = plugin.getBulkScheduler();
+        String action = args[1].toLowerCase();
+        switch (action) {
+            case "list":
+                if (scheduler.getJobs().isEmpty()) {
+                    player.sendMessage(ChatColor.YELLOW + "No bulk jobs are running.");
+                    return;
+                }
+                for (BulkJob job : scheduler.getJobs()) {
+                    player.sendMessage(ChatColor.YELLOW + "#" + job.getId() + " " + job.getStatus().name().toLowerCase() + ": " + ChatColor.WHITE
+                            + job.getOperation().describe() + ", " + job.getPosition() + "/" + job.getTotal() + " accounts, " + plugin.describeBulkResult(job));
+                }
+                return;
+            case "pause":
+            case "resume":
+            case "cancel":
+                handleBulkControl(player, scheduler, action, args);
+                return;
+            case "add":
+            case "set":
+            case "reset":
+            case "audit":
+                break;
+            default:
+                player.sendMessage(ChatColor.RED + "Invalid bulk action. Use /monkeyland for help.");
+                return;
+        }
+
+        BulkOperation.Type type = BulkOperation.Type.valueOf(action.toUpperCase());
+        boolean hasAmount = type == BulkOperation.Type.ADD || type == BulkOperation.Type.SET;
+        int filtersFrom = hasAmount ? 4 : 3;
+        if (args.length < filtersFrom) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland bulk " + action + " <currency>" + (hasAmount ? " <amount>" : "") + " [min=<amount>] [max=<amount>] [online|offline]");
+            return;
+        }
+
+        Currency currency = Currency.find(args[2]);
+        if (currency == null) {
+            player.sendMessage(ChatColor.RED + "Invalid currency.");
+            return;
+        }
+
+        long amount = 0L;
+        if (hasAmount) {
+            try {
+                double value = Double.parseDouble(args[3]);
+                if (!Double.isFinite(value)) {
+                    player.sendMessage(ChatColor.RED + "Invalid amount.");
+                    return;
+                }
+                if (type == BulkOperation.Type.SET ? value < 0 : value == 0) {
+                    player.sendMessage(ChatColor.RED + (type == BulkOperation.Type.SET ? "Amount must not be negative." : "Amount must not be zero."));
+                    return;
+                }
+                amount = AccountStore.toMinor(value);
+            } catch (NumberFormatException e) {
+                player.sendMessage(ChatColor.RED + "Invalid amount.");
+                return;
+            }
+        }
+
+        long minBalance = Long.MIN_VALUE;
+        long maxBalance = Long.MAX_VALUE;
+        BulkOperation.Presence presence = BulkOperation.Presence.ANY;
+        for (int i = filtersFrom; i < args.length; i++) {
+            String filter = args[i].toLowerCase();
+            try {
+                if (filter.startsWith("min=")) {
+                    minBalance = AccountStore.toMinor(Double.parseDouble(filter.substring(4)));
+                } else if (filter.startsWith("max=")) {
+                    maxBalance = AccountStore.toMinor(Double.parseDouble(filter.substring(4)));
+                } else if (filter.equals("online")) {
+                    presence = BulkOperation.Presence.ONLINE;
+                } else if (filter.equals("offline")) {
+                    presence = BulkOperation.Presence.OFFLINE;
+                } else {
+                    player.sendMessage(ChatColor.RED + "Invalid filter: " + args[i]);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                player.sendMessage(ChatColor.RED + "Invalid amount in filter: " + args[i]);
+                return;
+            }
+        }
+
+        player.sendMessage(ChatColor.YELLOW + "Listing accounts...");
+        plugin.startBulkJob(player, new BulkOperation(type, currency, amount, minBalance, maxBalance, presence));
+    }
+
+    private void handleBulkControl(Player player, BulkScheduler scheduler, String action, String[] args) {
+        if (args.length != 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland bulk " + action + " <id>");
+            return;
+        }
+        int id;
+        try {
+            id = Integer.parseInt(args[2]);
+        } catch (NumberFormatException e) {
+            player.sendMessage(ChatColor.RED + "Invalid job id.");
+            return;
+        }
+
+        boolean done;
+        switch (action) {
+            case "pause":
+                done = scheduler.pause(id);
+                break;
+            case "resume":
+                done = scheduler.resume(id);
+                break;
+            default:
+                done = scheduler.cancel(id) != null;
+        }
+        if (done) {
+            player.sendMessage(ChatColor.GREEN + "Bulk job #" + id + (action.equals("cancel") ? " cancelled; changes made so far are kept." : " " + action + "d."));
+        } else {
+            player.sendMessage(ChatColor.RED + "No bulk job #" + id + " to " + action + ".");
+        }
+    }
+
+    private void handleTopCommand(Player player, String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland top <currency> [page]");
+            return;
+        }
+
+        Currency currency = Currency.find(args[1]);
+        if (currency == null) {
+            player.sendMessage(ChatColor.RED + "Invalid currency.");
+            return;
+        }
+
+        int page = 1;
+        if (args.length == 3) {
+            try {
+                page = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                player.sendMessage(ChatColor.RED + "Invalid page.");
+                return;
+            }
+        }
+
+        BalanceLeaderboard leaderboard = plugin.getEngine().getLeaderboard();
+        if (leaderboard == null) {
+            player.sendMessage(ChatColor.RED + "The leaderboard is disabled.");
+            return;
+        }
+
+        int pages = Math.max(1, (leaderboard.size(currency) + TOP_PAGE_SIZE - 1) / TOP_PAGE_SIZE);
+        if (page > pages) {
+            player.sendMessage(ChatColor.RED + "There " + (pages == 1 ? "is only 1 page." : "are only " + pages + " pages."));
+            return;
+        }
+
+        player.sendMessage(ChatColor.GOLD + "Top " + currency + " Balances (page " + page + "/" + pages + "):");
+        int rank = (page - 1) * TOP_PAGE_SIZE;
+        for (BalanceLeaderboard.Entry entry : leaderboard.getPage(currency, rank, TOP_PAGE_SIZE)) {
+            rank++;
+            player.sendMessage(ChatColor.YELLOW + "#" + rank + " " + plugin.getPlayerName(entry.getPlayerId()) + ": "
+                    + ChatColor.WHITE + currency.format(plugin.getEngine().toBalance(currency, entry.getBalance())));
+        }
+
+        int ownRank = leaderboard.getRank(player.getUniqueId(), currency);
+        if (ownRank > 0) {
+            player.sendMessage(ChatColor.YELLOW + "Your rank: " + ChatColor.WHITE + "#" + ownRank);
+        }
+    }
+
+    // Players can see their own history, admins anyone's; offline players are looked up by UUID
+    private void handleHistoryCommand(Player player, String[] args) {
+        if (args.length < 2 || args.length > 3) {
+            player.sendMessage(ChatColor.RED + "Usage: /monkeyland history <player> [page]");
+            return;
+        }
+
+        AuditLog auditLog = plugin.getAuditLog();
+        if (auditLog == null) {
+            player.sendMessage(ChatColor.RED + "The audit log is disabled.");
+            return;
+        }
+
+        UUID targetId;
+        Player targetPlayer = Bukkit.getPlayerExact(args[1]);
+        if (targetPlayer != null) {
+            targetId = targetPlayer.getUniqueId();
+        } else {
+            try {
+                targetId = UUID.fromString(args[1]);
+            } catch (IllegalArgumentException e) {
+                player.sendMessage(ChatColor.RED + "Player not found. Use their UUID if they are offline.");
+                return;
+            }
+        }
+
+        if (!targetId.equals(player.getUniqueId()) && !player.hasPermission("monkeylandeconomy.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        int page = 1;
+        if (args.length == 3) {
+            try {
+                page = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                page = 0;
+            }
+            if (page < 1) {
+                player.sendMessage(ChatColor.RED + "Invalid page.");
+                return;
+            }
+        }
+
+        // One entry more than a page, to know whether there is a next one
+        int shownPage = page;
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<AuditEntry> entries;
+            try {
+                entries = auditLog.query(targetId, (shownPage - 1) * HISTORY_PAGE_SIZE, HISTORY_PAGE_SIZE + 1);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Failed to read the audit log: " + e.getMessage());
+                Bukkit.getScheduler().runTask(plugin, () -> player.sendMessage(ChatColor.RED + "Failed to read the audit log."));
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> sendHistory(player, args[1], targetId, shownPage, entries));
+        });
+    }
+
+    private void sendHistory(Player player, String target, UUID targetId, int page, List<AuditEntry> entries) {
+        if (!player.isOnline()) {
+            return;
+        }
+        String targetName = plugin.getPlayerName(targetId);
+        if (entries.isEmpty()) {
+            player.sendMessage(ChatColor.YELLOW + (page == 1 ? "No transactions recorded for " + targetName + "." : "No more transactions for " + targetName + "."));
+            return;
+        }
+
+        player.sendMessage(ChatColor.GOLD + "Transactions of " + targetName + " (page " + page + "):");
+        for (AuditEntry entry : entries.subList(0, Math.min(entries.size(), HISTORY_PAGE_SIZE))) {
+            player.sendMessage(ChatColor.GRAY + HISTORY_TIME_FORMAT.format(Instant.ofEpochMilli(entry.getTimeMillis())) + " "
+                    + ChatColor.WHITE + describe(entry, targetId));
+        }
+        if (entries.size() > HISTORY_PAGE_SIZE) {
+            player.sendMessage(ChatColor.YELLOW + "Older: /monkeyland history " + target + " " + (page + 1));
+        }
+    }
+
+    // One history line, as seen by the player whose history it is
+    private String describe(AuditEntry entry, UUID targetId) {
+        String amount = formatAmount(entry.getCurrency(), entry.getAmount());
+        switch (entry.getType()) {
+            case REWARD:
+                return "+" + amount + " for mining";
+            case ADD:
+                return "+" + amount + " added by " + nameOf(entry.getOtherId());
+            case GIVE:
+                if (entry.getPlayerId().equals(targetId)) {
+                    return "-" + amount + " given to " + nameOf(entry.getOtherId());
+                }
+                return "+" + amount + " received from " + nameOf(entry.getPlayerId());
+            case EXCHANGE:
+                return "-" + amount + " exchanged for " + formatAmount(entry.getOtherCurrency(), entry.getOtherAmount());
+            case VAULT_DEPOSIT:
+                return "+" + amount + " deposited by a plugin";
+            case VAULT_WITHDRAW:
+                return "-" + amount + " withdrawn by a plugin";
+            default:
+                return entry.getType() + " " + amount;
+        }
+    }
+
+    private String nameOf(UUID playerId) {
+        return playerId == null ? "unknown" : plugin.getPlayerName(playerId);
+    }
+
+    // A currency removed from the config since is shown without its format
+    private static String formatAmount(Currency currency, long minorUnits) {
+        double amount = AccountStore.toMajor(minorUnits);
+        return currency == null ? amount + " of a removed currency" : currency.format(amount) + " " + currency;
+    }
+
+    private void handleMetricsCommand(Player player) {
+        if (!player.hasPermission("monkeylandeconomy.admin")) {
+            player.sendMessage(ChatColor.RED + "You don't have permission to use this command.");
+            return;
+        }
+
+        EconomyMetrics metrics = plugin.getMetrics();
+        player.sendMessage(ChatColor.GOLD + "Monkeyland Economy Metrics (since startup):");
+        for (EconomyMetrics.Timer timer : EconomyMetrics.Timer.values()) {
+            LatencyHistogram histogram = metrics.getTimer(timer);
+            player.sendMessage(ChatColor.YELLOW + timer.getKey() + ": " + ChatColor.WHITE + histogram.getCount() + "x, p50 "
+                    + millis(histogram.getPercentile(50)) + ", p99 " + millis(histogram.getPercentile(99)) + ", max " + millis(histogram.getMax()));
+        }
+        for (EconomyMetrics.Counter counter : EconomyMetrics.Counter.values()) {
+            player.sendMessage(ChatColor.YELLOW + counter.getKey() + ": " + ChatColor.WHITE + metrics.getCount(counter));
+        }
+        for (EconomyMetrics.Gauge gauge : metrics.getGauges()) {
+            String name = gauge.getLabel() == null ? gauge.getKey() : gauge.getKey() + "{" + gauge.getLabel() + "}";
+            player.sendMessage(ChatColor.YELLOW + name + ": " + ChatColor.WHITE + String.format("%.4f", gauge.getValue()));
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.3fms", nanos / 1e6);
+    }
+
     private void handleExchangeCommand(Player player, String[] args) {
         if (args.length != 4) {
             player.sendMessage(ChatColor.RED + "Usage: /monkeyland exchange <fromCurrency> <toCurrency> <amount>");
             return;
         }
 
-        MonkeylandEconomy.Currency fromCurrency, toCurrency;
-        try {
-            fromCurrency = MonkeylandEconomy.Currency.valueOf(args[1].toUpperCase());
-            toCurrency = MonkeylandEconomy.Currency.valueOf(args[2].toUpperCase());
-        } catch (IllegalArgumentException e) {
+        Currency fromCurrency = Currency.find(args[1]);
+        Currency toCurrency = Currency.find(args[2]);
+        if (fromCurrency == null || toCurrency == null) {
             player.sendMessage(ChatColor.RED + "Invalid currency.");
             return;
         }
@@ -204,6 +672,10 @@ public class MonkeylandCommand implements CommandExecutor {
         double amount;
         try {
             amount = Double.parseDouble(args[3]);
+            if (!Double.isFinite(amount)) {
+                player.sendMessage(ChatColor.RED + "Invalid amount.");
+                return;
+            }
         } catch (NumberFormatException e) {
             player.sendMessage(ChatColor.RED + "Invalid amount.");
             return;
@@ -224,10 +696,8 @@ public class MonkeylandCommand implements CommandExecutor {
             return;
         }
 
-        MonkeylandEconomy.Currency currency;
-        try {
-            currency = MonkeylandEconomy.Currency.valueOf(args[2].toUpperCase());
-        } catch (IllegalArgumentException e) {
+        Currency currency = Currency.find(args[2]);
+        if (currency == null) {
             player.sendMessage(ChatColor.RED + "Invalid currency.");
             return;
         }
@@ -235,6 +705,10 @@ public class MonkeylandCommand implements CommandExecutor {
         double amount;
         try {
             amount = Double.parseDouble(args[3]);
+            if (!Double.isFinite(amount)) {
+                player.sendMessage(ChatColor.RED + "Invalid amount.");
+                return;
+            }
             if (amount <= 0) {
                 player.sendMessage(ChatColor.RED + "Amount must be positive.");
                 return;
@@ -244,23 +718,28 @@ public class MonkeylandCommand implements CommandExecutor {
             return;
         }
 
-        // Security Check 1: Ensure the player has enough balance
-        if (plugin.getBalance(player.getUniqueId(), currency) >= amount) {
-
-            // Security Check 2: Prevent self-payment
-            if (player.getUniqueId().equals(targetPlayer.getUniqueId())) {
+        // Balance check, debit and credit happen atomically inside the ledger
+        Ledger.Result result = plugin.getEngine().transfer(player.getUniqueId(), targetPlayer.getUniqueId(), currency, amount);
+        switch (result) {
+            case SUCCESS:
+                AuditLog auditLog = plugin.getAuditLog();
+                if (auditLog != null) {
+                    auditLog.record(AuditLog.Type.GIVE, player.getUniqueId(), targetPlayer.getUniqueId(), currency, AccountStore.toMinor(amount));
+                }
+                player.sendMessage(ChatColor.GREEN + "You gave " + amount + " " + currency + " to " + targetPlayer.getName() + ".");
+                targetPlayer.sendMessage(ChatColor.GREEN + "You received " + amount + " " + currency + " from " + player.getName() + ".");
+                break;
+            case SAME_ACCOUNT:
                 player.sendMessage(ChatColor.RED + "You cannot give money to yourself.");
-                return;
-            }
-
-            // Transaction using addBalance
-            plugin.addBalance(player.getUniqueId(), currency, -amount);
-            plugin.addBalance(targetPlayer.getUniqueId(), currency, amount);
-
-            player.sendMessage(ChatColor.GREEN + "You gave " + amount + " " + currency + " to " + targetPlayer.getName() + ".");
-            targetPlayer.sendMessage(ChatColor.GREEN + "You received " + amount + " " + currency + " from " + player.getName() + ".");
-        } else {
-            player.sendMessage(ChatColor.RED + "You don't have enough " + currency + ".");
+                break;
+            case EXCEEDS_MAX_SUPPLY:
+                player.sendMessage(ChatColor.RED + targetPlayer.getName() + " cannot hold that much " + currency + ".");
+                break;
+            case UNAVAILABLE:
+                player.sendMessage(ChatColor.RED + "The economy is unavailable right now, please try again.");
+                break;
+            default:
+                player.sendMessage(ChatColor.RED + "You don't have enough " + currency + ".");
         }
     }
 
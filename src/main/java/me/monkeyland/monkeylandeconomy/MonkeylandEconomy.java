@@ -1,96 +1,266 @@
 package me.monkeyland.monkeylandeconomy;
 
+import org.bukkit.GameMode;
 import org.bukkit.Material;
+import org.bukkit.block.Block;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.FileConfiguration;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 import org.bukkit.scheduler.BukkitTask;
 import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
 
 import org.bukkit.Bukkit;
+import me.monkeyland.monkeylandeconomy.audit.AuditLog;
+import me.monkeyland.monkeylandeconomy.bulk.BulkJob;
+import me.monkeyland.monkeylandeconomy.bulk.BulkOperation;
+import me.monkeyland.monkeylandeconomy.bulk.BulkScheduler;
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
 import me.monkeyland.monkeylandeconomy.hooks.PlaceholderAPIHook;
+import me.monkeyland.monkeylandeconomy.hooks.VaultEconomyProvider;
+import me.monkeyland.monkeylandeconomy.inflation.RateHistory;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.BalanceLeaderboard;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.metrics.EconomyMetrics;
+import me.monkeyland.monkeylandeconomy.metrics.PrometheusExporter;
+import me.monkeyland.monkeylandeconomy.replication.ReplicationPrimary;
+import me.monkeyland.monkeylandeconomy.replication.ReplicationReplica;
+import me.monkeyland.monkeylandeconomy.rewards.RewardBatcher;
+import me.monkeyland.monkeylandeconomy.rewards.RewardLimiter;
+import me.monkeyland.monkeylandeconomy.rewards.RewardRule;
+import me.monkeyland.monkeylandeconomy.rewards.RewardTable;
+import me.monkeyland.monkeylandeconomy.storage.BinaryEconomyStorage;
+import me.monkeyland.monkeylandeconomy.storage.BinarySnapshot;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+import me.monkeyland.monkeylandeconomy.storage.EconomyStorage;
+import me.monkeyland.monkeylandeconomy.storage.SqliteEconomyStorage;
+import me.monkeyland.monkeylandeconomy.storage.StorageMigrator;
+import me.monkeyland.monkeylandeconomy.storage.TransactionJournal;
+import me.monkeyland.monkeylandeconomy.storage.WriteBehindFlusher;
+import me.monkeyland.monkeylandeconomy.storage.YamlAccountReader;
+import me.monkeyland.monkeylandeconomy.storage.YamlAccountWriter;
+import me.monkeyland.monkeylandeconomy.storage.YamlEconomyStorage;
+
+import net.milkbowl.vault.economy.Economy;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 public final class MonkeylandEconomy extends JavaPlugin implements Listener {
 
-    public enum Currency {
-        BRONZE,
-        COPPER,
-        SILVER,
-        GOLD
-    }
-
     private FileConfiguration economyDataConfig;
     private final String ECONOMY_DATA_FILE_NAME = "monkeyland_economy.yml";
-
-    // Economy Data (default values)
-    private final double DEFAULT_MAX_GOLD_SUPPLY = 1000000.0;
-    private final double DEFAULT_STARTING_INFLATION_RATE = 0.0015; // 0.15% per day
-    private final double DEFAULT_TARGET_INFLATION_RATE = 0.005;   // 0.5% per day
-    private final double DEFAULT_INFLATION_CURVE_FACTOR = 2.0;
-    private final Map<Currency, Double> DEFAULT_EXCHANGE_RATES = new HashMap<>() {{
-        put(Currency.BRONZE, 0.001);
-        put(Currency.COPPER, 0.01);
-        put(Currency.SILVER, 0.1);
-        put(Currency.GOLD, 1.0);
-    }};
-
-    // Economy Parameters
-    private double maxGoldSupply;
-    private double startingInflationRate;
-    private double currentInflationRate;
-    private double inflationFactor = 1.0;
-
-    // Player Data
-    private Map<UUID, Map<Currency, Double>> playerBalances = new HashMap<>();
-
-    // Other variables derived from the data
-    private double circulatingGoldSupply = 0.0;
-
-    // Exchange Rates
-    private Map<Currency, Double> exchangeRates = new HashMap<>(); // Initialized here
+    private final String EXPORT_DIRECTORY_NAME = "exports";
+    private final int IMPORT_FLUSH_ACCOUNTS = 65_536;
+
+    // False when the players section was left out of economyDataConfig; only the yaml backend needs it
+    private boolean playersLoaded = true;
+
+    // Economy Data (default values; the economy parameters are in EconomyEngine)
+    private final long DEFAULT_FLUSH_INTERVAL_SECONDS = 30;
+    private final int DEFAULT_FLUSH_THRESHOLD = 256;
+    private final long DEFAULT_JOURNAL_COMMIT_INTERVAL_MILLIS = 10;
+    private final long DEFAULT_JOURNAL_COMPACT_THRESHOLD_BYTES = 4L * 1024 * 1024;
+    private final long DEFAULT_JOURNAL_COMPACT_CHECK_SECONDS = 60;
+    private final boolean DEFAULT_SUPPLY_RECONCILE = false;
+    private final int DEFAULT_MAX_OFFLINE_ACCOUNTS = 5000;
+    private final String DEFAULT_STORAGE_TYPE = YamlEconomyStorage.TYPE;
+    private final long DEFAULT_REWARD_NOTIFY_INTERVAL_TICKS = 20;
+    private final double DEFAULT_REWARD_RATE_LIMIT_BURST = 64;
+    private final double DEFAULT_REWARD_RATE_LIMIT_PER_SECOND = 8;
+    private final boolean DEFAULT_LEADERBOARD_ENABLED = true;
+    private final int DEFAULT_LEADERBOARD_CACHED_ENTRIES = 10;
+    private final boolean DEFAULT_VAULT_ENABLED = true;
+    private final String DEFAULT_VAULT_CURRENCY = Currency.BASE_NAME;
+    private final long DEFAULT_METRICS_FILE_INTERVAL_SECONDS = 15;
+    private final String DEFAULT_METRICS_HTTP_HOST = "127.0.0.1";
+    private final int DEFAULT_METRICS_HTTP_PORT = 9464;
+    private final long DEFAULT_BULK_TICK_BUDGET_NANOS = 5_000_000L;
+    private final long DEFAULT_BULK_PROGRESS_INTERVAL_SECONDS = 5;
+    private final String DEFAULT_REPLICATION_MODE = "none";
+    private final String DEFAULT_REPLICATION_HOST = "127.0.0.1";
+    private final int DEFAULT_REPLICATION_PORT = 25590;
+    private final int DEFAULT_REPLICATION_BACKLOG_RECORDS = 262144;
+    private final int DEFAULT_REPLICATION_BATCH_MAX_RECORDS = 512;
+    private final long DEFAULT_REPLICATION_BATCH_DELAY_MILLIS = 5;
+    private final long DEFAULT_REPLICATION_WRITE_TIMEOUT_MILLIS = 2000;
+    private final boolean DEFAULT_AUDIT_ENABLED = true;
+    private final int DEFAULT_AUDIT_BUFFER_EVENTS = 65536;
+    private final long DEFAULT_AUDIT_SEGMENT_MAX_BYTES = 8L * 1024 * 1024;
+    private final int DEFAULT_AUDIT_MAX_SEGMENTS = 64;
+
+    private boolean reconcileSupply;
+    // Interest or demurrage per inflation tick, indexed by currency id; read once so the async tick never touches the config
+    private double[] accrualRates;
+
+    // Recorded on every inflation tick
+    private RateHistory rateHistory;
+
+    // Balances, supply, inflation and exchange; this class adds the server around it.
+    // Created on enable, once the currencies are known
+    private EconomyEngine engine;
+    private Ledger ledger;
 
     // Scheduler Task
     private BukkitTask inflationTask;
 
+    private PlaceholderAPIHook placeholderHook;
+    private VaultEconomyProvider vaultProvider;
+
+    // Block-break rewards, applied once per tick
+    private RewardBatcher rewardBatcher;
+    private RewardTable rewardTable;
+    // Null if rewards are not rate limited
+    private RewardLimiter rewardLimiter;
+
+    // Bulk admin operations over every account, a time slice per tick
+    private BulkScheduler bulkScheduler;
+    private BukkitTask bulkTask;
+
+    // At most one of these: this server streams its ledger, or mirrors another server's
+    private ReplicationPrimary replicationPrimary;
+    private ReplicationReplica replicationReplica;
+
+    // Every transaction, written off the main thread; null if disabled
+    private AuditLog auditLog;
+
+    // Timers, counters and gauges behind /monkeyland metrics and the Prometheus export
+    private final EconomyMetrics metrics = new EconomyMetrics();
+    private PrometheusExporter metricsExporter;
+    private BukkitTask metricsTask;
+
+    // Persistence
+    private EconomyStorage storage;
+    private WriteBehindFlusher writeBehindFlusher;
+    private TransactionJournal journal;
+    private BukkitTask journalCompactionTask;
+
     @Override
     public void onEnable() {
         // Load or create the economy data file
-        economyDataConfig = YamlConfiguration.loadConfiguration(new File(getDataFolder(), ECONOMY_DATA_FILE_NAME));
-
-        // Initialize maxGoldSupply to the default value
-        maxGoldSupply = DEFAULT_MAX_GOLD_SUPPLY;
-        getLogger().info("Initialized maxGoldSupply with default value: " + maxGoldSupply);
+        economyDataConfig = loadEconomyConfig(new File(getDataFolder(), ECONOMY_DATA_FILE_NAME));
 
-        // Load the value from the config file ONLY if it exists
-        if (economyDataConfig.contains("maxSupply.GOLD")) {
-            maxGoldSupply = economyDataConfig.getDouble("maxSupply.GOLD");
-            getLogger().info("Loaded maxGoldSupply from config file: " + maxGoldSupply);
-        } else {
-            getLogger().info("Key 'maxSupply.GOLD' not found in config file, using default value.");
+        // The currencies size every per-currency array, so they come before the engine and storage
+        if (!loadCurrencies()) {
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
+        }
+        engine = new EconomyEngine(this::loadStoredAccount, this::onBalanceChanged);
+        ledger = engine.getLedger();
+
+        // Open the configured storage backend
+        String storageType = economyDataConfig.getString("storage.type", DEFAULT_STORAGE_TYPE);
+        storage = createStorage(storageType);
+        if (storage == null) {
+            getLogger().severe("Unknown storage type '" + storageType + "'. Use yaml, binary or sqlite.");
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
+        }
+        try {
+            storage.open();
+        } catch (IOException e) {
+            getLogger().severe("Failed to open " + storageType + " storage: " + e.getMessage());
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
         }
+        getLogger().info("Using " + storage.getType() + " storage.");
 
         // If the configuration is empty, initialize the rest of the data
         if (economyDataConfig.getKeys(false).isEmpty()) {
             getLogger().info("Configuration file is empty. Initializing economy data.");
             initializeEconomyData();
         } else {
-            getLogger().info("Loading economy data from config file.");
+            migrateFromYaml();
+            getLogger().info("Loading economy data from " + storage.getType() + " storage.");
             loadDatabaseData();
         }
 
-        // Calculate initial circulating supply
-        calculateCirculatingSupply();
+        // Create the write-behind flusher
+        long flushIntervalSeconds = economyDataConfig.getLong("writeBehind.flushIntervalSeconds", DEFAULT_FLUSH_INTERVAL_SECONDS);
+        int flushThreshold = economyDataConfig.getInt("writeBehind.flushThreshold", DEFAULT_FLUSH_THRESHOLD);
+        writeBehindFlusher = new WriteBehindFlusher(this, this::writeEconomyData, flushIntervalSeconds * 20L, flushThreshold);
+
+        // Offline accounts are loaded on demand and evicted back to disk past this limit
+        int maxOfflineAccounts = economyDataConfig.getInt("cache.maxOfflineAccounts", DEFAULT_MAX_OFFLINE_ACCOUNTS);
+        ledger.setMaxOfflineAccounts(maxOfflineAccounts);
+        ledger.setEvictionListener(writeBehindFlusher::markDirty);
+        for (Player player : Bukkit.getOnlinePlayers()) {
+            ledger.pin(player.getUniqueId());
+        }
+
+        // Rank the stored balances before the journal replay moves them
+        buildLeaderboard();
+
+        // Replay the journal on top of the snapshot
+        if (economyDataConfig.getBoolean("journal.enabled", true)) {
+            openJournal();
+        }
+
+        writeBehindFlusher.start();
+        getLogger().info("Write-behind flush every " + flushIntervalSeconds + "s or " + flushThreshold + " dirty accounts.");
+
+        accrualRates = new double[Currency.count()];
+        for (Currency currency : Currency.values()) {
+            accrualRates[currency.getId()] = economyDataConfig.getDouble("accrual." + currency.name(), 0.0);
+        }
+
+        // Circulating supply is tracked as balances change; optionally verify it with a full scan
+        reconcileSupply = economyDataConfig.getBoolean("supply.reconcile", DEFAULT_SUPPLY_RECONCILE);
+        if (reconcileSupply) {
+            reconcileCirculatingSupply();
+        }
+
+        // Exchange and inflation rate history
+        rateHistory = new RateHistory(getDataFolder().toPath(), getLogger());
+        try {
+            rateHistory.load();
+        } catch (IOException e) {
+            getLogger().severe("Failed to load rate history: " + e.getMessage());
+        }
+
+        openAuditLog();
+
+        long rewardNotifyIntervalTicks = economyDataConfig.getLong("rewards.notifyIntervalTicks", DEFAULT_REWARD_NOTIFY_INTERVAL_TICKS);
+        rewardBatcher = new RewardBatcher(this, ledger, auditLog, rewardNotifyIntervalTicks);
+        loadRewardRules();
+
+        startBulkScheduler();
+
+        // Must be running before the first write, so replicas never miss a change
+        if (!startReplication()) {
+            Bukkit.getPluginManager().disablePlugin(this);
+            return;
+        }
+
+        registerGauges();
+        startMetricsExport();
+
+        registerVaultProvider();
 
         // Register events and commands
         getServer().getPluginManager().registerEvents(this, this);
@@ -98,16 +268,19 @@ public final class MonkeylandEconomy extends JavaPlugin implements Listener {
 
         // PlaceholderAPI Registration
         if (Bukkit.getPluginManager().getPlugin("PlaceholderAPI") != null) {
-            new PlaceholderAPIHook(this).register(); // Register the PlaceholderExpansion
+            placeholderHook = new PlaceholderAPIHook(this);
+            placeholderHook.register(); // Register the PlaceholderExpansion
         } else {
             getLogger().severe("Could not find PlaceholderAPI! This plugin is required.");
             Bukkit.getPluginManager().disablePlugin(this);
         }
 
-        // Schedule task to run daily
+        // Schedule task to run daily; a replica receives the rates from its primary instead
         // long inflationDelay = 20L * 60 * 60 * 24; // 24 hours in ticks
         long inflationDelay = 20L * 60 * 60;
-        inflationTask = getServer().getScheduler().runTaskTimer(this, this::adjustInflationAndExchangeRates, inflationDelay, inflationDelay);
+        if (replicationReplica == null) {
+            inflationTask = getServer().getScheduler().runTaskTimerAsynchronously(this, this::adjustInflationAndExchangeRates, inflationDelay, inflationDelay);
+        }
 
         // Log initial values to console
         getLogger().info("MonkeylandEconomy Initialized:");
@@ -121,8 +294,75 @@ public final class MonkeylandEconomy extends JavaPlugin implements Listener {
 
     @Override
     public void onDisable() {
-        saveEconomyData();
-        inflationTask.cancel();
+        if (vaultProvider != null) {
+            vaultProvider.disable();
+            getServer().getServicesManager().unregister(Economy.class, vaultProvider);
+        }
+        if (inflationTask != null) {
+            inflationTask.cancel();
+        }
+        if (journalCompactionTask != null) {
+            journalCompactionTask.cancel();
+        }
+        if (metricsTask != null) {
+            metricsTask.cancel();
+        }
+        if (metricsExporter != null) {
+            metricsExporter.close();
+        }
+
+        // Unfinished bulk jobs continue from where they stopped on the next start
+        if (bulkTask != null) {
+            bulkTask.cancel();
+            try {
+                bulkScheduler.saveCheckpoint(getDataFolder().toPath().resolve(BulkScheduler.CHECKPOINT_FILE_NAME));
+            } catch (IOException e) {
+                getLogger().severe("Failed to save bulk job checkpoint: " + e.getMessage());
+            }
+        }
+
+        // Apply rewards still waiting for the end of the tick
+        if (rewardBatcher != null) {
+            rewardBatcher.shutdown();
+        }
+
+        // Writes out every transaction recorded so far
+        if (auditLog != null) {
+            auditLog.close();
+        }
+
+        closeReplication();
+
+        // Final flush of everything still pending
+        if (writeBehindFlusher != null) {
+            writeBehindFlusher.shutdown();
+        }
+
+        // The snapshot is complete now, so the journal can be folded away
+        if (journal != null) {
+            compactJournal();
+            try {
+                journal.close();
+            } catch (IOException e) {
+                getLogger().severe("Failed to close transaction journal: " + e.getMessage());
+            }
+        }
+
+        if (rateHistory != null) {
+            try {
+                rateHistory.close();
+            } catch (IOException e) {
+                getLogger().severe("Failed to close rate history: " + e.getMessage());
+            }
+        }
+
+        if (storage != null) {
+            try {
+                storage.close();
+            } catch (IOException e) {
+                getLogger().severe("Failed to close " + storage.getType() + " storage: " + e.getMessage());
+            }
+        }
     }
 
     // --- Database Handling ---
@@ -130,30 +370,93 @@ public final class MonkeylandEconomy extends JavaPlugin implements Listener {
     private void initializeEconomyData() {
         getLogger().info("Initializing economy data...");
 
-        exchangeRates.putAll(DEFAULT_EXCHANGE_RATES); // Add this line
+        engine.setState(EconomyEngine.defaultState());
 
         for (Currency currency : Currency.values()) {
-            economyDataConfig.set("exchangeRates." + currency.name(), DEFAULT_EXCHANGE_RATES.get(currency));
-            getLogger().info("Set exchange rate for " + currency.name() + " to: " + DEFAULT_EXCHANGE_RATES.get(currency));
+            String path = "currencies." + currency.name();
+            economyDataConfig.set(path + ".id", currency.getId());
+            economyDataConfig.set(path + ".aliases", List.of(currency.getAliases()));
+            economyDataConfig.set(path + ".peg", currency.getPeg());
+            economyDataConfig.set(path + ".maxSupply", currency.getMaxSupply());
+            economyDataConfig.set(path + ".format", currency.getFormat());
         }
+        getLogger().info("Set currencies to: " + List.of(Currency.values()));
+
+        for (Currency currency : Currency.values()) {
+            economyDataConfig.set("exchangeRates." + currency.name(), currency.getPeg());
+            getLogger().info("Set exchange rate for " + currency.name() + " to: " + currency.getPeg());
+        }
+
+        economyDataConfig.set("inflationRate", EconomyEngine.DEFAULT_STARTING_INFLATION_RATE);
+        getLogger().info("Set inflationRate to: " + EconomyEngine.DEFAULT_STARTING_INFLATION_RATE);
+
+        for (Currency currency : Currency.values()) {
+            economyDataConfig.set("inflationFactor." + currency.name(), 1.0);
+            economyDataConfig.set("accrual." + currency.name(), 0.0);
+        }
+        getLogger().info("Set inflationFactor to: 1.0, accrual to: 0.0 per tick");
+
+        economyDataConfig.set("startingInflationRate", EconomyEngine.DEFAULT_STARTING_INFLATION_RATE);
+        getLogger().info("Set startingInflationRate to: " + EconomyEngine.DEFAULT_STARTING_INFLATION_RATE);
+
+        economyDataConfig.set("targetInflationRate", EconomyEngine.DEFAULT_TARGET_INFLATION_RATE);
+        getLogger().info("Set targetInflationRate to: " + EconomyEngine.DEFAULT_TARGET_INFLATION_RATE);
+
+        economyDataConfig.set("inflationCurveFactor", EconomyEngine.DEFAULT_INFLATION_CURVE_FACTOR);
+        getLogger().info("Set inflationCurveFactor to: " + EconomyEngine.DEFAULT_INFLATION_CURVE_FACTOR);
+
+        economyDataConfig.set("maxSupply.GOLD", EconomyEngine.DEFAULT_MAX_GOLD_SUPPLY);
+        getLogger().info("Set maxSupply.GOLD to: " + EconomyEngine.DEFAULT_MAX_GOLD_SUPPLY);
+
+        economyDataConfig.set("storage.type", DEFAULT_STORAGE_TYPE);
+        getLogger().info("Set storage.type to: " + DEFAULT_STORAGE_TYPE);
+
+        economyDataConfig.set("writeBehind.flushIntervalSeconds", DEFAULT_FLUSH_INTERVAL_SECONDS);
+        economyDataConfig.set("writeBehind.flushThreshold", DEFAULT_FLUSH_THRESHOLD);
+        getLogger().info("Set writeBehind to: " + DEFAULT_FLUSH_INTERVAL_SECONDS + "s / " + DEFAULT_FLUSH_THRESHOLD + " accounts");
+
+        economyDataConfig.set("supply.reconcile", DEFAULT_SUPPLY_RECONCILE);
 
-        economyDataConfig.set("inflationRate", DEFAULT_STARTING_INFLATION_RATE);
-        getLogger().info("Set inflationRate to: " + DEFAULT_STARTING_INFLATION_RATE);
+        economyDataConfig.set("cache.maxOfflineAccounts", DEFAULT_MAX_OFFLINE_ACCOUNTS);
 
-        economyDataConfig.set("inflationFactor", 1.0);
-        getLogger().info("Set inflationFactor to: 1.0");
+        economyDataConfig.set("rewards.notifyIntervalTicks", DEFAULT_REWARD_NOTIFY_INTERVAL_TICKS);
+        economyDataConfig.set("rewards.rateLimit.burst", DEFAULT_REWARD_RATE_LIMIT_BURST);
+        economyDataConfig.set("rewards.rateLimit.perSecond", DEFAULT_REWARD_RATE_LIMIT_PER_SECOND);
+        setDefaultRewardRules();
 
-        economyDataConfig.set("startingInflationRate", DEFAULT_STARTING_INFLATION_RATE);
-        getLogger().info("Set startingInflationRate to: " + DEFAULT_STARTING_INFLATION_RATE);
+        economyDataConfig.set("vault.enabled", DEFAULT_VAULT_ENABLED);
+        economyDataConfig.set("vault.currency", DEFAULT_VAULT_CURRENCY);
 
-        economyDataConfig.set("targetInflationRate", DEFAULT_TARGET_INFLATION_RATE);
-        getLogger().info("Set targetInflationRate to: " + DEFAULT_TARGET_INFLATION_RATE);
+        economyDataConfig.set("leaderboard.enabled", DEFAULT_LEADERBOARD_ENABLED);
+        economyDataConfig.set("leaderboard.cachedEntries", DEFAULT_LEADERBOARD_CACHED_ENTRIES);
 
-        economyDataConfig.set("inflationCurveFactor", DEFAULT_INFLATION_CURVE_FACTOR);
-        getLogger().info("Set inflationCurveFactor to: " + DEFAULT_INFLATION_CURVE_FACTOR);
+        economyDataConfig.set("metrics.file.enabled", false);
+        economyDataConfig.set("metrics.file.intervalSeconds", DEFAULT_METRICS_FILE_INTERVAL_SECONDS);
+        economyDataConfig.set("metrics.http.enabled", false);
+        economyDataConfig.set("metrics.http.host", DEFAULT_METRICS_HTTP_HOST);
+        economyDataConfig.set("metrics.http.port", DEFAULT_METRICS_HTTP_PORT);
 
-        economyDataConfig.set("maxSupply.GOLD", DEFAULT_MAX_GOLD_SUPPLY);
-        getLogger().info("Set maxSupply.GOLD to: " + DEFAULT_MAX_GOLD_SUPPLY);
+        economyDataConfig.set("bulk.tickBudgetNanos", DEFAULT_BULK_TICK_BUDGET_NANOS);
+        economyDataConfig.set("bulk.progressIntervalSeconds", DEFAULT_BULK_PROGRESS_INTERVAL_SECONDS);
+
+        economyDataConfig.set("replication.mode", DEFAULT_REPLICATION_MODE);
+        economyDataConfig.set("replication.host", DEFAULT_REPLICATION_HOST);
+        economyDataConfig.set("replication.port", DEFAULT_REPLICATION_PORT);
+        economyDataConfig.set("replication.backlogRecords", DEFAULT_REPLICATION_BACKLOG_RECORDS);
+        economyDataConfig.set("replication.batchMaxRecords", DEFAULT_REPLICATION_BATCH_MAX_RECORDS);
+        economyDataConfig.set("replication.batchDelayMillis", DEFAULT_REPLICATION_BATCH_DELAY_MILLIS);
+        economyDataConfig.set("replication.writeTimeoutMillis", DEFAULT_REPLICATION_WRITE_TIMEOUT_MILLIS);
+
+        economyDataConfig.set("audit.enabled", DEFAULT_AUDIT_ENABLED);
+        economyDataConfig.set("audit.bufferEvents", DEFAULT_AUDIT_BUFFER_EVENTS);
+        economyDataConfig.set("audit.segmentMaxBytes", DEFAULT_AUDIT_SEGMENT_MAX_BYTES);
+        economyDataConfig.set("audit.maxSegments", DEFAULT_AUDIT_MAX_SEGMENTS);
+
+        economyDataConfig.set("journal.enabled", true);
+        economyDataConfig.set("journal.commitIntervalMillis", DEFAULT_JOURNAL_COMMIT_INTERVAL_MILLIS);
+        economyDataConfig.set("journal.compactThresholdBytes", DEFAULT_JOURNAL_COMPACT_THRESHOLD_BYTES);
+        economyDataConfig.set("journal.compactCheckSeconds", DEFAULT_JOURNAL_COMPACT_CHECK_SECONDS);
+        getLogger().info("Enabled transaction journal.");
 
         economyDataConfig.createSection("players");
         getLogger().info("Created 'players' section.");
@@ -163,152 +466,798 @@ public final class MonkeylandEconomy extends JavaPlugin implements Listener {
     }
 
     private void loadDatabaseData() {
-        getLogger().info("Loading economy data from configuration file...");
+        getLogger().info("Loading economy data...");
 
-        // Load inflation rates, curve factor, and exchange rates with logging
-        startingInflationRate = economyDataConfig.getDouble("startingInflationRate", DEFAULT_STARTING_INFLATION_RATE);
-        getLogger().info("Loaded startingInflationRate: " + startingInflationRate);
+        EconomyState state;
+        long[] totals;
+        try {
+            state = storage.loadState(EconomyEngine.defaultState());
+            // Player balances are loaded on demand; only the circulating totals are needed now
+            totals = storage.sumBalances();
+        } catch (IOException e) {
+            getLogger().severe("Failed to load economy data, using defaults: " + e.getMessage());
+            state = EconomyEngine.defaultState();
+            totals = new long[Currency.count()];
+        }
+
+        engine.setState(state);
+        getLogger().info("Loaded maxGoldSupply: " + state.getMaxGoldSupply());
+
+        // Log inflation rates, curve factor, and exchange rates
+        getLogger().info("Loaded startingInflationRate: " + state.getStartingInflationRate());
+        getLogger().info("Loaded targetInflationRate: " + state.getTargetInflationRate() + ", inflationCurveFactor: " + state.getInflationCurveFactor());
 
         for (Currency currency : Currency.values()) {
-            double exchangeRate = economyDataConfig.getDouble("exchangeRates." + currency.name(), DEFAULT_EXCHANGE_RATES.get(currency));
-            exchangeRates.put(currency, exchangeRate);
-            getLogger().info("Loaded exchangeRate for " + currency.name() + ": " + exchangeRate);
+            getLogger().info("Loaded exchangeRate for " + currency.name() + ": " + state.getExchangeRate(currency));
         }
 
-        // Load inflation rate and factor and log results
-        Object inflationRateValue = economyDataConfig.get("inflationRate");
-        if (inflationRateValue instanceof Double) {
-            currentInflationRate = (double) inflationRateValue;
-            getLogger().info("Loaded currentInflationRate from config: " + currentInflationRate);
-        } else {
-            currentInflationRate = DEFAULT_STARTING_INFLATION_RATE;
-            getLogger().info("Using default currentInflationRate: " + currentInflationRate);
+        getLogger().info("Loaded currentInflationRate: " + state.getInflationRate());
+        for (Currency currency : Currency.values()) {
+            getLogger().info("Loaded inflationFactor for " + currency.name() + ": " + state.getInflationFactor(currency));
         }
 
-        Object inflationFactorValue = economyDataConfig.get("inflationFactor");
-        if (inflationFactorValue instanceof Double) {
-            inflationFactor = (double) inflationFactorValue;
-            getLogger().info("Loaded inflationFactor from config: " + inflationFactor);
-        } else {
-            inflationFactor = 1.0;
-            getLogger().info("Using default inflationFactor: " + inflationFactor);
+        engine.setCirculating(totals);
+    }
+
+    /**
+     * Installs the currencies of the {@code currencies} section, or the built-in ones if there
+     * is none. Entries without an id take the lowest free one, in file order. Returns false,
+     * after logging why, if the section is invalid.
+     */
+    private boolean loadCurrencies() {
+        ConfigurationSection section = economyDataConfig.getConfigurationSection("currencies");
+        if (section == null || section.getKeys(false).isEmpty()) {
+            Currency.install(Currency.defaults());
+            return true;
+        }
+        Set<Integer> takenIds = new HashSet<>();
+        for (String name : section.getKeys(false)) {
+            if (section.isInt(name + ".id")) {
+                takenIds.add(section.getInt(name + ".id"));
+            }
+        }
+        List<Currency> currencies = new ArrayList<>();
+        int nextId = 0;
+        try {
+            for (String name : section.getKeys(false)) {
+                ConfigurationSection entry = section.getConfigurationSection(name);
+                if (entry == null) {
+                    throw new IllegalArgumentException(name + " must be a section");
+                }
+                int id;
+                if (entry.isInt("id")) {
+                    id = entry.getInt("id");
+                } else {
+                    while (takenIds.contains(nextId)) {
+                        nextId++;
+                    }
+                    id = nextId;
+                    takenIds.add(id);
+                    getLogger().warning("Currency " + name + " has no id, using " + id + ". Set it in the config, stored balances refer to it.");
+                }
+                double defaultPeg = name.equalsIgnoreCase(Currency.BASE_NAME) ? 1.0 : 0.0;
+                currencies.add(new Currency(id, name, entry.getStringList("aliases").toArray(new String[0]),
+                        entry.getDouble("peg", defaultPeg), entry.getDouble("maxSupply", 0.0), entry.getString("format", Currency.DEFAULT_FORMAT)));
+            }
+            Currency.install(currencies);
+        } catch (IllegalArgumentException e) {
+            getLogger().severe("Invalid currencies section: " + e.getMessage());
+            return false;
+        }
+        getLogger().info("Loaded " + currencies.size() + " currencies: " + List.of(Currency.values()));
+        return true;
+    }
+
+    /**
+     * Reads the settings without the players section first, streaming past it. Only the yaml
+     * backend keeps its accounts in the same tree, so only then is the whole file parsed.
+     */
+    private FileConfiguration loadEconomyConfig(File dataFile) {
+        if (!dataFile.exists()) {
+            return new YamlConfiguration();
+        }
+        YamlConfiguration settings = new YamlConfiguration();
+        try {
+            settings.loadFromString(newYamlReader(dataFile.toPath()).readSettings());
+        } catch (IOException | InvalidConfigurationException e) {
+            getLogger().warning("Failed to stream " + ECONOMY_DATA_FILE_NAME + ", loading it whole: " + e.getMessage());
+            return YamlConfiguration.loadConfiguration(dataFile);
+        }
+        if (settings.getString("storage.type", DEFAULT_STORAGE_TYPE).equalsIgnoreCase(YamlEconomyStorage.TYPE)) {
+            return YamlConfiguration.loadConfiguration(dataFile);
+        }
+        playersLoaded = false;
+        return settings;
+    }
+
+    private YamlAccountReader newYamlReader(Path file) {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+        return new YamlAccountReader(file, threads, YamlAccountReader.DEFAULT_CHUNK_ACCOUNTS, getLogger());
+    }
+
+    private EconomyStorage createStorage(String type) {
+        switch (type.toLowerCase()) {
+            case YamlEconomyStorage.TYPE:
+                File dataFile = new File(getDataFolder(), ECONOMY_DATA_FILE_NAME);
+                // The settings object lacks the players section then, so the backend gets a full tree
+                FileConfiguration config = playersLoaded ? economyDataConfig : YamlConfiguration.loadConfiguration(dataFile);
+                return new YamlEconomyStorage(config, dataFile, getLogger());
+            case BinaryEconomyStorage.TYPE:
+                return new BinaryEconomyStorage(getDataFolder().toPath().resolve(BinarySnapshot.SNAPSHOT_FILE_NAME));
+            case SqliteEconomyStorage.TYPE:
+                return new SqliteEconomyStorage(getDataFolder().toPath().resolve(SqliteEconomyStorage.DATABASE_FILE_NAME));
+            default:
+                return null;
+        }
+    }
+
+    // Streams existing YAML data into a freshly configured backend on its first start
+    private void migrateFromYaml() {
+        if (storage.getType().equals(YamlEconomyStorage.TYPE)) {
+            return;
+        }
+        YamlAccountReader reader = newYamlReader(new File(getDataFolder(), ECONOMY_DATA_FILE_NAME).toPath());
+        try {
+            if (storage.hasAccounts() || !reader.hasAccounts()) {
+                return;
+            }
+            getLogger().info("Migrating player data from " + ECONOMY_DATA_FILE_NAME + " to " + storage.getType() + " storage...");
+            EconomyState state = YamlEconomyStorage.readState(economyDataConfig, EconomyEngine.defaultState());
+            int count = StorageMigrator.copy(state, reader, storage);
+            getLogger().info("Migrated " + count + " accounts. " + ECONOMY_DATA_FILE_NAME + " is left as it was.");
+        } catch (IOException e) {
+            getLogger().severe("Failed to migrate economy data: " + e.getMessage());
+        }
+    }
+
+    // Reads one account from storage, null if it has never been saved
+    private long[] loadStoredAccount(UUID playerId) throws IOException {
+        return storage.loadAccount(playerId);
+    }
+
+    private void saveEconomyData() {
+        try {
+            writeEconomyData(engine.getAccounts().accountIds(), true);
+        } catch (IOException e) {
+            getLogger().severe("Failed to save economy data: " + e.getMessage());
+        }
+    }
+
+    // Writes the economy parameters and only the given accounts; called from the async flusher
+    private void writeEconomyData(Set<UUID> changedAccounts, boolean stateChanged) throws IOException {
+        long start = EconomyMetrics.start();
+        try {
+            int saved = writeChangedData(changedAccounts, stateChanged);
+            metrics.add(EconomyMetrics.Counter.ACCOUNTS_SAVED, saved);
+        } catch (IOException e) {
+            metrics.increment(EconomyMetrics.Counter.SAVE_FAILURES);
+            throw e;
+        } finally {
+            metrics.record(EconomyMetrics.Timer.SAVE, start);
+        }
+    }
+
+    // Returns the number of accounts written
+    private int writeChangedData(Set<UUID> changedAccounts, boolean stateChanged) throws IOException {
+        // Save changed player balances, other entries are left untouched
+        Map<UUID, long[]> changedBalances = new HashMap<>();
+        Map<UUID, long[]> parkedBalances = new HashMap<>();
+        for (UUID playerId : changedAccounts) {
+            // Evicted accounts come from the ledger's write-back map
+            long[] parked = ledger.parkedBalances(playerId);
+            long[] balances = ledger.snapshotBalances(playerId);
+            if (balances == null) {
+                continue;
+            }
+            changedBalances.put(playerId, balances);
+            if (parked != null) {
+                parkedBalances.put(playerId, parked);
+            }
         }
 
-        // Load player balances
-        ConfigurationSection playersSection = economyDataConfig.getConfigurationSection("players");
-        if (playersSection != null) {
-            for (String uuidString : playersSection.getKeys(false)) {
+        // Every value captured above must be durable in the journal before it is written,
+        // otherwise a crash could leave the snapshot holding one leg of a transfer whose
+        // journal records never reached disk. Syncing after the capture covers all of them.
+        if (journal != null) {
+            journal.sync();
+        }
+
+        if (stateChanged) {
+            storage.saveState(getEconomyState());
+        }
+        if (changedBalances.isEmpty()) {
+            return 0;
+        }
+        storage.upsertAccounts(changedBalances);
+
+        for (Map.Entry<UUID, long[]> entry : parkedBalances.entrySet()) {
+            ledger.markSaved(entry.getKey(), entry.getValue());
+        }
+        return changedBalances.size();
+    }
+
+    // Consistent view of the current parameters and rates
+    public EconomyState getEconomyState() {
+        return engine.getState();
+    }
+
+    /**
+     * Copies the economy data from the active storage into a storage of another type, off the
+     * main thread, after flushing pending changes. The target's accounts are overwritten; point
+     * {@code storage.type} at it and restart to switch over.
+     */
+    public void convertEconomyData(CommandSender sender, String targetType) {
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            String message;
+            EconomyStorage target = createStorage(targetType);
+            if (target == null) {
+                message = ChatColor.RED + "Unknown storage type: " + targetType;
+            } else if (target.getType().equals(storage.getType())) {
+                message = ChatColor.RED + "The economy already uses " + targetType + " storage.";
+            } else {
                 try {
-                    UUID playerId = UUID.fromString(uuidString);
-                    Map<Currency, Double> balances = new HashMap<>();
+                    if (!writeBehindFlusher.flush()) {
+                        throw new IOException("pending changes could not be saved");
+                    }
+                    target.open();
+                    try {
+                        int count = StorageMigrator.copy(getEconomyState(), storage, target);
+                        message = ChatColor.GREEN + "Copied " + count + " accounts to " + target.getType() + " storage.";
+                    } finally {
+                        target.close();
+                    }
+                } catch (IOException e) {
+                    getLogger().severe("Failed to convert economy data: " + e.getMessage());
+                    message = ChatColor.RED + "Conversion failed: " + e.getMessage();
+                }
+            }
+            String result = message;
+            getServer().getScheduler().runTask(this, () -> sender.sendMessage(result));
+        });
+    }
+
+    // --- YAML Export and Import ---
+
+    // A plain file name inside the exports directory, .yml added if missing; null if not allowed
+    private Path exportFile(String name) {
+        if (!name.matches("[A-Za-z0-9_.-]+") || name.startsWith(".")) {
+            return null;
+        }
+        return getDataFolder().toPath().resolve(EXPORT_DIRECTORY_NAME).resolve(name.endsWith(".yml") ? name : name + ".yml");
+    }
+
+    /**
+     * Writes the economy state and every account to a file in the {@code players.<uuid>} YAML
+     * layout, off the main thread, one account at a time.
+     */
+    public void exportEconomyData(CommandSender sender, String name) {
+        Path file = exportFile(name);
+        if (file == null) {
+            sender.sendMessage(ChatColor.RED + "Invalid file name: " + name);
+            return;
+        }
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            String message;
+            try {
+                if (!writeBehindFlusher.flush()) {
+                    throw new IOException("pending changes could not be saved");
+                }
+                Files.createDirectories(file.getParent());
+                int count;
+                try (YamlAccountWriter writer = new YamlAccountWriter(file)) {
+                    writer.writeState(getEconomyState());
+                    storage.forEachAccount(writer::writeAccount);
+                    count = writer.getCount();
+                }
+                message = ChatColor.GREEN + "Exported " + count + " accounts to " + EXPORT_DIRECTORY_NAME + "/" + file.getFileName() + ".";
+            } catch (IOException e) {
+                getLogger().severe("Failed to export economy data: " + e.getMessage());
+                message = ChatColor.RED + "Export failed: " + e.getMessage();
+            }
+            String result = message;
+            getServer().getScheduler().runTask(this, () -> sender.sendMessage(result));
+        });
+    }
+
+    /**
+     * Streams the accounts of a YAML file into the running economy, off the main thread. Each
+     * balance is set through the ledger, so it is journaled, replicated and ranked like any other
+     * change; balances are taken at the file's own inflation factors. Pending changes are
+     * flushed every batch so memory stays bounded. Accounts not in the file are left alone.
+     */
+    public void importEconomyData(CommandSender sender, String name) {
+        Path file = exportFile(name);
+        if (file == null || !file.toFile().isFile()) {
+            sender.sendMessage(ChatColor.RED + "No such file in " + EXPORT_DIRECTORY_NAME + "/: " + name);
+            return;
+        }
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            String message;
+            try {
+                YamlAccountReader reader = newYamlReader(file);
+                YamlConfiguration settings = new YamlConfiguration();
+                settings.loadFromString(reader.readSettings());
+                EconomyState fileState = YamlEconomyStorage.readState(settings, EconomyEngine.defaultState());
+
+                int[] counts = new int[2];
+                int visited = reader.forEachAccount((playerId, balances) -> {
+                    boolean failed = false;
                     for (Currency currency : Currency.values()) {
-                        double balance = economyDataConfig.getDouble("players." + uuidString + "." + currency, 0.0);
-                        balances.put(currency, balance);
+                        double factor = fileState.getInflationFactor(currency);
+                        long stored = balances[currency.getId()];
+                        long balance = factor == 1.0 ? stored : Math.round(stored * factor);
+                        failed |= ledger.set(playerId, currency, balance) != Ledger.Result.SUCCESS;
                     }
-                    playerBalances.put(playerId, balances);
-                } catch (IllegalArgumentException e) {
-                    getLogger().warning("Invalid UUID found in player data: " + uuidString);
+                    counts[failed ? 1 : 0]++;
+                    if ((counts[0] + counts[1]) % IMPORT_FLUSH_ACCOUNTS == 0 && !writeBehindFlusher.flush()) {
+                        throw new IOException("imported changes could not be saved");
+                    }
+                });
+                if (!writeBehindFlusher.flush()) {
+                    throw new IOException("imported changes could not be saved");
                 }
+                message = ChatColor.GREEN + "Imported " + counts[0] + " of " + visited + " accounts from " + EXPORT_DIRECTORY_NAME + "/" + file.getFileName()
+                        + (counts[1] > 0 ? ", " + counts[1] + " were rejected (over the max supply or unavailable)." : ".");
+            } catch (IOException | InvalidConfigurationException e) {
+                getLogger().severe("Failed to import economy data: " + e.getMessage());
+                message = ChatColor.RED + "Import failed: " + e.getMessage();
             }
+            String result = message;
+            getServer().getScheduler().runTask(this, () -> sender.sendMessage(result));
+        });
+    }
+
+    // --- Vault ---
+
+    // Offers one currency to shops, jobs and other plugins through Vault's Economy service
+    private void registerVaultProvider() {
+        if (!economyDataConfig.getBoolean("vault.enabled", DEFAULT_VAULT_ENABLED) || Bukkit.getPluginManager().getPlugin("Vault") == null) {
+            return;
+        }
+        String currencyName = economyDataConfig.getString("vault.currency", DEFAULT_VAULT_CURRENCY);
+        Currency currency = Currency.find(currencyName);
+        if (currency == null) {
+            getLogger().severe("Unknown vault.currency '" + currencyName + "', not registering with Vault.");
+            return;
+        }
+
+        vaultProvider = new VaultEconomyProvider(engine, currency, auditLog);
+        // Names for the name-based Vault calls, so they never need a profile lookup
+        for (OfflinePlayer player : Bukkit.getOfflinePlayers()) {
+            vaultProvider.rememberName(player.getName(), player.getUniqueId());
         }
+        getServer().getServicesManager().register(Economy.class, vaultProvider, this, ServicePriority.Normal);
+        getLogger().info("Registered " + currency + " as the Vault economy.");
     }
 
-    private void saveEconomyData() {
-        // Save configuration and economy data
-        economyDataConfig.set("maxSupply.GOLD", maxGoldSupply);
-        economyDataConfig.set("inflationRate", currentInflationRate);
-        economyDataConfig.set("inflationFactor", inflationFactor);
-        economyDataConfig.set("startingInflationRate", startingInflationRate);
+    // --- Rewards ---
 
-        for (Currency currency : Currency.values()) {
-            double exchangeRate = exchangeRates.get(currency);
+    // Compiles the block-reward rules, and the rate limit every rewarded break counts against
+    private void loadRewardRules() {
+        if (!economyDataConfig.isConfigurationSection("rewards.rules")) {
+            setDefaultRewardRules();
+        }
+        rewardTable = RewardTable.compile(economyDataConfig.getConfigurationSection("rewards.rules"), getLogger());
+        getLogger().info("Block rewards for " + rewardTable.getBlockCount() + " block types.");
+
+        double perSecond = economyDataConfig.getDouble("rewards.rateLimit.perSecond", DEFAULT_REWARD_RATE_LIMIT_PER_SECOND);
+        double burst = economyDataConfig.getDouble("rewards.rateLimit.burst", DEFAULT_REWARD_RATE_LIMIT_BURST);
+        rewardLimiter = perSecond > 0 ? new RewardLimiter(burst, perSecond) : null;
+    }
 
-            // Round to 4 decimal places
-            exchangeRate = Math.round(exchangeRate * 10000.0) / 10000.0;
+    // Gold and copper ore in both variants, as the plugin has always paid
+    private void setDefaultRewardRules() {
+        economyDataConfig.set("rewards.rules.gold_ore.blocks", List.of(Material.GOLD_ORE.name(), Material.DEEPSLATE_GOLD_ORE.name()));
+        economyDataConfig.set("rewards.rules.gold_ore.currency", Currency.BASE_NAME);
+        economyDataConfig.set("rewards.rules.gold_ore.amount", 1.0);
+        economyDataConfig.set("rewards.rules.gold_ore.silkTouch", false);
+        Currency copper = Currency.find("COPPER");
+        if (copper != null) {
+            economyDataConfig.set("rewards.rules.copper_ore.blocks", List.of(Material.COPPER_ORE.name(), Material.DEEPSLATE_COPPER_ORE.name()));
+            economyDataConfig.set("rewards.rules.copper_ore.currency", copper.name());
+            economyDataConfig.set("rewards.rules.copper_ore.amount", 5.0);
+            economyDataConfig.set("rewards.rules.copper_ore.silkTouch", false);
+        }
+    }
+
+    // --- Bulk Operations ---
+
+    private void startBulkScheduler() {
+        long budgetNanos = economyDataConfig.getLong("bulk.tickBudgetNanos", DEFAULT_BULK_TICK_BUDGET_NANOS);
+        long progressIntervalSeconds = economyDataConfig.getLong("bulk.progressIntervalSeconds", DEFAULT_BULK_PROGRESS_INTERVAL_SECONDS);
+        bulkScheduler = new BulkScheduler(ledger, playerId -> Bukkit.getPlayer(playerId) != null, new BulkScheduler.Listener() {
+            @Override
+            public void onProgress(BulkJob job) {
+                reportBulkJob(job, ChatColor.YELLOW + "Bulk job #" + job.getId() + ": " + job.getPosition() + "/" + job.getTotal()
+                        + " accounts, " + job.getChanged() + " changed.");
+            }
 
-            economyDataConfig.set("exchangeRates." + currency.name(), exchangeRate);
+            @Override
+            public void onFinished(BulkJob job) {
+                metrics.increment(EconomyMetrics.Counter.BULK_JOBS_FINISHED);
+                reportBulkJob(job, ChatColor.GREEN + "Bulk job #" + job.getId() + " finished: " + describeBulkResult(job));
+            }
+        }, budgetNanos, progressIntervalSeconds * 1_000_000_000L);
+
+        Path checkpoint = getDataFolder().toPath().resolve(BulkScheduler.CHECKPOINT_FILE_NAME);
+        if (checkpoint.toFile().exists()) {
+            try {
+                List<BulkJob> restored = bulkScheduler.restoreCheckpoint(checkpoint, collectAccountIds());
+                for (BulkJob job : restored) {
+                    getLogger().info("Resuming bulk job #" + job.getId() + " (" + job.getOperation().describe() + ") at "
+                            + job.getPosition() + "/" + job.getTotal() + (job.getStatus() == BulkJob.Status.PAUSED ? ", paused." : "."));
+                }
+            } catch (IOException e) {
+                getLogger().severe("Failed to restore bulk jobs: " + e.getMessage());
+            }
         }
 
-        // Save player balances
-        economyDataConfig.set("players", null); // Clear existing player data
-        for (Map.Entry<UUID, Map<Currency, Double>> entry : playerBalances.entrySet()) {
-            UUID playerId = entry.getKey();
-            Map<Currency, Double> balances = entry.getValue();
-            for (Currency currency : Currency.values()) {
-                economyDataConfig.set("players." + playerId + "." + currency, balances.get(currency));
+        bulkTask = getServer().getScheduler().runTaskTimer(this, () -> {
+            long start = EconomyMetrics.start();
+            if (bulkScheduler.tick()) {
+                metrics.record(EconomyMetrics.Timer.BULK_SLICE, start);
             }
+        }, 1L, 1L);
+    }
+
+    /**
+     * Collects the ids of every stored and resident account, off the main thread, and queues
+     * the operation over them. Pending changes are flushed first so accounts that only exist
+     * in memory or in the write-back map are on disk and get enumerated.
+     */
+    public void startBulkJob(Player requester, BulkOperation operation) {
+        UUID requesterId = requester.getUniqueId();
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            UUID[] accounts;
+            try {
+                if (!writeBehindFlusher.flush()) {
+                    throw new IOException("pending changes could not be saved");
+                }
+                accounts = collectAccountIds();
+            } catch (IOException e) {
+                getLogger().severe("Failed to list accounts for a bulk job: " + e.getMessage());
+                getServer().getScheduler().runTask(this, () -> reportBulkJob(requesterId, ChatColor.RED + "Bulk job failed: " + e.getMessage()));
+                return;
+            }
+            getServer().getScheduler().runTask(this, () -> {
+                BulkJob job = bulkScheduler.submit(operation, requesterId, accounts);
+                reportBulkJob(job, ChatColor.GREEN + "Queued bulk job #" + job.getId() + ": " + operation.describe()
+                        + " (" + job.getTotal() + " accounts).");
+            });
+        });
+    }
+
+    private UUID[] collectAccountIds() throws IOException {
+        Set<UUID> ids = new HashSet<>(engine.getAccounts().accountIds());
+        storage.forEachAccount((playerId, balances) -> ids.add(playerId));
+        return ids.toArray(new UUID[0]);
+    }
+
+    public String describeBulkResult(BulkJob job) {
+        String result = job.getChanged() + " changed, " + job.getSkipped() + " skipped, " + job.getFailed() + " failed";
+        if (job.getOperation().getType() == BulkOperation.Type.AUDIT) {
+            result = job.getChanged() + " accounts hold " + job.getOperation().getCurrency().format(AccountStore.toMajor(job.getMatchedTotal()))
+                    + " " + job.getOperation().getCurrency() + ", " + job.getSkipped() + " skipped";
         }
+        return result + ".";
+    }
+
+    // Logged, and sent to the admin who started the job if they are online
+    private void reportBulkJob(BulkJob job, String message) {
+        reportBulkJob(job.getRequester(), message);
+    }
+
+    private void reportBulkJob(UUID requesterId, String message) {
+        getLogger().info(ChatColor.stripColor(message));
+        Player player = requesterId == null ? null : Bukkit.getPlayer(requesterId);
+        if (player != null) {
+            player.sendMessage(message);
+        }
+    }
 
+    public BulkScheduler getBulkScheduler() {
+        return bulkScheduler;
+    }
+
+    // --- Replication ---
+
+    /**
+     * Starts streaming this server's ledger, or mirroring another server's, as configured.
+     * Returns false if a configured mode could not be started; carrying on without it would
+     * let the servers' balances diverge.
+     */
+    private boolean startReplication() {
+        String mode = economyDataConfig.getString("replication.mode", DEFAULT_REPLICATION_MODE).toLowerCase();
+        String host = economyDataConfig.getString("replication.host", DEFAULT_REPLICATION_HOST);
+        int port = economyDataConfig.getInt("replication.port", DEFAULT_REPLICATION_PORT);
+        switch (mode) {
+            case "none":
+                return true;
+            case "primary":
+                int backlogRecords = economyDataConfig.getInt("replication.backlogRecords", DEFAULT_REPLICATION_BACKLOG_RECORDS);
+                int batchMaxRecords = economyDataConfig.getInt("replication.batchMaxRecords", DEFAULT_REPLICATION_BATCH_MAX_RECORDS);
+                long batchDelayMillis = economyDataConfig.getLong("replication.batchDelayMillis", DEFAULT_REPLICATION_BATCH_DELAY_MILLIS);
+                // Snapshots come from storage, so everything changed so far is flushed first
+                ReplicationPrimary primary = new ReplicationPrimary(ledger, engine::getState, visitor -> {
+                    if (!writeBehindFlusher.flush()) {
+                        throw new IOException("pending changes could not be saved");
+                    }
+                    storage.forEachAccount(visitor);
+                }, host, port, backlogRecords, batchMaxRecords, batchDelayMillis, getLogger());
+                try {
+                    primary.start();
+                } catch (IOException e) {
+                    getLogger().severe("Failed to listen for replicas on " + host + ":" + port + ": " + e.getMessage());
+                    return false;
+                }
+                replicationPrimary = primary;
+                getLogger().info("Replication primary listening on " + host + ":" + port + ".");
+                return true;
+            case "replica":
+                long writeTimeoutMillis = economyDataConfig.getLong("replication.writeTimeoutMillis", DEFAULT_REPLICATION_WRITE_TIMEOUT_MILLIS);
+                replicationReplica = new ReplicationReplica(new ReplicationReplica.Applier() {
+                    @Override
+                    public void applyBalance(UUID playerId, Currency currency, long stored) {
+                        engine.restore(playerId, currency, stored);
+                        writeBehindFlusher.markDirty(playerId);
+                    }
+
+                    @Override
+                    public void applyState(EconomyState state) {
+                        engine.setState(state);
+                        writeBehindFlusher.markStateDirty();
+                    }
+                }, host, port, writeTimeoutMillis, getLogger());
+                ledger.setWriteForwarder(replicationReplica);
+                replicationReplica.start();
+                getLogger().info("Replicating from the primary at " + host + ":" + port + ".");
+                return true;
+            default:
+                getLogger().severe("Unknown replication.mode '" + mode + "'. Use none, primary or replica.");
+                return false;
+        }
+    }
+
+    private void closeReplication() {
         try {
-            economyDataConfig.save(new File(getDataFolder(), ECONOMY_DATA_FILE_NAME));
+            if (replicationPrimary != null) {
+                replicationPrimary.close();
+            }
+            if (replicationReplica != null) {
+                ledger.setWriteForwarder(null);
+                replicationReplica.close();
+            }
         } catch (IOException e) {
-            getLogger().severe("Failed to save economy data: " + e.getMessage());
+            getLogger().warning("Failed to close replication: " + e.getMessage());
         }
     }
 
-    private void calculateCirculatingSupply() {
-        circulatingGoldSupply = 0.0;
-        for (Map<Currency, Double> balances : playerBalances.values()) {
-            circulatingGoldSupply += balances.getOrDefault(Currency.GOLD, 0.0); // Sum only gold balances
+    // Rates, inflation and revaluations are decided by the primary alone
+    public boolean isReplica() {
+        return replicationReplica != null;
+    }
+
+    // --- Audit log ---
+
+    // A failure to open only disables the audit log; the economy works without it
+    private void openAuditLog() {
+        if (!economyDataConfig.getBoolean("audit.enabled", DEFAULT_AUDIT_ENABLED)) {
+            return;
+        }
+        int bufferEvents = economyDataConfig.getInt("audit.bufferEvents", DEFAULT_AUDIT_BUFFER_EVENTS);
+        long segmentMaxBytes = economyDataConfig.getLong("audit.segmentMaxBytes", DEFAULT_AUDIT_SEGMENT_MAX_BYTES);
+        int maxSegments = economyDataConfig.getInt("audit.maxSegments", DEFAULT_AUDIT_MAX_SEGMENTS);
+        try {
+            auditLog = AuditLog.open(getDataFolder().toPath().resolve("audit"), bufferEvents, segmentMaxBytes, maxSegments, getLogger());
+        } catch (IOException e) {
+            getLogger().severe("Failed to open the audit log, transactions are not recorded: " + e.getMessage());
         }
     }
 
-    private void adjustInflationAndExchangeRates() {
-        calculateCirculatingSupply();
+    // Null if the audit log is disabled
+    public AuditLog getAuditLog() {
+        return auditLog;
+    }
 
-        double targetSupplyRatio = 0.25;
-        double supplyRatio = circulatingGoldSupply / maxGoldSupply;
+    // --- Leaderboard ---
 
-        // Calculate inflation/deflation rate directly based on deviation from target
-        currentInflationRate = startingInflationRate + (supplyRatio - targetSupplyRatio) * 0.03;
+    // Ranks every stored account once; balance changes keep the index current afterwards
+    private void buildLeaderboard() {
+        if (!economyDataConfig.getBoolean("leaderboard.enabled", DEFAULT_LEADERBOARD_ENABLED)) {
+            return;
+        }
+        int cachedEntries = economyDataConfig.getInt("leaderboard.cachedEntries", DEFAULT_LEADERBOARD_CACHED_ENTRIES);
+        BalanceLeaderboard leaderboard = new BalanceLeaderboard(cachedEntries);
+        try {
+            storage.forEachAccount(leaderboard::seed);
+        } catch (IOException e) {
+            getLogger().severe("Failed to build the balance leaderboard, it is disabled: " + e.getMessage());
+            return;
+        }
+        engine.setLeaderboard(leaderboard);
+        getLogger().info("Ranked " + leaderboard.size(Currency.gold()) + " accounts holding gold.");
+    }
 
-        // Ensure inflation/deflation rate stays within reasonable bounds (-10% to 10%)
-        currentInflationRate = Math.max(-0.10, Math.min(0.1, currentInflationRate));
+    // Last known name of a player, online or not; a shortened id if the server never saw them
+    public String getPlayerName(UUID playerId) {
+        String name = Bukkit.getOfflinePlayer(playerId).getName();
+        return name != null ? name : playerId.toString().substring(0, 8);
+    }
+
+    // --- Metrics ---
 
-        // Adjust exchange rates based on inflation/deflation
+    private void registerGauges() {
+        metrics.registerGauge("accounts_resident", "Accounts held in memory.", () -> ledger.getResidentCount());
+        metrics.registerGauge("accounts_dirty", "Changed accounts waiting for the next write-behind flush.", () -> writeBehindFlusher.getDirtyCount());
+        metrics.registerGauge("journal_size_bytes", "Size of the transaction journal.", () -> journal == null ? 0 : journal.size());
         for (Currency currency : Currency.values()) {
-            if (currency != Currency.GOLD) {
-                double baseExchangeRate = exchangeRates.get(currency);
-                double newRate = baseExchangeRate / (1 + currentInflationRate);
-                exchangeRates.put(currency, newRate);
-                getLogger().info(currency.name() + " exchange rate to Gold: " + String.format("%.6f", newRate)); // Log with 6 decimal places
+            metrics.registerGauge("circulating_supply", "currency=\"" + currency.name().toLowerCase() + "\"",
+                    "Total of all balances per currency.", () -> engine.getCirculatingSupply(currency));
+        }
+        for (Currency currency : Currency.values()) {
+            metrics.registerGauge("exchange_rate", "currency=\"" + currency.name().toLowerCase() + "\"",
+                    "Exchange rate to gold.", () -> engine.getExchangeRate(currency));
+        }
+        metrics.registerGauge("inflation_rate", "Current daily gold inflation rate.", () -> engine.getGoldInflationRate());
+        if (replicationPrimary != null) {
+            metrics.registerGauge("replication_replicas", "Replicas connected to this primary.", () -> replicationPrimary.getReplicaCount());
+            metrics.registerGauge("replication_lag_records", "Records the slowest replica has not acknowledged.", () -> replicationPrimary.getMaxLag());
+        }
+        if (replicationReplica != null) {
+            metrics.registerGauge("replication_applied_sequence", "Last primary record applied on this replica.", () -> replicationReplica.getAppliedSequence());
+            metrics.registerGauge("replication_connected", "Whether this replica is connected to its primary.", () -> replicationReplica.isConnected() ? 1 : 0);
+        }
+        if (auditLog != null) {
+            metrics.registerGauge("audit_pending_records", "Transactions waiting for the audit writer.", () -> auditLog.getPendingCount());
+            metrics.registerGauge("audit_dropped_records", "Transactions not audited because the audit writer fell behind.", () -> auditLog.getDroppedCount());
+        }
+    }
+
+    // Optional Prometheus export: a text file for the node exporter and/or a local HTTP endpoint
+    private void startMetricsExport() {
+        boolean fileEnabled = economyDataConfig.getBoolean("metrics.file.enabled", false);
+        boolean httpEnabled = economyDataConfig.getBoolean("metrics.http.enabled", false);
+        if (!fileEnabled && !httpEnabled) {
+            return;
+        }
+        metricsExporter = new PrometheusExporter(metrics, fileEnabled ? getDataFolder().toPath().resolve(PrometheusExporter.METRICS_FILE_NAME) : null);
+
+        if (httpEnabled) {
+            String host = economyDataConfig.getString("metrics.http.host", DEFAULT_METRICS_HTTP_HOST);
+            int port = economyDataConfig.getInt("metrics.http.port", DEFAULT_METRICS_HTTP_PORT);
+            try {
+                metricsExporter.startHttp(host, port);
+                getLogger().info("Serving metrics on http://" + host + ":" + port + "/metrics");
+            } catch (IOException e) {
+                getLogger().severe("Failed to start metrics endpoint on " + host + ":" + port + ": " + e.getMessage());
             }
         }
 
-        // Logging
+        if (fileEnabled) {
+            long intervalTicks = Math.max(1L, economyDataConfig.getLong("metrics.file.intervalSeconds", DEFAULT_METRICS_FILE_INTERVAL_SECONDS)) * 20L;
+            metricsTask = getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+                try {
+                    metricsExporter.writeFile();
+                } catch (IOException e) {
+                    getLogger().warning("Failed to write " + PrometheusExporter.METRICS_FILE_NAME + ": " + e.getMessage());
+                }
+            }, intervalTicks, intervalTicks);
+        }
+    }
+
+    // --- Transaction Journal ---
+
+    private void openJournal() {
+        long commitIntervalMillis = economyDataConfig.getLong("journal.commitIntervalMillis", DEFAULT_JOURNAL_COMMIT_INTERVAL_MILLIS);
+        TransactionJournal transactionJournal = new TransactionJournal(getDataFolder().toPath(), commitIntervalMillis, getLogger());
+        try {
+            int replayed = transactionJournal.replay(this::applyJournalRecord);
+            transactionJournal.open();
+            journal = transactionJournal;
+            getLogger().info("Replayed " + replayed + " journal records.");
+        } catch (IOException e) {
+            getLogger().severe("Failed to open transaction journal, continuing without it: " + e.getMessage());
+            return;
+        }
+
+        long compactThresholdBytes = economyDataConfig.getLong("journal.compactThresholdBytes", DEFAULT_JOURNAL_COMPACT_THRESHOLD_BYTES);
+        long compactCheckTicks = economyDataConfig.getLong("journal.compactCheckSeconds", DEFAULT_JOURNAL_COMPACT_CHECK_SECONDS) * 20L;
+        journalCompactionTask = getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+            if (journal.size() >= compactThresholdBytes) {
+                compactJournal();
+            }
+        }, compactCheckTicks, compactCheckTicks);
+    }
+
+    private void applyJournalRecord(long sequence, long timestamp, UUID playerId, Currency currency, long amount, long balance) {
+        engine.restore(playerId, currency, balance);
+        writeBehindFlusher.markDirty(playerId);
+    }
+
+    // Folds the journal into the snapshot: rotate, flush everything dirty, drop the old journal
+    private synchronized void compactJournal() {
+        try {
+            journal.rotate();
+            if (writeBehindFlusher.flush()) {
+                journal.deleteCompacted();
+            }
+        } catch (IOException e) {
+            getLogger().severe("Failed to compact transaction journal: " + e.getMessage());
+        }
+    }
+
+    // Full scan of every stored account; only used when supply.reconcile is enabled
+    private void reconcileCirculatingSupply() {
+        // Put every pending change on disk first so the scan sees it
+        if (!writeBehindFlusher.flush()) {
+            return;
+        }
+        long[] totals;
+        try {
+            totals = storage.sumBalances();
+        } catch (IOException e) {
+            getLogger().severe("Failed to scan stored balances: " + e.getMessage());
+            return;
+        }
+        for (Currency currency : Currency.values()) {
+            long drift = engine.getAccounts().reconcile(currency, totals[currency.getId()]);
+            if (drift != 0) {
+                getLogger().warning("Circulating " + currency + " supply drifted by " + AccountStore.toMajor(drift) + ", corrected from full scan.");
+            }
+        }
+    }
+
+    // Runs on an async thread; the new rates become visible in one swap
+    private void adjustInflationAndExchangeRates() {
+        long start = EconomyMetrics.start();
+        if (reconcileSupply) {
+            reconcileCirculatingSupply();
+        }
+
+        // Interest or demurrage per tick; each one is a single factor change, however many accounts exist
+        for (Currency currency : Currency.values()) {
+            double accrual = accrualRates[currency.getId()];
+            if (accrual != 0.0 && accrual > -1.0) {
+                engine.revalue(currency, 1 + accrual);
+            }
+        }
+
+        EconomyState state = engine.advanceInflation();
+        double circulatingGoldSupply = getCirculatingGoldSupply();
+        rateHistory.record(System.currentTimeMillis(), state);
+
+        writeBehindFlusher.markStateDirty();
+
         // Logging
         getLogger().info("Gold Circulating Supply: " + circulatingGoldSupply);
-        getLogger().info("Current Inflation Rate (Gold): " + String.format("%.2f%%", currentInflationRate * 100));
+        getLogger().info("Current Inflation Rate (Gold): " + String.format("%.2f%%", state.getInflationRate() * 100));
         for (Currency currency : Currency.values()) {
-            if (currency != Currency.GOLD) {
-                getLogger().info(currency.name() + " exchange rate to Gold: " + String.format("%.4f", getExchangeRate(currency)));
+            if (currency != Currency.gold()) {
+                getLogger().info(currency.name() + " exchange rate to Gold: " + String.format("%.6f", state.getExchangeRate(currency))); // Log with 6 decimal places
             }
         }
+        metrics.record(EconomyMetrics.Timer.INFLATION_TICK, start);
     }
 
     public double getMaxGoldSupply() {
-        return maxGoldSupply;
+        return engine.getMaxGoldSupply();
     }
 
     public double getCirculatingGoldSupply() {
-        return circulatingGoldSupply;
+        return engine.getCirculatingGoldSupply();
     }
 
     public double getGoldInflationRate() {
-        return currentInflationRate;
+        return engine.getGoldInflationRate();
     }
 
     public double getExchangeRate(Currency currency) {
-        return exchangeRates.getOrDefault(currency, 0.0);
+        return engine.getExchangeRate(currency);
     }
 
+    // Unknown players read as zero; nothing is allocated for them
     public double getBalance(UUID playerId, Currency currency) {
-        Map<Currency, Double> balances = playerBalances.get(playerId);
-        if (balances == null) {
-            balances = new HashMap<>();
-            playerBalances.put(playerId, balances);
-        }
-        return balances.getOrDefault(currency, 0.0);
+        return engine.getBalance(playerId, currency);
     }
 
 /*    public void setBalance(UUID playerId, Currency currency, double amount) {
@@ -320,71 +1269,147 @@ public final class MonkeylandEconomy extends JavaPlugin implements Listener {
         balances.put(currency, amount);
     }*/
 
-    public void addBalance(UUID playerId, Currency currency, double amount) {
-        Player player = Bukkit.getPlayer(playerId);
+    public RateHistory getRateHistory() {
+        return rateHistory;
+    }
 
-        if (player != null && player.isOnline()) {
+    public Ledger getLedger() {
+        return ledger;
+    }
 
-            Map<Currency, Double> balances = playerBalances.computeIfAbsent(playerId, k -> new HashMap<>());
-            double currentBalance = balances.getOrDefault(currency, 0.0);
+    public EconomyEngine getEngine() {
+        return engine;
+    }
 
-            if (currency == Currency.GOLD) {
-                double newGoldBalance = currentBalance + amount;
-                if (newGoldBalance > maxGoldSupply) {
-                    getLogger().warning("Attempt to add gold to player " + playerId + " would exceed max supply. Transaction cancelled.");
-                    player.sendMessage(ChatColor.RED + "Error: Adding this amount would exceed the maximum gold supply.");
-                    return;
-                }
-            } else {
-                balances.merge(currency, amount, Double::sum);
-            }
+    public EconomyMetrics getMetrics() {
+        return metrics;
+    }
 
-            // Update the player's balances
-            playerBalances.put(playerId, balances);
-            saveEconomyData();
+    // Runs under the ledger's account lock for every changed balance
+    private void onBalanceChanged(UUID playerId, Currency currency, long delta, long newBalance) {
+        // Mark dirty before journaling so a concurrent compaction can't drop the change
+        writeBehindFlusher.markDirty(playerId);
+        metrics.increment(EconomyMetrics.Counter.BALANCE_CHANGES);
+        if (journal != null) {
+            journal.append(playerId, currency, delta, newBalance);
+        }
+        if (replicationPrimary != null) {
+            replicationPrimary.publish(playerId, currency, newBalance);
+        }
+    }
+
+    // addedBy is the admin who added it, for the audit log
+    public void addBalance(UUID playerId, Currency currency, double amount, UUID addedBy) {
+        Player player = Bukkit.getPlayer(playerId);
+
+        if (player != null && player.isOnline()) {
+            Ledger.Result result = engine.addBalance(playerId, currency, amount);
+            if (result == Ledger.Result.SUCCESS && auditLog != null) {
+                auditLog.record(AuditLog.Type.ADD, playerId, addedBy, currency, AccountStore.toMinor(amount));
+            } else if (result == Ledger.Result.EXCEEDS_MAX_SUPPLY) {
+                getLogger().warning("Attempt to add " + currency + " to player " + playerId + " would exceed max supply. Transaction cancelled.");
+                player.sendMessage(ChatColor.RED + "Error: Adding this amount would exceed the maximum gold supply.");
+            } else if (result == Ledger.Result.UNAVAILABLE) {
+                getLogger().warning("Could not reach the replication primary to add " + currency + " to player " + playerId + ".");
+            }
         } else {
             getLogger().warning("Cannot add balance to offline player: " + playerId);
         }
     }
 
+    // Load the account while the player is still connecting, off the main thread
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            ledger.prefetch(event.getUniqueId());
+        }
+    }
+
     @EventHandler
+    public void onJoin(PlayerJoinEvent event) {
+        ledger.pin(event.getPlayer().getUniqueId());
+        if (vaultProvider != null) {
+            vaultProvider.rememberName(event.getPlayer().getName(), event.getPlayer().getUniqueId());
+        }
+    }
+
+    @EventHandler
+    public void onQuit(PlayerQuitEvent event) {
+        ledger.unpin(event.getPlayer().getUniqueId());
+        if (placeholderHook != null) {
+            placeholderHook.forget(event.getPlayer().getUniqueId());
+        }
+        if (rewardLimiter != null) {
+            rewardLimiter.prune(System.nanoTime());
+        }
+    }
+
+    // Only breaks that actually happen pay, after protection plugins had their say
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
+        Block block = event.getBlock();
+        RewardRule rule = rewardTable.resolve(block.getType(), block.getWorld());
+        if (rule == null) {
+            return;
+        }
         Player player = event.getPlayer();
-        Material brokenBlock = event.getBlock().getType();
+        if (player.getGameMode() == GameMode.CREATIVE) {
+            return;
+        }
+        ItemStack tool = player.getInventory().getItemInMainHand();
+        if (!rule.accepts(tool.getType(), tool.containsEnchantment(Enchantment.SILK_TOUCH))) {
+            return;
+        }
         UUID playerId = player.getUniqueId();
-
-        if (brokenBlock == Material.GOLD_ORE) {
-            double goldReward = 1.0;
-            addBalance(playerId, Currency.GOLD, goldReward);
-            player.sendMessage(ChatColor.YELLOW + "You earned " + goldReward + " Gold!");
-        } else if (brokenBlock == Material.COPPER_ORE) {
-            double copperReward = 5.0;
-            addBalance(playerId, Currency.COPPER, copperReward);
-            player.sendMessage(ChatColor.YELLOW + "You earned " + copperReward + " Copper!");
+        if (rewardLimiter != null && !rewardLimiter.tryAcquire(playerId, System.nanoTime())) {
+            metrics.increment(EconomyMetrics.Counter.REWARDS_LIMITED);
+            return;
         }
+
+        // Batched per tick and announced in one action-bar summary
+        Currency currency = rule.getCurrency();
+        double amount = rule.isScaledWithInflation() ? rule.amountAt(engine.getExchangeRate(currency)) : rule.getAmount();
+        rewardBatcher.reward(playerId, currency, amount);
+    }
+
+    // Applies a one-off revaluation to every balance of a currency
+    public void revalue(Currency currency, double multiplier) {
+        EconomyState state = engine.revalue(currency, multiplier);
+        writeBehindFlusher.markStateDirty();
+        getLogger().info("Revalued " + currency + " by " + multiplier + ", inflationFactor is now " + state.getInflationFactor(currency));
     }
 
     public void exchangeCurrencyForGold(Player player, Currency fromCurrency, Currency toCurrency, double amount) {
         UUID playerId = player.getUniqueId();
-        double playerFromCurrencyBalance = getBalance(playerId, fromCurrency);
 
         if (fromCurrency == toCurrency) {
             player.sendMessage(ChatColor.RED + "You cannot exchange the same currency.");
             return;
         }
 
-        double exchangeRate = getExchangeRate(fromCurrency) / getExchangeRate(toCurrency);
-        double toCurrencyAmount = amount * exchangeRate;
-
-        if (playerFromCurrencyBalance >= amount) {
-            // Update player balances
-            addBalance(playerId, toCurrency, toCurrencyAmount);
-            addBalance(playerId, fromCurrency, -amount);
-
-            String message = "Successfully exchanged " + amount + " " + fromCurrency + " for " + String.format("%.2f", toCurrencyAmount) + " " + toCurrency;
-            player.sendMessage(ChatColor.GREEN + message);
-        } else {
-            player.sendMessage(ChatColor.RED + "You don't have enough " + fromCurrency + " to make this exchange.");
+        // Rates from one snapshot; both legs happen atomically under the account lock
+        EconomyEngine.Exchange exchange = engine.exchange(playerId, fromCurrency, toCurrency, amount);
+        switch (exchange.getResult()) {
+            case SUCCESS:
+                if (auditLog != null) {
+                    auditLog.record(AuditLog.Type.EXCHANGE, playerId, null, fromCurrency, exchange.getPaidMinor(),
+                            toCurrency, exchange.getReceivedMinor());
+                }
+                String message = "Successfully exchanged " + fromCurrency.format(AccountStore.toMajor(exchange.getPaidMinor())) + " " + fromCurrency
+                        + " for " + toCurrency.format(exchange.getReceived()) + " " + toCurrency;
+                player.sendMessage(ChatColor.GREEN + message);
+                break;
+            case INVALID_AMOUNT:
+                player.sendMessage(ChatColor.RED + "Amount must be positive and large enough to buy some " + toCurrency + ".");
+                break;
+            case EXCEEDS_MAX_SUPPLY:
+                player.sendMessage(ChatColor.RED + "Error: This exchange would exceed the maximum " + toCurrency + " supply.");
+                break;
+            case UNAVAILABLE:
+                player.sendMessage(ChatColor.RED + "The economy is unavailable right now, please try again.");
+                break;
+            default:
+                player.sendMessage(ChatColor.RED + "You don't have enough " + fromCurrency + " to make this exchange.");
         }
     }
 }
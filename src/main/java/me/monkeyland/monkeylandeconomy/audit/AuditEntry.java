@@ -0,0 +1,68 @@
+package me.monkeyland.monkeylandeconomy.audit;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.util.UUID;
+
+/**
+ * One recorded transaction, as read back from the audit log. Amounts are in minor units and
+ * always positive; the type says which way they moved.
+ */
+public final class AuditEntry {
+
+    private final long timeMillis;
+    private final AuditLog.Type type;
+    private final UUID playerId;
+    private final UUID otherId;
+    private final Currency currency;
+    private final long amount;
+    private final Currency otherCurrency;
+    private final long otherAmount;
+
+    AuditEntry(long timeMillis, AuditLog.Type type, UUID playerId, UUID otherId, Currency currency, long amount,
+               Currency otherCurrency, long otherAmount) {
+        this.timeMillis = timeMillis;
+        this.type = type;
+        this.playerId = playerId;
+        this.otherId = otherId;
+        this.currency = currency;
+        this.amount = amount;
+        this.otherCurrency = otherCurrency;
+        this.otherAmount = otherAmount;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public AuditLog.Type getType() {
+        return type;
+    }
+
+    public UUID getPlayerId() {
+        return playerId;
+    }
+
+    // The recipient of a give, the admin of an add; null if there is none
+    public UUID getOtherId() {
+        return otherId;
+    }
+
+    // Null if the currency is no longer configured
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    // What an exchange paid out; null for every other type
+    public Currency getOtherCurrency() {
+        return otherCurrency;
+    }
+
+    public long getOtherAmount() {
+        return otherAmount;
+    }
+}
@@ -0,0 +1,401 @@
+package me.monkeyland.monkeylandeconomy.audit;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Log of every transaction that moves money in or between accounts.
+ * <p>
+ * {@link #record} copies the transaction into a preallocated ring and returns; it takes no
+ * lock, allocates nothing and never touches the disk, and drops the record if the writer has
+ * fallen a full ring behind. A writer thread collects records into blocks, deflates them and
+ * appends them to the current segment file, rolling to a new one at {@code segmentMaxBytes}
+ * and deleting the oldest beyond {@code maxSegments}. Every segment carries an index of the
+ * blocks each player appears in, so {@link #query} reads a player's recent history without
+ * scanning the log.
+ */
+public final class AuditLog implements Closeable {
+
+    // Stored by ordinal: only ever add types at the end
+    public enum Type {
+        REWARD,
+        ADD,
+        GIVE,
+        EXCHANGE,
+        VAULT_DEPOSIT,
+        VAULT_WITHDRAW
+    }
+
+    // How long records may wait in a partial block before it is written anyway
+    private static final long FLUSH_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
+    private final Path dir;
+    private final long segmentMaxBytes;
+    private final int maxSegments;
+    private final Logger logger;
+    private final AuditRing ring;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Guarded by this: the block being filled, the segment being written and the sealed ones, oldest first
+    private final byte[] block = new byte[AuditSegment.BLOCK_SIZE];
+    private final ByteBuffer blockBuffer = ByteBuffer.wrap(block);
+    private int blockCount;
+    private long blockStartedNanos;
+    private AuditSegment active;
+    private final Deque<AuditSegment> sealed = new ArrayDeque<>();
+    private long nextNumber;
+
+    // Used under the lock, like the block
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final byte[] compressed = new byte[AuditSegment.MAX_COMPRESSED_SIZE];
+    private boolean failing;
+
+    private AuditLog(Path dir, int bufferEvents, long segmentMaxBytes, int maxSegments, Logger logger) {
+        this.dir = dir;
+        this.segmentMaxBytes = Math.max(64 * 1024L, segmentMaxBytes);
+        this.maxSegments = Math.max(1, maxSegments);
+        this.logger = logger;
+        this.ring = new AuditRing(bufferEvents);
+        this.writer = new Thread(this::run, "MonkeylandEconomy-Audit");
+        this.writer.setDaemon(true);
+    }
+
+    /**
+     * Opens the log in a directory, recovering the segment an earlier run was writing, and
+     * starts the writer thread.
+     */
+    public static AuditLog open(Path dir, int bufferEvents, long segmentMaxBytes, int maxSegments, Logger logger) throws IOException {
+        Files.createDirectories(dir);
+        AuditLog log = new AuditLog(dir, bufferEvents, segmentMaxBytes, maxSegments, logger);
+
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir)) {
+            for (Path file : files) {
+                long number = AuditSegment.numberOf(file);
+                if (number >= 0) {
+                    numbers.add(number);
+                }
+            }
+        }
+        numbers.sort(null);
+        for (long number : numbers) {
+            log.nextNumber = number + 1;
+            AuditSegment segment;
+            try {
+                segment = AuditSegment.open(dir, number);
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Ignoring unreadable audit segment " + number, e);
+                continue;
+            }
+            if (segment == null) {
+                logger.warning("Ignoring damaged audit segment " + number);
+                continue;
+            }
+            log.sealed.addLast(segment);
+        }
+        synchronized (log) {
+            log.trim();
+        }
+
+        log.writer.start();
+        return log;
+    }
+
+    /**
+     * Records a transaction; amounts are in minor units. Safe to call from any thread, and
+     * never blocks. {@code otherId} and {@code otherCurrency} may be null.
+     */
+    public void record(Type type, UUID playerId, UUID otherId, Currency currency, long amount, Currency otherCurrency, long otherAmount) {
+        if (!running) {
+            return;
+        }
+        ring.offer(System.currentTimeMillis(), type.ordinal(),
+                playerId.getMostSignificantBits(), playerId.getLeastSignificantBits(),
+                otherId == null ? 0L : otherId.getMostSignificantBits(), otherId == null ? 0L : otherId.getLeastSignificantBits(),
+                currency.getId(), amount, otherCurrency == null ? -1 : otherCurrency.getId(), otherAmount);
+    }
+
+    public void record(Type type, UUID playerId, UUID otherId, Currency currency, long amount) {
+        record(type, playerId, otherId, currency, amount, null, 0L);
+    }
+
+    // Records dropped because the writer could not keep up
+    public long getDroppedCount() {
+        return ring.dropped();
+    }
+
+    // Records waiting for the writer
+    public long getPendingCount() {
+        return ring.pending();
+    }
+
+    /**
+     * The player's transactions, newest first, as the player or the other party: {@code limit}
+     * of them after skipping the newest {@code skip}. Includes records still waiting to be
+     * written. Reads the disk, so call it off the main thread.
+     */
+    public List<AuditEntry> query(UUID playerId, int skip, int limit) throws IOException {
+        List<AuditEntry> entries = new ArrayList<>();
+        if (limit <= 0) {
+            return entries;
+        }
+        byte[] unwritten;
+        int unwrittenCount;
+        AuditSegment current;
+        long[] currentBlocks;
+        List<AuditSegment> older;
+        synchronized (this) {
+            // Take what has been published since the writer last looked, so the page is current
+            while (drain() > 0 && blockCount == AuditSegment.BLOCK_RECORDS) {
+                writeBlock();
+            }
+            unwritten = Arrays.copyOf(block, blockCount * AuditSegment.RECORD_SIZE);
+            unwrittenCount = blockCount;
+            current = active;
+            currentBlocks = current == null ? null : current.blocksOf(playerId);
+            older = new ArrayList<>(sealed);
+        }
+
+        Matcher matcher = new Matcher(playerId, skip, limit, entries);
+        if (matcher.scan(unwritten, unwrittenCount)) {
+            return entries;
+        }
+        Inflater inflater = new Inflater();
+        try {
+            byte[] compressedBlock = new byte[AuditSegment.MAX_COMPRESSED_SIZE];
+            byte[] raw = new byte[AuditSegment.BLOCK_SIZE];
+            if (current != null && scanBlocks(current, currentBlocks, matcher, inflater, compressedBlock, raw)) {
+                return entries;
+            }
+            for (int i = older.size() - 1; i >= 0; i--) {
+                AuditSegment segment = older.get(i);
+                try {
+                    if (scanBlocks(segment, segment.blocksOf(playerId), matcher, inflater, compressedBlock, raw)) {
+                        return entries;
+                    }
+                } catch (NoSuchFileException e) {
+                    // Deleted by retention while we were reading, or sealed without an index
+                }
+            }
+        } finally {
+            inflater.end();
+        }
+        return entries;
+    }
+
+    // Scans the given blocks of a segment newest first; true once the page is full
+    private static boolean scanBlocks(AuditSegment segment, long[] blocks, Matcher matcher, Inflater inflater,
+                                      byte[] compressedBlock, byte[] raw) throws IOException {
+        if (blocks.length == 0) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ)) {
+            for (int i = blocks.length - 1; i >= 0; i--) {
+                int count = AuditSegment.readBlock(channel, blocks[i], inflater, compressedBlock, raw);
+                if (count > 0 && matcher.scan(raw, count)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // Collects one page of a player's records from blocks handed to it newest first
+    private static final class Matcher {
+        private final long most;
+        private final long least;
+        private final int limit;
+        private final List<AuditEntry> entries;
+        private int skip;
+
+        Matcher(UUID playerId, int skip, int limit, List<AuditEntry> entries) {
+            this.most = playerId.getMostSignificantBits();
+            this.least = playerId.getLeastSignificantBits();
+            this.skip = Math.max(0, skip);
+            this.limit = limit;
+            this.entries = entries;
+        }
+
+        // True once the page is full
+        boolean scan(byte[] raw, int count) {
+            ByteBuffer records = ByteBuffer.wrap(raw);
+            for (int i = count - 1; i >= 0; i--) {
+                int base = i * AuditSegment.RECORD_SIZE;
+                boolean player = records.getLong(base + AuditSegment.PLAYER_OFFSET) == most
+                        && records.getLong(base + AuditSegment.PLAYER_OFFSET + 8) == least;
+                boolean other = records.getLong(base + AuditSegment.OTHER_OFFSET) == most
+                        && records.getLong(base + AuditSegment.OTHER_OFFSET + 8) == least;
+                if (!player && !other) {
+                    continue;
+                }
+                if (skip > 0) {
+                    skip--;
+                    continue;
+                }
+                AuditEntry entry = decode(records, base);
+                if (entry != null) {
+                    entries.add(entry);
+                }
+                if (entries.size() >= limit) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // Null if the record was written by a newer version with types this one does not know
+    private static AuditEntry decode(ByteBuffer records, int base) {
+        int typeIndex = records.getInt(base + AuditSegment.TYPE_OFFSET);
+        Type[] types = Type.values();
+        if (typeIndex < 0 || typeIndex >= types.length) {
+            return null;
+        }
+        return new AuditEntry(records.getLong(base), types[typeIndex],
+                AuditSegment.uuidAt(records, base + AuditSegment.PLAYER_OFFSET),
+                AuditSegment.uuidAt(records, base + AuditSegment.OTHER_OFFSET),
+                currencyOf(records.getInt(base + AuditSegment.CURRENCY_OFFSET)), records.getLong(base + AuditSegment.AMOUNT_OFFSET),
+                currencyOf(records.getInt(base + AuditSegment.OTHER_CURRENCY_OFFSET)),
+                records.getLong(base + AuditSegment.OTHER_AMOUNT_OFFSET));
+    }
+
+    private static Currency currencyOf(int id) {
+        return id >= 0 && id < Currency.count() ? Currency.byId(id) : null;
+    }
+
+    private void run() {
+        while (true) {
+            // Read before draining, so everything recorded before close() is written
+            boolean stopping = !running;
+            boolean idle;
+            synchronized (this) {
+                int taken = drain();
+                idle = taken == 0;
+                if (blockCount == AuditSegment.BLOCK_RECORDS
+                        || (blockCount > 0 && idle && (stopping || System.nanoTime() - blockStartedNanos >= FLUSH_NANOS))) {
+                    writeBlock();
+                }
+                if (stopping && idle && blockCount == 0 && ring.pending() == 0) {
+                    sealActive();
+                    break;
+                }
+            }
+            if (idle) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        deflater.end();
+    }
+
+    // Moves published records into the block until it is full
+    private int drain() {
+        int taken = 0;
+        while (blockCount < AuditSegment.BLOCK_RECORDS) {
+            blockBuffer.position(blockCount * AuditSegment.RECORD_SIZE);
+            if (!ring.poll(blockBuffer)) {
+                break;
+            }
+            if (blockCount == 0) {
+                blockStartedNanos = System.nanoTime();
+            }
+            blockCount++;
+            taken++;
+        }
+        return taken;
+    }
+
+    private void writeBlock() {
+        try {
+            if (active == null) {
+                active = AuditSegment.create(dir, nextNumber++);
+            }
+            active.append(block, blockCount, deflater, compressed);
+            if (active.size() >= segmentMaxBytes) {
+                sealActive();
+            }
+            if (failing) {
+                failing = false;
+                logger.info("Audit log is writable again");
+            }
+        } catch (IOException e) {
+            // Log the first failure of a run of them, not one per block
+            if (!failing) {
+                failing = true;
+                logger.log(Level.WARNING, "Failed to write audit records; they are lost until the log is writable again", e);
+            }
+        }
+        blockCount = 0;
+    }
+
+    private void sealActive() {
+        if (active == null) {
+            return;
+        }
+        try {
+            active.seal();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Failed to seal audit segment " + active.path, e);
+        }
+        sealed.addLast(active);
+        active = null;
+        trim();
+    }
+
+    // Deletes the oldest segments beyond the limit, counting the one being written
+    private void trim() {
+        Iterator<AuditSegment> oldest = sealed.iterator();
+        while (sealed.size() + 1 > maxSegments && oldest.hasNext()) {
+            AuditSegment segment = oldest.next();
+            oldest.remove();
+            try {
+                segment.delete();
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "Failed to delete audit segment " + segment.path, e);
+            }
+        }
+    }
+
+    /**
+     * Stops taking records, writes everything already recorded and seals the current segment.
+     */
+    @Override
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            logger.warning("Audit writer did not finish in time; the last records may be lost");
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package me.monkeyland.monkeylandeconomy.audit;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Preallocated ring of audit records for any number of producers and one consumer.
+ * <p>
+ * A producer claims a sequence with a compare-and-set, writes the record into the slot's
+ * fields and publishes the slot by storing its sequence. It never waits: if the consumer is a
+ * full ring behind, the record is dropped and counted. The consumer takes records in sequence
+ * order and frees each slot as it goes.
+ */
+final class AuditRing {
+
+    private final int capacity;
+    private final int mask;
+
+    // One array per field, indexed by slot
+    private final long[] times;
+    private final int[] types;
+    private final long[] playerMost;
+    private final long[] playerLeast;
+    private final long[] otherMost;
+    private final long[] otherLeast;
+    private final int[] currencies;
+    private final long[] amounts;
+    private final int[] otherCurrencies;
+    private final long[] otherAmounts;
+    // Sequence + 1 of the record a slot holds, 0 while it is empty
+    private final AtomicLongArray published;
+
+    private final AtomicLong claimed = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    // Next sequence the consumer takes; slots before it are free
+    private volatile long consumed;
+
+    AuditRing(int capacity) {
+        this.capacity = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = this.capacity - 1;
+        this.times = new long[this.capacity];
+        this.types = new int[this.capacity];
+        this.playerMost = new long[this.capacity];
+        this.playerLeast = new long[this.capacity];
+        this.otherMost = new long[this.capacity];
+        this.otherLeast = new long[this.capacity];
+        this.currencies = new int[this.capacity];
+        this.amounts = new long[this.capacity];
+        this.otherCurrencies = new int[this.capacity];
+        this.otherAmounts = new long[this.capacity];
+        this.published = new AtomicLongArray(this.capacity);
+    }
+
+    boolean offer(long timeMillis, int type, long playerMostBits, long playerLeastBits, long otherMostBits, long otherLeastBits,
+                  int currency, long amount, int otherCurrency, long otherAmount) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity) {
+                dropped.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int slot = (int) sequence & mask;
+        times[slot] = timeMillis;
+        types[slot] = type;
+        playerMost[slot] = playerMostBits;
+        playerLeast[slot] = playerLeastBits;
+        otherMost[slot] = otherMostBits;
+        otherLeast[slot] = otherLeastBits;
+        currencies[slot] = currency;
+        amounts[slot] = amount;
+        otherCurrencies[slot] = otherCurrency;
+        otherAmounts[slot] = otherAmount;
+        published.setRelease(slot, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Moves the next record into the buffer in the segment layout, if it has been published.
+     * Consumer thread only.
+     */
+    boolean poll(ByteBuffer out) {
+        long sequence = consumed;
+        int slot = (int) sequence & mask;
+        if (published.getAcquire(slot) != sequence + 1) {
+            return false;
+        }
+        out.putLong(times[slot]);
+        out.putInt(types[slot]);
+        out.putLong(playerMost[slot]);
+        out.putLong(playerLeast[slot]);
+        out.putLong(otherMost[slot]);
+        out.putLong(otherLeast[slot]);
+        out.putInt(currencies[slot]);
+        out.putLong(amounts[slot]);
+        out.putInt(otherCurrencies[slot]);
+        out.putLong(otherAmounts[slot]);
+        consumed = sequence + 1;
+        return true;
+    }
+
+    // Claimed but not yet consumed, including records still being written
+    long pending() {
+        return claimed.get() - consumed;
+    }
+
+    long dropped() {
+        return dropped.sum();
+    }
+}
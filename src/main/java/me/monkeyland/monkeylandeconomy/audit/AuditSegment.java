@@ -0,0 +1,376 @@
+package me.monkeyland.monkeylandeconomy.audit;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * One file of the audit log and its per-player index.
+ * <p>
+ * Layout: magic and version, then blocks of up to {@link #BLOCK_RECORDS} records, each the
+ * compressed length, record count and CRC32 of the compressed bytes followed by the deflated
+ * records. The index is written next to the segment when it is sealed: magic, version and
+ * entry count, the entries sorted by player with where their block offsets start and how many
+ * there are, then the offsets. A player is indexed under every block they appear in, as the
+ * player or the other party, so a lookup is a binary search and reads only those blocks.
+ */
+final class AuditSegment {
+
+    static final int RECORD_SIZE = 68;
+    static final int BLOCK_RECORDS = 256;
+    static final int BLOCK_SIZE = BLOCK_RECORDS * RECORD_SIZE;
+    // Worst case of deflating a block, with room for the zlib header and trailer
+    static final int MAX_COMPRESSED_SIZE = BLOCK_SIZE + (BLOCK_SIZE >> 10) + 64;
+
+    // Offsets of the fields within a record, in the order AuditRing.poll writes them
+    static final int TYPE_OFFSET = 8;
+    static final int PLAYER_OFFSET = 12;
+    static final int OTHER_OFFSET = 28;
+    static final int CURRENCY_OFFSET = 44;
+    static final int AMOUNT_OFFSET = 48;
+    static final int OTHER_CURRENCY_OFFSET = 56;
+    static final int OTHER_AMOUNT_OFFSET = 60;
+
+    private static final int MAGIC = 0x4D4C4131; // "MLA1"
+    private static final int INDEX_MAGIC = 0x4D4C4931; // "MLI1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int BLOCK_HEADER_SIZE = 12;
+    private static final int INDEX_HEADER_SIZE = 12;
+    private static final int INDEX_ENTRY_SIZE = 24;
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".seg";
+    private static final String INDEX_SUFFIX = ".idx";
+
+    // Block offsets of one player, ascending
+    private static final class Postings {
+        long[] offsets = new long[4];
+        int count;
+
+        void add(long offset) {
+            if (count > 0 && offsets[count - 1] == offset) {
+                return;
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count++] = offset;
+        }
+    }
+
+    final long number;
+    final Path path;
+    final Path indexPath;
+
+    // Set while this is the segment being written
+    private FileChannel channel;
+    private Map<UUID, Postings> postings;
+    private long size;
+
+    private AuditSegment(Path dir, long number) {
+        this.number = number;
+        this.path = dir.resolve(String.format("%s%012d%s", PREFIX, number, SUFFIX));
+        this.indexPath = dir.resolve(String.format("%s%012d%s", PREFIX, number, INDEX_SUFFIX));
+    }
+
+    // The number of a segment file, or -1 if the file is not one
+    static long numberOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(PREFIX) || !name.endsWith(SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Starts a new segment to write to
+    static AuditSegment create(Path dir, long number) throws IOException {
+        AuditSegment segment = new AuditSegment(dir, number);
+        segment.channel = FileChannel.open(segment.path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        writeFully(segment.channel, header);
+        segment.postings = new HashMap<>();
+        segment.size = HEADER_SIZE;
+        return segment;
+    }
+
+    /**
+     * Opens a segment left by an earlier run. A segment without an index was still being
+     * written when the server stopped: its blocks are checked, a torn tail is cut off and the
+     * index is rebuilt. Returns null if the file is not a segment at all.
+     */
+    static AuditSegment open(Path dir, long number) throws IOException {
+        AuditSegment segment = new AuditSegment(dir, number);
+        if (Files.exists(segment.indexPath)) {
+            segment.size = Files.size(segment.path);
+            return segment;
+        }
+        try (FileChannel channel = FileChannel.open(segment.path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer fileHeader = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.read(fileHeader, 0) != HEADER_SIZE || fileHeader.getInt(0) != MAGIC || fileHeader.getInt(4) != VERSION) {
+                return null;
+            }
+            Map<UUID, Postings> postings = new HashMap<>();
+            Inflater inflater = new Inflater();
+            byte[] compressed = new byte[MAX_COMPRESSED_SIZE];
+            byte[] raw = new byte[BLOCK_SIZE];
+            long offset = HEADER_SIZE;
+            try {
+                while (true) {
+                    byte[] header = readHeader(channel, offset);
+                    if (header == null) {
+                        break;
+                    }
+                    int count;
+                    try {
+                        count = readBlock(channel, offset, inflater, compressed, raw);
+                    } catch (IOException e) {
+                        break;
+                    }
+                    if (count < 0) {
+                        break;
+                    }
+                    index(postings, raw, count, offset);
+                    offset += BLOCK_HEADER_SIZE + ByteBuffer.wrap(header).getInt(0);
+                }
+            } finally {
+                inflater.end();
+            }
+            if (offset < channel.size()) {
+                channel.truncate(offset);
+            }
+            channel.force(true);
+            segment.size = offset;
+            segment.writeIndex(postings);
+        }
+        return segment;
+    }
+
+    long size() {
+        return size;
+    }
+
+    // Deflates and appends a block of records; the segment must be the one being written
+    void append(byte[] raw, int count, Deflater deflater, byte[] compressed) throws IOException {
+        deflater.reset();
+        deflater.setInput(raw, 0, count * RECORD_SIZE);
+        deflater.finish();
+        int length = deflater.deflate(compressed, 0, compressed.length);
+        if (!deflater.finished()) {
+            throw new IOException("Audit block did not compress into " + compressed.length + " bytes");
+        }
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, length);
+
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        header.putInt(length).putInt(count).putInt((int) crc.getValue()).flip();
+        try {
+            writeFully(channel, header);
+            writeFully(channel, ByteBuffer.wrap(compressed, 0, length));
+        } catch (IOException e) {
+            // Cut off what was written of the block so the next one starts where the index expects
+            channel.truncate(size);
+            channel.position(size);
+            throw e;
+        }
+
+        index(postings, raw, count, size);
+        size += BLOCK_HEADER_SIZE + length;
+    }
+
+    // Block offsets the player appears in, ascending; empty if none
+    long[] blocksOf(UUID playerId) throws IOException {
+        if (postings != null) {
+            Postings found = postings.get(playerId);
+            return found == null ? new long[0] : Arrays.copyOf(found.offsets, found.count);
+        }
+        try (FileChannel index = FileChannel.open(indexPath, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(INDEX_HEADER_SIZE);
+            if (index.read(header, 0) != INDEX_HEADER_SIZE || header.getInt(0) != INDEX_MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Damaged audit index " + indexPath);
+            }
+            int entryCount = header.getInt(8);
+            ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_SIZE);
+            int low = 0;
+            int high = entryCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                entry.clear();
+                readFully(index, entry, INDEX_HEADER_SIZE + (long) mid * INDEX_ENTRY_SIZE);
+                int compare = new UUID(entry.getLong(0), entry.getLong(8)).compareTo(playerId);
+                if (compare < 0) {
+                    low = mid + 1;
+                } else if (compare > 0) {
+                    high = mid - 1;
+                } else {
+                    int first = entry.getInt(16);
+                    int count = entry.getInt(20);
+                    ByteBuffer offsets = ByteBuffer.allocate(count * 8);
+                    readFully(index, offsets, INDEX_HEADER_SIZE + (long) entryCount * INDEX_ENTRY_SIZE + first * 8L);
+                    long[] blocks = new long[count];
+                    offsets.flip().asLongBuffer().get(blocks);
+                    return blocks;
+                }
+            }
+            return new long[0];
+        }
+    }
+
+    // Forces the segment to disk and writes its index; it is read-only from then on
+    void seal() throws IOException {
+        channel.force(true);
+        channel.close();
+        channel = null;
+        writeIndex(postings);
+        postings = null;
+    }
+
+    void delete() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+        Files.deleteIfExists(indexPath);
+        Files.deleteIfExists(path);
+    }
+
+    /**
+     * Reads and inflates the block at an offset into {@code raw}. Returns its record count, or
+     * -1 if the file ends before the block does.
+     */
+    static int readBlock(FileChannel channel, long offset, Inflater inflater, byte[] compressed, byte[] raw) throws IOException {
+        byte[] headerBytes = readHeader(channel, offset);
+        if (headerBytes == null) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.wrap(headerBytes);
+        int length = header.getInt();
+        int count = header.getInt();
+        int checksum = header.getInt();
+        if (length <= 0 || length > compressed.length || count <= 0 || count > BLOCK_RECORDS) {
+            throw new IOException("Damaged audit block at " + offset);
+        }
+        ByteBuffer body = ByteBuffer.wrap(compressed, 0, length);
+        long position = offset + BLOCK_HEADER_SIZE;
+        while (body.hasRemaining()) {
+            int read = channel.read(body, position);
+            if (read < 0) {
+                return -1;
+            }
+            position += read;
+        }
+        CRC32 crc = new CRC32();
+        crc.update(compressed, 0, length);
+        if ((int) crc.getValue() != checksum) {
+            throw new IOException("Damaged audit block at " + offset);
+        }
+        inflater.reset();
+        inflater.setInput(compressed, 0, length);
+        try {
+            if (inflater.inflate(raw, 0, count * RECORD_SIZE) != count * RECORD_SIZE || !inflater.finished()) {
+                throw new IOException("Damaged audit block at " + offset);
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Damaged audit block at " + offset, e);
+        }
+        return count;
+    }
+
+    private static byte[] readHeader(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(BLOCK_HEADER_SIZE);
+        while (header.hasRemaining()) {
+            if (channel.read(header, offset + header.position()) < 0) {
+                return null;
+            }
+        }
+        return header.array();
+    }
+
+    private static void index(Map<UUID, Postings> postings, byte[] raw, int count, long blockOffset) {
+        ByteBuffer records = ByteBuffer.wrap(raw);
+        for (int i = 0; i < count; i++) {
+            int base = i * RECORD_SIZE;
+            postings.computeIfAbsent(uuidAt(records, base + PLAYER_OFFSET), id -> new Postings()).add(blockOffset);
+            UUID otherId = uuidAt(records, base + OTHER_OFFSET);
+            if (otherId != null) {
+                postings.computeIfAbsent(otherId, id -> new Postings()).add(blockOffset);
+            }
+        }
+    }
+
+    // The id stored at an offset, null for the all-zero id of "nobody"
+    static UUID uuidAt(ByteBuffer records, int offset) {
+        long most = records.getLong(offset);
+        long least = records.getLong(offset + 8);
+        return most == 0 && least == 0 ? null : new UUID(most, least);
+    }
+
+    private void writeIndex(Map<UUID, Postings> postings) throws IOException {
+        List<UUID> players = new ArrayList<>(postings.keySet());
+        players.sort(null);
+        int offsetCount = 0;
+        for (Postings found : postings.values()) {
+            offsetCount += found.count;
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + players.size() * INDEX_ENTRY_SIZE + offsetCount * 8);
+        buffer.putInt(INDEX_MAGIC).putInt(VERSION).putInt(players.size());
+        int first = 0;
+        for (UUID playerId : players) {
+            int count = postings.get(playerId).count;
+            buffer.putLong(playerId.getMostSignificantBits()).putLong(playerId.getLeastSignificantBits()).putInt(first).putInt(count);
+            first += count;
+        }
+        for (UUID playerId : players) {
+            Postings found = postings.get(playerId);
+            for (int i = 0; i < found.count; i++) {
+                buffer.putLong(found.offsets[i]);
+            }
+        }
+        buffer.flip();
+
+        Path temp = indexPath.resolveSibling(indexPath.getFileName() + ".tmp");
+        try (FileChannel index = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            writeFully(index, buffer);
+            index.force(true);
+        }
+        Files.move(temp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("Audit index ends early");
+            }
+        }
+    }
+}
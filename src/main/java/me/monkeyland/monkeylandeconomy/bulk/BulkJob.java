@@ -0,0 +1,202 @@
+package me.monkeyland.monkeylandeconomy.bulk;
+
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * One bulk operation over a fixed, UUID-sorted list of accounts, run a slice at a time.
+ * <p>
+ * The cursor only moves forward, so the last visited id is enough to resume: a restored job
+ * is given a fresh account list and skips everything up to and including that id. Jobs are
+ * driven by the {@link BulkScheduler} on a single thread and are not thread-safe.
+ */
+public final class BulkJob {
+
+    public enum Status {
+        QUEUED,
+        RUNNING,
+        PAUSED,
+        DONE,
+        CANCELLED
+    }
+
+    private final int id;
+    private final BulkOperation operation;
+    // Player who started the job, null for the console
+    private final UUID requester;
+    private final UUID[] accounts;
+
+    private Status status = Status.QUEUED;
+    private int cursor;
+    private UUID lastVisited;
+    // Counted across restarts
+    private long visited;
+    private long changed;
+    private long skipped;
+    private long failed;
+    private long matchedTotal;
+
+    public BulkJob(int id, BulkOperation operation, UUID requester, UUID[] accounts) {
+        this.id = id;
+        this.operation = operation;
+        this.requester = requester;
+        this.accounts = accounts.clone();
+        Arrays.sort(this.accounts);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public BulkOperation getOperation() {
+        return operation;
+    }
+
+    public UUID getRequester() {
+        return requester;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    void setStatus(Status status) {
+        this.status = status;
+    }
+
+    public boolean isFinished() {
+        return status == Status.DONE || status == Status.CANCELLED;
+    }
+
+    public int getTotal() {
+        return accounts.length;
+    }
+
+    public int getPosition() {
+        return cursor;
+    }
+
+    public long getVisited() {
+        return visited;
+    }
+
+    public long getChanged() {
+        return changed;
+    }
+
+    public long getSkipped() {
+        return skipped;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    // Sum of the matching balances as they were before the job touched them, in minor units
+    public long getMatchedTotal() {
+        return matchedTotal;
+    }
+
+    /**
+     * Visits accounts until the deadline passes or the list is exhausted. At least one
+     * account is visited per call, so a job always makes progress. Returns true once done.
+     */
+    boolean runSlice(Ledger ledger, Predicate<UUID> online, long deadlineNanos) {
+        do {
+            if (cursor >= accounts.length) {
+                status = Status.DONE;
+                return true;
+            }
+            UUID playerId = accounts[cursor++];
+            visit(ledger, playerId, online.test(playerId));
+            lastVisited = playerId;
+        } while (System.nanoTime() - deadlineNanos < 0);
+
+        if (cursor >= accounts.length) {
+            status = Status.DONE;
+            return true;
+        }
+        return false;
+    }
+
+    private void visit(Ledger ledger, UUID playerId, boolean online) {
+        visited++;
+        if (!operation.matchesPresence(online)) {
+            skipped++;
+            return;
+        }
+        long balance = ledger.getBalance(playerId, operation.getCurrency());
+        if (!operation.matchesBalance(balance)) {
+            skipped++;
+            return;
+        }
+        matchedTotal += balance;
+
+        Ledger.Result result;
+        switch (operation.getType()) {
+            case ADD:
+                result = ledger.adjust(playerId, operation.getCurrency(), operation.getAmount());
+                break;
+            case SET:
+            case RESET:
+                result = ledger.set(playerId, operation.getCurrency(), operation.getAmount());
+                break;
+            default:
+                result = Ledger.Result.SUCCESS;
+        }
+        if (result == Ledger.Result.SUCCESS) {
+            changed++;
+        } else {
+            failed++;
+        }
+    }
+
+    // --- Checkpoints ---
+
+    void store(Properties properties, String prefix) {
+        operation.store(properties, prefix);
+        properties.setProperty(prefix + "id", Integer.toString(id));
+        properties.setProperty(prefix + "paused", Boolean.toString(status == Status.PAUSED));
+        if (requester != null) {
+            properties.setProperty(prefix + "requester", requester.toString());
+        }
+        if (lastVisited != null) {
+            properties.setProperty(prefix + "lastVisited", lastVisited.toString());
+        }
+        properties.setProperty(prefix + "visited", Long.toString(visited));
+        properties.setProperty(prefix + "changed", Long.toString(changed));
+        properties.setProperty(prefix + "skipped", Long.toString(skipped));
+        properties.setProperty(prefix + "failed", Long.toString(failed));
+        properties.setProperty(prefix + "matchedTotal", Long.toString(matchedTotal));
+    }
+
+    /**
+     * Rebuilds a checkpointed job over a fresh account list, positioned after the last account
+     * it visited. Accounts created since then are picked up if they sort after that id.
+     */
+    static BulkJob read(Properties properties, String prefix, UUID[] accounts) {
+        String requester = properties.getProperty(prefix + "requester");
+        BulkJob job = new BulkJob(Integer.parseInt(BulkOperation.require(properties, prefix + "id")),
+                BulkOperation.read(properties, prefix), requester == null ? null : UUID.fromString(requester), accounts);
+
+        String lastVisited = properties.getProperty(prefix + "lastVisited");
+        if (lastVisited != null) {
+            job.lastVisited = UUID.fromString(lastVisited);
+            int index = Arrays.binarySearch(job.accounts, job.lastVisited);
+            job.cursor = index >= 0 ? index + 1 : -index - 1;
+        }
+        job.visited = Long.parseLong(properties.getProperty(prefix + "visited", "0"));
+        job.changed = Long.parseLong(properties.getProperty(prefix + "changed", "0"));
+        job.skipped = Long.parseLong(properties.getProperty(prefix + "skipped", "0"));
+        job.failed = Long.parseLong(properties.getProperty(prefix + "failed", "0"));
+        job.matchedTotal = Long.parseLong(properties.getProperty(prefix + "matchedTotal", "0"));
+        if (Boolean.parseBoolean(properties.getProperty(prefix + "paused"))) {
+            job.status = Status.PAUSED;
+        }
+        return job;
+    }
+}
@@ -0,0 +1,115 @@
+package me.monkeyland.monkeylandeconomy.bulk;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+
+import java.util.Properties;
+
+/**
+ * What a bulk job does to each account it visits, and which accounts it applies to.
+ * <p>
+ * Immutable. Amounts and the balance filter are minor units of the operation's currency;
+ * the balance filter bounds are inclusive and checked against the balance at the moment the
+ * account is visited, not when the job was started.
+ */
+public final class BulkOperation {
+
+    public enum Type {
+        ADD,
+        SET,
+        RESET,
+        // Changes nothing; counts and sums the matching balances
+        AUDIT
+    }
+
+    public enum Presence {
+        ANY,
+        ONLINE,
+        OFFLINE
+    }
+
+    private final Type type;
+    private final Currency currency;
+    private final long amount;
+    private final long minBalance;
+    private final long maxBalance;
+    private final Presence presence;
+
+    public BulkOperation(Type type, Currency currency, long amount, long minBalance, long maxBalance, Presence presence) {
+        this.type = type;
+        this.currency = currency;
+        this.amount = type == Type.RESET || type == Type.AUDIT ? 0L : amount;
+        this.minBalance = minBalance;
+        this.maxBalance = maxBalance;
+        this.presence = presence;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public long getAmount() {
+        return amount;
+    }
+
+    public boolean matchesPresence(boolean online) {
+        return presence == Presence.ANY || (presence == Presence.ONLINE) == online;
+    }
+
+    public boolean matchesBalance(long balance) {
+        return balance >= minBalance && balance <= maxBalance;
+    }
+
+    // e.g. "add 5.0 GOLD to offline accounts holding 0.0 to 100.0"
+    public String describe() {
+        StringBuilder description = new StringBuilder(type.name().toLowerCase());
+        if (type == Type.ADD || type == Type.SET) {
+            description.append(' ').append(AccountStore.toMajor(amount));
+        }
+        description.append(' ').append(currency.name());
+        description.append(type == Type.ADD ? " to " : " of ");
+        if (presence != Presence.ANY) {
+            description.append(presence.name().toLowerCase()).append(' ');
+        }
+        description.append("accounts");
+        if (minBalance != Long.MIN_VALUE || maxBalance != Long.MAX_VALUE) {
+            description.append(" holding ")
+                    .append(minBalance == Long.MIN_VALUE ? "any" : String.valueOf(AccountStore.toMajor(minBalance)))
+                    .append(" to ")
+                    .append(maxBalance == Long.MAX_VALUE ? "any" : String.valueOf(AccountStore.toMajor(maxBalance)));
+        }
+        return description.toString();
+    }
+
+    void store(Properties properties, String prefix) {
+        properties.setProperty(prefix + "type", type.name());
+        properties.setProperty(prefix + "currency", currency.name());
+        properties.setProperty(prefix + "amount", Long.toString(amount));
+        properties.setProperty(prefix + "minBalance", Long.toString(minBalance));
+        properties.setProperty(prefix + "maxBalance", Long.toString(maxBalance));
+        properties.setProperty(prefix + "presence", presence.name());
+    }
+
+    // Throws IllegalArgumentException for missing or malformed entries
+    static BulkOperation read(Properties properties, String prefix) {
+        return new BulkOperation(
+                Type.valueOf(require(properties, prefix + "type")),
+                Currency.valueOf(require(properties, prefix + "currency")),
+                Long.parseLong(require(properties, prefix + "amount")),
+                Long.parseLong(require(properties, prefix + "minBalance")),
+                Long.parseLong(require(properties, prefix + "maxBalance")),
+                Presence.valueOf(require(properties, prefix + "presence")));
+    }
+
+    static String require(Properties properties, String key) {
+        String value = properties.getProperty(key);
+        if (value == null) {
+            throw new IllegalArgumentException("Missing " + key);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,179 @@
+package me.monkeyland.monkeylandeconomy.bulk;
+
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.function.Predicate;
+
+/**
+ * Runs bulk jobs one after another in time slices.
+ * <p>
+ * {@link #tick} is called once per server tick and works on the oldest runnable job until
+ * {@code budgetNanos} have passed, so a job over any number of accounts costs each tick at
+ * most the budget plus one account. Paused jobs keep their place in the queue and are passed
+ * over. Unfinished jobs can be written to a checkpoint file on shutdown and picked up from
+ * their last visited account on the next start. Main thread only.
+ */
+public final class BulkScheduler {
+
+    public static final String CHECKPOINT_FILE_NAME = "bulk_jobs.properties";
+
+    public interface Listener {
+        void onProgress(BulkJob job);
+
+        void onFinished(BulkJob job);
+    }
+
+    private final Ledger ledger;
+    private final Predicate<UUID> online;
+    private final Listener listener;
+    private final long budgetNanos;
+    private final long progressIntervalNanos;
+
+    // Insertion order is run order
+    private final Map<Integer, BulkJob> jobs = new LinkedHashMap<>();
+    private int nextId = 1;
+    private long lastProgressNanos = System.nanoTime();
+
+    public BulkScheduler(Ledger ledger, Predicate<UUID> online, Listener listener, long budgetNanos, long progressIntervalNanos) {
+        this.ledger = ledger;
+        this.online = online;
+        this.listener = listener;
+        this.budgetNanos = Math.max(1L, budgetNanos);
+        this.progressIntervalNanos = Math.max(1L, progressIntervalNanos);
+    }
+
+    public BulkJob submit(BulkOperation operation, UUID requester, UUID[] accounts) {
+        BulkJob job = new BulkJob(nextId++, operation, requester, accounts);
+        jobs.put(job.getId(), job);
+        return job;
+    }
+
+    // Returns false if there was nothing to run
+    public boolean tick() {
+        BulkJob job = nextRunnable();
+        if (job == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        job.setStatus(BulkJob.Status.RUNNING);
+        if (job.runSlice(ledger, online, start + budgetNanos)) {
+            jobs.remove(job.getId());
+            listener.onFinished(job);
+        } else if (start - lastProgressNanos >= progressIntervalNanos) {
+            lastProgressNanos = start;
+            listener.onProgress(job);
+        }
+        return true;
+    }
+
+    private BulkJob nextRunnable() {
+        for (BulkJob job : jobs.values()) {
+            if (job.getStatus() != BulkJob.Status.PAUSED) {
+                return job;
+            }
+        }
+        return null;
+    }
+
+    // Null if there is no such unfinished job
+    public BulkJob get(int id) {
+        return jobs.get(id);
+    }
+
+    // Unfinished jobs in run order
+    public List<BulkJob> getJobs() {
+        return new ArrayList<>(jobs.values());
+    }
+
+    public boolean pause(int id) {
+        BulkJob job = jobs.get(id);
+        if (job == null || job.getStatus() == BulkJob.Status.PAUSED) {
+            return false;
+        }
+        job.setStatus(BulkJob.Status.PAUSED);
+        return true;
+    }
+
+    public boolean resume(int id) {
+        BulkJob job = jobs.get(id);
+        if (job == null || job.getStatus() != BulkJob.Status.PAUSED) {
+            return false;
+        }
+        job.setStatus(BulkJob.Status.QUEUED);
+        return true;
+    }
+
+    // Changes made so far stay; the job just stops
+    public BulkJob cancel(int id) {
+        BulkJob job = jobs.remove(id);
+        if (job != null) {
+            job.setStatus(BulkJob.Status.CANCELLED);
+        }
+        return job;
+    }
+
+    // --- Checkpoints ---
+
+    /**
+     * Writes every unfinished job to the checkpoint file, or deletes the file if there are
+     * none. Written to a temp file and renamed, so a crash leaves the previous checkpoint.
+     */
+    public void saveCheckpoint(Path file) throws IOException {
+        if (jobs.isEmpty()) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Properties properties = new Properties();
+        properties.setProperty("jobs", Integer.toString(jobs.size()));
+        int index = 0;
+        for (BulkJob job : jobs.values()) {
+            job.store(properties, "job." + index++ + ".");
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tempFile)) {
+            properties.store(out, "Unfinished MonkeylandEconomy bulk jobs");
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Requeues the jobs of a checkpoint file over the given accounts and deletes the file.
+     * Returns the restored jobs; none if there was no checkpoint.
+     */
+    public List<BulkJob> restoreCheckpoint(Path file, UUID[] accounts) throws IOException {
+        List<BulkJob> restored = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return restored;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file)) {
+            properties.load(in);
+        }
+        try {
+            int count = Integer.parseInt(BulkOperation.require(properties, "jobs"));
+            for (int i = 0; i < count; i++) {
+                restored.add(BulkJob.read(properties, "job." + i + ".", accounts));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Corrupt bulk job checkpoint: " + e.getMessage(), e);
+        }
+        for (BulkJob job : restored) {
+            jobs.put(job.getId(), job);
+            nextId = Math.max(nextId, job.getId() + 1);
+        }
+        Files.delete(file);
+        return restored;
+    }
+}
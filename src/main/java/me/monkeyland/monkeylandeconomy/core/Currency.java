@@ -0,0 +1,241 @@
+package me.monkeyland.monkeylandeconomy.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A currency of the economy, as defined in the {@code currencies} section of the configuration.
+ * <p>
+ * The currencies form a registry that is installed once at startup, before the engine is
+ * created. Every currency has a dense id from 0 to {@link #count()} - 1 that indexes all
+ * per-currency arrays: balances, exchange rates, inflation factors and totals. The binary
+ * snapshot and the journal store balances by id, so a currency must keep its id between
+ * starts; new currencies take the next free one. Names and aliases are looked up
+ * case-insensitively through a table built at install time, without allocating.
+ * <p>
+ * Gold is the base currency: every peg is a rate to gold, and it must always be defined.
+ */
+public final class Currency {
+
+    public static final String BASE_NAME = "GOLD";
+    public static final String DEFAULT_FORMAT = "%.2f";
+
+    private static volatile Registry registry = new Registry(defaults());
+
+    private final int id;
+    private final String name;
+    private final String[] aliases;
+    private final double peg;
+    private final double maxSupply;
+    private final String format;
+
+    /**
+     * A currency definition. {@code peg} is its starting exchange rate to gold,
+     * {@code maxSupply} the most one account may hold in major units (0 for no cap) and
+     * {@code format} the {@link String#format} pattern amounts of it are shown with.
+     */
+    public Currency(int id, String name, String[] aliases, double peg, double maxSupply, String format) {
+        if (id < 0) {
+            throw new IllegalArgumentException("currency id must not be negative: " + id);
+        }
+        if (name == null || !name.matches("[A-Za-z0-9_]+")) {
+            throw new IllegalArgumentException("currency name must be letters, digits and underscores: " + name);
+        }
+        if (!(peg > 0) || Double.isInfinite(peg)) {
+            throw new IllegalArgumentException("peg of " + name + " must be positive: " + peg);
+        }
+        if (!(maxSupply >= 0)) {
+            throw new IllegalArgumentException("maxSupply of " + name + " must not be negative: " + maxSupply);
+        }
+        String pattern = format == null || format.isEmpty() ? DEFAULT_FORMAT : format;
+        try {
+            String.format(Locale.ROOT, pattern, 0.0);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("format of " + name + " is not a number pattern: " + pattern);
+        }
+        this.id = id;
+        this.name = name.toUpperCase(Locale.ROOT);
+        this.aliases = aliases == null ? new String[0] : aliases.clone();
+        this.peg = peg;
+        this.maxSupply = maxSupply;
+        this.format = pattern;
+    }
+
+    // The built-in currencies, used when the configuration defines none
+    public static List<Currency> defaults() {
+        return List.of(
+                new Currency(0, "BRONZE", null, 0.001, 0, DEFAULT_FORMAT),
+                new Currency(1, "COPPER", null, 0.01, 0, DEFAULT_FORMAT),
+                new Currency(2, "SILVER", null, 0.1, 0, DEFAULT_FORMAT),
+                new Currency(3, BASE_NAME, null, 1.0, 0, DEFAULT_FORMAT));
+    }
+
+    /**
+     * Replaces the registry. Ids must be unique and dense from 0, names and aliases unique
+     * ignoring case, and gold must be among them; otherwise nothing changes and an
+     * {@link IllegalArgumentException} says why. Anything sized by the old registry, such as
+     * an engine, has to be created again afterwards.
+     */
+    public static void install(List<Currency> currencies) {
+        registry = new Registry(currencies);
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    public String[] getAliases() {
+        return aliases.clone();
+    }
+
+    public double getPeg() {
+        return peg;
+    }
+
+    // Most one account may hold in major units, 0 if uncapped
+    public double getMaxSupply() {
+        return maxSupply;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String format(double amount) {
+        return String.format(format, amount);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    // --- Registry ---
+
+    // Every currency, indexed by id
+    public static Currency[] values() {
+        return registry.currencies.clone();
+    }
+
+    public static int count() {
+        return registry.currencies.length;
+    }
+
+    public static Currency byId(int id) {
+        return registry.currencies[id];
+    }
+
+    public static Currency gold() {
+        return registry.gold;
+    }
+
+    // By name or alias, ignoring case; null if there is none
+    public static Currency find(String name) {
+        return name == null ? null : registry.find(name);
+    }
+
+    // By name or alias, ignoring case
+    public static Currency valueOf(String name) {
+        Currency currency = find(name);
+        if (currency == null) {
+            throw new IllegalArgumentException("No currency " + name);
+        }
+        return currency;
+    }
+
+    private static final class Registry {
+        final Currency[] currencies;
+        final Currency gold;
+        // Open addressing over lower-case names and aliases, at most half full
+        final String[] keys;
+        final Currency[] entries;
+        final int mask;
+
+        Registry(List<Currency> definitions) {
+            if (definitions.isEmpty()) {
+                throw new IllegalArgumentException("no currencies defined");
+            }
+            currencies = new Currency[definitions.size()];
+            for (Currency currency : definitions) {
+                if (currency.id >= currencies.length) {
+                    throw new IllegalArgumentException("id " + currency.id + " of " + currency.name
+                            + " is out of range, ids must run from 0 to " + (currencies.length - 1));
+                }
+                if (currencies[currency.id] != null) {
+                    throw new IllegalArgumentException(currency.name + " and " + currencies[currency.id].name + " share id " + currency.id);
+                }
+                currencies[currency.id] = currency;
+            }
+
+            List<String> names = new ArrayList<>();
+            List<Currency> owners = new ArrayList<>();
+            for (Currency currency : currencies) {
+                names.add(currency.name);
+                owners.add(currency);
+                for (String alias : currency.aliases) {
+                    names.add(alias);
+                    owners.add(currency);
+                }
+            }
+            int capacity = Integer.highestOneBit(Math.max(4, names.size() * 2 - 1)) << 1;
+            keys = new String[capacity];
+            entries = new Currency[capacity];
+            mask = capacity - 1;
+            for (int i = 0; i < names.size(); i++) {
+                String key = fold(names.get(i));
+                int slot = hash(key) & mask;
+                while (keys[slot] != null) {
+                    if (keys[slot].equals(key)) {
+                        throw new IllegalArgumentException("currency name " + names.get(i) + " is used by both "
+                                + entries[slot].name + " and " + owners.get(i).name);
+                    }
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                entries[slot] = owners.get(i);
+            }
+
+            gold = find(BASE_NAME);
+            if (gold == null || !gold.name.equals(BASE_NAME)) {
+                throw new IllegalArgumentException(BASE_NAME + " must be defined, every peg is a rate to it");
+            }
+            if (gold.peg != 1.0) {
+                throw new IllegalArgumentException("peg of " + BASE_NAME + " must be 1.0");
+            }
+        }
+
+        Currency find(String name) {
+            int slot = hash(name) & mask;
+            String key;
+            while ((key = keys[slot]) != null) {
+                if (key.equalsIgnoreCase(name)) {
+                    return entries[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        // Hash of the lower-case form, without building it
+        private static int hash(String name) {
+            int hash = 0;
+            for (int i = 0; i < name.length(); i++) {
+                hash = 31 * hash + Character.toLowerCase(name.charAt(i));
+            }
+            return hash ^ (hash >>> 16);
+        }
+
+        private static String fold(String name) {
+            char[] chars = name.toCharArray();
+            for (int i = 0; i < chars.length; i++) {
+                chars[i] = Character.toLowerCase(chars[i]);
+            }
+            return new String(chars);
+        }
+    }
+}
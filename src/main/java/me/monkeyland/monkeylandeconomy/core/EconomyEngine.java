@@ -0,0 +1,228 @@
+package me.monkeyland.monkeylandeconomy.core;
+
+import me.monkeyland.monkeylandeconomy.inflation.InflationModel;
+import me.monkeyland.monkeylandeconomy.ledger.AccountLoader;
+import me.monkeyland.monkeylandeconomy.ledger.BalanceLeaderboard;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.util.UUID;
+
+/**
+ * The economy without the server: balances, circulating supply, inflation and exchange.
+ * <p>
+ * Nothing in here touches Bukkit. The plugin wraps it with messages, persistence and
+ * scheduling, and the load simulator drives it directly. Amounts are in major units at this
+ * level and converted to the ledger's minor units on the way in and out. Every method is safe
+ * to call from any thread.
+ */
+public final class EconomyEngine {
+
+    public static final double DEFAULT_MAX_GOLD_SUPPLY = 1000000.0;
+    public static final double DEFAULT_STARTING_INFLATION_RATE = 0.0015; // 0.15% per day
+    public static final double DEFAULT_TARGET_INFLATION_RATE = 0.005;   // 0.5% per day
+    public static final double DEFAULT_INFLATION_CURVE_FACTOR = 2.0;
+
+    // Outcome of an exchange, with the amount credited when it succeeded
+    public static final class Exchange {
+        private final Ledger.Result result;
+        // Minor units actually moved, 0 unless the exchange succeeded
+        private final long paid;
+        private final long received;
+
+        Exchange(Ledger.Result result, long paid, long received) {
+            this.result = result;
+            this.paid = paid;
+            this.received = received;
+        }
+
+        public Ledger.Result getResult() {
+            return result;
+        }
+
+        public long getPaidMinor() {
+            return paid;
+        }
+
+        public long getReceivedMinor() {
+            return received;
+        }
+
+        public double getReceived() {
+            return AccountStore.toMajor(received);
+        }
+    }
+
+    private final AccountStore accounts = new AccountStore();
+    private final Ledger ledger;
+
+    // Replaced as a whole, never modified, so readers on any thread see a consistent set
+    private volatile EconomyState state;
+
+    // Null until enabled
+    private volatile BalanceLeaderboard leaderboard;
+
+    public EconomyEngine(AccountLoader loader, Ledger.BalanceListener listener) {
+        this.ledger = new Ledger(accounts, loader, (playerId, currency, delta, newBalance) -> {
+            if (listener != null) {
+                listener.onBalanceChanged(playerId, currency, delta, newBalance);
+            }
+            // Still under the account's stripe lock, as the leaderboard requires
+            BalanceLeaderboard board = leaderboard;
+            if (board != null) {
+                board.update(playerId, currency, newBalance);
+            }
+        });
+        // Gold's cap is the max supply of the state, which also drives inflation
+        for (Currency currency : Currency.values()) {
+            if (currency != Currency.gold() && currency.getMaxSupply() > 0) {
+                ledger.setMaxBalance(currency, AccountStore.toMinor(currency.getMaxSupply()));
+            }
+        }
+        setState(defaultState());
+    }
+
+    // Every currency at its peg, as set up by the registry
+    public static EconomyState defaultState() {
+        double[] rates = new double[Currency.count()];
+        double[] factors = new double[Currency.count()];
+        for (Currency currency : Currency.values()) {
+            rates[currency.getId()] = currency.getPeg();
+            factors[currency.getId()] = 1.0;
+        }
+        return new EconomyState(DEFAULT_MAX_GOLD_SUPPLY, DEFAULT_STARTING_INFLATION_RATE, DEFAULT_TARGET_INFLATION_RATE,
+                DEFAULT_INFLATION_CURVE_FACTOR, DEFAULT_STARTING_INFLATION_RATE, factors, rates);
+    }
+
+    public Ledger getLedger() {
+        return ledger;
+    }
+
+    public AccountStore getAccounts() {
+        return accounts;
+    }
+
+    // Consistent view of the current parameters and rates
+    public EconomyState getState() {
+        return state;
+    }
+
+    // Also caps gold balances at the max supply and applies the inflation factors of the new state
+    public synchronized void setState(EconomyState state) {
+        this.state = state;
+        ledger.setMaxBalance(Currency.gold(), AccountStore.toMinor(state.getMaxGoldSupply()));
+        ledger.setFactors(state.getInflationFactors());
+    }
+
+    /**
+     * Starts ranking balances. The leaderboard must already hold every stored account, see
+     * {@link BalanceLeaderboard#seed}; from here on every change keeps it up to date.
+     */
+    public void setLeaderboard(BalanceLeaderboard leaderboard) {
+        this.leaderboard = leaderboard;
+    }
+
+    // Null if balances are not ranked
+    public BalanceLeaderboard getLeaderboard() {
+        return leaderboard;
+    }
+
+    /**
+     * Sets a stored value as found in the journal during startup replay, before anything else
+     * writes to the ledger, or as received from a replication primary.
+     */
+    public void restore(UUID playerId, Currency currency, long stored) {
+        ledger.restore(playerId, currency, stored);
+        BalanceLeaderboard board = leaderboard;
+        if (board != null) {
+            board.update(playerId, currency, stored);
+        }
+    }
+
+    // Totals of the stored accounts, so supply is known before any account is loaded
+    public void setCirculating(long[] totals) {
+        for (Currency currency : Currency.values()) {
+            accounts.setCirculating(currency, totals[currency.getId()]);
+        }
+    }
+
+    // Unknown players read as zero; nothing is allocated for them
+    public double getBalance(UUID playerId, Currency currency) {
+        return AccountStore.toMajor(ledger.getBalance(playerId, currency));
+    }
+
+    // Signed adjustment without a funds check, the way rewards and admin gives work
+    public Ledger.Result addBalance(UUID playerId, Currency currency, double amount) {
+        return ledger.adjust(playerId, currency, AccountStore.toMinor(amount));
+    }
+
+    public Ledger.Result transfer(UUID fromId, UUID toId, Currency currency, double amount) {
+        return ledger.transfer(fromId, toId, currency, AccountStore.toMinor(amount));
+    }
+
+    /**
+     * Converts at the current rates; both rates come from the same snapshot. The credit is
+     * worked out from the debit after rounding and rounded down, so no exchange pays out more
+     * than it costs. One too small to credit a single minor unit is refused as invalid.
+     */
+    public Exchange exchange(UUID playerId, Currency fromCurrency, Currency toCurrency, double amount) {
+        EconomyState current = state;
+        long paid = AccountStore.toMinor(amount);
+        long received = (long) Math.floor(paid * current.getExchangeRate(fromCurrency) / current.getExchangeRate(toCurrency));
+        if (paid > 0 && received <= 0) {
+            return new Exchange(Ledger.Result.INVALID_AMOUNT, 0L, 0L);
+        }
+        Ledger.Result result = ledger.exchange(playerId, fromCurrency, paid, toCurrency, received);
+        return result == Ledger.Result.SUCCESS ? new Exchange(result, paid, received) : new Exchange(result, 0L, 0L);
+    }
+
+    /**
+     * Runs one inflation tick against the circulating gold supply and publishes the new rates.
+     * Ticks must not overlap; the plugin runs them from a single repeating task.
+     */
+    public synchronized EconomyState advanceInflation() {
+        EconomyState next = InflationModel.advance(state, getCirculatingGoldSupply());
+        state = next;
+        return next;
+    }
+
+    /**
+     * Multiplies every balance of a currency, e.g. by 1.001 for interest or 0.999 for
+     * demurrage. Only the currency's inflation factor changes, so this costs the same for any
+     * number of accounts; balances pick it up the next time they are read or written.
+     */
+    public synchronized EconomyState revalue(Currency currency, double multiplier) {
+        if (!(multiplier > 0.0) || Double.isInfinite(multiplier)) {
+            throw new IllegalArgumentException("Multiplier must be positive: " + multiplier);
+        }
+        EconomyState next = InflationModel.revalue(state, currency, multiplier);
+        setState(next);
+        return next;
+    }
+
+    public double getCirculatingSupply(Currency currency) {
+        return AccountStore.toMajor(ledger.circulating(currency));
+    }
+
+    // What a ranked balance is worth now; leaderboard entries hold stored values
+    public double toBalance(Currency currency, long stored) {
+        return AccountStore.toMajor(ledger.toBalance(currency, stored));
+    }
+
+    public double getCirculatingGoldSupply() {
+        return getCirculatingSupply(Currency.gold());
+    }
+
+    public double getMaxGoldSupply() {
+        return state.getMaxGoldSupply();
+    }
+
+    public double getGoldInflationRate() {
+        return state.getInflationRate();
+    }
+
+    public double getExchangeRate(Currency currency) {
+        return state.getExchangeRate(currency);
+    }
+}
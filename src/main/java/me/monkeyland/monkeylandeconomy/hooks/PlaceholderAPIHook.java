@@ -1,16 +1,74 @@
 package me.monkeyland.monkeylandeconomy.hooks;
 
 import me.monkeyland.monkeylandeconomy.MonkeylandEconomy;
-import me.monkeyland.monkeylandeconomy.MonkeylandEconomy.Currency;
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.inflation.RateHistory;
+import me.monkeyland.monkeylandeconomy.inflation.RollingSeries;
+import me.monkeyland.monkeylandeconomy.ledger.BalanceLeaderboard;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.metrics.EconomyMetrics;
 import me.clip.placeholderapi.expansion.PlaceholderExpansion;
 import org.bukkit.OfflinePlayer;
 
+import java.util.UUID;
+
 public class PlaceholderAPIHook extends PlaceholderExpansion {
 
     private final MonkeylandEconomy plugin;
+    private final PlaceholderResolver resolver;
+    private final EconomyMetrics metrics;
 
     public PlaceholderAPIHook(MonkeylandEconomy plugin) {
         this.plugin = plugin;
+        this.metrics = plugin.getMetrics();
+        Ledger ledger = plugin.getLedger();
+        this.resolver = new PlaceholderResolver(new PlaceholderResolver.ValueSource() {
+            @Override
+            public long getBalance(UUID playerId, Currency currency) {
+                return ledger.getBalance(playerId, currency);
+            }
+
+            @Override
+            public long getCirculatingGoldSupply() {
+                return ledger.circulating(Currency.gold());
+            }
+
+            @Override
+            public long toBalance(Currency currency, long stored) {
+                return ledger.toBalance(currency, stored);
+            }
+
+            @Override
+            public double getMaxGoldSupply() {
+                return plugin.getMaxGoldSupply();
+            }
+
+            @Override
+            public double getExchangeRate(Currency currency) {
+                return plugin.getExchangeRate(currency);
+            }
+
+            @Override
+            public double getGoldInflationRate() {
+                return plugin.getGoldInflationRate();
+            }
+
+            @Override
+            public RollingSeries.Aggregate getRateAggregate(int metric, RateHistory.Tier tier) {
+                return plugin.getRateHistory().getAggregate(metric, tier);
+            }
+
+            @Override
+            public BalanceLeaderboard.Entry getTopEntry(Currency currency, int position) {
+                BalanceLeaderboard leaderboard = plugin.getEngine().getLeaderboard();
+                return leaderboard == null ? null : leaderboard.getTop(currency, position);
+            }
+
+            @Override
+            public String getPlayerName(UUID playerId) {
+                return plugin.getPlayerName(playerId);
+            }
+        });
     }
 
 
@@ -30,47 +88,18 @@ public class PlaceholderAPIHook extends PlaceholderExpansion {
         return "1.0";
     }
 
+    // Drops cached strings for a player who left
+    public void forget(UUID playerId) {
+        resolver.forget(playerId);
+    }
+
     @Override
     public String onRequest(OfflinePlayer player, String identifier) {
-        // Exchange rate placeholders
-        if (identifier.startsWith("exchange_")) {
-            String currencyName = identifier.substring(9); // Extract the currency name
-            try {
-                Currency fromCurrency = Currency.valueOf(currencyName.toUpperCase());
-                double exchangeRate = plugin.getExchangeRate(fromCurrency); // Directly get the exchange rate for the currency to gold
-                return String.format("%.4f", exchangeRate);
-            } catch (IllegalArgumentException e) {
-                return "Invalid currency";
-            }
-        }
-        // Balance placeholders
-        else if (identifier.startsWith("balance_")) {
-            String currencyName = identifier.substring(8);
-            try {
-                Currency currency = Currency.valueOf(currencyName.toUpperCase());
-                if (player != null && player.isOnline()) {
-                    double balance = plugin.getBalance(player.getUniqueId(), currency);
-                    return String.format("%.2f", balance);
-                } else {
-                    return "Player not found or offline";
-                }
-            } catch (IllegalArgumentException e) {
-                return "Invalid currency";
-            }
-        }
-
-        else {
-            switch (identifier.toLowerCase()) {
-                case "gold_circulating_supply":
-                    return String.format("%.2f", plugin.getCirculatingGoldSupply());
-                case "max_gold_supply":
-                    return String.format("%.2f", plugin.getMaxGoldSupply());
-                case "gold_inflation_rate":
-                    return String.format("%.2f%%", plugin.getGoldInflationRate() * 100);
-                default:
-                    return null;
-            }
-        }
-
+        // Identifiers are parsed once and formatted values reused until they change
+        long start = EconomyMetrics.start();
+        UUID playerId = player != null && player.isOnline() ? player.getUniqueId() : null;
+        String value = resolver.resolve(playerId, identifier);
+        metrics.record(EconomyMetrics.Timer.PLACEHOLDER, start);
+        return value;
     }
 }
@@ -0,0 +1,377 @@
+package me.monkeyland.monkeylandeconomy.hooks;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.inflation.RateHistory;
+import me.monkeyland.monkeylandeconomy.inflation.RollingSeries;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.BalanceLeaderboard;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves placeholder identifiers without re-parsing them on every request.
+ * <p>
+ * Each distinct identifier is parsed once into a {@link Placeholder} and cached. Every
+ * placeholder remembers the last value it formatted together with the resulting string, so
+ * as long as the underlying value is unchanged a request is two map hits and a comparison,
+ * with no allocation. Balances are remembered per player and currency.
+ */
+public class PlaceholderResolver {
+
+    public static final String INVALID_CURRENCY = "Invalid currency";
+    public static final String PLAYER_OFFLINE = "Player not found or offline";
+    public static final String NO_DATA = "N/A";
+
+    // Identifiers come from other plugins' configs; stop caching past this many distinct ones
+    private static final int MAX_CACHED_IDENTIFIERS = 1024;
+    // Players are forgotten when they quit, but a lookup racing the quit leaves an entry behind
+    private static final int MAX_CACHED_PLAYERS = 4096;
+
+    /**
+     * Where the placeholder values come from. Balances and supply are in fixed-point minor
+     * units, see {@link AccountStore}.
+     */
+    public interface ValueSource {
+        long getBalance(UUID playerId, Currency currency);
+
+        long getCirculatingGoldSupply();
+
+        double getMaxGoldSupply();
+
+        double getExchangeRate(Currency currency);
+
+        double getGoldInflationRate();
+
+        RollingSeries.Aggregate getRateAggregate(int metric, RateHistory.Tier tier);
+
+        // 1-based position in the cached top of a currency, null if empty or not ranked
+        BalanceLeaderboard.Entry getTopEntry(Currency currency, int position);
+
+        // Current balance of a stored value, as held by leaderboard entries
+        long toBalance(Currency currency, long stored);
+
+        String getPlayerName(UUID playerId);
+    }
+
+    private abstract static class Placeholder {
+        abstract String resolve(UUID playerId);
+    }
+
+    // Immutable, so a slot can be replaced without locking
+    private static final class FormattedValue {
+        final long value;
+        final String text;
+
+        FormattedValue(long value, String text) {
+            this.value = value;
+            this.text = text;
+        }
+    }
+
+    // Leaderboard position as last formatted; names are looked up only when the holder changes
+    private static final class FormattedEntry {
+        final UUID playerId;
+        final long balance;
+        final String text;
+
+        FormattedEntry(UUID playerId, long balance, String text) {
+            this.playerId = playerId;
+            this.balance = balance;
+            this.text = text;
+        }
+    }
+
+    private final ValueSource values;
+    private final Map<String, Placeholder> placeholders = new ConcurrentHashMap<>();
+    private final Map<UUID, FormattedValue[]> balanceCache = new ConcurrentHashMap<>();
+
+    public PlaceholderResolver(ValueSource values) {
+        this.values = values;
+    }
+
+    /**
+     * Returns the text for an identifier, or null if it is not one of ours. A null player id
+     * means the player is unknown or offline.
+     */
+    public String resolve(UUID playerId, String identifier) {
+        Placeholder placeholder = placeholders.get(identifier);
+        if (placeholder == null) {
+            placeholder = parse(identifier);
+            if (placeholders.size() < MAX_CACHED_IDENTIFIERS) {
+                placeholders.putIfAbsent(identifier, placeholder);
+            }
+        }
+        return placeholder.resolve(playerId);
+    }
+
+    // Drops the remembered balances of a player who left
+    public void forget(UUID playerId) {
+        balanceCache.remove(playerId);
+    }
+
+    private Placeholder parse(String identifier) {
+        // Exchange rate placeholders
+        if (identifier.startsWith("exchange_")) {
+            Currency currency = Currency.find(identifier.substring(9));
+            return currency == null ? constant(INVALID_CURRENCY) : new ExchangeRatePlaceholder(currency);
+        }
+        // Balance placeholders
+        else if (identifier.startsWith("balance_")) {
+            Currency currency = Currency.find(identifier.substring(8));
+            return currency == null ? constant(INVALID_CURRENCY) : new BalancePlaceholder(currency);
+        }
+        // Rate history placeholders: history_<currency|inflation>_<avg|min|max|change>_<ticks|24h|30d>
+        else if (identifier.startsWith("history_")) {
+            return parseHistory(identifier.substring(8));
+        }
+        // Leaderboard placeholders: top_<currency>_<position>_<name|amount>
+        else if (identifier.startsWith("top_")) {
+            return parseTop(identifier.substring(4));
+        }
+
+        switch (identifier.toLowerCase(Locale.ROOT)) {
+            case "gold_circulating_supply":
+                return new CirculatingSupplyPlaceholder();
+            case "max_gold_supply":
+                return new MaxSupplyPlaceholder();
+            case "gold_inflation_rate":
+                return new InflationRatePlaceholder();
+            default:
+                return constant(null);
+        }
+    }
+
+    private Placeholder parseHistory(String spec) {
+        String[] parts = spec.toLowerCase(Locale.ROOT).split("_");
+        if (parts.length != 3) {
+            return constant(null);
+        }
+        int metric;
+        if (parts[0].equals("inflation")) {
+            metric = RateHistory.inflationMetric();
+        } else {
+            Currency currency = Currency.find(parts[0]);
+            if (currency == null) {
+                return constant(INVALID_CURRENCY);
+            }
+            metric = currency.getId();
+        }
+        RateHistory.Tier tier = RateHistory.tierOf(parts[2]);
+        if (tier == null) {
+            return constant(null);
+        }
+        switch (parts[1]) {
+            case "avg":
+            case "min":
+            case "max":
+            case "change":
+                return new HistoryPlaceholder(metric, parts[1], tier);
+            default:
+                return constant(null);
+        }
+    }
+
+    private Placeholder parseTop(String spec) {
+        String[] parts = spec.toLowerCase(Locale.ROOT).split("_");
+        if (parts.length != 3 || !(parts[2].equals("name") || parts[2].equals("amount"))) {
+            return constant(null);
+        }
+        Currency currency = Currency.find(parts[0]);
+        if (currency == null) {
+            return constant(INVALID_CURRENCY);
+        }
+        int position;
+        try {
+            position = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return constant(null);
+        }
+        return position < 1 ? constant(null) : new TopPlaceholder(currency, position, parts[2].equals("name"));
+    }
+
+    private static Placeholder constant(String text) {
+        return new Placeholder() {
+            @Override
+            String resolve(UUID playerId) {
+                return text;
+            }
+        };
+    }
+
+    // Global placeholders: the formatted string is kept until the raw value changes
+    private abstract static class MemoizedPlaceholder extends Placeholder {
+        private volatile FormattedValue last;
+
+        // Raw value to compare against the last one; doubles are passed as their bits
+        abstract long currentValue();
+
+        abstract String format(long value);
+
+        @Override
+        String resolve(UUID playerId) {
+            long value = currentValue();
+            FormattedValue cached = last;
+            if (cached != null && cached.value == value) {
+                return cached.text;
+            }
+            FormattedValue formatted = new FormattedValue(value, format(value));
+            last = formatted;
+            return formatted.text;
+        }
+    }
+
+    private final class ExchangeRatePlaceholder extends MemoizedPlaceholder {
+        private final Currency currency;
+
+        ExchangeRatePlaceholder(Currency currency) {
+            this.currency = currency;
+        }
+
+        @Override
+        long currentValue() {
+            return Double.doubleToRawLongBits(values.getExchangeRate(currency));
+        }
+
+        @Override
+        String format(long value) {
+            return String.format("%.4f", Double.longBitsToDouble(value));
+        }
+    }
+
+    private final class CirculatingSupplyPlaceholder extends MemoizedPlaceholder {
+        @Override
+        long currentValue() {
+            return values.getCirculatingGoldSupply();
+        }
+
+        @Override
+        String format(long value) {
+            return Currency.gold().format(AccountStore.toMajor(value));
+        }
+    }
+
+    private final class MaxSupplyPlaceholder extends MemoizedPlaceholder {
+        @Override
+        long currentValue() {
+            return Double.doubleToRawLongBits(values.getMaxGoldSupply());
+        }
+
+        @Override
+        String format(long value) {
+            return Currency.gold().format(Double.longBitsToDouble(value));
+        }
+    }
+
+    private final class InflationRatePlaceholder extends MemoizedPlaceholder {
+        @Override
+        long currentValue() {
+            return Double.doubleToRawLongBits(values.getGoldInflationRate());
+        }
+
+        @Override
+        String format(long value) {
+            return String.format("%.2f%%", Double.longBitsToDouble(value) * 100);
+        }
+    }
+
+    private final class HistoryPlaceholder extends MemoizedPlaceholder {
+        private final int metric;
+        private final String statistic;
+        private final RateHistory.Tier tier;
+
+        HistoryPlaceholder(int metric, String statistic, RateHistory.Tier tier) {
+            this.metric = metric;
+            this.statistic = statistic;
+            this.tier = tier;
+        }
+
+        @Override
+        long currentValue() {
+            RollingSeries.Aggregate aggregate = values.getRateAggregate(metric, tier);
+            switch (statistic) {
+                case "avg":
+                    return Double.doubleToRawLongBits(aggregate.getAverage());
+                case "min":
+                    return Double.doubleToRawLongBits(aggregate.getMin());
+                case "max":
+                    return Double.doubleToRawLongBits(aggregate.getMax());
+                default:
+                    return Double.doubleToRawLongBits(aggregate.getChange());
+            }
+        }
+
+        @Override
+        String format(long bits) {
+            double value = Double.longBitsToDouble(bits);
+            if (Double.isNaN(value)) {
+                return NO_DATA;
+            }
+            if (statistic.equals("change")) {
+                return String.format("%+.2f%%", value * 100);
+            }
+            return metric == RateHistory.inflationMetric() ? String.format("%.2f%%", value * 100) : String.format("%.4f", value);
+        }
+    }
+
+    private final class TopPlaceholder extends Placeholder {
+        private final Currency currency;
+        private final int position;
+        private final boolean name;
+        private volatile FormattedEntry last;
+
+        TopPlaceholder(Currency currency, int position, boolean name) {
+            this.currency = currency;
+            this.position = position;
+            this.name = name;
+        }
+
+        @Override
+        String resolve(UUID playerId) {
+            BalanceLeaderboard.Entry entry = values.getTopEntry(currency, position);
+            if (entry == null) {
+                return NO_DATA;
+            }
+            long balance = values.toBalance(currency, entry.getBalance());
+            FormattedEntry cached = last;
+            if (cached != null && cached.playerId.equals(entry.getPlayerId()) && (name || cached.balance == balance)) {
+                return cached.text;
+            }
+            String text = name ? values.getPlayerName(entry.getPlayerId()) : currency.format(AccountStore.toMajor(balance));
+            FormattedEntry formatted = new FormattedEntry(entry.getPlayerId(), balance, text);
+            last = formatted;
+            return formatted.text;
+        }
+    }
+
+    private final class BalancePlaceholder extends Placeholder {
+        private final Currency currency;
+
+        BalancePlaceholder(Currency currency) {
+            this.currency = currency;
+        }
+
+        @Override
+        String resolve(UUID playerId) {
+            if (playerId == null) {
+                return PLAYER_OFFLINE;
+            }
+            long balance = values.getBalance(playerId, currency);
+            FormattedValue[] slots = balanceCache.get(playerId);
+            if (slots == null && balanceCache.size() < MAX_CACHED_PLAYERS) {
+                slots = balanceCache.computeIfAbsent(playerId, id -> new FormattedValue[Currency.count()]);
+            }
+            FormattedValue cached = slots == null ? null : slots[currency.getId()];
+            if (cached != null && cached.value == balance) {
+                return cached.text;
+            }
+            FormattedValue formatted = new FormattedValue(balance, currency.format(AccountStore.toMajor(balance)));
+            if (slots != null) {
+                slots[currency.getId()] = formatted;
+            }
+            return formatted.text;
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package me.monkeyland.monkeylandeconomy.hooks;
+
+import me.monkeyland.monkeylandeconomy.audit.AuditLog;
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import net.milkbowl.vault.economy.Economy;
+import net.milkbowl.vault.economy.EconomyResponse;
+import org.bukkit.OfflinePlayer;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Vault {@link Economy} service over one currency of the ledger.
+ * <p>
+ * Every call goes straight to the in-memory {@link Ledger}, which is safe from any thread; the
+ * change reaches disk through the journal and the write-behind flusher like any other. Offline
+ * players work the same as online ones: an account that is not resident is loaded once and then
+ * stays in the offline cache. Name-based calls are resolved from names the plugin has seen
+ * instead of a profile lookup, and fail for names it has never seen. Worlds are ignored and
+ * banks are not supported.
+ */
+public class VaultEconomyProvider implements Economy {
+
+    private static final String NAME = "MonkeylandEconomy";
+
+    private final Ledger ledger;
+    private final Currency currency;
+    // Null if transactions are not audited
+    private final AuditLog auditLog;
+    private final String singularName;
+    private final String pluralName;
+    private final Map<String, UUID> knownNames = new ConcurrentHashMap<>();
+    private volatile boolean enabled = true;
+
+    public VaultEconomyProvider(EconomyEngine engine, Currency currency, AuditLog auditLog) {
+        this.ledger = engine.getLedger();
+        this.currency = currency;
+        this.auditLog = auditLog;
+        String name = currency.name();
+        this.singularName = name.charAt(0) + name.substring(1).toLowerCase(Locale.ROOT);
+        this.pluralName = singularName;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    // Makes a player reachable through the name-based calls
+    public void rememberName(String name, UUID playerId) {
+        if (name != null) {
+            knownNames.put(name.toLowerCase(Locale.ROOT), playerId);
+        }
+    }
+
+    public void disable() {
+        enabled = false;
+    }
+
+    private UUID idOf(String playerName) {
+        return playerName == null ? null : knownNames.get(playerName.toLowerCase(Locale.ROOT));
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean hasBankSupport() {
+        return false;
+    }
+
+    // The precision the ledger stores, so clients that round to it never drift from the balance
+    @Override
+    public int fractionalDigits() {
+        return AccountStore.DECIMALS;
+    }
+
+    @Override
+    public String format(double amount) {
+        return currency.format(amount) + " " + (amount == 1.0 ? singularName : pluralName);
+    }
+
+    @Override
+    public String currencyNamePlural() {
+        return pluralName;
+    }
+
+    @Override
+    public String currencyNameSingular() {
+        return singularName;
+    }
+
+    // --- Accounts ---
+
+    // Accounts are created on first use, so every player has one
+    private boolean hasAccount(UUID playerId) {
+        return playerId != null;
+    }
+
+    @Override
+    public boolean hasAccount(String playerName) {
+        return hasAccount(idOf(playerName));
+    }
+
+    @Override
+    public boolean hasAccount(OfflinePlayer player) {
+        return hasAccount(player.getUniqueId());
+    }
+
+    @Override
+    public boolean hasAccount(String playerName, String worldName) {
+        return hasAccount(playerName);
+    }
+
+    @Override
+    public boolean hasAccount(OfflinePlayer player, String worldName) {
+        return hasAccount(player);
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName) {
+        return hasAccount(playerName);
+    }
+
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player) {
+        return hasAccount(player);
+    }
+
+    @Override
+    public boolean createPlayerAccount(String playerName, String worldName) {
+        return hasAccount(playerName);
+    }
+
+    @Override
+    public boolean createPlayerAccount(OfflinePlayer player, String worldName) {
+        return hasAccount(player);
+    }
+
+    // --- Balances ---
+
+    private double getBalance(UUID playerId) {
+        return playerId == null ? 0.0 : AccountStore.toMajor(ledger.getBalance(playerId, currency));
+    }
+
+    @Override
+    public double getBalance(String playerName) {
+        return getBalance(idOf(playerName));
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player) {
+        return getBalance(player.getUniqueId());
+    }
+
+    @Override
+    public double getBalance(String playerName, String world) {
+        return getBalance(playerName);
+    }
+
+    @Override
+    public double getBalance(OfflinePlayer player, String world) {
+        return getBalance(player);
+    }
+
+    private boolean has(UUID playerId, double amount) {
+        if (amount <= 0) {
+            return true;
+        }
+        return playerId != null && ledger.getBalance(playerId, currency) >= AccountStore.toMinor(amount);
+    }
+
+    @Override
+    public boolean has(String playerName, double amount) {
+        return has(idOf(playerName), amount);
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, double amount) {
+        return has(player.getUniqueId(), amount);
+    }
+
+    @Override
+    public boolean has(String playerName, String worldName, double amount) {
+        return has(playerName, amount);
+    }
+
+    @Override
+    public boolean has(OfflinePlayer player, String worldName, double amount) {
+        return has(player, amount);
+    }
+
+    // --- Transactions ---
+
+    private EconomyResponse withdraw(UUID playerId, double amount) {
+        if (playerId == null) {
+            return failure(amount, 0.0, "Unknown player");
+        }
+        if (amount < 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+            return failure(amount, getBalance(playerId), "Cannot withdraw negative funds");
+        }
+        long minorUnits = AccountStore.toMinor(amount);
+        Ledger.Result result = minorUnits == 0 ? Ledger.Result.SUCCESS : ledger.withdraw(playerId, currency, minorUnits);
+        double balance = getBalance(playerId);
+        if (result == Ledger.Result.SUCCESS) {
+            audit(AuditLog.Type.VAULT_WITHDRAW, playerId, minorUnits);
+            return new EconomyResponse(amount, balance, EconomyResponse.ResponseType.SUCCESS, null);
+        }
+        if (result == Ledger.Result.UNAVAILABLE) {
+            return failure(amount, balance, "Economy unavailable");
+        }
+        return failure(amount, balance, "Insufficient funds");
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, double amount) {
+        return withdraw(idOf(playerName), amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player, double amount) {
+        return withdraw(player.getUniqueId(), amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(String playerName, String worldName, double amount) {
+        return withdrawPlayer(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse withdrawPlayer(OfflinePlayer player, String worldName, double amount) {
+        return withdrawPlayer(player, amount);
+    }
+
+    private void audit(AuditLog.Type type, UUID playerId, long minorUnits) {
+        if (auditLog != null && minorUnits != 0) {
+            auditLog.record(type, playerId, null, currency, minorUnits);
+        }
+    }
+
+    private EconomyResponse deposit(UUID playerId, double amount) {
+        if (playerId == null) {
+            return failure(amount, 0.0, "Unknown player");
+        }
+        if (amount < 0 || Double.isNaN(amount) || Double.isInfinite(amount)) {
+            return failure(amount, getBalance(playerId), "Cannot deposit negative funds");
+        }
+        long minorUnits = AccountStore.toMinor(amount);
+        Ledger.Result result = minorUnits == 0 ? Ledger.Result.SUCCESS : ledger.deposit(playerId, currency, minorUnits);
+        double balance = getBalance(playerId);
+        if (result == Ledger.Result.SUCCESS) {
+            audit(AuditLog.Type.VAULT_DEPOSIT, playerId, minorUnits);
+            return new EconomyResponse(amount, balance, EconomyResponse.ResponseType.SUCCESS, null);
+        }
+        if (result == Ledger.Result.UNAVAILABLE) {
+            return failure(amount, balance, "Economy unavailable");
+        }
+        return failure(amount, balance, "Would exceed the maximum " + singularName.toLowerCase(Locale.ROOT) + " balance");
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, double amount) {
+        return deposit(idOf(playerName), amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player, double amount) {
+        return deposit(player.getUniqueId(), amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(String playerName, String worldName, double amount) {
+        return depositPlayer(playerName, amount);
+    }
+
+    @Override
+    public EconomyResponse depositPlayer(OfflinePlayer player, String worldName, double amount) {
+        return depositPlayer(player, amount);
+    }
+
+    private static EconomyResponse failure(double amount, double balance, String message) {
+        return new EconomyResponse(amount, balance, EconomyResponse.ResponseType.FAILURE, message);
+    }
+
+    // --- Banks ---
+
+    private static EconomyResponse noBanks() {
+        return new EconomyResponse(0.0, 0.0, EconomyResponse.ResponseType.NOT_IMPLEMENTED, "MonkeylandEconomy does not support banks");
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, String player) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse createBank(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse deleteBank(String name) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankBalance(String name) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankHas(String name, double amount) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankWithdraw(String name, double amount) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse bankDeposit(String name, double amount) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, String playerName) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankOwner(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, String playerName) {
+        return noBanks();
+    }
+
+    @Override
+    public EconomyResponse isBankMember(String name, OfflinePlayer player) {
+        return noBanks();
+    }
+
+    @Override
+    public List<String> getBanks() {
+        return Collections.emptyList();
+    }
+}
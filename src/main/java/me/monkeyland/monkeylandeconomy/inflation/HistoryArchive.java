@@ -0,0 +1,210 @@
+package me.monkeyland.monkeylandeconomy.inflation;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Append-only file of downsampled history samples.
+ * <p>
+ * Layout: magic, version and metric count, then one record per sample: the tier, the time in
+ * seconds as a zigzag varint delta from the previous record of that tier, and every metric as
+ * a varint of its bits XORed with the previous value of that tier and metric. Neighbouring
+ * rates share sign, exponent and high mantissa bits, so most values take a few bytes and the
+ * encoding stays lossless.
+ */
+final class HistoryArchive {
+
+    static final String ARCHIVE_FILE_NAME = "monkeyland_history.bin";
+
+    private static final int MAGIC = 0x4D4C4831; // "MLH1"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 12;
+
+    interface SampleHandler {
+        void sample(int tier, long timeMillis, double[] values);
+    }
+
+    // One sample to write while compacting
+    static final class Sample {
+        final int tier;
+        final long timeMillis;
+        final double[] values;
+
+        Sample(int tier, long timeMillis, double[] values) {
+            this.tier = tier;
+            this.timeMillis = timeMillis;
+            this.values = values;
+        }
+    }
+
+    private final Path path;
+    private final int metricCount;
+    private final int tierCount;
+    private FileChannel channel;
+
+    // Delta state of the file as written so far
+    private long[] lastTimes;
+    private long[][] lastBits;
+
+    HistoryArchive(Path path, int metricCount, int tierCount) {
+        this.path = path;
+        this.metricCount = metricCount;
+        this.tierCount = tierCount;
+        resetDeltas();
+    }
+
+    /**
+     * Reads every sample in the archive. Returns the number of records read, or -1 if the file
+     * is damaged or was written for another metric count and should be rewritten.
+     */
+    int read(SampleHandler handler) throws IOException {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(path));
+        if (buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return -1;
+        }
+        int fileMetricCount = buffer.getInt();
+
+        long[] times = new long[tierCount];
+        long[][] bits = new long[tierCount][fileMetricCount];
+        int records = 0;
+        try {
+            while (buffer.hasRemaining()) {
+                int tier = buffer.get();
+                if (tier < 0 || tier >= tierCount) {
+                    return -1;
+                }
+                times[tier] += zigzagDecode(readVarLong(buffer));
+                double[] values = new double[metricCount];
+                for (int metric = 0; metric < fileMetricCount; metric++) {
+                    bits[tier][metric] ^= readVarLong(buffer);
+                    // The last metric stays last when currencies were added or removed
+                    int target = metric == fileMetricCount - 1 ? metricCount - 1 : metric;
+                    if (target == metricCount - 1 ? metric == fileMetricCount - 1 : target < metricCount) {
+                        values[target] = Double.longBitsToDouble(bits[tier][metric]);
+                    }
+                }
+                handler.sample(tier, times[tier] * 1000L, values);
+                records++;
+            }
+        } catch (BufferUnderflowException | IOException e) {
+            // Torn last record from a crash
+            return -1;
+        }
+        if (fileMetricCount != metricCount) {
+            return -1;
+        }
+
+        lastTimes = times;
+        lastBits = bits;
+        return records;
+    }
+
+    void open() throws IOException {
+        boolean exists = Files.exists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        if (!exists || channel.size() == 0) {
+            writeHeader(channel);
+            resetDeltas();
+        }
+    }
+
+    void append(int tier, long timeMillis, double[] values) throws IOException {
+        ByteBuffer record = encode(tier, timeMillis, values);
+        while (record.hasRemaining()) {
+            channel.write(record);
+        }
+    }
+
+    // Replaces the archive with just the given samples, in order
+    void rewrite(List<Sample> samples) throws IOException {
+        close();
+        Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+        resetDeltas();
+        try (FileChannel out = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeHeader(out);
+            for (Sample sample : samples) {
+                ByteBuffer record = encode(sample.tier, sample.timeMillis, sample.values);
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        open();
+    }
+
+    void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private ByteBuffer encode(int tier, long timeMillis, double[] values) {
+        ByteBuffer record = ByteBuffer.allocate(1 + 10 + 10 * metricCount);
+        long seconds = timeMillis / 1000L;
+        record.put((byte) tier);
+        writeVarLong(record, zigzagEncode(seconds - lastTimes[tier]));
+        lastTimes[tier] = seconds;
+        for (int metric = 0; metric < metricCount; metric++) {
+            long bits = Double.doubleToLongBits(values[metric]);
+            writeVarLong(record, bits ^ lastBits[tier][metric]);
+            lastBits[tier][metric] = bits;
+        }
+        record.flip();
+        return record;
+    }
+
+    private void writeHeader(FileChannel out) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).putInt(metricCount);
+        header.flip();
+        while (header.hasRemaining()) {
+            out.write(header);
+        }
+    }
+
+    private void resetDeltas() {
+        lastTimes = new long[tierCount];
+        lastBits = new long[tierCount][metricCount];
+    }
+
+    private static long zigzagEncode(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long zigzagDecode(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in history archive");
+    }
+}
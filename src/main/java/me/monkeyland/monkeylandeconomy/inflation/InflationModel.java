@@ -0,0 +1,46 @@
+package me.monkeyland.monkeylandeconomy.inflation;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+/**
+ * The inflation step run on every inflation tick. Pure: it never touches the state it is
+ * given and returns a new one, so the result can be published in a single swap.
+ */
+public final class InflationModel {
+
+    // Share of the max gold supply the economy is steered towards
+    public static final double TARGET_SUPPLY_RATIO = 0.25;
+
+    private InflationModel() {
+    }
+
+    public static EconomyState advance(EconomyState state, double circulatingGoldSupply) {
+        double supplyRatio = circulatingGoldSupply / state.getMaxGoldSupply();
+
+        // Calculate inflation/deflation rate directly based on deviation from target
+        double inflationRate = state.getStartingInflationRate() + (supplyRatio - TARGET_SUPPLY_RATIO) * 0.03;
+
+        // Ensure inflation/deflation rate stays within reasonable bounds (-10% to 10%)
+        inflationRate = Math.max(-0.10, Math.min(0.1, inflationRate));
+
+        // Adjust exchange rates based on inflation/deflation
+        double[] exchangeRates = state.getExchangeRates();
+        for (Currency currency : Currency.values()) {
+            if (currency != Currency.gold()) {
+                exchangeRates[currency.getId()] /= 1 + inflationRate;
+            }
+        }
+
+        return new EconomyState(state.getMaxGoldSupply(), state.getStartingInflationRate(), state.getTargetInflationRate(),
+                state.getInflationCurveFactor(), inflationRate, state.getInflationFactors(), exchangeRates);
+    }
+
+    // Same state with one currency's cumulative balance multiplier scaled
+    public static EconomyState revalue(EconomyState state, Currency currency, double multiplier) {
+        double[] inflationFactors = state.getInflationFactors();
+        inflationFactors[currency.getId()] *= multiplier;
+        return new EconomyState(state.getMaxGoldSupply(), state.getStartingInflationRate(), state.getTargetInflationRate(),
+                state.getInflationCurveFactor(), state.getInflationRate(), inflationFactors, state.getExchangeRates());
+    }
+}
@@ -0,0 +1,189 @@
+package me.monkeyland.monkeylandeconomy.inflation;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * History of the exchange rates and the inflation rate, one {@link RollingSeries} per metric
+ * and tier.
+ * <p>
+ * Every inflation tick goes into the {@link Tier#TICKS} tier. Ticks are averaged into hourly
+ * samples, and hourly samples into daily ones, each written to {@code monkeyland_history.bin}
+ * once its hour or day is over. The downsampled tiers are rebuilt from that file on startup.
+ * Only the inflation task records; aggregates can be read from any thread.
+ */
+public class RateHistory {
+
+    public enum Tier {
+        TICKS("ticks", 168, 0L),
+        HOURLY("24h", 24, 60L * 60 * 1000),
+        DAILY("30d", 30, 24L * 60 * 60 * 1000);
+
+        private final String key;
+        private final int capacity;
+        private final long intervalMillis;
+
+        Tier(String key, int capacity, long intervalMillis) {
+            this.key = key;
+            this.capacity = capacity;
+            this.intervalMillis = intervalMillis;
+        }
+
+        // Name of the window in placeholders and commands
+        public String getKey() {
+            return key;
+        }
+    }
+
+    // Let the archive grow to this many times what the tiers hold before rewriting it
+    private static final int COMPACT_FACTOR = 4;
+
+    // One metric per currency, by id, then the inflation rate; fixed when the history is created
+    private final int metricCount = inflationMetric() + 1;
+
+    private final Logger logger;
+    private final HistoryArchive archive;
+    private final RollingSeries[][] series = new RollingSeries[Tier.values().length][metricCount];
+
+    // Open downsampling buckets, per tier; only touched by the recording thread
+    private final long[] bucketStarts = new long[Tier.values().length];
+    private final int[] bucketCounts = new int[Tier.values().length];
+    private final double[][] bucketSums = new double[Tier.values().length][metricCount];
+
+    public RateHistory(Path dataFolder, Logger logger) {
+        this.logger = logger;
+        this.archive = new HistoryArchive(dataFolder.resolve(HistoryArchive.ARCHIVE_FILE_NAME), metricCount, Tier.values().length);
+        for (Tier tier : Tier.values()) {
+            for (int metric = 0; metric < metricCount; metric++) {
+                series[tier.ordinal()][metric] = new RollingSeries(tier.capacity);
+            }
+        }
+    }
+
+    // Rebuilds the hourly and daily tiers from the archive and opens it for appending
+    public synchronized void load() throws IOException {
+        int records = archive.read((tier, timeMillis, values) -> addSample(tier, timeMillis, values));
+        archive.open();
+
+        // Hours after the last daily sample belong to a day that is still open
+        RollingSeries[] hourly = series[Tier.HOURLY.ordinal()];
+        long lastDaily = series[Tier.DAILY.ordinal()][0].size() == 0 ? Long.MIN_VALUE : series[Tier.DAILY.ordinal()][0].getLatestTime();
+        for (int i = 0; i < hourly[0].size(); i++) {
+            long timeMillis = hourly[0].timeAt(i);
+            if (timeMillis - timeMillis % Tier.DAILY.intervalMillis > lastDaily) {
+                double[] values = new double[metricCount];
+                for (int metric = 0; metric < metricCount; metric++) {
+                    values[metric] = hourly[metric].sampleAt(i);
+                }
+                accumulate(Tier.DAILY, timeMillis, values);
+            }
+        }
+
+        int retained = Tier.HOURLY.capacity + Tier.DAILY.capacity;
+        if (records < 0 || records > COMPACT_FACTOR * retained) {
+            if (records < 0) {
+                logger.warning("History archive was damaged or outdated, rewriting it from what could be read.");
+            }
+            archive.rewrite(retainedSamples());
+        }
+    }
+
+    // Records one inflation tick
+    public synchronized void record(long timeMillis, EconomyState state) {
+        double[] values = new double[metricCount];
+        for (Currency currency : Currency.values()) {
+            values[currency.getId()] = state.getExchangeRate(currency);
+        }
+        values[inflationMetric()] = state.getInflationRate();
+
+        addSample(Tier.TICKS.ordinal(), timeMillis, values);
+        accumulate(Tier.HOURLY, timeMillis, values);
+    }
+
+    // Adds to the open bucket of a tier, closing the previous one once its interval is over
+    private void accumulate(Tier tier, long timeMillis, double[] values) {
+        int index = tier.ordinal();
+        long bucketStart = timeMillis - timeMillis % tier.intervalMillis;
+        if (bucketCounts[index] > 0 && bucketStart != bucketStarts[index]) {
+            double[] averages = new double[metricCount];
+            for (int metric = 0; metric < metricCount; metric++) {
+                averages[metric] = bucketSums[index][metric] / bucketCounts[index];
+            }
+            closeBucket(tier, bucketStarts[index], averages);
+            bucketCounts[index] = 0;
+            bucketSums[index] = new double[metricCount];
+        }
+        bucketStarts[index] = bucketStart;
+        bucketCounts[index]++;
+        for (int metric = 0; metric < metricCount; metric++) {
+            bucketSums[index][metric] += values[metric];
+        }
+    }
+
+    private void closeBucket(Tier tier, long timeMillis, double[] values) {
+        addSample(tier.ordinal(), timeMillis, values);
+        try {
+            archive.append(tier.ordinal(), timeMillis, values);
+        } catch (IOException e) {
+            logger.warning("Failed to write rate history: " + e.getMessage());
+        }
+        if (tier == Tier.HOURLY) {
+            accumulate(Tier.DAILY, timeMillis, values);
+        }
+    }
+
+    private void addSample(int tier, long timeMillis, double[] values) {
+        for (int metric = 0; metric < metricCount; metric++) {
+            series[tier][metric].add(timeMillis, values[metric]);
+        }
+    }
+
+    // Everything the downsampled tiers hold, oldest first per tier
+    private List<HistoryArchive.Sample> retainedSamples() {
+        List<HistoryArchive.Sample> samples = new ArrayList<>();
+        for (Tier tier : new Tier[]{Tier.HOURLY, Tier.DAILY}) {
+            RollingSeries[] tierSeries = series[tier.ordinal()];
+            int size = tierSeries[0].size();
+            for (int i = 0; i < size; i++) {
+                double[] values = new double[metricCount];
+                for (int metric = 0; metric < metricCount; metric++) {
+                    values[metric] = tierSeries[metric].sampleAt(i);
+                }
+                samples.add(new HistoryArchive.Sample(tier.ordinal(), tierSeries[0].timeAt(i), values));
+            }
+        }
+        return samples;
+    }
+
+    // Metric index of the inflation rate; exchange rates use the currency id
+    public static int inflationMetric() {
+        return Currency.count();
+    }
+
+    public RollingSeries.Aggregate getAggregate(int metric, Tier tier) {
+        return series[tier.ordinal()][metric].getAggregate();
+    }
+
+    public RollingSeries.Aggregate getAggregate(Currency currency, Tier tier) {
+        return getAggregate(currency.getId(), tier);
+    }
+
+    public static Tier tierOf(String key) {
+        for (Tier tier : Tier.values()) {
+            if (tier.key.equalsIgnoreCase(key)) {
+                return tier;
+            }
+        }
+        return null;
+    }
+
+    public synchronized void close() throws IOException {
+        archive.close();
+    }
+}
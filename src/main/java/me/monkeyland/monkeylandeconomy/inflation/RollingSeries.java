@@ -0,0 +1,162 @@
+package me.monkeyland.monkeylandeconomy.inflation;
+
+/**
+ * Fixed-size ring buffer of samples with rolling aggregates over its whole contents.
+ * <p>
+ * The sum is kept as samples come and go, and min/max come from monotonic queues of sample
+ * sequence numbers, so adding a sample is amortized O(1). After each add the aggregates are
+ * published as one immutable {@link Aggregate}, which readers on any thread take without
+ * locking. Only one thread may add.
+ */
+public final class RollingSeries {
+
+    /**
+     * Aggregates over the samples in the buffer. Values are NaN while it is empty; the change is
+     * relative, from the oldest sample to the newest, and NaN with fewer than two samples.
+     */
+    public static final class Aggregate {
+        static final Aggregate EMPTY = new Aggregate(0, Double.NaN, Double.NaN, Double.NaN, Double.NaN, Double.NaN);
+
+        private final int count;
+        private final double latest;
+        private final double average;
+        private final double min;
+        private final double max;
+        private final double change;
+
+        Aggregate(int count, double latest, double average, double min, double max, double change) {
+            this.count = count;
+            this.latest = latest;
+            this.average = average;
+            this.min = min;
+            this.max = max;
+            this.change = change;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public double getLatest() {
+            return latest;
+        }
+
+        public double getAverage() {
+            return average;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getChange() {
+            return change;
+        }
+    }
+
+    private final int capacity;
+    private final long[] times;
+    private final double[] values;
+    private long added;
+    private double sum;
+
+    // Monotonic queues of sequence numbers, as ring buffers of the same capacity
+    private final long[] minQueue;
+    private int minHead;
+    private int minSize;
+    private final long[] maxQueue;
+    private int maxHead;
+    private int maxSize;
+
+    private volatile Aggregate aggregate = Aggregate.EMPTY;
+
+    public RollingSeries(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        this.times = new long[this.capacity];
+        this.values = new double[this.capacity];
+        this.minQueue = new long[this.capacity];
+        this.maxQueue = new long[this.capacity];
+    }
+
+    public void add(long timeMillis, double value) {
+        long sequence = added;
+        if (sequence >= capacity) {
+            long evicted = sequence - capacity;
+            sum -= valueAt(evicted);
+            if (minSize > 0 && minQueue[minHead] == evicted) {
+                minHead = (minHead + 1) % capacity;
+                minSize--;
+            }
+            if (maxSize > 0 && maxQueue[maxHead] == evicted) {
+                maxHead = (maxHead + 1) % capacity;
+                maxSize--;
+            }
+        }
+
+        int slot = (int) (sequence % capacity);
+        times[slot] = timeMillis;
+        values[slot] = value;
+        sum += value;
+
+        while (minSize > 0 && valueAt(minQueue[(minHead + minSize - 1) % capacity]) >= value) {
+            minSize--;
+        }
+        minQueue[(minHead + minSize++) % capacity] = sequence;
+        while (maxSize > 0 && valueAt(maxQueue[(maxHead + maxSize - 1) % capacity]) <= value) {
+            maxSize--;
+        }
+        maxQueue[(maxHead + maxSize++) % capacity] = sequence;
+
+        added = sequence + 1;
+        if (slot == capacity - 1) {
+            // Re-sum once per lap so rounding errors from the running sum can't build up
+            sum = 0;
+            for (double v : values) {
+                sum += v;
+            }
+        }
+        publish();
+    }
+
+    private void publish() {
+        int count = size();
+        double oldest = valueAt(added - count);
+        double latest = valueAt(added - 1);
+        double change = count > 1 && oldest != 0 ? (latest - oldest) / oldest : Double.NaN;
+        aggregate = new Aggregate(count, latest, sum / count, valueAt(minQueue[minHead]), valueAt(maxQueue[maxHead]), change);
+    }
+
+    private double valueAt(long sequence) {
+        return values[(int) (sequence % capacity)];
+    }
+
+    // i-th retained sample, oldest first; for the adding thread only
+    double sampleAt(int index) {
+        return valueAt(added - size() + index);
+    }
+
+    long timeAt(int index) {
+        return times[(int) ((added - size() + index) % capacity)];
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    public int size() {
+        return (int) Math.min(added, capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // Time of the newest sample, 0 while empty
+    public long getLatestTime() {
+        return added == 0 ? 0L : times[(int) ((added - 1) % capacity)];
+    }
+}
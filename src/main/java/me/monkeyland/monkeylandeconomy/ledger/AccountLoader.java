@@ -0,0 +1,17 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Reads a single account from persistent storage when it is not resident.
+ */
+@FunctionalInterface
+public interface AccountLoader {
+
+    /**
+     * Returns the stored balances in minor units indexed by currency id, or
+     * null if the account has never been saved.
+     */
+    long[] loadAccount(UUID playerId) throws IOException;
+}
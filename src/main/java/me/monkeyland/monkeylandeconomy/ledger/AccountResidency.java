@@ -0,0 +1,78 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decides which accounts stay in memory. Online players are pinned and never evicted; every
+ * other resident account sits in an access-ordered LRU bounded by {@code maxOfflineAccounts}.
+ */
+final class AccountResidency {
+
+    private final Set<UUID> pinned = ConcurrentHashMap.newKeySet();
+    private final LinkedHashMap<UUID, Boolean> offline = new LinkedHashMap<>(16, 0.75f, true);
+    private volatile int maxOfflineAccounts = Integer.MAX_VALUE;
+
+    void setMaxOfflineAccounts(int maxOfflineAccounts) {
+        // A transfer needs both of its accounts resident at the same time
+        this.maxOfflineAccounts = Math.max(16, maxOfflineAccounts);
+    }
+
+    boolean isPinned(UUID playerId) {
+        return pinned.contains(playerId);
+    }
+
+    // Pinned accounts skip the LRU entirely, which keeps the online hot path lock-free
+    void touch(UUID playerId) {
+        if (!pinned.contains(playerId)) {
+            synchronized (this) {
+                offline.get(playerId);
+            }
+        }
+    }
+
+    void admit(UUID playerId) {
+        if (!pinned.contains(playerId)) {
+            synchronized (this) {
+                offline.put(playerId, Boolean.TRUE);
+            }
+        }
+    }
+
+    void pin(UUID playerId) {
+        pinned.add(playerId);
+        synchronized (this) {
+            offline.remove(playerId);
+        }
+    }
+
+    void unpin(UUID playerId, boolean resident) {
+        if (pinned.remove(playerId) && resident) {
+            synchronized (this) {
+                offline.put(playerId, Boolean.TRUE);
+            }
+        }
+    }
+
+    // Takes the least recently used offline account once the LRU is over capacity
+    synchronized UUID nextVictim() {
+        if (offline.size() <= maxOfflineAccounts) {
+            return null;
+        }
+        Iterator<UUID> iterator = offline.keySet().iterator();
+        UUID victim = iterator.next();
+        iterator.remove();
+        return victim;
+    }
+
+    synchronized int offlineCount() {
+        return offline.size();
+    }
+
+    int pinnedCount() {
+        return pinned.size();
+    }
+}
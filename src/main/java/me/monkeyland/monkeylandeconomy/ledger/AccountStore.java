@@ -0,0 +1,213 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Flat, primitive balance store.
+ * <p>
+ * Each resident account gets a dense slot index; slots of removed accounts are reused. Balances are kept as
+ * fixed-point {@code long} minor units ({@link #SCALE} per whole coin) in pages of
+ * {@link AtomicLongArray}, one cell per currency, indexed by currency id.
+ * Pages are never moved once allocated, so reads and writes on existing accounts do not
+ * allocate and do not need a lock.
+ * <p>
+ * Circulating totals per currency are kept in {@link LongAdder}s that move with every write,
+ * so {@link #circulating(Currency)} is constant-time and never stale. They cover every account,
+ * resident or not: {@link #load} and {@link #remove} move accounts in and out of memory
+ * without touching them, and the baseline for non-resident accounts comes from storage via
+ * {@link #setCirculating}.
+ */
+public final class AccountStore {
+
+    // 6 decimal places, the precision exchange rates are logged with
+    public static final long SCALE = 1_000_000L;
+    public static final int DECIMALS = 6;
+
+    private static final int PAGE_SHIFT = 10;
+    private static final int PAGE_SIZE = 1 << PAGE_SHIFT;
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    private final int currencyCount = Currency.count();
+    private final ConcurrentHashMap<UUID, Integer> slots = new ConcurrentHashMap<>();
+    private final LongAdder[] circulating = new LongAdder[currencyCount];
+
+    private volatile AtomicLongArray[] balancePages = new AtomicLongArray[0];
+    private volatile UUID[][] idPages = new UUID[0][];
+    private volatile int slotCount;
+    private final ArrayDeque<Integer> freeSlots = new ArrayDeque<>();
+
+    public AccountStore() {
+        for (int i = 0; i < currencyCount; i++) {
+            circulating[i] = new LongAdder();
+        }
+    }
+
+    public static long toMinor(double amount) {
+        return Math.round(amount * SCALE);
+    }
+
+    public static double toMajor(long minorUnits) {
+        return (double) minorUnits / SCALE;
+    }
+
+    // Returns -1 for unknown accounts without creating anything
+    public int slotOf(UUID playerId) {
+        Integer slot = slots.get(playerId);
+        return slot == null ? -1 : slot;
+    }
+
+    public int getOrCreateSlot(UUID playerId) {
+        Integer slot = slots.get(playerId);
+        if (slot != null) {
+            return slot;
+        }
+        return load(playerId, null);
+    }
+
+    /**
+     * Makes an account resident with balances read from storage (null for a new account).
+     * The balances are already part of the circulating totals, so they are not counted again.
+     * Returns the existing slot if the account is already resident.
+     */
+    public synchronized int load(UUID playerId, long[] balances) {
+        Integer existing = slots.get(playerId);
+        if (existing != null) {
+            return existing;
+        }
+
+        Integer freeSlot = freeSlots.poll();
+        int slot = freeSlot != null ? freeSlot : slotCount;
+        int page = slot >>> PAGE_SHIFT;
+        if (page >= balancePages.length) {
+            AtomicLongArray[] newBalancePages = Arrays.copyOf(balancePages, page + 1);
+            UUID[][] newIdPages = Arrays.copyOf(idPages, page + 1);
+            newBalancePages[page] = new AtomicLongArray(PAGE_SIZE * currencyCount);
+            newIdPages[page] = new UUID[PAGE_SIZE];
+            idPages = newIdPages;
+            balancePages = newBalancePages;
+        }
+        idPages[page][slot & PAGE_MASK] = playerId;
+        if (balances != null) {
+            AtomicLongArray cells = balancePages[page];
+            int base = (slot & PAGE_MASK) * currencyCount;
+            for (int i = 0; i < currencyCount && i < balances.length; i++) {
+                cells.set(base + i, balances[i]);
+            }
+        }
+
+        // Publish the slot only once its page and balances are in place
+        if (freeSlot == null) {
+            slotCount = slot + 1;
+        }
+        slots.put(playerId, slot);
+        return slot;
+    }
+
+    /**
+     * Drops a resident account from memory and frees its slot. The caller must make sure its
+     * balances are persisted and that nobody is writing to the slot.
+     */
+    public synchronized void remove(UUID playerId) {
+        Integer slot = slots.remove(playerId);
+        if (slot == null) {
+            return;
+        }
+        AtomicLongArray cells = balancePages[slot >>> PAGE_SHIFT];
+        int base = (slot & PAGE_MASK) * currencyCount;
+        for (int i = 0; i < currencyCount; i++) {
+            cells.set(base + i, 0L);
+        }
+        idPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK] = null;
+        freeSlots.push(slot);
+    }
+
+    // Copies all balances of a slot, indexed by currency id
+    public long[] balances(int slot) {
+        long[] balances = new long[currencyCount];
+        AtomicLongArray cells = balancePages[slot >>> PAGE_SHIFT];
+        int base = (slot & PAGE_MASK) * currencyCount;
+        for (int i = 0; i < currencyCount; i++) {
+            balances[i] = cells.get(base + i);
+        }
+        return balances;
+    }
+
+    public long get(int slot, Currency currency) {
+        return balancePages[slot >>> PAGE_SHIFT].get(cell(slot, currency));
+    }
+
+
+    // Returns the new balance
+    public long add(int slot, Currency currency, long delta) {
+        long newBalance = balancePages[slot >>> PAGE_SHIFT].addAndGet(cell(slot, currency), delta);
+        circulating[currency.getId()].add(delta);
+        return newBalance;
+    }
+
+    public void set(int slot, Currency currency, long minorUnits) {
+        long previous = balancePages[slot >>> PAGE_SHIFT].getAndSet(cell(slot, currency), minorUnits);
+        circulating[currency.getId()].add(minorUnits - previous);
+    }
+
+    // Running total of a currency across all accounts
+    public long circulating(Currency currency) {
+        return circulating[currency.getId()].sum();
+    }
+
+    // Sets the starting total, including accounts that are not resident
+    public void setCirculating(Currency currency, long minorUnits) {
+        LongAdder adder = circulating[currency.getId()];
+        adder.reset();
+        adder.add(minorUnits);
+    }
+
+    public UUID idOf(int slot) {
+        return idPages[slot >>> PAGE_SHIFT][slot & PAGE_MASK];
+    }
+
+    // Sums one currency over the resident accounts; a full scan, avoid on the hot path
+    public long total(Currency currency) {
+        long total = 0L;
+        int count = slotCount;
+        for (int slot = 0; slot < count; slot++) {
+            total += get(slot, currency);
+        }
+        return total;
+    }
+
+    /**
+     * Corrects the running total of a currency to a total obtained by a full scan of storage.
+     * Returns the drift that was found (running minus scanned). Only exact when no writes
+     * happen during the scan.
+     */
+    public long reconcile(Currency currency, long scanned) {
+        LongAdder adder = circulating[currency.getId()];
+        long drift = adder.sum() - scanned;
+        if (drift != 0) {
+            adder.add(-drift);
+        }
+        return drift;
+    }
+
+    public Set<UUID> accountIds() {
+        return Collections.unmodifiableSet(slots.keySet());
+    }
+
+    // Number of accounts currently held in memory
+    public int size() {
+        return slots.size();
+    }
+
+    private int cell(int slot, Currency currency) {
+        return (slot & PAGE_MASK) * currencyCount + currency.getId();
+    }
+}
@@ -0,0 +1,182 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Per-currency ranking of every account with a positive balance, resident or not.
+ * <p>
+ * Each currency has a concurrent skip list ordered by balance (descending) and player id, and
+ * every balance change moves one entry in O(log n). The first {@code cachedEntries} positions
+ * are also published as an immutable array, rebuilt lazily on the next read after a change
+ * that could affect them, so reading a top position is constant-time.
+ * <p>
+ * Updates of the same account must not run concurrently; the ledger reports them under the
+ * account's stripe lock. Reads are safe from any thread.
+ */
+public final class BalanceLeaderboard {
+
+    public static final class Entry {
+        private final UUID playerId;
+        private final long balance;
+
+        Entry(UUID playerId, long balance) {
+            this.playerId = playerId;
+            this.balance = balance;
+        }
+
+        public UUID getPlayerId() {
+            return playerId;
+        }
+
+        // Minor units, see AccountStore
+        public long getBalance() {
+            return balance;
+        }
+    }
+
+    private static final Comparator<Entry> ORDER = Comparator.comparingLong((Entry entry) -> entry.balance).reversed()
+            .thenComparing(entry -> entry.playerId);
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    private static final class Board {
+        final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(ORDER);
+        final AtomicInteger size = new AtomicInteger();
+        volatile Entry[] top = NO_ENTRIES;
+        // Changes at or above this balance invalidate the cached top; 0 while it is being rebuilt
+        volatile long threshold;
+        volatile boolean dirty = true;
+    }
+
+    private final int cachedEntries;
+    private final Board[] boards = new Board[Currency.count()];
+    // Balances each account is currently ranked with, to find its old entry
+    private final ConcurrentHashMap<UUID, long[]> ranked = new ConcurrentHashMap<>();
+
+    public BalanceLeaderboard(int cachedEntries) {
+        this.cachedEntries = Math.max(1, cachedEntries);
+        for (int i = 0; i < boards.length; i++) {
+            boards[i] = new Board();
+        }
+    }
+
+    public int getCachedEntries() {
+        return cachedEntries;
+    }
+
+    // Ranks an account as read from storage, e.g. while building the index on startup
+    public void seed(UUID playerId, long[] balances) {
+        for (Currency currency : Currency.values()) {
+            if (currency.getId() < balances.length) {
+                update(playerId, currency, balances[currency.getId()]);
+            }
+        }
+    }
+
+    public void update(UUID playerId, Currency currency, long balance) {
+        int index = currency.getId();
+        long[] balances = ranked.get(playerId);
+        long previous = balances == null ? 0L : balances[index];
+        if (previous == balance) {
+            return;
+        }
+
+        Board board = boards[index];
+        if (previous > 0 && board.entries.remove(new Entry(playerId, previous))) {
+            board.size.decrementAndGet();
+        }
+        if (balance > 0 && board.entries.add(new Entry(playerId, balance))) {
+            board.size.incrementAndGet();
+        }
+
+        if (balances == null) {
+            balances = new long[boards.length];
+            ranked.put(playerId, balances);
+        }
+        balances[index] = balance;
+        if (balance <= 0 && isEmpty(balances)) {
+            ranked.remove(playerId);
+        }
+
+        long threshold = board.threshold;
+        if (previous >= threshold || balance >= threshold) {
+            board.dirty = true;
+        }
+    }
+
+    /**
+     * Entry at a 1-based position within the cached top, or null if the position is empty or
+     * beyond {@link #getCachedEntries()}.
+     */
+    public Entry getTop(Currency currency, int position) {
+        Entry[] top = top(boards[currency.getId()]);
+        return position >= 1 && position <= top.length ? top[position - 1] : null;
+    }
+
+    private Entry[] top(Board board) {
+        if (!board.dirty) {
+            return board.top;
+        }
+        // Anything that changes while the list is copied marks it dirty again
+        board.threshold = 0L;
+        board.dirty = false;
+        List<Entry> entries = new ArrayList<>(cachedEntries);
+        Iterator<Entry> iterator = board.entries.iterator();
+        while (iterator.hasNext() && entries.size() < cachedEntries) {
+            entries.add(iterator.next());
+        }
+        Entry[] top = entries.toArray(NO_ENTRIES);
+        board.top = top;
+        board.threshold = top.length < cachedEntries ? 1L : top[top.length - 1].balance;
+        return top;
+    }
+
+    // Entries from a 0-based offset, highest balance first; walks past the skipped entries
+    public List<Entry> getPage(Currency currency, int offset, int limit) {
+        List<Entry> page = new ArrayList<>(limit);
+        Iterator<Entry> iterator = boards[currency.getId()].entries.iterator();
+        for (int i = 0; i < offset && iterator.hasNext(); i++) {
+            iterator.next();
+        }
+        while (iterator.hasNext() && page.size() < limit) {
+            page.add(iterator.next());
+        }
+        return page;
+    }
+
+    /**
+     * 1-based rank of an account, or 0 if it holds none of the currency. Counts the entries
+     * ahead of it, so the cost grows with the rank; meant for commands, not per-tick reads.
+     */
+    public int getRank(UUID playerId, Currency currency) {
+        long[] balances = ranked.get(playerId);
+        long balance = balances == null ? 0L : balances[currency.getId()];
+        if (balance <= 0) {
+            return 0;
+        }
+        return boards[currency.getId()].entries.headSet(new Entry(playerId, balance)).size() + 1;
+    }
+
+    // Number of accounts holding the currency
+    public int size(Currency currency) {
+        return boards[currency.getId()].size.get();
+    }
+
+    private static boolean isEmpty(long[] balances) {
+        for (long balance : balances) {
+            if (balance > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
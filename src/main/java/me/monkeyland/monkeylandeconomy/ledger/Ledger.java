@@ -0,0 +1,546 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Transactional API over the {@link AccountStore}, safe to call from any thread.
+ * <p>
+ * Accounts are guarded by striped locks chosen by slot. Multi-leg operations take every
+ * stripe they touch in ascending stripe order, so two transfers in opposite directions can
+ * never deadlock. Balance checks and all legs of an operation happen under the same locks.
+ * Plain reads go straight to the store and never lock.
+ * <p>
+ * Accounts are loaded on demand through the {@link AccountLoader}. Online players are pinned;
+ * offline accounts live in a bounded LRU and are evicted under their stripe lock. Evicted
+ * balances are parked in a write-back map and reported to the eviction listener so they get
+ * saved; loads read parked balances first until the save has happened.
+ * <p>
+ * Each currency has a cumulative factor that every balance of it is multiplied by, so interest,
+ * demurrage or a revaluation reaches every account, resident or not, by changing one number.
+ * The store, storage, journal and listener all hold stored values, which the factor never
+ * touches; amounts and balances in this API are converted on the way in and out under the
+ * account's lock. Circulating totals are sums of stored values and convert the same way.
+ * <p>
+ * With a {@link WriteForwarder} set, e.g. on a replication replica, every write goes to it
+ * instead of the local store; reads stay local.
+ */
+public final class Ledger {
+
+    public enum Result {
+        SUCCESS,
+        INVALID_AMOUNT,
+        INSUFFICIENT_FUNDS,
+        EXCEEDS_MAX_SUPPLY,
+        SAME_ACCOUNT,
+        SAME_CURRENCY,
+        // The write had to be forwarded and no answer came back in time
+        UNAVAILABLE
+    }
+
+    /**
+     * Called for every leg while its stripe lock is still held, so per-account events arrive
+     * in the order the balances changed. The delta and new balance are stored values.
+     */
+    @FunctionalInterface
+    public interface BalanceListener {
+        void onBalanceChanged(UUID playerId, Currency currency, long delta, long newBalance);
+    }
+
+    /**
+     * Executes writes somewhere else. Arguments are exactly those of the ledger method of the
+     * same name; the local store only changes through {@link #restore}.
+     */
+    public interface WriteForwarder {
+        Result set(UUID playerId, Currency currency, long balance);
+
+        Result adjust(UUID playerId, Currency currency, long delta);
+
+        Result withdraw(UUID playerId, Currency currency, long amount);
+
+        Result transfer(UUID fromId, UUID toId, Currency currency, long amount);
+
+        Result exchange(UUID playerId, Currency fromCurrency, long fromAmount, Currency toCurrency, long toAmount);
+    }
+
+    private final AccountStore store;
+    private final AccountLoader loader;
+    private final BalanceListener listener;
+    private final AccountResidency residency = new AccountResidency();
+    private final ConcurrentHashMap<UUID, long[]> writeBack = new ConcurrentHashMap<>();
+    private final ReentrantLock[] stripes;
+    private final Object[] loadLocks;
+    private final int stripeMask;
+    private final long[] maxBalances;
+
+    // Replaced as a whole, so an operation sees one consistent set
+    private volatile double[] factors;
+
+    private volatile Consumer<UUID> evictionListener = playerId -> { };
+
+    // Null unless writes are executed elsewhere
+    private volatile WriteForwarder forwarder;
+
+    public Ledger(AccountStore store, AccountLoader loader, BalanceListener listener) {
+        this.store = store;
+        this.loader = loader;
+        this.listener = listener;
+
+        // Power of two, comfortably above the core count
+        int stripeCount = Integer.highestOneBit(Math.max(16, Runtime.getRuntime().availableProcessors() * 8) - 1) << 1;
+        this.stripes = new ReentrantLock[stripeCount];
+        this.loadLocks = new Object[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ReentrantLock();
+            loadLocks[i] = new Object();
+        }
+        this.stripeMask = stripeCount - 1;
+
+        this.maxBalances = new long[Currency.count()];
+        Arrays.fill(maxBalances, Long.MAX_VALUE);
+
+        double[] initialFactors = new double[Currency.count()];
+        Arrays.fill(initialFactors, 1.0);
+        this.factors = initialFactors;
+    }
+
+    public AccountStore getStore() {
+        return store;
+    }
+
+    // Upper bound a single account may hold of the given currency
+    public void setMaxBalance(Currency currency, long minorUnits) {
+        maxBalances[currency.getId()] = minorUnits;
+    }
+
+    /**
+     * Sets the cumulative factor of every currency, indexed by currency id.
+     * Nothing stored is rewritten, so this takes the same time for any number of accounts.
+     */
+    public void setFactors(double[] factors) {
+        this.factors = Arrays.copyOf(factors, Currency.count());
+    }
+
+    public double getFactor(Currency currency) {
+        return factors[currency.getId()];
+    }
+
+    // What a stored value, e.g. a leaderboard entry, is worth under the current factor
+    public long toBalance(Currency currency, long stored) {
+        return toBalance(factors[currency.getId()], stored);
+    }
+
+    // Running total of a currency across all accounts
+    public long circulating(Currency currency) {
+        return toBalance(currency, store.circulating(currency));
+    }
+
+    public void setMaxOfflineAccounts(int maxOfflineAccounts) {
+        residency.setMaxOfflineAccounts(maxOfflineAccounts);
+        evictOverflow();
+    }
+
+    public void setWriteForwarder(WriteForwarder forwarder) {
+        this.forwarder = forwarder;
+    }
+
+    // Called with every evicted account whose parked balances need to be written
+    public void setEvictionListener(Consumer<UUID> evictionListener) {
+        this.evictionListener = evictionListener;
+    }
+
+    // --- Residency ---
+
+    // Loads an account ahead of time, e.g. from the async pre-login event
+    public void prefetch(UUID playerId) {
+        resolveSlot(playerId, false);
+    }
+
+    public void pin(UUID playerId) {
+        residency.pin(playerId);
+    }
+
+    public void unpin(UUID playerId) {
+        residency.unpin(playerId, store.slotOf(playerId) >= 0);
+        evictOverflow();
+    }
+
+    public int getResidentCount() {
+        return store.size();
+    }
+
+    // Parked stored values of an evicted account that has not been written yet, or null
+    public long[] parkedBalances(UUID playerId) {
+        return writeBack.get(playerId);
+    }
+
+    /**
+     * Returns the stored values of an account for persistence: the resident values, or the
+     * parked values of an evicted account that has not been written yet. Null if neither.
+     */
+    public long[] snapshotBalances(UUID playerId) {
+        while (true) {
+            int slot = store.slotOf(playerId);
+            if (slot < 0) {
+                return writeBack.get(playerId);
+            }
+            ReentrantLock lock = stripeOf(slot);
+            lock.lock();
+            try {
+                if (store.slotOf(playerId) == slot) {
+                    return store.balances(slot);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Called once an account is on disk with the parked balances seen before it was written.
+     * If the account was evicted again in the meantime the newer parked balances are kept.
+     */
+    public void markSaved(UUID playerId, long[] parked) {
+        if (parked != null) {
+            writeBack.remove(playerId, parked);
+        }
+    }
+
+    // Returns -1 for accounts that exist neither in memory nor in storage, unless create is set
+    private int resolveSlot(UUID playerId, boolean create) {
+        int slot = store.slotOf(playerId);
+        if (slot >= 0) {
+            residency.touch(playerId);
+            return slot;
+        }
+
+        // Loads and evictions of the same account never overlap, so a load can't read a
+        // stored value that an eviction is about to supersede
+        synchronized (loadLockOf(playerId)) {
+            slot = store.slotOf(playerId);
+            if (slot < 0) {
+                long[] balances = writeBack.get(playerId);
+                if (balances == null) {
+                    try {
+                        balances = loader.loadAccount(playerId);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Failed to load account " + playerId, e);
+                    }
+                }
+                if (balances == null && !create) {
+                    return -1;
+                }
+                slot = store.load(playerId, balances);
+            }
+        }
+
+        residency.admit(playerId);
+        evictOverflow();
+        return slot;
+    }
+
+    // Resolves and locks the stripe of an account, retrying if it was evicted in between
+    private int lockAccount(UUID playerId, boolean create) {
+        while (true) {
+            int slot = resolveSlot(playerId, create);
+            if (slot < 0) {
+                return -1;
+            }
+            ReentrantLock lock = stripeOf(slot);
+            lock.lock();
+            if (store.slotOf(playerId) == slot) {
+                return slot;
+            }
+            lock.unlock();
+        }
+    }
+
+    private void evictOverflow() {
+        UUID victim;
+        while ((victim = residency.nextVictim()) != null) {
+            evict(victim);
+        }
+    }
+
+    private void evict(UUID playerId) {
+        synchronized (loadLockOf(playerId)) {
+            int slot = store.slotOf(playerId);
+            if (slot < 0) {
+                return;
+            }
+            ReentrantLock lock = stripeOf(slot);
+            lock.lock();
+            try {
+                if (residency.isPinned(playerId)) {
+                    return;
+                }
+                writeBack.put(playerId, store.balances(slot));
+                store.remove(playerId);
+            } finally {
+                lock.unlock();
+            }
+        }
+        evictionListener.accept(playerId);
+    }
+
+    // --- Reads ---
+
+    // Unknown players read as zero without creating anything
+    public long getBalance(UUID playerId, Currency currency) {
+        while (true) {
+            int slot = resolveSlot(playerId, false);
+            if (slot < 0) {
+                return 0L;
+            }
+            long stored = store.get(slot, currency);
+            // The slot may have been evicted and reused while reading
+            if (playerId.equals(store.idOf(slot))) {
+                return toBalance(currency, stored);
+            }
+        }
+    }
+
+    /**
+     * Sets a stored value as found in the journal during startup replay or received from a
+     * replication primary. The previous value is loaded first so the circulating total moves
+     * by the right amount. The caller must be the only writer of the account.
+     */
+    public void restore(UUID playerId, Currency currency, long stored) {
+        int slot = lockAccount(playerId, true);
+        try {
+            store.set(slot, currency, stored);
+        } finally {
+            stripeOf(slot).unlock();
+        }
+    }
+
+    // --- Transactions ---
+
+    /**
+     * Replaces a balance, e.g. for admin resets. The change goes through the listener as a
+     * single delta, so the journal and circulating total follow it like any other write.
+     */
+    public Result set(UUID playerId, Currency currency, long balance) {
+        if (balance < 0) {
+            return Result.INVALID_AMOUNT;
+        }
+        if (balance > maxBalances[currency.getId()]) {
+            return Result.EXCEEDS_MAX_SUPPLY;
+        }
+        WriteForwarder remote = forwarder;
+        if (remote != null) {
+            return remote.set(playerId, currency, balance);
+        }
+        double factor = factors[currency.getId()];
+        int slot = lockAccount(playerId, true);
+        try {
+            long stored = store.get(slot, currency);
+            long target = balance == 0 ? 0L : toStored(factor, balance);
+            if (target != stored) {
+                apply(playerId, slot, currency, target - stored);
+            }
+            return Result.SUCCESS;
+        } finally {
+            stripeOf(slot).unlock();
+        }
+    }
+
+    /**
+     * Adds a signed amount without a funds check, the way admin commands and rewards do.
+     * Credits are still capped by the max balance.
+     */
+    public Result adjust(UUID playerId, Currency currency, long delta) {
+        if (delta == Long.MIN_VALUE) {
+            return Result.INVALID_AMOUNT;
+        }
+        WriteForwarder remote = forwarder;
+        if (remote != null) {
+            return remote.adjust(playerId, currency, delta);
+        }
+        double factor = factors[currency.getId()];
+        int slot = lockAccount(playerId, true);
+        try {
+            long stored = store.get(slot, currency);
+            if (delta > 0 && exceedsMax(currency, toBalance(factor, stored), delta)) {
+                return Result.EXCEEDS_MAX_SUPPLY;
+            }
+            apply(playerId, slot, currency, delta >= 0 ? toStored(factor, delta) : -debitToStored(factor, stored, -delta));
+            return Result.SUCCESS;
+        } finally {
+            stripeOf(slot).unlock();
+        }
+    }
+
+    public Result deposit(UUID playerId, Currency currency, long amount) {
+        if (amount <= 0) {
+            return Result.INVALID_AMOUNT;
+        }
+        return adjust(playerId, currency, amount);
+    }
+
+    public Result withdraw(UUID playerId, Currency currency, long amount) {
+        if (amount <= 0) {
+            return Result.INVALID_AMOUNT;
+        }
+        WriteForwarder remote = forwarder;
+        if (remote != null) {
+            return remote.withdraw(playerId, currency, amount);
+        }
+        double factor = factors[currency.getId()];
+        int slot = lockAccount(playerId, false);
+        if (slot < 0) {
+            return Result.INSUFFICIENT_FUNDS;
+        }
+        try {
+            long stored = store.get(slot, currency);
+            if (toBalance(factor, stored) < amount) {
+                return Result.INSUFFICIENT_FUNDS;
+            }
+            apply(playerId, slot, currency, -debitToStored(factor, stored, amount));
+            return Result.SUCCESS;
+        } finally {
+            stripeOf(slot).unlock();
+        }
+    }
+
+    // Moves an amount between two accounts as one atomic step
+    public Result transfer(UUID fromId, UUID toId, Currency currency, long amount) {
+        if (amount <= 0) {
+            return Result.INVALID_AMOUNT;
+        }
+        if (fromId.equals(toId)) {
+            return Result.SAME_ACCOUNT;
+        }
+        WriteForwarder remote = forwarder;
+        if (remote != null) {
+            return remote.transfer(fromId, toId, currency, amount);
+        }
+
+        double factor = factors[currency.getId()];
+        while (true) {
+            int fromSlot = resolveSlot(fromId, false);
+            if (fromSlot < 0) {
+                return Result.INSUFFICIENT_FUNDS;
+            }
+            int toSlot = resolveSlot(toId, true);
+
+            int fromStripe = fromSlot & stripeMask;
+            int toStripe = toSlot & stripeMask;
+            ReentrantLock first = stripes[Math.min(fromStripe, toStripe)];
+            ReentrantLock second = stripes[Math.max(fromStripe, toStripe)];
+
+            first.lock();
+            if (second != first) {
+                second.lock();
+            }
+            try {
+                // Either account may have been evicted before the locks were taken
+                if (store.slotOf(fromId) != fromSlot || store.slotOf(toId) != toSlot) {
+                    continue;
+                }
+                long fromStored = store.get(fromSlot, currency);
+                if (toBalance(factor, fromStored) < amount) {
+                    return Result.INSUFFICIENT_FUNDS;
+                }
+                if (exceedsMax(currency, toBalance(factor, store.get(toSlot, currency)), amount)) {
+                    return Result.EXCEEDS_MAX_SUPPLY;
+                }
+                // Both legs move the same stored value, so the circulating total is unchanged
+                long stored = debitToStored(factor, fromStored, amount);
+                apply(fromId, fromSlot, currency, -stored);
+                apply(toId, toSlot, currency, stored);
+                return Result.SUCCESS;
+            } finally {
+                if (second != first) {
+                    second.unlock();
+                }
+                first.unlock();
+            }
+        }
+    }
+
+    // Swaps one currency for another within a single account as one atomic step
+    public Result exchange(UUID playerId, Currency fromCurrency, long fromAmount, Currency toCurrency, long toAmount) {
+        if (fromAmount <= 0 || toAmount < 0) {
+            return Result.INVALID_AMOUNT;
+        }
+        if (fromCurrency == toCurrency) {
+            return Result.SAME_CURRENCY;
+        }
+        WriteForwarder remote = forwarder;
+        if (remote != null) {
+            return remote.exchange(playerId, fromCurrency, fromAmount, toCurrency, toAmount);
+        }
+        double[] current = factors;
+        double fromFactor = current[fromCurrency.getId()];
+        double toFactor = current[toCurrency.getId()];
+        int slot = lockAccount(playerId, false);
+        if (slot < 0) {
+            return Result.INSUFFICIENT_FUNDS;
+        }
+        try {
+            long fromStored = store.get(slot, fromCurrency);
+            if (toBalance(fromFactor, fromStored) < fromAmount) {
+                return Result.INSUFFICIENT_FUNDS;
+            }
+            if (exceedsMax(toCurrency, toBalance(toFactor, store.get(slot, toCurrency)), toAmount)) {
+                return Result.EXCEEDS_MAX_SUPPLY;
+            }
+            apply(playerId, slot, fromCurrency, -debitToStored(fromFactor, fromStored, fromAmount));
+            apply(playerId, slot, toCurrency, toStored(toFactor, toAmount));
+            return Result.SUCCESS;
+        } finally {
+            stripeOf(slot).unlock();
+        }
+    }
+
+    // Whether a credit would take a balance past the cap; a sum could overflow for huge amounts
+    private boolean exceedsMax(Currency currency, long balance, long amount) {
+        long headroom = maxBalances[currency.getId()] - balance;
+        if (balance < 0 && headroom < 0) {
+            // More room than any long holds
+            return false;
+        }
+        return amount > headroom;
+    }
+
+    // An unchanged factor is the common case and costs nothing
+    private static long toBalance(double factor, long stored) {
+        return factor == 1.0 ? stored : Math.round(stored * factor);
+    }
+
+    private static long toStored(double factor, long amount) {
+        return factor == 1.0 ? amount : Math.round(amount / factor);
+    }
+
+    // Rounds like toStored, except that taking a whole balance always leaves exactly zero
+    private static long debitToStored(double factor, long stored, long amount) {
+        if (factor == 1.0 || amount != Math.round(stored * factor)) {
+            return toStored(factor, amount);
+        }
+        return stored;
+    }
+
+    // Caller holds the stripe lock of the slot; the delta is a stored value
+    private void apply(UUID playerId, int slot, Currency currency, long delta) {
+        long newBalance = store.add(slot, currency, delta);
+        if (listener != null) {
+            listener.onBalanceChanged(playerId, currency, delta, newBalance);
+        }
+    }
+
+    private ReentrantLock stripeOf(int slot) {
+        return stripes[slot & stripeMask];
+    }
+
+    private Object loadLockOf(UUID playerId) {
+        return loadLocks[playerId.hashCode() & stripeMask];
+    }
+}
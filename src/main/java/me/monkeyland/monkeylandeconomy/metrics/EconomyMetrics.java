@@ -0,0 +1,148 @@
+package me.monkeyland.monkeylandeconomy.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+/**
+ * Operational metrics of the plugin: latency timers, counters and gauges.
+ * <p>
+ * Timers and counters are fixed enums backed by a {@link LatencyHistogram} or a
+ * {@link LongAdder}, so recording is a couple of uncontended atomic adds and never locks.
+ * Gauges are read from their supplier only when the metrics are looked at.
+ */
+public final class EconomyMetrics {
+
+    public enum Timer {
+        SAVE("save", "Time to write changed accounts and economy state to storage."),
+        INFLATION_TICK("inflation_tick", "Time of one inflation and exchange rate adjustment."),
+        COMMAND("command", "Time to handle a /monkeyland command on the main thread."),
+        PLACEHOLDER("placeholder", "Time to resolve one PlaceholderAPI request."),
+        BULK_SLICE("bulk_slice", "Time a bulk job spent on the main thread in one tick.");
+
+        private final String key;
+        private final String help;
+
+        Timer(String key, String help) {
+            this.key = key;
+            this.help = help;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+    }
+
+    public enum Counter {
+        BALANCE_CHANGES("balance_changes_total", "Balance changes applied to accounts."),
+        ACCOUNTS_SAVED("accounts_saved_total", "Accounts written to storage."),
+        SAVE_FAILURES("save_failures_total", "Saves that failed and were retried later."),
+        BULK_JOBS_FINISHED("bulk_jobs_finished_total", "Bulk jobs that ran to completion."),
+        REWARDS_LIMITED("rewards_limited_total", "Block rewards refused by the per-player rate limit.");
+
+        private final String key;
+        private final String help;
+
+        Counter(String key, String help) {
+            this.key = key;
+            this.help = help;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+    }
+
+    public static final class Gauge {
+        private final String key;
+        private final String label;
+        private final String help;
+        private final DoubleSupplier supplier;
+
+        Gauge(String key, String label, String help, DoubleSupplier supplier) {
+            this.key = key;
+            this.label = label;
+            this.help = help;
+            this.supplier = supplier;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        // Label of a gauge that exists once per currency etc., e.g. currency="gold"; null if none
+        public String getLabel() {
+            return label;
+        }
+
+        public String getHelp() {
+            return help;
+        }
+
+        public double getValue() {
+            return supplier.getAsDouble();
+        }
+    }
+
+    private final LatencyHistogram[] timers = new LatencyHistogram[Timer.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final List<Gauge> gauges = new CopyOnWriteArrayList<>();
+
+    public EconomyMetrics() {
+        for (Timer timer : Timer.values()) {
+            timers[timer.ordinal()] = new LatencyHistogram();
+        }
+        for (Counter counter : Counter.values()) {
+            counters[counter.ordinal()] = new LongAdder();
+        }
+    }
+
+    // Start of a timed section, to be passed to record
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    public void record(Timer timer, long start) {
+        timers[timer.ordinal()].record(System.nanoTime() - start);
+    }
+
+    public void increment(Counter counter) {
+        counters[counter.ordinal()].increment();
+    }
+
+    public void add(Counter counter, long amount) {
+        counters[counter.ordinal()].add(amount);
+    }
+
+    public void registerGauge(String key, String help, DoubleSupplier supplier) {
+        gauges.add(new Gauge(key, null, help, supplier));
+    }
+
+    // Gauges sharing a key must be registered one after another
+    public void registerGauge(String key, String label, String help, DoubleSupplier supplier) {
+        gauges.add(new Gauge(key, label, help, supplier));
+    }
+
+    public LatencyHistogram getTimer(Timer timer) {
+        return timers[timer.ordinal()];
+    }
+
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    public List<Gauge> getGauges() {
+        return Collections.unmodifiableList(new ArrayList<>(gauges));
+    }
+}
@@ -0,0 +1,133 @@
+package me.monkeyland.monkeylandeconomy.metrics;
+
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Publishes {@link EconomyMetrics} in the Prometheus text format.
+ * <p>
+ * Two ways out, both optional: a file rewritten atomically on every {@link #writeFile()} call,
+ * for the node exporter's textfile collector, and a small HTTP endpoint at {@code /metrics}
+ * served by the JDK's built-in server on a single daemon thread. Timers are exported as
+ * summaries in seconds with p50 and p99, plus the maximum as a separate gauge.
+ */
+public final class PrometheusExporter implements Closeable {
+
+    public static final String METRICS_FILE_NAME = "metrics.prom";
+
+    private static final String PREFIX = "monkeyland_";
+    private static final double[] QUANTILES = {0.5, 0.99};
+
+    private final EconomyMetrics metrics;
+    private final Path file;
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+
+    // file may be null when only the HTTP endpoint is used
+    public PrometheusExporter(EconomyMetrics metrics, Path file) {
+        this.metrics = metrics;
+        this.file = file;
+    }
+
+    public void startHttp(String host, int port) throws IOException {
+        HttpServer httpServer = HttpServer.create(new InetSocketAddress(host, port), 0);
+        httpServer.createContext("/metrics", exchange -> {
+            byte[] body = format().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        serverExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MonkeylandEconomy-Metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        httpServer.setExecutor(serverExecutor);
+        httpServer.start();
+        server = httpServer;
+    }
+
+    // Replaces the metrics file in one move so a scrape never reads half of it
+    public void writeFile() throws IOException {
+        if (file == null) {
+            return;
+        }
+        Path tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.write(tempFile, format().getBytes(StandardCharsets.UTF_8));
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public String format() {
+        StringBuilder out = new StringBuilder(2048);
+        for (EconomyMetrics.Timer timer : EconomyMetrics.Timer.values()) {
+            LatencyHistogram histogram = metrics.getTimer(timer);
+            String name = PREFIX + timer.getKey() + "_seconds";
+            header(out, name, timer.getHelp(), "summary");
+            for (double quantile : QUANTILES) {
+                out.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(seconds(histogram.getPercentile(quantile * 100))).append('\n');
+            }
+            out.append(name).append("_sum ").append(seconds(histogram.getSum())).append('\n');
+            out.append(name).append("_count ").append(histogram.getCount()).append('\n');
+            header(out, name + "_max", "Longest " + timer.getKey() + " since the server started.", "gauge");
+            out.append(name).append("_max ").append(seconds(histogram.getMax())).append('\n');
+        }
+        for (EconomyMetrics.Counter counter : EconomyMetrics.Counter.values()) {
+            String name = PREFIX + counter.getKey();
+            header(out, name, counter.getHelp(), "counter");
+            out.append(name).append(' ').append(metrics.getCount(counter)).append('\n');
+        }
+        String previousKey = null;
+        for (EconomyMetrics.Gauge gauge : metrics.getGauges()) {
+            String name = PREFIX + gauge.getKey();
+            if (!gauge.getKey().equals(previousKey)) {
+                header(out, name, gauge.getHelp(), "gauge");
+                previousKey = gauge.getKey();
+            }
+            out.append(name);
+            if (gauge.getLabel() != null) {
+                out.append('{').append(gauge.getLabel()).append('}');
+            }
+            out.append(' ').append(number(gauge.getValue())).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return number(nanos / 1e9);
+    }
+
+    private static String number(double value) {
+        if (Double.isNaN(value)) {
+            return "NaN";
+        }
+        return String.format(Locale.ROOT, "%.9g", value);
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+            serverExecutor.shutdownNow();
+        }
+    }
+}
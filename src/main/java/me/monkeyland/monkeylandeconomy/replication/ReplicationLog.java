@@ -0,0 +1,150 @@
+package me.monkeyland.monkeylandeconomy.replication;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.util.UUID;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded backlog of sequenced balance changes on the primary.
+ * <p>
+ * A ring of primitive arrays: each record is the account, currency and resulting stored
+ * balance, so applying any suffix of the log in order converges on the primary's balances
+ * just like a journal replay. Replicas that reconnect within the backlog catch up from their
+ * last sequence; anything older needs a snapshot.
+ */
+final class ReplicationLog {
+
+    private final int mask;
+    private final long[] mostBits;
+    private final long[] leastBits;
+    private final byte[] currencies;
+    private final long[] balances;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private long lastSequence;
+    private long wakeups;
+
+    ReplicationLog(int capacity) {
+        // Power of two so a sequence maps to its slot with a mask
+        int size = Integer.highestOneBit(Math.max(1024, capacity) - 1) << 1;
+        this.mask = size - 1;
+        this.mostBits = new long[size];
+        this.leastBits = new long[size];
+        this.currencies = new byte[size];
+        this.balances = new long[size];
+    }
+
+    long append(UUID playerId, Currency currency, long balance) {
+        lock.lock();
+        try {
+            long sequence = ++lastSequence;
+            int slot = (int) sequence & mask;
+            mostBits[slot] = playerId.getMostSignificantBits();
+            leastBits[slot] = playerId.getLeastSignificantBits();
+            currencies[slot] = (byte) currency.getId();
+            balances[slot] = balance;
+            appended.signalAll();
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long lastSequence() {
+        lock.lock();
+        try {
+            return lastSequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Whether every record after the given sequence is still held
+    boolean covers(long after) {
+        lock.lock();
+        try {
+            return after <= lastSequence && lastSequence - after <= mask + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Copies up to {@code batch.capacity()} records following {@code after} into the batch.
+     * Returns false if some of them have already been overwritten.
+     */
+    boolean read(long after, Batch batch) {
+        lock.lock();
+        try {
+            if (lastSequence - after > mask + 1) {
+                return false;
+            }
+            int count = (int) Math.min(batch.capacity(), lastSequence - after);
+            for (int i = 0; i < count; i++) {
+                int slot = (int) (after + 1 + i) & mask;
+                batch.mostBits[i] = mostBits[slot];
+                batch.leastBits[i] = leastBits[slot];
+                batch.currencies[i] = currencies[slot];
+                batch.balances[i] = balances[slot];
+            }
+            batch.first = after + 1;
+            batch.count = count;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Waits until there is a record after the given sequence, or until woken; false if there is none
+    boolean awaitAfter(long after, long timeoutNanos) throws InterruptedException {
+        lock.lock();
+        try {
+            long remaining = timeoutNanos;
+            long woken = wakeups;
+            while (lastSequence <= after && wakeups == woken) {
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = appended.awaitNanos(remaining);
+            }
+            return lastSequence > after;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Ends every current wait early, e.g. to send a batch without waiting for it to fill
+    void wake() {
+        lock.lock();
+        try {
+            wakeups++;
+            appended.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Reused per connection, so streaming allocates nothing per record
+    static final class Batch {
+        final long[] mostBits;
+        final long[] leastBits;
+        final byte[] currencies;
+        final long[] balances;
+        long first;
+        int count;
+
+        Batch(int capacity) {
+            this.mostBits = new long[capacity];
+            this.leastBits = new long[capacity];
+            this.currencies = new byte[capacity];
+            this.balances = new long[capacity];
+        }
+
+        int capacity() {
+            return balances.length;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package me.monkeyland.monkeylandeconomy.replication;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.storage.AccountVisitor;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Logger;
+
+/**
+ * The authoritative node of a replicated economy.
+ * <p>
+ * Every balance change on this node is published into a {@link ReplicationLog} and streamed
+ * to each connected replica by a sender thread per connection, in batches of up to
+ * {@code batchMaxRecords}, waiting up to {@code batchDelayMillis} for a batch to fill. The
+ * economy state is sent whenever it has been replaced. Replicas acknowledge what they applied
+ * and send their writes here; writes run on this node's ledger and are answered with the
+ * sequence the replica has to reach before the change is visible locally.
+ * <p>
+ * A replica that reconnects with a sequence still in the backlog, from this node's current
+ * epoch, only receives what it missed. Otherwise it gets a snapshot of every account first.
+ * The epoch is random per start, since sequences restart with the process.
+ */
+public final class ReplicationPrimary implements Closeable {
+
+    // Every stored account, current to at least the moment it is called
+    @FunctionalInterface
+    public interface SnapshotSource {
+        void forEachAccount(AccountVisitor visitor) throws IOException;
+    }
+
+    private final Ledger ledger;
+    private final Supplier<EconomyState> state;
+    private final SnapshotSource snapshotSource;
+    private final String host;
+    private final int port;
+    private final int batchMaxRecords;
+    private final long batchDelayNanos;
+    private final Logger logger;
+
+    private final ReplicationLog log;
+    private final long epoch = ThreadLocalRandom.current().nextLong();
+    private final CopyOnWriteArrayList<Connection> connections = new CopyOnWriteArrayList<>();
+
+    private ServerSocket serverSocket;
+    private volatile boolean running;
+
+    public ReplicationPrimary(Ledger ledger, Supplier<EconomyState> state, SnapshotSource snapshotSource, String host, int port,
+                              int backlogRecords, int batchMaxRecords, long batchDelayMillis, Logger logger) {
+        this.ledger = ledger;
+        this.state = state;
+        this.snapshotSource = snapshotSource;
+        this.host = host;
+        this.port = port;
+        this.batchMaxRecords = Math.max(1, batchMaxRecords);
+        this.batchDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0L, batchDelayMillis));
+        this.logger = logger;
+        this.log = new ReplicationLog(backlogRecords);
+    }
+
+    public void start() throws IOException {
+        serverSocket = new ServerSocket();
+        serverSocket.bind(new InetSocketAddress(host, port));
+        running = true;
+        Thread acceptor = new Thread(this::acceptLoop, "MonkeylandEconomy-ReplicationPrimary");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // Port actually bound, e.g. when started on port 0
+    public int getLocalPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Publishes a stored balance after it changed. Must be called from the ledger's balance
+     * listener, under the account's lock, so records of one account are in ledger order.
+     */
+    public void publish(UUID playerId, Currency currency, long stored) {
+        log.append(playerId, currency, stored);
+    }
+
+    public long getLastSequence() {
+        return log.lastSequence();
+    }
+
+    public int getReplicaCount() {
+        return connections.size();
+    }
+
+    // Records the slowest connected replica has not acknowledged yet
+    public long getMaxLag() {
+        long last = log.lastSequence();
+        long lag = 0;
+        for (Connection connection : connections) {
+            lag = Math.max(lag, last - connection.acknowledged);
+        }
+        return lag;
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(ReplicationProtocol.READ_TIMEOUT_MILLIS);
+                Connection connection = new Connection(socket);
+                Thread reader = new Thread(connection::readLoop, "MonkeylandEconomy-Replica-" + socket.getRemoteSocketAddress());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Failed to accept replica: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        for (Connection connection : connections) {
+            connection.close();
+        }
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final String name;
+        private DataOutputStream out;
+        private volatile long acknowledged;
+        private volatile boolean open = true;
+        // Set when a forwarded write is waiting for its records, so the next batch goes out at once
+        private volatile boolean flushNow;
+
+        Connection(Socket socket) {
+            this.socket = socket;
+            this.name = String.valueOf(socket.getRemoteSocketAddress());
+        }
+
+        // Handshake, then acknowledgements and forwarded writes until the replica goes away
+        void readLoop() {
+            try {
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                if (in.readByte() != ReplicationProtocol.HELLO || in.readInt() != ReplicationProtocol.MAGIC) {
+                    throw new IOException("not a MonkeylandEconomy replica");
+                }
+                int version = in.readInt();
+                if (version != ReplicationProtocol.VERSION) {
+                    throw new IOException("unsupported protocol version " + version);
+                }
+                long replicaEpoch = in.readLong();
+                long lastSequence = in.readLong();
+                boolean catchUp = replicaEpoch == epoch && log.covers(lastSequence);
+                acknowledged = catchUp ? lastSequence : log.lastSequence();
+
+                connections.add(this);
+                Thread sender = new Thread(() -> sendLoop(catchUp ? lastSequence : -1), "MonkeylandEconomy-ReplicaSender-" + name);
+                sender.setDaemon(true);
+                sender.start();
+                logger.info("Replica " + name + " connected, " + (catchUp ? "catching up from sequence " + lastSequence : "sending a snapshot") + ".");
+
+                while (open) {
+                    byte type = in.readByte();
+                    if (type == ReplicationProtocol.ACK) {
+                        acknowledged = in.readLong();
+                    } else if (type == ReplicationProtocol.WRITE) {
+                        handleWrite(in);
+                    } else {
+                        throw new IOException("unexpected message " + type);
+                    }
+                }
+            } catch (EOFException e) {
+                if (open && running) {
+                    logger.info("Replica " + name + " disconnected.");
+                }
+            } catch (IOException e) {
+                if (open && running) {
+                    logger.warning("Replica " + name + " disconnected: " + e.getMessage());
+                }
+            } finally {
+                close();
+            }
+        }
+
+        private void handleWrite(DataInputStream in) throws IOException {
+            long requestId = in.readLong();
+            byte op = in.readByte();
+            UUID playerId = ReplicationProtocol.readUuid(in);
+            UUID otherId = ReplicationProtocol.readUuid(in);
+            Currency currency = ReplicationProtocol.readCurrency(in);
+            Currency otherCurrency = ReplicationProtocol.readCurrency(in);
+            long amount = in.readLong();
+            long otherAmount = in.readLong();
+
+            Ledger.Result result;
+            switch (op) {
+                case ReplicationProtocol.OP_SET:
+                    result = ledger.set(playerId, currency, amount);
+                    break;
+                case ReplicationProtocol.OP_ADJUST:
+                    result = ledger.adjust(playerId, currency, amount);
+                    break;
+                case ReplicationProtocol.OP_WITHDRAW:
+                    result = ledger.withdraw(playerId, currency, amount);
+                    break;
+                case ReplicationProtocol.OP_TRANSFER:
+                    result = ledger.transfer(playerId, otherId, currency, amount);
+                    break;
+                case ReplicationProtocol.OP_EXCHANGE:
+                    result = ledger.exchange(playerId, currency, amount, otherCurrency, otherAmount);
+                    break;
+                default:
+                    throw new IOException("unknown write operation " + op);
+            }
+            // Covers the write's own records, which were published before the ledger returned
+            long sequence = log.lastSequence();
+            flushNow = true;
+            log.wake();
+            synchronized (this) {
+                out.writeByte(ReplicationProtocol.RESULT);
+                out.writeLong(requestId);
+                out.writeByte(result.ordinal());
+                out.writeLong(sequence);
+                out.flush();
+            }
+        }
+
+        // Snapshot if needed, then every record after the given sequence as it is published
+        private void sendLoop(long after) {
+            ReplicationLog.Batch batch = new ReplicationLog.Batch(batchMaxRecords);
+            EconomyState sentState = null;
+            try {
+                if (after < 0) {
+                    after = sendSnapshot();
+                } else {
+                    synchronized (this) {
+                        out.writeByte(ReplicationProtocol.WELCOME);
+                        out.writeLong(epoch);
+                        out.writeBoolean(false);
+                    }
+                }
+
+                while (open) {
+                    EconomyState current = state.get();
+                    if (current != sentState) {
+                        synchronized (this) {
+                            ReplicationProtocol.writeState(out, current);
+                        }
+                        sentState = current;
+                    }
+
+                    if (log.awaitAfter(after, TimeUnit.MILLISECONDS.toNanos(ReplicationProtocol.HEARTBEAT_MILLIS))) {
+                        // Give a small batch a moment to fill, unless the replica is waiting for it
+                        long lingerUntil = System.nanoTime() + batchDelayNanos;
+                        long remaining = batchDelayNanos;
+                        while (!flushNow && remaining > 0 && log.lastSequence() - after < batchMaxRecords) {
+                            log.awaitAfter(after + batchMaxRecords - 1, remaining);
+                            remaining = lingerUntil - System.nanoTime();
+                        }
+                    }
+                    flushNow = false;
+                    if (!log.read(after, batch)) {
+                        throw new IOException("fell behind the replication backlog");
+                    }
+                    synchronized (this) {
+                        out.writeByte(ReplicationProtocol.DELTAS);
+                        out.writeInt(batch.count);
+                        for (int i = 0; i < batch.count; i++) {
+                            out.writeLong(batch.first + i);
+                            out.writeLong(batch.mostBits[i]);
+                            out.writeLong(batch.leastBits[i]);
+                            out.writeByte(batch.currencies[i]);
+                            out.writeLong(batch.balances[i]);
+                        }
+                        out.flush();
+                    }
+                    after += batch.count;
+                }
+            } catch (IOException e) {
+                if (open && running) {
+                    logger.warning("Stopped streaming to replica " + name + ": " + e.getMessage());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                close();
+            }
+        }
+
+        /**
+         * Sends the state and every account, then the sequence the snapshot is current to.
+         * Records published while it runs are sent afterwards; they hold absolute balances,
+         * so replaying one the snapshot already reflects changes nothing.
+         */
+        private long sendSnapshot() throws IOException {
+            long sequence = log.lastSequence();
+            synchronized (this) {
+                out.writeByte(ReplicationProtocol.WELCOME);
+                out.writeLong(epoch);
+                out.writeBoolean(true);
+                ReplicationProtocol.writeState(out, state.get());
+            }
+            int[] accounts = new int[1];
+            snapshotSource.forEachAccount((playerId, balances) -> {
+                synchronized (this) {
+                    out.writeByte(ReplicationProtocol.ACCOUNT);
+                    ReplicationProtocol.writeUuid(out, playerId);
+                    out.writeByte(Currency.count());
+                    for (Currency currency : Currency.values()) {
+                        out.writeLong(currency.getId() < balances.length ? balances[currency.getId()] : 0L);
+                    }
+                }
+                accounts[0]++;
+            });
+            synchronized (this) {
+                out.writeByte(ReplicationProtocol.SNAPSHOT_END);
+                out.writeLong(sequence);
+                out.flush();
+            }
+            logger.info("Sent a snapshot of " + accounts[0] + " accounts to replica " + name + ".");
+            return sequence;
+        }
+
+        void close() {
+            open = false;
+            connections.remove(this);
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // Already gone
+            }
+        }
+    }
+}
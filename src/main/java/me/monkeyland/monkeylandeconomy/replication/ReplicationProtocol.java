@@ -0,0 +1,113 @@
+package me.monkeyland.monkeylandeconomy.replication;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Wire format between a primary and its replicas.
+ * <p>
+ * Every message is a type byte followed by a fixed payload; both ends use buffered data
+ * streams and flush once per batch. Balances on the wire are the ledger's stored values, so
+ * they mean the same on every node as long as the state, and with it the inflation factors,
+ * has been replicated too.
+ * <pre>
+ * HELLO         replica  magic, version, epoch, lastSequence
+ * WELCOME       primary  epoch, snapshot flag
+ * STATE         primary  economy parameters, inflationFactors[n], exchangeRates[n]
+ * ACCOUNT       primary  uuid, balances[n]                      (snapshot only)
+ * SNAPSHOT_END  primary  sequence the snapshot is current to
+ * DELTAS        primary  count, count x (sequence, uuid, currency, balance); 0 is a heartbeat
+ * ACK           replica  last applied sequence
+ * WRITE         replica  requestId, op, uuid, uuid, currency, currency, amount, amount
+ * RESULT        primary  requestId, result, sequence after the write
+ * </pre>
+ */
+final class ReplicationProtocol {
+
+    static final int MAGIC = 0x4D4C5231; // "MLR1"
+    static final int VERSION = 1;
+
+    static final byte HELLO = 1;
+    static final byte WELCOME = 2;
+    static final byte STATE = 3;
+    static final byte ACCOUNT = 4;
+    static final byte SNAPSHOT_END = 5;
+    static final byte DELTAS = 6;
+    static final byte ACK = 7;
+    static final byte WRITE = 8;
+    static final byte RESULT = 9;
+
+    // Write operations, mirroring Ledger.WriteForwarder
+    static final byte OP_SET = 1;
+    static final byte OP_ADJUST = 2;
+    static final byte OP_WITHDRAW = 3;
+    static final byte OP_TRANSFER = 4;
+    static final byte OP_EXCHANGE = 5;
+
+    // Heartbeats keep idle connections verifiably alive; a peer silent for longer is dropped
+    static final int HEARTBEAT_MILLIS = 1000;
+    static final int READ_TIMEOUT_MILLIS = 10 * HEARTBEAT_MILLIS;
+
+    private ReplicationProtocol() {
+    }
+
+    static void writeUuid(DataOutputStream out, UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    static Currency readCurrency(DataInputStream in) throws IOException {
+        int id = in.readUnsignedByte();
+        if (id >= Currency.count()) {
+            throw new IOException("Unknown currency " + id);
+        }
+        return Currency.byId(id);
+    }
+
+    static void writeState(DataOutputStream out, EconomyState state) throws IOException {
+        out.writeByte(STATE);
+        out.writeDouble(state.getMaxGoldSupply());
+        out.writeDouble(state.getStartingInflationRate());
+        out.writeDouble(state.getTargetInflationRate());
+        out.writeDouble(state.getInflationCurveFactor());
+        out.writeDouble(state.getInflationRate());
+        out.writeByte(Currency.count());
+        for (Currency currency : Currency.values()) {
+            out.writeDouble(state.getInflationFactor(currency));
+        }
+        for (Currency currency : Currency.values()) {
+            out.writeDouble(state.getExchangeRate(currency));
+        }
+    }
+
+    static EconomyState readState(DataInputStream in) throws IOException {
+        double maxGoldSupply = in.readDouble();
+        double startingInflationRate = in.readDouble();
+        double targetInflationRate = in.readDouble();
+        double inflationCurveFactor = in.readDouble();
+        double inflationRate = in.readDouble();
+        int count = in.readUnsignedByte();
+        if (count != Currency.count()) {
+            throw new IOException("Primary has " + count + " currencies, this node " + Currency.count());
+        }
+        double[] inflationFactors = new double[count];
+        for (int i = 0; i < count; i++) {
+            inflationFactors[i] = in.readDouble();
+        }
+        double[] exchangeRates = new double[count];
+        for (int i = 0; i < count; i++) {
+            exchangeRates[i] = in.readDouble();
+        }
+        return new EconomyState(maxGoldSupply, startingInflationRate, targetInflationRate, inflationCurveFactor,
+                inflationRate, inflationFactors, exchangeRates);
+    }
+}
@@ -0,0 +1,370 @@
+package me.monkeyland.monkeylandeconomy.replication;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A node that mirrors a {@link ReplicationPrimary}.
+ * <p>
+ * A single thread keeps a connection to the primary, reconnecting with backoff, and applies
+ * the records it receives in sequence order through the {@link Applier}. Reads never leave
+ * this node. As the ledger's {@link Ledger.WriteForwarder} it sends every write to the
+ * primary and blocks until the answer arrives and the write's own records have been applied
+ * here, so a caller sees its change right after the call returns.
+ * <p>
+ * A write that gets no answer within {@code writeTimeoutMillis}, or is cut off by a lost
+ * connection, returns {@link Ledger.Result#UNAVAILABLE}; it may still have happened on the
+ * primary, in which case the change arrives with the stream like any other.
+ */
+public final class ReplicationReplica implements Ledger.WriteForwarder, Closeable {
+
+    private static final long MIN_RECONNECT_MILLIS = 500;
+    private static final long MAX_RECONNECT_MILLIS = 30_000;
+
+    // Called on the replication thread only, one record at a time
+    public interface Applier {
+        void applyBalance(UUID playerId, Currency currency, long stored);
+
+        void applyState(EconomyState state);
+    }
+
+    private static final class Answer {
+        final Ledger.Result result;
+        final long sequence;
+
+        Answer(Ledger.Result result, long sequence) {
+            this.result = result;
+            this.sequence = sequence;
+        }
+    }
+
+    private final Applier applier;
+    private final String host;
+    private final int port;
+    private final long writeTimeoutNanos;
+    private final Logger logger;
+
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final ConcurrentHashMap<Long, CompletableFuture<Answer>> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock appliedLock = new ReentrantLock();
+    private final Condition advanced = appliedLock.newCondition();
+
+    // Epoch and sequence of the last applied record, kept across reconnects for catch-up
+    private long epoch;
+    private long appliedSequence;
+
+    private volatile Socket socket;
+    private volatile DataOutputStream out;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private Thread thread;
+
+    public ReplicationReplica(Applier applier, String host, int port, long writeTimeoutMillis, Logger logger) {
+        this.applier = applier;
+        this.host = host;
+        this.port = port;
+        this.writeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(1L, writeTimeoutMillis));
+        this.logger = logger;
+    }
+
+    public void start() {
+        running = true;
+        thread = new Thread(this::connectLoop, "MonkeylandEconomy-ReplicationReplica");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    // True once the stream is current enough to serve writes
+    public boolean isConnected() {
+        return connected;
+    }
+
+    public long getAppliedSequence() {
+        appliedLock.lock();
+        try {
+            return appliedSequence;
+        } finally {
+            appliedLock.unlock();
+        }
+    }
+
+    /**
+     * Drops the current connection. The replica reconnects and, if the primary still holds
+     * the records it missed, catches up from its last applied sequence.
+     */
+    public void reconnect() throws IOException {
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+    }
+
+    private void connectLoop() {
+        long backoff = MIN_RECONNECT_MILLIS;
+        while (running) {
+            try (Socket connection = new Socket()) {
+                connection.connect(new InetSocketAddress(host, port), ReplicationProtocol.READ_TIMEOUT_MILLIS);
+                connection.setTcpNoDelay(true);
+                connection.setSoTimeout(ReplicationProtocol.READ_TIMEOUT_MILLIS);
+                socket = connection;
+                stream(connection);
+            } catch (IOException e) {
+                if (running) {
+                    logger.warning("Replication connection to " + host + ":" + port + " lost: " + e.getMessage());
+                }
+            } finally {
+                // Back off from the start again once a connection had been working
+                if (connected) {
+                    backoff = MIN_RECONNECT_MILLIS;
+                }
+                connected = false;
+                socket = null;
+                out = null;
+                failPending();
+            }
+            if (!running) {
+                return;
+            }
+            try {
+                Thread.sleep(backoff);
+            } catch (InterruptedException e) {
+                if (!running) {
+                    return;
+                }
+            }
+            backoff = Math.min(MAX_RECONNECT_MILLIS, backoff * 2);
+        }
+    }
+
+    private void stream(Socket connection) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(connection.getOutputStream()));
+        out = output;
+
+        long lastSequence = getAppliedSequence();
+        synchronized (output) {
+            output.writeByte(ReplicationProtocol.HELLO);
+            output.writeInt(ReplicationProtocol.MAGIC);
+            output.writeInt(ReplicationProtocol.VERSION);
+            output.writeLong(epoch);
+            output.writeLong(lastSequence);
+            output.flush();
+        }
+
+        if (in.readByte() != ReplicationProtocol.WELCOME) {
+            throw new IOException("unexpected handshake from primary");
+        }
+        long primaryEpoch = in.readLong();
+        boolean snapshot = in.readBoolean();
+        if (snapshot) {
+            logger.info("Receiving a snapshot from the replication primary...");
+        } else {
+            logger.info("Connected to the replication primary, catching up from sequence " + lastSequence + ".");
+            connected = true;
+        }
+
+        int accounts = 0;
+        while (running) {
+            byte type = in.readByte();
+            switch (type) {
+                case ReplicationProtocol.DELTAS:
+                    applyDeltas(in, output);
+                    break;
+                case ReplicationProtocol.STATE:
+                    applier.applyState(ReplicationProtocol.readState(in));
+                    break;
+                case ReplicationProtocol.ACCOUNT:
+                    UUID playerId = ReplicationProtocol.readUuid(in);
+                    int count = in.readUnsignedByte();
+                    for (int id = 0; id < count; id++) {
+                        long balance = in.readLong();
+                        if (id < Currency.count()) {
+                            applier.applyBalance(playerId, Currency.byId(id), balance);
+                        }
+                    }
+                    accounts++;
+                    break;
+                case ReplicationProtocol.SNAPSHOT_END:
+                    advance(primaryEpoch, in.readLong());
+                    logger.info("Applied a snapshot of " + accounts + " accounts from the replication primary.");
+                    connected = true;
+                    break;
+                case ReplicationProtocol.RESULT:
+                    long requestId = in.readLong();
+                    int result = in.readUnsignedByte();
+                    long sequence = in.readLong();
+                    CompletableFuture<Answer> answer = pending.remove(requestId);
+                    if (answer != null) {
+                        Ledger.Result[] results = Ledger.Result.values();
+                        answer.complete(new Answer(result < results.length ? results[result] : Ledger.Result.UNAVAILABLE, sequence));
+                    }
+                    break;
+                default:
+                    throw new IOException("unexpected message " + type);
+            }
+        }
+    }
+
+    private void applyDeltas(DataInputStream in, DataOutputStream output) throws IOException {
+        int count = in.readInt();
+        long sequence = 0;
+        for (int i = 0; i < count; i++) {
+            sequence = in.readLong();
+            UUID playerId = ReplicationProtocol.readUuid(in);
+            Currency currency = ReplicationProtocol.readCurrency(in);
+            long balance = in.readLong();
+            applier.applyBalance(playerId, currency, balance);
+        }
+        appliedLock.lock();
+        try {
+            if (count > 0) {
+                appliedSequence = sequence;
+                advanced.signalAll();
+            } else {
+                sequence = appliedSequence;
+            }
+        } finally {
+            appliedLock.unlock();
+        }
+        // Heartbeats are acknowledged too, so the primary sees an idle replica is alive
+        synchronized (output) {
+            output.writeByte(ReplicationProtocol.ACK);
+            output.writeLong(sequence);
+            output.flush();
+        }
+    }
+
+    private void advance(long primaryEpoch, long sequence) {
+        appliedLock.lock();
+        try {
+            epoch = primaryEpoch;
+            appliedSequence = sequence;
+            advanced.signalAll();
+        } finally {
+            appliedLock.unlock();
+        }
+    }
+
+    private void failPending() {
+        for (Long requestId : pending.keySet()) {
+            CompletableFuture<Answer> answer = pending.remove(requestId);
+            if (answer != null) {
+                answer.complete(new Answer(Ledger.Result.UNAVAILABLE, 0L));
+            }
+        }
+    }
+
+    // --- Writes ---
+
+    @Override
+    public Ledger.Result set(UUID playerId, Currency currency, long balance) {
+        return forward(ReplicationProtocol.OP_SET, playerId, playerId, currency, currency, balance, 0L);
+    }
+
+    @Override
+    public Ledger.Result adjust(UUID playerId, Currency currency, long delta) {
+        return forward(ReplicationProtocol.OP_ADJUST, playerId, playerId, currency, currency, delta, 0L);
+    }
+
+    @Override
+    public Ledger.Result withdraw(UUID playerId, Currency currency, long amount) {
+        return forward(ReplicationProtocol.OP_WITHDRAW, playerId, playerId, currency, currency, amount, 0L);
+    }
+
+    @Override
+    public Ledger.Result transfer(UUID fromId, UUID toId, Currency currency, long amount) {
+        return forward(ReplicationProtocol.OP_TRANSFER, fromId, toId, currency, currency, amount, 0L);
+    }
+
+    @Override
+    public Ledger.Result exchange(UUID playerId, Currency fromCurrency, long fromAmount, Currency toCurrency, long toAmount) {
+        return forward(ReplicationProtocol.OP_EXCHANGE, playerId, playerId, fromCurrency, toCurrency, fromAmount, toAmount);
+    }
+
+    private Ledger.Result forward(byte op, UUID playerId, UUID otherId, Currency currency, Currency otherCurrency, long amount, long otherAmount) {
+        DataOutputStream output = out;
+        if (!connected || output == null) {
+            return Ledger.Result.UNAVAILABLE;
+        }
+        long deadline = System.nanoTime() + writeTimeoutNanos;
+        long requestId = nextRequestId.incrementAndGet();
+        CompletableFuture<Answer> future = new CompletableFuture<>();
+        pending.put(requestId, future);
+        try {
+            synchronized (output) {
+                output.writeByte(ReplicationProtocol.WRITE);
+                output.writeLong(requestId);
+                output.writeByte(op);
+                ReplicationProtocol.writeUuid(output, playerId);
+                ReplicationProtocol.writeUuid(output, otherId);
+                output.writeByte(currency.getId());
+                output.writeByte(otherCurrency.getId());
+                output.writeLong(amount);
+                output.writeLong(otherAmount);
+                output.flush();
+            }
+            Answer answer = future.get(writeTimeoutNanos, TimeUnit.NANOSECONDS);
+            if (answer.result == Ledger.Result.SUCCESS && !awaitApplied(answer.sequence, deadline)) {
+                return Ledger.Result.UNAVAILABLE;
+            }
+            return answer.result;
+        } catch (IOException | ExecutionException | TimeoutException e) {
+            return Ledger.Result.UNAVAILABLE;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Ledger.Result.UNAVAILABLE;
+        } finally {
+            pending.remove(requestId);
+        }
+    }
+
+    // Read-your-writes: the caller returns only once its change is in the local ledger
+    private boolean awaitApplied(long sequence, long deadline) throws InterruptedException {
+        appliedLock.lock();
+        try {
+            while (appliedSequence < sequence) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                advanced.awaitNanos(remaining);
+            }
+            return true;
+        } finally {
+            appliedLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        Socket current = socket;
+        if (current != null) {
+            current.close();
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        failPending();
+    }
+}
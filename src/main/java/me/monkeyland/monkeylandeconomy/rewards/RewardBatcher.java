@@ -0,0 +1,127 @@
+package me.monkeyland.monkeylandeconomy.rewards;
+
+import me.monkeyland.monkeylandeconomy.audit.AuditLog;
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import net.md_5.bungee.api.ChatMessageType;
+import net.md_5.bungee.api.chat.TextComponent;
+import org.bukkit.Bukkit;
+import org.bukkit.ChatColor;
+import org.bukkit.entity.Player;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Coalesces block-break rewards.
+ * <p>
+ * Rewards are added to a per-player buffer on the main thread and applied to the ledger once
+ * per tick, one adjustment per player and currency. What a player earned is summed up again
+ * and shown as a single action-bar message every {@code notifyIntervalTicks}, so ledger writes
+ * and messages follow the number of players mining, not the number of blocks broken.
+ */
+public class RewardBatcher {
+
+    private final JavaPlugin plugin;
+    private final Ledger ledger;
+    // Null if transactions are not audited
+    private final AuditLog auditLog;
+    private final long notifyIntervalTicks;
+
+    // Main thread only
+    private final Map<UUID, long[]> pending = new HashMap<>();
+    private final Map<UUID, long[]> earned = new HashMap<>();
+    private boolean flushScheduled;
+    private boolean notifyScheduled;
+
+    public RewardBatcher(JavaPlugin plugin, Ledger ledger, AuditLog auditLog, long notifyIntervalTicks) {
+        this.plugin = plugin;
+        this.ledger = ledger;
+        this.auditLog = auditLog;
+        this.notifyIntervalTicks = Math.max(1L, notifyIntervalTicks);
+    }
+
+    // Queues a reward for the end of this tick; must be called on the main thread
+    public void reward(UUID playerId, Currency currency, double amount) {
+        pending.computeIfAbsent(playerId, id -> new long[Currency.count()])[currency.getId()] += AccountStore.toMinor(amount);
+        if (!flushScheduled) {
+            flushScheduled = true;
+            plugin.getServer().getScheduler().runTask(plugin, this::flush);
+        }
+    }
+
+    // Applies everything queued so far to the ledger
+    public void flush() {
+        flushScheduled = false;
+        if (pending.isEmpty()) {
+            return;
+        }
+        for (Map.Entry<UUID, long[]> entry : pending.entrySet()) {
+            UUID playerId = entry.getKey();
+            long[] amounts = entry.getValue();
+            for (Currency currency : Currency.values()) {
+                long amount = amounts[currency.getId()];
+                if (amount == 0) {
+                    continue;
+                }
+                Ledger.Result result = ledger.adjust(playerId, currency, amount);
+                if (result == Ledger.Result.SUCCESS) {
+                    if (auditLog != null) {
+                        auditLog.record(AuditLog.Type.REWARD, playerId, null, currency, amount);
+                    }
+                    earned.computeIfAbsent(playerId, id -> new long[Currency.count()])[currency.getId()] += amount;
+                } else if (result == Ledger.Result.EXCEEDS_MAX_SUPPLY) {
+                    plugin.getLogger().warning("Attempt to add " + currency + " to player " + playerId + " would exceed max supply. Transaction cancelled.");
+                    Player player = Bukkit.getPlayer(playerId);
+                    if (player != null) {
+                        player.sendMessage(ChatColor.RED + "Error: Adding this amount would exceed the maximum gold supply.");
+                    }
+                }
+            }
+        }
+        pending.clear();
+
+        if (!earned.isEmpty() && !notifyScheduled) {
+            notifyScheduled = true;
+            plugin.getServer().getScheduler().runTaskLater(plugin, this::notifyPlayers, notifyIntervalTicks);
+        }
+    }
+
+    private void notifyPlayers() {
+        notifyScheduled = false;
+        for (Map.Entry<UUID, long[]> entry : earned.entrySet()) {
+            Player player = Bukkit.getPlayer(entry.getKey());
+            if (player == null) {
+                continue;
+            }
+            StringBuilder message = new StringBuilder();
+            long[] amounts = entry.getValue();
+            for (Currency currency : Currency.values()) {
+                long amount = amounts[currency.getId()];
+                if (amount == 0) {
+                    continue;
+                }
+                if (message.length() > 0) {
+                    message.append(", ");
+                }
+                message.append(AccountStore.toMajor(amount)).append(' ').append(displayName(currency));
+            }
+            player.spigot().sendMessage(ChatMessageType.ACTION_BAR, new TextComponent(ChatColor.YELLOW + "You earned " + message + "!"));
+        }
+        earned.clear();
+    }
+
+    // Applies what is still queued, e.g. on shutdown; earned messages are dropped
+    public void shutdown() {
+        flush();
+        earned.clear();
+    }
+
+    private static String displayName(Currency currency) {
+        String name = currency.name();
+        return name.charAt(0) + name.substring(1).toLowerCase();
+    }
+}
@@ -0,0 +1,58 @@
+package me.monkeyland.monkeylandeconomy.rewards;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Per-player token buckets for block rewards.
+ * <p>
+ * Each player may be rewarded for {@code burst} blocks at once, and earns back
+ * {@code perSecond} of them every second. A bucket is two numbers, refilled lazily when the
+ * player next breaks a rewarded block, so a player costs the same memory however fast they
+ * mine; buckets that have filled up again can be dropped. Main thread only.
+ */
+public final class RewardLimiter {
+
+    private static final class Bucket {
+        double tokens;
+        long updatedNanos;
+    }
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Map<UUID, Bucket> buckets = new HashMap<>();
+
+    public RewardLimiter(double burst, double perSecond) {
+        this.capacity = Math.max(1.0, burst);
+        this.tokensPerNano = Math.max(0.0, perSecond) / 1e9;
+    }
+
+    // Takes a token if the player has one left
+    public boolean tryAcquire(UUID playerId, long nowNanos) {
+        Bucket bucket = buckets.get(playerId);
+        if (bucket == null) {
+            bucket = new Bucket();
+            bucket.tokens = capacity;
+            bucket.updatedNanos = nowNanos;
+            buckets.put(playerId, bucket);
+        } else {
+            bucket.tokens = Math.min(capacity, bucket.tokens + (nowNanos - bucket.updatedNanos) * tokensPerNano);
+            bucket.updatedNanos = nowNanos;
+        }
+        if (bucket.tokens < 1.0) {
+            return false;
+        }
+        bucket.tokens -= 1.0;
+        return true;
+    }
+
+    /**
+     * Drops every bucket that has filled up again, which is the state a new one starts in.
+     * Buckets of players who left while still limited stay until then, so rejoining does not
+     * refill them.
+     */
+    public void prune(long nowNanos) {
+        buckets.values().removeIf(bucket -> bucket.tokens + (nowNanos - bucket.updatedNanos) * tokensPerNano >= capacity);
+    }
+}
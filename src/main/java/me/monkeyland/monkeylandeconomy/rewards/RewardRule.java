@@ -0,0 +1,60 @@
+package me.monkeyland.monkeylandeconomy.rewards;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import org.bukkit.Material;
+
+/**
+ * What breaking a block pays: an amount of one currency, optionally only with certain tools
+ * and only without silk touch. Immutable; built by {@link RewardTable#compile}.
+ */
+public final class RewardRule {
+
+    private final Currency currency;
+    private final double amount;
+    // Indexed by Material.ordinal(), null if any tool pays
+    private final boolean[] tools;
+    private final boolean silkTouch;
+    private final boolean scaleWithInflation;
+
+    RewardRule(Currency currency, double amount, boolean[] tools, boolean silkTouch, boolean scaleWithInflation) {
+        this.currency = currency;
+        this.amount = amount;
+        this.tools = tools;
+        this.silkTouch = silkTouch;
+        this.scaleWithInflation = scaleWithInflation;
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    boolean[] getTools() {
+        return tools;
+    }
+
+    public boolean paysWithSilkTouch() {
+        return silkTouch;
+    }
+
+    /**
+     * Whether the amount follows the currency's exchange rate: it is multiplied by the peg
+     * over the current rate, so the reward keeps its worth in gold as the currency inflates.
+     */
+    public boolean isScaledWithInflation() {
+        return scaleWithInflation;
+    }
+
+    // Whether a break with this tool in hand pays
+    public boolean accepts(Material tool, boolean withSilkTouch) {
+        return (silkTouch || !withSilkTouch) && (tools == null || tools[tool.ordinal()]);
+    }
+
+    // The amount to credit at the given exchange rate of the currency
+    public double amountAt(double exchangeRate) {
+        return scaleWithInflation && exchangeRate > 0 ? amount * currency.getPeg() / exchangeRate : amount;
+    }
+}
@@ -0,0 +1,167 @@
+package me.monkeyland.monkeylandeconomy.rewards;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Block-break reward rules compiled into a table indexed by {@code Material.ordinal()}.
+ * <p>
+ * Each rule of the {@code rewards.rules} section names the blocks it covers, the currency and
+ * amount, and optionally the tools that pay, whether silk touch pays and whether the amount
+ * follows inflation. Rules can be overridden per world; an override only lists what differs,
+ * and an amount of 0 turns the reward off there. Resolving a block is one array access, plus a
+ * scan of that block's world overrides if it has any. Immutable once compiled.
+ */
+public final class RewardTable {
+
+    // The rule of one block, and the worlds that override it
+    private static final class Entry {
+        final RewardRule rule;
+        final String[] worlds;
+        final RewardRule[] worldRules;
+
+        Entry(RewardRule rule, String[] worlds, RewardRule[] worldRules) {
+            this.rule = rule;
+            this.worlds = worlds;
+            this.worldRules = worldRules;
+        }
+    }
+
+    private final Entry[] entries = new Entry[Material.values().length];
+    private int blockCount;
+
+    private RewardTable() {
+    }
+
+    // The rule for breaking a block in a world, or null if it pays nothing
+    public RewardRule resolve(Material block, World world) {
+        Entry entry = entries[block.ordinal()];
+        if (entry == null) {
+            return null;
+        }
+        if (entry.worlds.length > 0) {
+            String name = world.getName();
+            for (int i = 0; i < entry.worlds.length; i++) {
+                if (entry.worlds[i].equals(name)) {
+                    return entry.worldRules[i];
+                }
+            }
+        }
+        return entry.rule;
+    }
+
+    // Blocks that pay in at least one world
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /**
+     * Compiles the rules of a section. Invalid rules are logged and skipped; a block claimed by
+     * an earlier rule keeps that rule.
+     */
+    public static RewardTable compile(ConfigurationSection rules, Logger logger) {
+        RewardTable table = new RewardTable();
+        if (rules == null) {
+            return table;
+        }
+        for (String name : rules.getKeys(false)) {
+            ConfigurationSection section = rules.getConfigurationSection(name);
+            try {
+                if (section == null) {
+                    throw new IllegalArgumentException("must be a section");
+                }
+                table.add(name, section);
+            } catch (IllegalArgumentException e) {
+                logger.warning("Skipping reward rule '" + name + "': " + e.getMessage());
+            }
+        }
+        for (int i = 0; i < table.entries.length; i++) {
+            if (table.entries[i] != null) {
+                table.blockCount++;
+            }
+        }
+        return table;
+    }
+
+    private void add(String name, ConfigurationSection section) {
+        List<Material> blocks = new ArrayList<>();
+        for (String blockName : section.getStringList("blocks")) {
+            Material block = Material.matchMaterial(blockName);
+            if (block == null || !block.isBlock()) {
+                throw new IllegalArgumentException("unknown block " + blockName);
+            }
+            blocks.add(block);
+        }
+        if (blocks.isEmpty()) {
+            throw new IllegalArgumentException("no blocks listed");
+        }
+
+        RewardRule rule = parse(section, null);
+        List<String> worlds = new ArrayList<>();
+        List<RewardRule> worldRules = new ArrayList<>();
+        ConfigurationSection overrides = section.getConfigurationSection("worlds");
+        if (overrides != null) {
+            for (String world : overrides.getKeys(false)) {
+                ConfigurationSection override = overrides.getConfigurationSection(world);
+                if (override == null) {
+                    throw new IllegalArgumentException("world " + world + " must be a section");
+                }
+                worlds.add(world);
+                worldRules.add(parse(override, rule));
+            }
+        }
+
+        Entry entry = new Entry(rule, worlds.toArray(new String[0]), worldRules.toArray(new RewardRule[0]));
+        for (Material block : blocks) {
+            if (entries[block.ordinal()] != null) {
+                throw new IllegalArgumentException(block + " is already rewarded by another rule");
+            }
+        }
+        for (Material block : blocks) {
+            entries[block.ordinal()] = entry;
+        }
+    }
+
+    // A rule from a section, taking what it leaves out from the base; null if it pays nothing
+    private static RewardRule parse(ConfigurationSection section, RewardRule base) {
+        double amount = section.getDouble("amount", base == null ? 0.0 : base.getAmount());
+        if (!(amount >= 0) || Double.isInfinite(amount)) {
+            throw new IllegalArgumentException("amount must not be negative: " + amount);
+        }
+
+        Currency currency = base == null ? null : base.getCurrency();
+        if (section.isSet("currency") || base == null) {
+            String currencyName = section.getString("currency");
+            currency = Currency.find(currencyName);
+            if (currency == null) {
+                throw new IllegalArgumentException("unknown currency " + currencyName);
+            }
+        }
+
+        boolean[] tools = base == null ? null : base.getTools();
+        if (section.isSet("tools")) {
+            tools = null;
+            List<String> toolNames = section.getStringList("tools");
+            if (!toolNames.isEmpty()) {
+                tools = new boolean[Material.values().length];
+                for (String toolName : toolNames) {
+                    Material tool = Material.matchMaterial(toolName);
+                    if (tool == null) {
+                        throw new IllegalArgumentException("unknown tool " + toolName);
+                    }
+                    tools[tool.ordinal()] = true;
+                }
+            }
+        }
+
+        boolean silkTouch = section.getBoolean("silkTouch", base != null && base.paysWithSilkTouch());
+        boolean scaleWithInflation = section.getBoolean("scaleWithInflation", base != null && base.isScaledWithInflation());
+        return amount == 0 ? null : new RewardRule(currency, amount, tools, silkTouch, scaleWithInflation);
+    }
+}
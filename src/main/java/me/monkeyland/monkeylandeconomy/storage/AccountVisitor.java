@@ -0,0 +1,12 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Receives stored accounts one at a time; balances are minor units indexed by currency id.
+ */
+@FunctionalInterface
+public interface AccountVisitor {
+    void visit(UUID playerId, long[] balances) throws IOException;
+}
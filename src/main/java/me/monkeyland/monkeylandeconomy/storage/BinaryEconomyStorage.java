@@ -0,0 +1,461 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * Storage on top of {@link BinarySnapshot}, with a delta log in front of it.
+ * <p>
+ * Accounts live in generations of snapshot files next to the configured path
+ * ({@code monkeyland_economy.dat.<n>}). A save never rewrites the snapshot: changed accounts and
+ * the economy state are appended to the generation's delta log and fsynced, and kept in an
+ * overlay that lookups check before the mapped file. Once the log reaches half the snapshot's
+ * size the overlay is merged into the next generation, written under a new name and switched
+ * to, so a mapped file is never replaced. Circulating totals are the snapshot's header totals
+ * moved by every change in the overlay.
+ * <p>
+ * A snapshot at the configured path itself, as earlier versions wrote it, is read as
+ * generation 0.
+ */
+public class BinaryEconomyStorage implements EconomyStorage {
+
+    public static final String TYPE = "binary";
+
+    private static final int DELTA_MAGIC = 0x4D4C4431; // "MLD1"
+    private static final int DELTA_VERSION = 1;
+    private static final int DELTA_HEADER_SIZE = 8;
+    private static final byte ACCOUNT_RECORD = 1;
+    private static final byte STATE_RECORD = 2;
+    // The log is merged once it reaches half the snapshot, but never for less than this
+    private static final long MIN_COMPACT_BYTES = 4L * 1024 * 1024;
+
+    private final Path snapshotFile;
+
+    // Guarded by this for writers; lookups read the volatile snapshot and the concurrent overlay
+    private volatile BinarySnapshot snapshot;
+    private final ConcurrentHashMap<UUID, long[]> overlay = new ConcurrentHashMap<>();
+    private volatile EconomyState state;
+    private Path snapshotPath;
+    private long snapshotBytes;
+    private long generation;
+    private FileChannel delta;
+    private long deltaSize;
+    private long[] totals;
+    // The newest state in the delta log, if it holds one
+    private EconomyState loggedState;
+
+    public BinaryEconomyStorage(Path snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public synchronized void open() throws IOException {
+        long latest = -1;
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+                for (Path file : files) {
+                    latest = Math.max(latest, generationOf(file));
+                }
+            }
+        }
+
+        if (latest >= 0) {
+            generation = latest;
+            snapshotPath = generationFile(latest);
+        } else {
+            generation = 0;
+            snapshotPath = snapshotFile;
+        }
+        if (Files.exists(snapshotPath)) {
+            snapshot = BinarySnapshot.open(snapshotPath);
+            snapshotBytes = Files.size(snapshotPath);
+        }
+        totals = snapshot != null ? snapshot.getTotals() : new long[Currency.count()];
+
+        delta = openDelta(deltaFile(generation));
+        replayDelta();
+        removeOlderGenerations();
+    }
+
+    @Override
+    public EconomyState loadState(EconomyState defaults) {
+        BinarySnapshot current = snapshot;
+        state = loggedState != null ? loggedState : current != null ? current.getState() : defaults;
+        return state;
+    }
+
+    @Override
+    public synchronized void saveState(EconomyState state) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(recordSize(stateSize()));
+        putState(record, state);
+        append(record);
+        this.state = state;
+        compactIfDue();
+    }
+
+    @Override
+    public long[] loadAccount(UUID playerId) {
+        long[] changed = overlay.get(playerId);
+        if (changed != null) {
+            return changed.clone();
+        }
+        BinarySnapshot current = snapshot;
+        return current == null ? null : current.find(playerId);
+    }
+
+    @Override
+    public synchronized void upsertAccounts(Map<UUID, long[]> accounts) throws IOException {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        ByteBuffer records = ByteBuffer.allocate(accounts.size() * recordSize(accountSize()));
+        for (Map.Entry<UUID, long[]> entry : accounts.entrySet()) {
+            putAccount(records, entry.getKey(), entry.getValue());
+        }
+        append(records);
+        for (Map.Entry<UUID, long[]> entry : accounts.entrySet()) {
+            applyAccount(entry.getKey(), Arrays.copyOf(entry.getValue(), Currency.count()));
+        }
+        compactIfDue();
+    }
+
+    @Override
+    public synchronized long[] sumBalances() {
+        return totals.clone();
+    }
+
+    @Override
+    public void forEachAccount(AccountVisitor visitor) throws IOException {
+        BinarySnapshot current;
+        Map<UUID, long[]> changes;
+        synchronized (this) {
+            current = snapshot;
+            changes = new HashMap<>(overlay);
+        }
+        if (current != null) {
+            current.forEach((playerId, balances) -> {
+                long[] changed = changes.remove(playerId);
+                visitor.visit(playerId, changed != null ? changed.clone() : balances);
+            });
+        }
+        for (Map.Entry<UUID, long[]> entry : changes.entrySet()) {
+            visitor.visit(entry.getKey(), entry.getValue().clone());
+        }
+    }
+
+    @Override
+    public boolean hasAccounts() {
+        BinarySnapshot current = snapshot;
+        return !overlay.isEmpty() || current != null && current.getAccountCount() > 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (delta != null) {
+            delta.close();
+            delta = null;
+        }
+        snapshot = null;
+        overlay.clear();
+    }
+
+    // --- Delta log ---
+
+    // A payload between its length and its CRC
+    private static int recordSize(int payloadSize) {
+        return 4 + payloadSize + 4;
+    }
+
+    private static int accountSize() {
+        return 1 + 16 + 4 + 8 * Currency.count();
+    }
+
+    private static int stateSize() {
+        return 1 + 5 * 8 + 4 + 16 * Currency.count();
+    }
+
+    private static void putAccount(ByteBuffer out, UUID playerId, long[] balances) {
+        int start = out.position();
+        out.putInt(accountSize());
+        out.put(ACCOUNT_RECORD);
+        out.putLong(playerId.getMostSignificantBits());
+        out.putLong(playerId.getLeastSignificantBits());
+        out.putInt(Currency.count());
+        for (int i = 0; i < Currency.count(); i++) {
+            out.putLong(i < balances.length ? balances[i] : 0L);
+        }
+        putCrc(out, start);
+    }
+
+    private static void putState(ByteBuffer out, EconomyState state) {
+        int start = out.position();
+        out.putInt(stateSize());
+        out.put(STATE_RECORD);
+        out.putDouble(state.getMaxGoldSupply());
+        out.putDouble(state.getStartingInflationRate());
+        out.putDouble(state.getTargetInflationRate());
+        out.putDouble(state.getInflationCurveFactor());
+        out.putDouble(state.getInflationRate());
+        out.putInt(Currency.count());
+        for (Currency currency : Currency.values()) {
+            out.putDouble(state.getInflationFactor(currency));
+        }
+        for (Currency currency : Currency.values()) {
+            out.putDouble(state.getExchangeRate(currency));
+        }
+        putCrc(out, start);
+    }
+
+    private static void putCrc(ByteBuffer out, int start) {
+        CRC32 crc = new CRC32();
+        ByteBuffer payload = out.duplicate();
+        payload.position(start + 4).limit(out.position());
+        crc.update(payload);
+        out.putInt((int) crc.getValue());
+    }
+
+    // Writes and fsyncs whole records; a failed write is cut off again so the log stays readable
+    private void append(ByteBuffer records) throws IOException {
+        if (delta == null) {
+            throw new IOException("Binary storage is not open");
+        }
+        records.flip();
+        long start = deltaSize;
+        try {
+            while (records.hasRemaining()) {
+                delta.write(records, deltaSize + records.position());
+            }
+            delta.force(false);
+        } catch (IOException e) {
+            try {
+                delta.truncate(start);
+            } catch (IOException ignored) {
+                // The torn tail fails its CRC and is dropped on the next open
+            }
+            throw e;
+        }
+        deltaSize = start + records.limit();
+    }
+
+    private static FileChannel openDelta(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (channel.size() < DELTA_HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(DELTA_HEADER_SIZE);
+            header.putInt(DELTA_MAGIC).putInt(DELTA_VERSION).flip();
+            channel.truncate(0);
+            channel.write(header, 0);
+            channel.force(true);
+        }
+        return channel;
+    }
+
+    // Applies every intact record and cuts off a torn tail
+    private void replayDelta() throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(DELTA_HEADER_SIZE);
+        readFully(header, 0);
+        header.flip();
+        if (header.getInt() != DELTA_MAGIC || header.getInt() != DELTA_VERSION) {
+            throw new IOException("Unsupported delta log " + deltaFile(generation).getFileName());
+        }
+
+        long size = delta.size();
+        long position = DELTA_HEADER_SIZE;
+        ByteBuffer length = ByteBuffer.allocate(4);
+        CRC32 crc = new CRC32();
+        while (position + 4 <= size) {
+            length.clear();
+            readFully(length, position);
+            int payloadSize = length.flip().getInt();
+            if (payloadSize <= 0 || position + recordSize(payloadSize) > size) {
+                break;
+            }
+            ByteBuffer record = ByteBuffer.allocate(payloadSize + 4);
+            readFully(record, position + 4);
+            record.flip();
+            crc.reset();
+            crc.update(record.array(), 0, payloadSize);
+            if (record.getInt(payloadSize) != (int) crc.getValue()) {
+                break;
+            }
+            record.limit(payloadSize);
+            byte kind = record.get();
+            if (kind == ACCOUNT_RECORD) {
+                UUID playerId = new UUID(record.getLong(), record.getLong());
+                long[] balances = new long[Currency.count()];
+                int count = record.getInt();
+                for (int i = 0; i < count; i++) {
+                    long balance = record.getLong();
+                    if (i < balances.length) {
+                        balances[i] = balance;
+                    }
+                }
+                applyAccount(playerId, balances);
+            } else if (kind == STATE_RECORD) {
+                loggedState = readState(record);
+            } else {
+                break;
+            }
+            position += recordSize(payloadSize);
+        }
+        if (position < size) {
+            delta.truncate(position);
+        }
+        deltaSize = position;
+    }
+
+    private static EconomyState readState(ByteBuffer record) {
+        double maxGoldSupply = record.getDouble();
+        double startingInflationRate = record.getDouble();
+        double targetInflationRate = record.getDouble();
+        double inflationCurveFactor = record.getDouble();
+        double inflationRate = record.getDouble();
+        int count = record.getInt();
+        double[] inflationFactors = new double[count];
+        for (int i = 0; i < count; i++) {
+            inflationFactors[i] = record.getDouble();
+        }
+        double[] exchangeRates = new double[count];
+        for (int i = 0; i < count; i++) {
+            exchangeRates[i] = record.getDouble();
+        }
+        return new EconomyState(maxGoldSupply, startingInflationRate, targetInflationRate, inflationCurveFactor,
+                inflationRate, inflationFactors, exchangeRates);
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = delta.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of " + deltaFile(generation).getFileName());
+            }
+            position += read;
+        }
+    }
+
+    // Moves the totals from the account's previous balances to the new ones
+    private void applyAccount(UUID playerId, long[] balances) {
+        long[] previous = overlay.get(playerId);
+        if (previous == null && snapshot != null) {
+            previous = snapshot.find(playerId);
+        }
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] += balances[i] - (previous == null ? 0L : previous[i]);
+        }
+        overlay.put(playerId, balances);
+    }
+
+    // --- Generations ---
+
+    private void compactIfDue() throws IOException {
+        if (deltaSize - DELTA_HEADER_SIZE < Math.max(MIN_COMPACT_BYTES, snapshotBytes / 2)) {
+            return;
+        }
+        if (state == null) {
+            throw new IOException("Economy state has not been loaded");
+        }
+
+        // Once the next generation exists it wins on open, with an empty log of its own
+        long next = generation + 1;
+        Path nextFile = generationFile(next);
+        BinarySnapshot.write(nextFile, state, snapshot, overlay);
+        BinarySnapshot written = BinarySnapshot.open(nextFile);
+        FileChannel nextDelta = openDelta(deltaFile(next));
+
+        Path oldSnapshot = snapshotPath;
+        Path oldDelta = deltaFile(generation);
+        FileChannel oldChannel = delta;
+
+        // Publish the merged file before dropping the overlay, so lookups never miss a change
+        snapshot = written;
+        overlay.clear();
+        snapshotPath = nextFile;
+        snapshotBytes = Files.size(nextFile);
+        generation = next;
+        delta = nextDelta;
+        deltaSize = DELTA_HEADER_SIZE;
+        loggedState = null;
+        totals = written.getTotals();
+
+        oldChannel.close();
+        deleteQuietly(oldDelta);
+        // Fails while the old mapping is still alive on some platforms; the next open retries
+        deleteQuietly(oldSnapshot);
+    }
+
+    private Path generationFile(long number) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + "." + number);
+    }
+
+    private Path deltaFile(long number) {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + "." + number + ".delta");
+    }
+
+    // The generation a snapshot file holds, or -1 if it is not one
+    private long generationOf(Path file) {
+        String prefix = snapshotFile.getFileName() + ".";
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || name.length() == prefix.length()) {
+            return -1;
+        }
+        String number = name.substring(prefix.length());
+        for (int i = 0; i < number.length(); i++) {
+            if (!Character.isDigit(number.charAt(i))) {
+                return -1;
+            }
+        }
+        try {
+            return Long.parseLong(number);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Leftovers of generations that were superseded after the last open
+    private void removeOlderGenerations() throws IOException {
+        if (generation > 0) {
+            deleteQuietly(snapshotFile);
+        }
+        Path directory = snapshotFile.toAbsolutePath().getParent();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                long number = generationOf(file);
+                if (number >= 0 && number < generation) {
+                    deleteQuietly(file);
+                    deleteQuietly(deltaFile(number));
+                }
+            }
+        }
+        for (long number = 0; number < generation; number++) {
+            if (Files.exists(deltaFile(number))) {
+                deleteQuietly(deltaFile(number));
+            }
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            // Left for the next open to remove
+        }
+    }
+}
@@ -0,0 +1,274 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Versioned binary snapshot of the whole economy.
+ * <p>
+ * Layout (big-endian):
+ * <pre>
+ * header   magic, version, currencyCount, accountCount,
+ *          maxGoldSupply, startingInflationRate, targetInflationRate, inflationCurveFactor,
+ *          inflationRate, inflationFactors[currencyCount], exchangeRates[currencyCount],
+ *          totals[currencyCount]
+ * records  accountCount x (uuid msb, uuid lsb, balances[currencyCount])
+ * </pre>
+ * Records are fixed width and sorted by UUID, so they double as the index: a lookup is a
+ * binary search over the memory-mapped file and deserializes only the record it lands on.
+ * Balances are fixed-point minor units. Files are written to a temp file and renamed.
+ */
+public final class BinarySnapshot {
+
+    public static final String SNAPSHOT_FILE_NAME = "monkeyland_economy.dat";
+
+    private static final int MAGIC = 0x4D4C5331; // "MLS1"
+    private static final int VERSION = 2;
+    private static final int FIXED_HEADER_SIZE = 4 + 4 + 4 + 8 + 5 * 8;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final MappedByteBuffer buffer;
+    private final int fileCurrencyCount;
+    private final long accountCount;
+    private final int recordSize;
+    private final int recordsOffset;
+    private final EconomyState state;
+    private final long[] totals;
+
+    private BinarySnapshot(MappedByteBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        if (buffer.limit() < FIXED_HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a MonkeylandEconomy snapshot");
+        }
+        int version = buffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+        this.fileCurrencyCount = buffer.getInt(8);
+        this.accountCount = buffer.getLong(12);
+        this.recordSize = 16 + 8 * fileCurrencyCount;
+        this.recordsOffset = FIXED_HEADER_SIZE + 24 * fileCurrencyCount;
+        if ((long) recordsOffset + accountCount * recordSize > buffer.limit()) {
+            throw new IOException("Truncated snapshot");
+        }
+
+        int position = 20;
+        double maxGoldSupply = buffer.getDouble(position);
+        double startingInflationRate = buffer.getDouble(position + 8);
+        double targetInflationRate = buffer.getDouble(position + 16);
+        double inflationCurveFactor = buffer.getDouble(position + 24);
+        double inflationRate = buffer.getDouble(position + 32);
+        position += 40;
+
+        double[] inflationFactors = new double[Currency.count()];
+        Arrays.fill(inflationFactors, 1.0);
+        for (int i = 0; i < fileCurrencyCount; i++, position += 8) {
+            if (i < inflationFactors.length) {
+                inflationFactors[i] = buffer.getDouble(position);
+            }
+        }
+
+        double[] exchangeRates = new double[fileCurrencyCount];
+        for (int i = 0; i < fileCurrencyCount; i++, position += 8) {
+            exchangeRates[i] = buffer.getDouble(position);
+        }
+        long[] fileTotals = new long[fileCurrencyCount];
+        for (int i = 0; i < fileCurrencyCount; i++, position += 8) {
+            fileTotals[i] = buffer.getLong(position);
+        }
+
+        this.state = new EconomyState(maxGoldSupply, startingInflationRate, targetInflationRate, inflationCurveFactor,
+                inflationRate, inflationFactors, exchangeRates);
+        this.totals = resize(fileTotals);
+    }
+
+    public static BinarySnapshot open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot too large to map: " + channel.size() + " bytes");
+            }
+            // The mapping stays valid after the channel is closed
+            return new BinarySnapshot(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public EconomyState getState() {
+        return state;
+    }
+
+    // Circulating totals at the time the snapshot was written, indexed by currency id
+    public long[] getTotals() {
+        return totals.clone();
+    }
+
+    public long getAccountCount() {
+        return accountCount;
+    }
+
+    // Binary search over the sorted records; null if the account is not in the snapshot
+    public long[] find(UUID playerId) {
+        long msb = playerId.getMostSignificantBits();
+        long lsb = playerId.getLeastSignificantBits();
+        long low = 0;
+        long high = accountCount - 1;
+        while (low <= high) {
+            long middle = (low + high) >>> 1;
+            int offset = recordOffset(middle);
+            int compare = compare(buffer.getLong(offset), buffer.getLong(offset + 8), msb, lsb);
+            if (compare < 0) {
+                low = middle + 1;
+            } else if (compare > 0) {
+                high = middle - 1;
+            } else {
+                return readBalances(offset);
+            }
+        }
+        return null;
+    }
+
+    // Visits every account in UUID order
+    public void forEach(AccountVisitor visitor) throws IOException {
+        for (long index = 0; index < accountCount; index++) {
+            int offset = recordOffset(index);
+            visitor.visit(new UUID(buffer.getLong(offset), buffer.getLong(offset + 8)), readBalances(offset));
+        }
+    }
+
+    private int recordOffset(long index) {
+        return (int) (recordsOffset + index * recordSize);
+    }
+
+    private long[] readBalances(int offset) {
+        long[] balances = new long[Currency.count()];
+        int count = Math.min(fileCurrencyCount, balances.length);
+        for (int i = 0; i < count; i++) {
+            balances[i] = buffer.getLong(offset + 16 + 8 * i);
+        }
+        return balances;
+    }
+
+    private static long[] resize(long[] values) {
+        long[] resized = new long[Currency.count()];
+        System.arraycopy(values, 0, resized, 0, Math.min(values.length, resized.length));
+        return resized;
+    }
+
+    private static int compare(long msb, long lsb, long otherMsb, long otherLsb) {
+        int compare = Long.compare(msb, otherMsb);
+        return compare != 0 ? compare : Long.compare(lsb, otherLsb);
+    }
+
+    /**
+     * Writes a new snapshot that is {@code base} (may be null) with {@code changes} applied,
+     * merging both in UUID order so only the changed accounts need to be in memory. The
+     * circulating totals in the header are summed from the records actually written.
+     */
+    public static void write(Path target, EconomyState state, BinarySnapshot base, Map<UUID, long[]> changes) throws IOException {
+        int currencyCount = Currency.count();
+        int headerSize = FIXED_HEADER_SIZE + 24 * currencyCount;
+        Path tempFile = target.resolveSibling(target.getFileName() + ".tmp");
+
+        List<UUID> changedIds = new ArrayList<>(changes.keySet());
+        changedIds.sort(null); // UUID ordering is signed msb, then signed lsb, same as the records
+
+        long[] totals = new long[currencyCount];
+        long written = 0;
+
+        try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+            channel.position(headerSize);
+
+            long baseIndex = 0;
+            long baseCount = base == null ? 0 : base.accountCount;
+            int changeIndex = 0;
+            while (baseIndex < baseCount || changeIndex < changedIds.size()) {
+                UUID playerId;
+                long[] balances;
+                if (changeIndex < changedIds.size()) {
+                    UUID changedId = changedIds.get(changeIndex);
+                    int compare = 1;
+                    if (baseIndex < baseCount) {
+                        int offset = base.recordOffset(baseIndex);
+                        compare = compare(base.buffer.getLong(offset), base.buffer.getLong(offset + 8),
+                                changedId.getMostSignificantBits(), changedId.getLeastSignificantBits());
+                    }
+                    if (compare < 0) {
+                        int offset = base.recordOffset(baseIndex++);
+                        playerId = new UUID(base.buffer.getLong(offset), base.buffer.getLong(offset + 8));
+                        balances = base.readBalances(offset);
+                    } else {
+                        if (compare == 0) {
+                            baseIndex++; // Superseded by the change
+                        }
+                        playerId = changedId;
+                        balances = changes.get(changedId);
+                        changeIndex++;
+                    }
+                } else {
+                    int offset = base.recordOffset(baseIndex++);
+                    playerId = new UUID(base.buffer.getLong(offset), base.buffer.getLong(offset + 8));
+                    balances = base.readBalances(offset);
+                }
+
+                if (out.remaining() < 16 + 8 * currencyCount) {
+                    drain(channel, out);
+                }
+                out.putLong(playerId.getMostSignificantBits());
+                out.putLong(playerId.getLeastSignificantBits());
+                for (int i = 0; i < currencyCount; i++) {
+                    long balance = i < balances.length ? balances[i] : 0L;
+                    out.putLong(balance);
+                    totals[i] += balance;
+                }
+                written++;
+            }
+            drain(channel, out);
+
+            // Header last, now that the count and totals are known
+            ByteBuffer header = ByteBuffer.allocate(headerSize);
+            header.putInt(MAGIC).putInt(VERSION).putInt(currencyCount).putLong(written);
+            header.putDouble(state.getMaxGoldSupply());
+            header.putDouble(state.getStartingInflationRate());
+            header.putDouble(state.getTargetInflationRate());
+            header.putDouble(state.getInflationCurveFactor());
+            header.putDouble(state.getInflationRate());
+            for (Currency currency : Currency.values()) {
+                header.putDouble(state.getInflationFactor(currency));
+            }
+            for (Currency currency : Currency.values()) {
+                header.putDouble(state.getExchangeRate(currency));
+            }
+            for (long total : totals) {
+                header.putLong(total);
+            }
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+            channel.force(true);
+        }
+
+        Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+}
@@ -0,0 +1,76 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.util.Arrays;
+
+/**
+ * Economy-wide parameters as they are persisted, independent of the storage format.
+ * Exchange rates and inflation factors are indexed by the currency id; a currency that was
+ * not there when the state was saved starts at its peg and a factor of 1. The inflation
+ * factor of a currency is the cumulative multiplier applied to every stored balance of it,
+ * see {@link me.monkeyland.monkeylandeconomy.ledger.Ledger#toBalance}.
+ */
+public final class EconomyState {
+
+    private final double maxGoldSupply;
+    private final double startingInflationRate;
+    private final double targetInflationRate;
+    private final double inflationCurveFactor;
+    private final double inflationRate;
+    private final double[] inflationFactors;
+    private final double[] exchangeRates;
+
+    public EconomyState(double maxGoldSupply, double startingInflationRate, double targetInflationRate, double inflationCurveFactor,
+                        double inflationRate, double[] inflationFactors, double[] exchangeRates) {
+        this.maxGoldSupply = maxGoldSupply;
+        this.startingInflationRate = startingInflationRate;
+        this.targetInflationRate = targetInflationRate;
+        this.inflationCurveFactor = inflationCurveFactor;
+        this.inflationRate = inflationRate;
+        this.inflationFactors = Arrays.copyOf(inflationFactors, Currency.count());
+        this.exchangeRates = Arrays.copyOf(exchangeRates, Currency.count());
+        for (int id = inflationFactors.length; id < this.inflationFactors.length; id++) {
+            this.inflationFactors[id] = 1.0;
+        }
+        for (int id = exchangeRates.length; id < this.exchangeRates.length; id++) {
+            this.exchangeRates[id] = Currency.byId(id).getPeg();
+        }
+    }
+
+    public double getMaxGoldSupply() {
+        return maxGoldSupply;
+    }
+
+    public double getStartingInflationRate() {
+        return startingInflationRate;
+    }
+
+    public double getTargetInflationRate() {
+        return targetInflationRate;
+    }
+
+    public double getInflationCurveFactor() {
+        return inflationCurveFactor;
+    }
+
+    public double getInflationRate() {
+        return inflationRate;
+    }
+
+    public double getInflationFactor(Currency currency) {
+        return inflationFactors[currency.getId()];
+    }
+
+    public double[] getInflationFactors() {
+        return inflationFactors.clone();
+    }
+
+    public double getExchangeRate(Currency currency) {
+        return exchangeRates[currency.getId()];
+    }
+
+    public double[] getExchangeRates() {
+        return exchangeRates.clone();
+    }
+}
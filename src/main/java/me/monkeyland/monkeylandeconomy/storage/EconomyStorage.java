@@ -0,0 +1,45 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.ledger.AccountLoader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Persistence backend for accounts and economy parameters.
+ * <p>
+ * Implementations must be safe to call from any thread. Balances are fixed-point minor units
+ * indexed by currency id. Writes arrive in batches from the write-behind
+ * flusher, single-account reads from the ledger when an account is not resident.
+ */
+public interface EconomyStorage extends AccountLoader, Closeable {
+
+    // The value of storage.type that selects this backend
+    String getType();
+
+    void open() throws IOException;
+
+    // Stored parameters, or the given defaults for anything that has not been stored yet
+    EconomyState loadState(EconomyState defaults) throws IOException;
+
+    void saveState(EconomyState state) throws IOException;
+
+    @Override
+    long[] loadAccount(UUID playerId) throws IOException;
+
+    void upsertAccounts(Map<UUID, long[]> accounts) throws IOException;
+
+    // Circulating totals over every stored account, indexed by currency id
+    long[] sumBalances() throws IOException;
+
+    // The visitor runs on the calling thread with no storage lock or I/O thread held, so it
+    // may block or call back into the storage
+    void forEachAccount(AccountVisitor visitor) throws IOException;
+
+    boolean hasAccounts() throws IOException;
+
+    @Override
+    void close() throws IOException;
+}
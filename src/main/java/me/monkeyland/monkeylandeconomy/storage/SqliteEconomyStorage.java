@@ -0,0 +1,316 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded SQLite storage in {@code monkeyland_economy.db}, using the driver bundled with
+ * Spigot.
+ * <p>
+ * The connection is confined to a single I/O thread; every call is handed to it and waited
+ * for. Balances live in one row per account and currency, keyed by (uuid, currency), so a
+ * single account is an index range scan and the file can be queried with any SQLite client.
+ * Saves are batched prepared-statement upserts in one transaction. Iteration reads a page of
+ * accounts at a time, keyed on the last UUID seen, and visits it off the I/O thread.
+ */
+public class SqliteEconomyStorage implements EconomyStorage {
+
+    public static final String TYPE = "sqlite";
+    public static final String DATABASE_FILE_NAME = "monkeyland_economy.db";
+
+    private static final int BATCH_SIZE = 1000;
+    // Accounts read per trip to the I/O thread by forEachAccount
+    private static final int PAGE_ACCOUNTS = 1000;
+
+    @FunctionalInterface
+    private interface SqlTask<T> {
+        T run() throws SQLException, IOException;
+    }
+
+    private final Path databaseFile;
+    private final ExecutorService ioExecutor;
+
+    // Only touched on the I/O thread
+    private Connection connection;
+    private PreparedStatement selectAccount;
+    private PreparedStatement selectPage;
+    private PreparedStatement upsertBalance;
+    private PreparedStatement upsertState;
+
+    public SqliteEconomyStorage(Path databaseFile) {
+        this.databaseFile = databaseFile;
+        this.ioExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "MonkeylandEconomy-SQLite");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public void open() throws IOException {
+        call(() -> {
+            connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.toAbsolutePath());
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA journal_mode=WAL");
+                statement.execute("PRAGMA synchronous=NORMAL");
+                statement.execute("CREATE TABLE IF NOT EXISTS balances ("
+                        + "uuid TEXT NOT NULL, currency TEXT NOT NULL, amount INTEGER NOT NULL, "
+                        + "PRIMARY KEY (uuid, currency)) WITHOUT ROWID");
+                statement.execute("CREATE TABLE IF NOT EXISTS economy_state ("
+                        + "name TEXT PRIMARY KEY, value REAL NOT NULL)");
+            }
+            selectAccount = connection.prepareStatement("SELECT currency, amount FROM balances WHERE uuid = ?");
+            selectPage = connection.prepareStatement("SELECT uuid, currency, amount FROM balances WHERE uuid IN "
+                    + "(SELECT DISTINCT uuid FROM balances WHERE uuid > ? ORDER BY uuid LIMIT ?) ORDER BY uuid");
+            upsertBalance = connection.prepareStatement("INSERT INTO balances (uuid, currency, amount) VALUES (?, ?, ?) "
+                    + "ON CONFLICT (uuid, currency) DO UPDATE SET amount = excluded.amount");
+            upsertState = connection.prepareStatement("INSERT INTO economy_state (name, value) VALUES (?, ?) "
+                    + "ON CONFLICT (name) DO UPDATE SET value = excluded.value");
+            return null;
+        });
+    }
+
+    @Override
+    public EconomyState loadState(EconomyState defaults) throws IOException {
+        return call(() -> {
+            Map<String, Double> values = new HashMap<>();
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT name, value FROM economy_state")) {
+                while (resultSet.next()) {
+                    values.put(resultSet.getString(1), resultSet.getDouble(2));
+                }
+            }
+
+            double[] exchangeRates = new double[Currency.count()];
+            double[] inflationFactors = new double[Currency.count()];
+            for (Currency currency : Currency.values()) {
+                exchangeRates[currency.getId()] = values.getOrDefault("exchangeRates." + currency.name(), defaults.getExchangeRate(currency));
+                inflationFactors[currency.getId()] = values.getOrDefault("inflationFactor." + currency.name(), defaults.getInflationFactor(currency));
+            }
+            return new EconomyState(
+                    values.getOrDefault("maxSupply.GOLD", defaults.getMaxGoldSupply()),
+                    values.getOrDefault("startingInflationRate", defaults.getStartingInflationRate()),
+                    values.getOrDefault("targetInflationRate", defaults.getTargetInflationRate()),
+                    values.getOrDefault("inflationCurveFactor", defaults.getInflationCurveFactor()),
+                    values.getOrDefault("inflationRate", defaults.getInflationRate()),
+                    inflationFactors,
+                    exchangeRates);
+        });
+    }
+
+    @Override
+    public void saveState(EconomyState state) throws IOException {
+        call(() -> {
+            Map<String, Double> values = new HashMap<>();
+            values.put("maxSupply.GOLD", state.getMaxGoldSupply());
+            values.put("startingInflationRate", state.getStartingInflationRate());
+            values.put("targetInflationRate", state.getTargetInflationRate());
+            values.put("inflationCurveFactor", state.getInflationCurveFactor());
+            values.put("inflationRate", state.getInflationRate());
+            for (Currency currency : Currency.values()) {
+                values.put("inflationFactor." + currency.name(), state.getInflationFactor(currency));
+                values.put("exchangeRates." + currency.name(), state.getExchangeRate(currency));
+            }
+
+            inTransaction(() -> {
+                for (Map.Entry<String, Double> entry : values.entrySet()) {
+                    upsertState.setString(1, entry.getKey());
+                    upsertState.setDouble(2, entry.getValue());
+                    upsertState.addBatch();
+                }
+                upsertState.executeBatch();
+                return null;
+            });
+            return null;
+        });
+    }
+
+    @Override
+    public long[] loadAccount(UUID playerId) throws IOException {
+        return call(() -> {
+            selectAccount.setString(1, playerId.toString());
+            long[] balances = null;
+            try (ResultSet resultSet = selectAccount.executeQuery()) {
+                while (resultSet.next()) {
+                    Currency currency = currencyOf(resultSet.getString(1));
+                    if (currency == null) {
+                        continue;
+                    }
+                    if (balances == null) {
+                        balances = new long[Currency.count()];
+                    }
+                    balances[currency.getId()] = resultSet.getLong(2);
+                }
+            }
+            return balances;
+        });
+    }
+
+    @Override
+    public void upsertAccounts(Map<UUID, long[]> accounts) throws IOException {
+        if (accounts.isEmpty()) {
+            return;
+        }
+        call(() -> inTransaction(() -> {
+            int pending = 0;
+            for (Map.Entry<UUID, long[]> entry : accounts.entrySet()) {
+                String uuid = entry.getKey().toString();
+                long[] balances = entry.getValue();
+                for (Currency currency : Currency.values()) {
+                    upsertBalance.setString(1, uuid);
+                    upsertBalance.setString(2, currency.name());
+                    upsertBalance.setLong(3, balances[currency.getId()]);
+                    upsertBalance.addBatch();
+                    if (++pending >= BATCH_SIZE) {
+                        upsertBalance.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                upsertBalance.executeBatch();
+            }
+            return null;
+        }));
+    }
+
+    @Override
+    public long[] sumBalances() throws IOException {
+        return call(() -> {
+            long[] totals = new long[Currency.count()];
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT currency, SUM(amount) FROM balances GROUP BY currency")) {
+                while (resultSet.next()) {
+                    Currency currency = currencyOf(resultSet.getString(1));
+                    if (currency != null) {
+                        totals[currency.getId()] = resultSet.getLong(2);
+                    }
+                }
+            }
+            return totals;
+        });
+    }
+
+    @Override
+    public void forEachAccount(AccountVisitor visitor) throws IOException {
+        // Read a page of accounts on the I/O thread, visit it on this one, so a slow visitor
+        // never holds up the ledger's loads and may call back into storage
+        String afterId = "";
+        while (true) {
+            String pageAfter = afterId;
+            Map<UUID, long[]> page = call(() -> {
+                Map<UUID, long[]> accounts = new LinkedHashMap<>();
+                selectPage.setString(1, pageAfter);
+                selectPage.setInt(2, PAGE_ACCOUNTS);
+                try (ResultSet resultSet = selectPage.executeQuery()) {
+                    String currentId = null;
+                    long[] balances = null;
+                    while (resultSet.next()) {
+                        String uuid = resultSet.getString(1);
+                        if (!uuid.equals(currentId)) {
+                            currentId = uuid;
+                            balances = new long[Currency.count()];
+                            accounts.put(UUID.fromString(uuid), balances);
+                        }
+                        Currency currency = currencyOf(resultSet.getString(2));
+                        if (currency != null) {
+                            balances[currency.getId()] = resultSet.getLong(3);
+                        }
+                    }
+                }
+                return accounts;
+            });
+            if (page.isEmpty()) {
+                return;
+            }
+            for (Map.Entry<UUID, long[]> entry : page.entrySet()) {
+                visitor.visit(entry.getKey(), entry.getValue());
+                afterId = entry.getKey().toString();
+            }
+        }
+    }
+
+    @Override
+    public boolean hasAccounts() throws IOException {
+        return call(() -> {
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT 1 FROM balances LIMIT 1")) {
+                return resultSet.next();
+            }
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            call(() -> {
+                if (connection != null) {
+                    connection.close();
+                }
+                return null;
+            });
+        } finally {
+            ioExecutor.shutdown();
+            try {
+                ioExecutor.awaitTermination(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Runs on the I/O thread
+    private <T> T inTransaction(SqlTask<T> task) throws SQLException, IOException {
+        connection.setAutoCommit(false);
+        try {
+            T result = task.run();
+            connection.commit();
+            return result;
+        } catch (SQLException | IOException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private <T> T call(SqlTask<T> task) throws IOException {
+        try {
+            return ioExecutor.submit(task::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for SQLite", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("SQLite error: " + cause.getMessage(), cause);
+        }
+    }
+
+    private static Currency currencyOf(String name) {
+        return Currency.find(name);
+    }
+}
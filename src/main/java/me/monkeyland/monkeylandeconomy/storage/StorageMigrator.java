@@ -0,0 +1,59 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Copies economy data from one {@link EconomyStorage} to another.
+ */
+public final class StorageMigrator {
+
+    // Accounts per write to the target; bounds memory, while keeping the number of rewrites of
+    // whole-file backends small
+    static final int BATCH_ACCOUNTS = 65_536;
+
+    @FunctionalInterface
+    private interface AccountSource {
+        void forEachAccount(AccountVisitor visitor) throws IOException;
+    }
+
+    private StorageMigrator() {
+    }
+
+    /**
+     * Writes the given state and every account of {@code source} into {@code target}. Accounts
+     * already in the target are overwritten, others are kept. Both storages must be open and
+     * the source must not change while this runs. Returns the account count.
+     */
+    public static int copy(EconomyState state, EconomyStorage source, EconomyStorage target) throws IOException {
+        return copy(state, (AccountSource) source::forEachAccount, target);
+    }
+
+    // The same from a YAML file streamed by the reader, e.g. a legacy monkeyland_economy.yml
+    public static int copy(EconomyState state, YamlAccountReader source, EconomyStorage target) throws IOException {
+        return copy(state, (AccountSource) source::forEachAccount, target);
+    }
+
+    private static int copy(EconomyState state, AccountSource source, EconomyStorage target) throws IOException {
+        // State first: the binary storage needs it before it can write any accounts
+        target.saveState(state);
+
+        Map<UUID, long[]> batch = new HashMap<>();
+        int[] count = new int[1];
+        source.forEachAccount((playerId, balances) -> {
+            batch.put(playerId, balances);
+            if (batch.size() >= BATCH_ACCOUNTS) {
+                count[0] += batch.size();
+                target.upsertAccounts(batch);
+                batch.clear();
+            }
+        });
+        if (!batch.isEmpty()) {
+            count[0] += batch.size();
+            target.upsertAccounts(batch);
+        }
+        return count[0];
+    }
+}
@@ -0,0 +1,445 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only binary journal of balance changes.
+ * <p>
+ * Every record holds the delta and the resulting balance, so replaying a journal on top of a
+ * snapshot is idempotent: the last record of an account always wins. Appends only copy the
+ * record into an in-memory buffer; a writer thread drains the buffer to a {@link FileChannel}
+ * and fsyncs once per batch (group commit). A batch that fails to write is retried until it
+ * succeeds, and until then {@link #sync()} reports the failure instead of waiting.
+ * <p>
+ * Compaction rotates the active file to {@code .compacting}; once the snapshot has been written
+ * the rotated file is deleted with {@link #deleteCompacted()}.
+ */
+public class TransactionJournal implements Closeable {
+
+    public static final String JOURNAL_FILE_NAME = "monkeyland_journal.bin";
+
+    private static final int MAGIC = 0x4D4C4A31; // "MLJ1"
+    // Amounts are fixed-point minor units
+    private static final int VERSION = 2;
+    private static final int HEADER_SIZE = 8;
+    // sequence, timestamp, uuid (2 longs), currency, amount, balance, crc
+    static final int RECORD_SIZE = 8 + 8 + 16 + 4 + 8 + 8 + 4;
+    private static final int BUFFER_RECORDS = 4096;
+    private static final long RETRY_MILLIS = 1000L;
+
+    @FunctionalInterface
+    public interface ReplayHandler {
+        void apply(long sequence, long timestamp, UUID playerId, Currency currency, long amount, long balance);
+    }
+
+    private final Path activePath;
+    private final Path compactingPath;
+    private final long commitIntervalMillis;
+    private final Logger logger;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition recordsPending = lock.newCondition();
+    private final Condition bufferAvailable = lock.newCondition();
+    private final Condition recordsDurable = lock.newCondition();
+    private final CRC32 crc = new CRC32();
+
+    private ByteBuffer activeBuffer = ByteBuffer.allocateDirect(RECORD_SIZE * BUFFER_RECORDS);
+    private ByteBuffer flushingBuffer = ByteBuffer.allocateDirect(RECORD_SIZE * BUFFER_RECORDS);
+    private FileChannel channel;
+    private long nextSequence = 1;
+    private long durableSequence = 0;
+    private long validLength = HEADER_SIZE;
+    private volatile long size;
+    private volatile boolean running;
+    private boolean writing;
+    // Set while the last batch could not be written, cleared once a retry succeeds
+    private IOException failure;
+    private Thread writerThread;
+
+    public TransactionJournal(Path dataFolder, long commitIntervalMillis, Logger logger) {
+        this.activePath = dataFolder.resolve(JOURNAL_FILE_NAME);
+        this.compactingPath = dataFolder.resolve(JOURNAL_FILE_NAME + ".compacting");
+        this.commitIntervalMillis = Math.max(0L, commitIntervalMillis);
+        this.logger = logger;
+    }
+
+    /**
+     * Replays the rotated journal left behind by an interrupted compaction, then the active one.
+     * Must be called before {@link #open()}. Returns the number of records applied.
+     */
+    public int replay(ReplayHandler handler) throws IOException {
+        int applied = 0;
+        if (Files.exists(compactingPath)) {
+            applied += replayFile(compactingPath, handler, false);
+        }
+        if (Files.exists(activePath)) {
+            applied += replayFile(activePath, handler, true);
+        }
+        return applied;
+    }
+
+    private int replayFile(Path path, ReplayHandler handler, boolean active) throws IOException {
+        Currency[] currencies = Currency.values();
+        int applied = 0;
+        long position = HEADER_SIZE;
+
+        try (FileChannel in = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            readFully(in, header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC) {
+                logger.warning("Ignoring journal with invalid header: " + path.getFileName());
+                if (active) {
+                    validLength = 0;
+                }
+                return 0;
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported journal version " + version + " in " + path.getFileName());
+            }
+
+            ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * BUFFER_RECORDS);
+            byte[] record = new byte[RECORD_SIZE - 4];
+            CRC32 checksum = new CRC32();
+            boolean torn = false;
+
+            while (!torn) {
+                buffer.clear();
+                readFully(in, buffer, position);
+                buffer.flip();
+                if (buffer.remaining() < RECORD_SIZE) {
+                    break;
+                }
+                while (buffer.remaining() >= RECORD_SIZE) {
+                    int start = buffer.position();
+                    buffer.get(record);
+                    int storedCrc = buffer.getInt();
+                    checksum.reset();
+                    checksum.update(record);
+                    if ((int) checksum.getValue() != storedCrc) {
+                        // A torn write at the tail; everything after it is unusable
+                        torn = true;
+                        break;
+                    }
+
+                    ByteBuffer fields = ByteBuffer.wrap(record);
+                    long sequence = fields.getLong();
+                    long timestamp = fields.getLong();
+                    UUID playerId = new UUID(fields.getLong(), fields.getLong());
+                    int currencyIndex = fields.getInt();
+                    long amount = fields.getLong();
+                    long balance = fields.getLong();
+
+                    if (currencyIndex >= 0 && currencyIndex < currencies.length) {
+                        handler.apply(sequence, timestamp, playerId, currencies[currencyIndex], amount, balance);
+                        applied++;
+                    }
+                    nextSequence = Math.max(nextSequence, sequence + 1);
+                    position += buffer.position() - start;
+                }
+            }
+
+            if (torn || position < in.size()) {
+                logger.warning("Journal " + path.getFileName() + " has a damaged tail, replayed up to byte " + position + ".");
+            }
+        }
+
+        if (active) {
+            validLength = position;
+        }
+        return applied;
+    }
+
+    private static void readFully(FileChannel in, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = in.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+
+    /**
+     * Opens the active journal for appending, dropping any damaged tail found during replay,
+     * and starts the writer thread.
+     */
+    public void open() throws IOException {
+        lock.lock();
+        try {
+            channel = openChannel(activePath, validLength);
+            size = channel.size();
+            durableSequence = nextSequence - 1;
+        } finally {
+            lock.unlock();
+        }
+
+        running = true;
+        writerThread = new Thread(this::runWriter, "MonkeylandEconomy-Journal");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    private FileChannel openChannel(Path path, long keepLength) throws IOException {
+        FileChannel fileChannel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (fileChannel.size() > keepLength) {
+            fileChannel.truncate(keepLength);
+        }
+        if (fileChannel.size() < HEADER_SIZE) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).flip();
+            fileChannel.truncate(0);
+            fileChannel.write(header, 0);
+            fileChannel.force(true);
+        }
+        fileChannel.position(fileChannel.size());
+        return fileChannel;
+    }
+
+    /**
+     * Queues a record for the next group commit. Only blocks if the writer has fallen a full
+     * buffer behind.
+     */
+    public void append(UUID playerId, Currency currency, long amount, long balance) {
+        lock.lock();
+        try {
+            while (activeBuffer.remaining() < RECORD_SIZE) {
+                recordsPending.signal();
+                bufferAvailable.awaitUninterruptibly();
+            }
+
+            int start = activeBuffer.position();
+            activeBuffer.putLong(nextSequence++);
+            activeBuffer.putLong(System.currentTimeMillis());
+            activeBuffer.putLong(playerId.getMostSignificantBits());
+            activeBuffer.putLong(playerId.getLeastSignificantBits());
+            activeBuffer.putInt(currency.getId());
+            activeBuffer.putLong(amount);
+            activeBuffer.putLong(balance);
+
+            crc.reset();
+            ByteBuffer written = activeBuffer.duplicate();
+            written.position(start).limit(start + RECORD_SIZE - 4);
+            crc.update(written);
+            activeBuffer.putInt((int) crc.getValue());
+
+            if (start == 0) {
+                recordsPending.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void runWriter() {
+        long lastCommit = 0L;
+        ByteBuffer batch = null;
+        long batchStart = 0L;
+        long batchSequence = 0L;
+        while (true) {
+            FileChannel target;
+            boolean retry;
+
+            lock.lock();
+            try {
+                retry = failure != null;
+                if (retry) {
+                    // The failed batch goes first so the file stays in sequence order
+                    if (running) {
+                        try {
+                            recordsPending.await(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException ignored) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                    if (!running) {
+                        logger.severe("Giving up on " + (nextSequence - 1 - durableSequence) + " unwritten journal records.");
+                        writing = false;
+                        recordsDurable.signalAll();
+                        return;
+                    }
+                    target = channel;
+                } else {
+                    while (running && activeBuffer.position() == 0) {
+                        recordsPending.awaitUninterruptibly();
+                    }
+                    if (activeBuffer.position() == 0) {
+                        return;
+                    }
+
+                    // Let a few more records pile up before paying for the fsync
+                    long wait = lastCommit + commitIntervalMillis - System.currentTimeMillis();
+                    if (running && wait > 0 && activeBuffer.remaining() >= RECORD_SIZE) {
+                        try {
+                            recordsPending.await(wait, TimeUnit.MILLISECONDS);
+                        } catch (InterruptedException ignored) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+
+                    batch = activeBuffer;
+                    activeBuffer = flushingBuffer;
+                    flushingBuffer = batch;
+                    batchSequence = nextSequence - 1;
+                    target = channel;
+                    writing = true;
+                    bufferAvailable.signalAll();
+                    batch.flip();
+                    // Where the batch goes, ahead of any part of a failed attempt
+                    batchStart = size;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                if (retry) {
+                    // Drop whatever part of the failed attempt reached the file
+                    target.truncate(batchStart);
+                    target.position(batchStart);
+                    batch.rewind();
+                }
+                while (batch.hasRemaining()) {
+                    target.write(batch);
+                }
+                target.force(false);
+                size = target.size();
+            } catch (IOException e) {
+                error = e;
+            }
+            lastCommit = System.currentTimeMillis();
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    if (failure == null) {
+                        logger.severe("Failed to write transaction journal, retrying: " + error.getMessage());
+                    }
+                    failure = error;
+                } else {
+                    if (failure != null) {
+                        logger.info("Transaction journal is writable again.");
+                    }
+                    failure = null;
+                    batch.clear();
+                    durableSequence = batchSequence;
+                    writing = false;
+                }
+                recordsDurable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Blocks until every record appended so far has been fsynced. Throws if the journal is
+     * failing to write them, so nothing that depends on them is saved in the meantime.
+     */
+    public void sync() throws IOException {
+        lock.lock();
+        try {
+            long target = nextSequence - 1;
+            while (running && durableSequence < target) {
+                if (failure != null) {
+                    throw failed();
+                }
+                recordsPending.signal();
+                recordsDurable.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private IOException failed() {
+        return new IOException("Transaction journal is failing to write: " + failure.getMessage(), failure);
+    }
+
+    /**
+     * Moves the active journal aside so a snapshot can absorb it. Does nothing if a previous
+     * compaction has not been completed yet.
+     */
+    public void rotate() throws IOException {
+        lock.lock();
+        try {
+            if (Files.exists(compactingPath)) {
+                return;
+            }
+            if (failure != null) {
+                throw failed();
+            }
+
+            // The writer must not be holding the old channel while it is swapped out
+            while (running && (writing || activeBuffer.position() > 0)) {
+                if (failure != null) {
+                    throw failed();
+                }
+                recordsPending.signal();
+                recordsDurable.awaitUninterruptibly();
+            }
+            channel.close();
+            Files.move(activePath, compactingPath, StandardCopyOption.ATOMIC_MOVE);
+            channel = openChannel(activePath, 0);
+            size = channel.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Called once the snapshot covering the rotated journal has been written
+    public void deleteCompacted() throws IOException {
+        Files.deleteIfExists(compactingPath);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException error = null;
+        try {
+            sync();
+        } catch (IOException e) {
+            error = e;
+        }
+        lock.lock();
+        try {
+            running = false;
+            recordsPending.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (writerThread != null) {
+            try {
+                writerThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Write-behind layer for the economy data file.
+ * <p>
+ * Balance changes only mark the account as dirty. An async task writes the dirty accounts
+ * back every {@code flushIntervalTicks}, or earlier once {@code flushThreshold} accounts are
+ * waiting, so the main thread never touches the disk.
+ */
+public class WriteBehindFlusher {
+
+    @FunctionalInterface
+    public interface FlushAction {
+        void flush(Set<UUID> dirtyAccounts, boolean stateChanged) throws IOException;
+    }
+
+    private final JavaPlugin plugin;
+    private final FlushAction flushAction;
+    private final long flushIntervalTicks;
+    private final int flushThreshold;
+
+    private final Set<UUID> dirtyAccounts = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean stateDirty = new AtomicBoolean(false);
+    private final AtomicBoolean flushQueued = new AtomicBoolean(false);
+    private final Object flushLock = new Object();
+
+    private BukkitTask flushTask;
+
+    public WriteBehindFlusher(JavaPlugin plugin, FlushAction flushAction, long flushIntervalTicks, int flushThreshold) {
+        this.plugin = plugin;
+        this.flushAction = flushAction;
+        this.flushIntervalTicks = Math.max(1L, flushIntervalTicks);
+        this.flushThreshold = Math.max(1, flushThreshold);
+    }
+
+    public void start() {
+        flushTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, this::flush, flushIntervalTicks, flushIntervalTicks);
+    }
+
+    public void markDirty(UUID playerId) {
+        if (dirtyAccounts.add(playerId) && dirtyAccounts.size() >= flushThreshold) {
+            requestFlush();
+        }
+    }
+
+    public void markStateDirty() {
+        stateDirty.set(true);
+    }
+
+    public int getDirtyCount() {
+        return dirtyAccounts.size();
+    }
+
+    // Schedules a single early flush; further requests are ignored until it has run
+    private void requestFlush() {
+        if (flushQueued.compareAndSet(false, true) && plugin.isEnabled()) {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, this::flush);
+        }
+    }
+
+    // Returns false if the write failed and the accounts were put back as dirty
+    public boolean flush() {
+        synchronized (flushLock) {
+            flushQueued.set(false);
+
+            Set<UUID> batch = new HashSet<>();
+            Iterator<UUID> iterator = dirtyAccounts.iterator();
+            while (iterator.hasNext()) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+            boolean stateChanged = stateDirty.getAndSet(false);
+
+            if (batch.isEmpty() && !stateChanged) {
+                return true;
+            }
+
+            try {
+                flushAction.flush(batch, stateChanged);
+                return true;
+            } catch (IOException e) {
+                // Keep the accounts dirty so the next flush retries them
+                dirtyAccounts.addAll(batch);
+                if (stateChanged) {
+                    stateDirty.set(true);
+                }
+                plugin.getLogger().severe("Failed to save economy data: " + e.getMessage());
+                return false;
+            }
+        }
+    }
+
+    // Stops the periodic task and performs the final flush on the calling thread
+    public void shutdown() {
+        if (flushTask != null) {
+            flushTask.cancel();
+            flushTask = null;
+        }
+        flush();
+    }
+}
@@ -0,0 +1,313 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+/**
+ * Streams the accounts out of a {@code monkeyland_economy.yml} without building its tree.
+ * <p>
+ * Reads the file line by line and understands just the layout the YAML storage writes: a
+ * top-level {@code players:} section with one block per account, {@code <uuid>:} followed by
+ * indented {@code <CURRENCY>: <amount>} lines (a flow map {@code {GOLD: 1.0}} works too).
+ * Account lines are cut into chunks that worker threads parse while the file is still being
+ * read; at most two chunks per thread are in flight, so memory stays bounded however big the
+ * file is. Everything outside the players section is small and can be read as settings.
+ */
+public final class YamlAccountReader {
+
+    public static final int DEFAULT_CHUNK_ACCOUNTS = 4096;
+
+    private static final String PLAYERS_KEY = "players";
+
+    private final Path file;
+    private final int threads;
+    private final int chunkAccounts;
+    private final Logger logger;
+
+    public YamlAccountReader(Path file, int threads, int chunkAccounts, Logger logger) {
+        this.file = file;
+        this.threads = Math.max(1, threads);
+        this.chunkAccounts = Math.max(1, chunkAccounts);
+        this.logger = logger;
+    }
+
+    // Every line except the players section, to be parsed as ordinary YAML
+    public String readSettings() throws IOException {
+        StringBuilder settings = new StringBuilder();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean inPlayers = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isTopLevel(line)) {
+                    inPlayers = isPlayersHeader(line);
+                    if (inPlayers) {
+                        continue;
+                    }
+                }
+                if (!inPlayers) {
+                    settings.append(line).append('\n');
+                }
+            }
+        }
+        return settings.toString();
+    }
+
+    // Stops at the first account
+    public boolean hasAccounts() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean inPlayers = false;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isTopLevel(line)) {
+                    inPlayers = isPlayersHeader(line);
+                } else if (inPlayers && !isBlank(line)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Visits every account in file order, on the calling thread. Entries whose key is not a
+     * UUID are logged and skipped; unreadable amounts count as zero, as in the YAML storage.
+     * Returns the number of accounts visited.
+     */
+    public int forEachAccount(AccountVisitor visitor) throws IOException {
+        ExecutorService executor = threads > 1 ? Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "MonkeylandEconomy-YamlReader");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+        ArrayDeque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        int[] visited = new int[1];
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            boolean inPlayers = false;
+            int accountIndent = -1;
+            List<String> lines = new ArrayList<>();
+            int accounts = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (isTopLevel(line)) {
+                    inPlayers = isPlayersHeader(line);
+                    continue;
+                }
+                if (!inPlayers || isBlank(line)) {
+                    continue;
+                }
+                int indent = indentOf(line);
+                if (accountIndent < 0) {
+                    accountIndent = indent;
+                }
+                if (indent == accountIndent) {
+                    if (accounts == chunkAccounts) {
+                        submit(executor, inFlight, lines, accountIndent, visitor, visited);
+                        lines = new ArrayList<>();
+                        accounts = 0;
+                    }
+                    accounts++;
+                }
+                lines.add(line);
+            }
+            if (!lines.isEmpty()) {
+                submit(executor, inFlight, lines, accountIndent, visitor, visited);
+            }
+            while (!inFlight.isEmpty()) {
+                drain(inFlight.poll(), visitor, visited);
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+        return visited[0];
+    }
+
+    private void submit(ExecutorService executor, ArrayDeque<Future<Chunk>> inFlight, List<String> lines, int accountIndent,
+                        AccountVisitor visitor, int[] visited) throws IOException {
+        if (executor == null) {
+            visit(parse(lines, accountIndent), visitor, visited);
+            return;
+        }
+        // Bounded: wait for the oldest chunk before reading further ahead
+        if (inFlight.size() >= 2 * threads) {
+            drain(inFlight.poll(), visitor, visited);
+        }
+        inFlight.add(executor.submit(() -> parse(lines, accountIndent)));
+    }
+
+    private void drain(Future<Chunk> future, AccountVisitor visitor, int[] visited) throws IOException {
+        Chunk chunk;
+        try {
+            chunk = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while reading " + file, e);
+        } catch (ExecutionException e) {
+            throw new IOException("failed to parse " + file + ": " + e.getCause(), e.getCause());
+        }
+        visit(chunk, visitor, visited);
+    }
+
+    private void visit(Chunk chunk, AccountVisitor visitor, int[] visited) throws IOException {
+        for (String key : chunk.invalidKeys) {
+            logger.warning("Invalid UUID found in player data: " + key);
+        }
+        for (int i = 0; i < chunk.count; i++) {
+            visitor.visit(chunk.playerIds[i], chunk.balances[i]);
+        }
+        visited[0] += chunk.count;
+    }
+
+    // --- Parsing, on the worker threads ---
+
+    private static final class Chunk {
+        final UUID[] playerIds;
+        final long[][] balances;
+        final List<String> invalidKeys = new ArrayList<>();
+        int count;
+
+        Chunk(int capacity) {
+            this.playerIds = new UUID[capacity];
+            this.balances = new long[capacity][];
+        }
+    }
+
+    private static Chunk parse(List<String> lines, int accountIndent) {
+        int headers = 0;
+        for (String line : lines) {
+            if (indentOf(line) == accountIndent) {
+                headers++;
+            }
+        }
+        Chunk chunk = new Chunk(headers);
+        long[] current = null;
+        for (String line : lines) {
+            int indent = indentOf(line);
+            if (indent == accountIndent) {
+                current = null;
+                int colon = colonOf(line, indent);
+                String key = unquote(line.substring(indent, colon < 0 ? line.length() : colon).trim());
+                UUID playerId;
+                try {
+                    playerId = UUID.fromString(key);
+                } catch (IllegalArgumentException e) {
+                    chunk.invalidKeys.add(key);
+                    continue;
+                }
+                current = new long[Currency.count()];
+                chunk.playerIds[chunk.count] = playerId;
+                chunk.balances[chunk.count] = current;
+                chunk.count++;
+                if (colon >= 0) {
+                    String rest = stripComment(line.substring(colon + 1)).trim();
+                    if (rest.startsWith("{") && rest.endsWith("}")) {
+                        for (String entry : rest.substring(1, rest.length() - 1).split(",")) {
+                            int separator = entry.indexOf(':');
+                            if (separator > 0) {
+                                readBalance(current, entry.substring(0, separator), entry.substring(separator + 1));
+                            }
+                        }
+                    }
+                }
+            } else if (current != null && indent > accountIndent) {
+                int colon = colonOf(line, indent);
+                if (colon > 0) {
+                    readBalance(current, line.substring(indent, colon), stripComment(line.substring(colon + 1)));
+                }
+            }
+        }
+        return chunk;
+    }
+
+    private static void readBalance(long[] balances, String key, String value) {
+        Currency currency = Currency.find(unquote(key.trim()));
+        if (currency == null) {
+            return;
+        }
+        try {
+            balances[currency.getId()] = AccountStore.toMinor(Double.parseDouble(unquote(value.trim())));
+        } catch (NumberFormatException e) {
+            balances[currency.getId()] = 0L;
+        }
+    }
+
+    // --- Line helpers ---
+
+    private static boolean isBlank(String line) {
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '#') {
+                return true;
+            }
+            if (c != ' ' && c != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A key at column zero; comments, blank lines and document markers are not
+    private static boolean isTopLevel(String line) {
+        return !line.isEmpty() && line.charAt(0) != ' ' && line.charAt(0) != '#' && !line.startsWith("---") && !line.startsWith("...");
+    }
+
+    private static boolean isPlayersHeader(String line) {
+        int colon = colonOf(line, 0);
+        if (colon < 0 || !unquote(line.substring(0, colon)).equals(PLAYERS_KEY)) {
+            return false;
+        }
+        // "players: {}" is an empty section
+        return stripComment(line.substring(colon + 1)).trim().isEmpty();
+    }
+
+    private static int indentOf(String line) {
+        int indent = 0;
+        while (indent < line.length() && line.charAt(indent) == ' ') {
+            indent++;
+        }
+        return indent;
+    }
+
+    // The colon ending the key that starts at the given index, skipping over a quoted key
+    private static int colonOf(String line, int from) {
+        int start = from;
+        if (from < line.length() && (line.charAt(from) == '\'' || line.charAt(from) == '"')) {
+            int close = line.indexOf(line.charAt(from), from + 1);
+            if (close > 0) {
+                start = close;
+            }
+        }
+        return line.indexOf(':', start);
+    }
+
+    private static String stripComment(String value) {
+        int hash = value.indexOf(" #");
+        return hash < 0 ? value : value.substring(0, hash);
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2) {
+            char first = value.charAt(0);
+            if ((first == '\'' || first == '"') && value.charAt(value.length() - 1) == first) {
+                return value.substring(1, value.length() - 1);
+            }
+        }
+        return value;
+    }
+}
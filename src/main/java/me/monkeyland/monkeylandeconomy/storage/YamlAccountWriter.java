@@ -0,0 +1,112 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.UUID;
+
+/**
+ * Writes economy data in the {@code monkeyland_economy.yml} layout one account at a time, so
+ * an export never holds more than a buffer in memory. The output can be read back by
+ * {@link YamlAccountReader} or used as the data file of the YAML storage. It is written to a
+ * temporary file and moved into place on {@link #close()}.
+ */
+public final class YamlAccountWriter implements Closeable {
+
+    private final Path file;
+    private final Path tempFile;
+    private final BufferedWriter writer;
+    private final StringBuilder line = new StringBuilder(128);
+    private boolean playersStarted;
+    private int count;
+
+    public YamlAccountWriter(Path file) throws IOException {
+        this.file = file;
+        this.tempFile = file.resolveSibling(file.getFileName() + ".tmp");
+        this.writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8);
+    }
+
+    // The economy parameters, with the keys the YAML storage uses; must come before any account
+    public void writeState(EconomyState state) throws IOException {
+        if (playersStarted) {
+            throw new IllegalStateException("state must be written before the accounts");
+        }
+        writer.write("maxSupply:\n  GOLD: " + state.getMaxGoldSupply() + "\n");
+        writer.write("startingInflationRate: " + state.getStartingInflationRate() + "\n");
+        writer.write("targetInflationRate: " + state.getTargetInflationRate() + "\n");
+        writer.write("inflationCurveFactor: " + state.getInflationCurveFactor() + "\n");
+        writer.write("inflationRate: " + state.getInflationRate() + "\n");
+        writer.write("inflationFactor:\n");
+        for (Currency currency : Currency.values()) {
+            writer.write("  " + currency.name() + ": " + state.getInflationFactor(currency) + "\n");
+        }
+        writer.write("exchangeRates:\n");
+        for (Currency currency : Currency.values()) {
+            writer.write("  " + currency.name() + ": " + Math.round(state.getExchangeRate(currency) * 10000.0) / 10000.0 + "\n");
+        }
+    }
+
+    // Balances are stored minor units indexed by currency id
+    public void writeAccount(UUID playerId, long[] balances) throws IOException {
+        if (!playersStarted) {
+            writer.write("players:\n");
+            playersStarted = true;
+        }
+        line.setLength(0);
+        line.append("  ").append(playerId).append(":\n");
+        for (Currency currency : Currency.values()) {
+            line.append("    ").append(currency.name()).append(": ");
+            appendMajor(line, currency.getId() < balances.length ? balances[currency.getId()] : 0L);
+            line.append('\n');
+        }
+        writer.append(line);
+        count++;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!playersStarted) {
+                writer.write("players: {}\n");
+            }
+        } finally {
+            writer.close();
+        }
+        Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Exact decimal of a minor-unit amount, always with a fractional part so YAML reads a float
+    static void appendMajor(StringBuilder out, long minorUnits) {
+        if (minorUnits < 0) {
+            out.append('-');
+        }
+        long whole = Math.abs(minorUnits / AccountStore.SCALE);
+        long fraction = Math.abs(minorUnits % AccountStore.SCALE);
+        out.append(whole).append('.');
+        if (fraction == 0) {
+            out.append('0');
+            return;
+        }
+        int digits = Long.toString(AccountStore.SCALE).length() - 1;
+        String padded = Long.toString(fraction);
+        for (int i = padded.length(); i < digits; i++) {
+            out.append('0');
+        }
+        int end = padded.length();
+        while (padded.charAt(end - 1) == '0') {
+            end--;
+        }
+        out.append(padded, 0, end);
+    }
+}
@@ -0,0 +1,192 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.FileConfiguration;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Logger;
+
+/**
+ * The original storage: everything in {@code monkeyland_economy.yml}, under the
+ * {@code players.<uuid>.<CURRENCY>} layout. The whole file is parsed at startup and rewritten
+ * on every save, so it suits small servers; it shares the configuration object with the
+ * plugin settings and synchronizes on it.
+ */
+public class YamlEconomyStorage implements EconomyStorage {
+
+    public static final String TYPE = "yaml";
+
+    private static final int VISIT_BATCH_ACCOUNTS = 1000;
+
+    private final FileConfiguration config;
+    private final File dataFile;
+    private final Logger logger;
+
+    public YamlEconomyStorage(FileConfiguration config, File dataFile, Logger logger) {
+        this.config = config;
+        this.dataFile = dataFile;
+        this.logger = logger;
+    }
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public void open() {
+        // Already loaded together with the plugin settings
+    }
+
+    @Override
+    public EconomyState loadState(EconomyState defaults) {
+        synchronized (config) {
+            return readState(config, defaults);
+        }
+    }
+
+    @Override
+    public void saveState(EconomyState state) throws IOException {
+        synchronized (config) {
+            writeState(config, state);
+            save();
+        }
+    }
+
+    @Override
+    public long[] loadAccount(UUID playerId) {
+        synchronized (config) {
+            ConfigurationSection section = config.getConfigurationSection("players." + playerId);
+            return section == null ? null : readBalances(section);
+        }
+    }
+
+    @Override
+    public void upsertAccounts(Map<UUID, long[]> accounts) throws IOException {
+        synchronized (config) {
+            // Only the given entries are touched, the rest of the section is left alone
+            for (Map.Entry<UUID, long[]> entry : accounts.entrySet()) {
+                long[] balances = entry.getValue();
+                for (Currency currency : Currency.values()) {
+                    config.set("players." + entry.getKey() + "." + currency.name(), AccountStore.toMajor(balances[currency.getId()]));
+                }
+            }
+            save();
+        }
+    }
+
+    @Override
+    public long[] sumBalances() throws IOException {
+        long[] totals = new long[Currency.count()];
+        forEachAccount((playerId, balances) -> {
+            for (int i = 0; i < totals.length; i++) {
+                totals[i] += balances[i];
+            }
+        });
+        return totals;
+    }
+
+    @Override
+    public void forEachAccount(AccountVisitor visitor) throws IOException {
+        List<String> uuidStrings;
+        synchronized (config) {
+            ConfigurationSection playersSection = config.getConfigurationSection("players");
+            if (playersSection == null) {
+                return;
+            }
+            uuidStrings = new ArrayList<>(playersSection.getKeys(false));
+        }
+        // Copied a batch at a time under the lock and visited outside it, so a slow visitor
+        // never holds up the ledger's loads and saves
+        for (int from = 0; from < uuidStrings.size(); from += VISIT_BATCH_ACCOUNTS) {
+            Map<UUID, long[]> batch = new LinkedHashMap<>();
+            synchronized (config) {
+                for (String uuidString : uuidStrings.subList(from, Math.min(from + VISIT_BATCH_ACCOUNTS, uuidStrings.size()))) {
+                    ConfigurationSection section = config.getConfigurationSection("players." + uuidString);
+                    UUID playerId;
+                    try {
+                        playerId = UUID.fromString(uuidString);
+                    } catch (IllegalArgumentException e) {
+                        logger.warning("Invalid UUID found in player data: " + uuidString);
+                        continue;
+                    }
+                    if (section != null) {
+                        batch.put(playerId, readBalances(section));
+                    }
+                }
+            }
+            for (Map.Entry<UUID, long[]> entry : batch.entrySet()) {
+                visitor.visit(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    @Override
+    public boolean hasAccounts() {
+        synchronized (config) {
+            ConfigurationSection playersSection = config.getConfigurationSection("players");
+            return playersSection != null && !playersSection.getKeys(false).isEmpty();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+    private static long[] readBalances(ConfigurationSection section) {
+        long[] balances = new long[Currency.count()];
+        for (Currency currency : Currency.values()) {
+            balances[currency.getId()] = AccountStore.toMinor(section.getDouble(currency.name(), 0.0));
+        }
+        return balances;
+    }
+
+    // Write to a temp file first so a crash never leaves a half-written file
+    private void save() throws IOException {
+        File tempFile = new File(dataFile.getParentFile(), dataFile.getName() + ".tmp");
+        config.save(tempFile);
+        Files.move(tempFile.toPath(), dataFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Reads the economy parameters of the YAML layout, falling back to the given values
+    public static EconomyState readState(ConfigurationSection config, EconomyState defaults) {
+        double[] exchangeRates = new double[Currency.count()];
+        double[] inflationFactors = new double[Currency.count()];
+        for (Currency currency : Currency.values()) {
+            exchangeRates[currency.getId()] = config.getDouble("exchangeRates." + currency.name(), defaults.getExchangeRate(currency));
+            inflationFactors[currency.getId()] = config.getDouble("inflationFactor." + currency.name(), defaults.getInflationFactor(currency));
+        }
+        return new EconomyState(
+                config.getDouble("maxSupply.GOLD", defaults.getMaxGoldSupply()),
+                config.getDouble("startingInflationRate", defaults.getStartingInflationRate()),
+                config.getDouble("targetInflationRate", defaults.getTargetInflationRate()),
+                config.getDouble("inflationCurveFactor", defaults.getInflationCurveFactor()),
+                config.getDouble("inflationRate", defaults.getInflationRate()),
+                inflationFactors,
+                exchangeRates);
+    }
+
+    static void writeState(ConfigurationSection config, EconomyState state) {
+        config.set("maxSupply.GOLD", state.getMaxGoldSupply());
+        config.set("startingInflationRate", state.getStartingInflationRate());
+        config.set("targetInflationRate", state.getTargetInflationRate());
+        config.set("inflationCurveFactor", state.getInflationCurveFactor());
+        config.set("inflationRate", state.getInflationRate());
+        for (Currency currency : Currency.values()) {
+            // Full precision, balances are multiplied by it
+            config.set("inflationFactor." + currency.name(), state.getInflationFactor(currency));
+            // Round to 4 decimal places
+            config.set("exchangeRates." + currency.name(), Math.round(state.getExchangeRate(currency) * 10000.0) / 10000.0);
+        }
+    }
+}
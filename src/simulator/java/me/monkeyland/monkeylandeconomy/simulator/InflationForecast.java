@@ -0,0 +1,508 @@
+package me.monkeyland.monkeylandeconomy.simulator;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
+import me.monkeyland.monkeylandeconomy.inflation.InflationModel;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.storage.BinaryEconomyStorage;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+import me.monkeyland.monkeylandeconomy.storage.EconomyStorage;
+import me.monkeyland.monkeylandeconomy.storage.SqliteEconomyStorage;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Offline forecast of the inflation model across a sweep of parameters.
+ * <p>
+ * Starts from a stored economy, or the defaults, and runs {@link InflationModel#advance} forward
+ * one inflation tick at a time for a number of simulated days, as the plugin does once an hour.
+ * Between ticks gold enters circulation from mining, which grows by a share every day, and
+ * leaves it through spending, a share of the circulating supply per hour. Like the plugin, nothing
+ * caps the total: {@code maxSupply} caps each account, so mining only stops once every account
+ * holds that much. Players are not simulated, only the totals the model reads, so a run over a
+ * year takes milliseconds.
+ * <p>
+ * Every parameter takes a list of values. The sweep runs every combination of them, or with
+ * {@code --samples} that many runs with each parameter drawn uniformly between its smallest and
+ * largest value. Runs are spread over a fork/join pool and each draws from its own seeded
+ * generator, so results do not depend on the number of threads. The daily trajectory of every
+ * run is written as CSV, and the calmest runs are printed.
+ * <p>
+ * Run with {@code ./gradlew forecast --args="--snapshot=monkeyland_economy.dat --days=90
+ * --startingInflationRate=0:0.005:6 --mining=200,500,1000 --csv=forecast.csv"}.
+ */
+public final class InflationForecast {
+
+    // Swept parameters, in the order of the CSV columns
+    private enum Parameter {
+        STARTING_INFLATION_RATE("startingInflationRate", "starting_inflation_rate"),
+        MAX_SUPPLY("maxSupply", "max_supply"),
+        MINING("mining", "mining_per_hour"),
+        SPENDING("spending", "spending_per_hour"),
+        GROWTH("growth", "growth_per_day");
+
+        private final String option;
+        private final String column;
+
+        Parameter(String option, String column) {
+            this.option = option;
+            this.column = column;
+        }
+
+        static Parameter byOption(String option) {
+            for (Parameter parameter : values()) {
+                if (parameter.option.equals(option)) {
+                    return parameter;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Gold mined per hour, share of the gold supply spent per hour and daily mining growth without options
+    private static final double DEFAULT_MINING_PER_HOUR = 500;
+    private static final double DEFAULT_SPENDING_PER_HOUR = 0.001;
+    private static final double DEFAULT_GROWTH_PER_DAY = 0.0;
+    // Accounts sharing the mined gold without a snapshot to count them in
+    private static final int DEFAULT_ACCOUNTS = 1000;
+
+    // Days at the end of a run whose inflation rates decide how calm it was
+    private static final int CALM_WINDOW_DAYS = 7;
+    private static final int MAX_RUNS = 1_000_000;
+
+    // One combination of parameters and its daily trajectory
+    private final class Run {
+        final int index;
+        final double[] parameters;
+        // Per day: gold supply, inflation rate, exchange rate per currency
+        final double[][] trajectory;
+
+        Run(int index, double[] parameters) {
+            this.index = index;
+            this.parameters = parameters;
+            this.trajectory = new double[days + 1][];
+        }
+
+        void simulate() {
+            SplittableRandom random = new SplittableRandom(seed * 1_000_003L + index);
+            // The model reads neither the target rate nor the curve factor, so they are not swept
+            EconomyState state = new EconomyState(parameters[Parameter.MAX_SUPPLY.ordinal()],
+                    parameters[Parameter.STARTING_INFLATION_RATE.ordinal()], start.getTargetInflationRate(),
+                    start.getInflationCurveFactor(), start.getInflationRate(),
+                    start.getInflationFactors(), start.getExchangeRates());
+            // Every account full; a lower maxSupply never takes gold away from anyone
+            double fullSupply = state.getMaxGoldSupply() * accounts;
+            double supply = startSupply;
+            double mining = parameters[Parameter.MINING.ordinal()];
+            double spending = parameters[Parameter.SPENDING.ordinal()];
+            double growth = parameters[Parameter.GROWTH.ordinal()];
+
+            trajectory[0] = row(state, supply);
+            for (int day = 1; day <= days; day++) {
+                for (int tick = 0; tick < ticksPerDay; tick++) {
+                    double mined = mining;
+                    if (noise > 0) {
+                        // Log-normal with the same mean, so noise alone does not shift the supply
+                        mined *= Math.exp(noise * random.nextGaussian() - noise * noise / 2);
+                    }
+                    if (supply < fullSupply) {
+                        supply = Math.min(fullSupply, supply + mined);
+                    }
+                    supply -= supply * spending;
+                    state = InflationModel.advance(state, supply);
+                }
+                trajectory[day] = row(state, supply);
+                mining *= 1 + growth;
+            }
+        }
+
+        // Mean absolute daily inflation rate over the last days of the run
+        double calmness() {
+            int first = Math.max(1, trajectory.length - CALM_WINDOW_DAYS);
+            double sum = 0;
+            for (int day = first; day < trajectory.length; day++) {
+                sum += Math.abs(trajectory[day][1]);
+            }
+            return sum / (trajectory.length - first);
+        }
+    }
+
+    private static double[] row(EconomyState state, double supply) {
+        double[] row = new double[2 + Currency.count()];
+        row[0] = supply;
+        row[1] = state.getInflationRate();
+        for (Currency currency : Currency.values()) {
+            row[2 + currency.getId()] = state.getExchangeRate(currency);
+        }
+        return row;
+    }
+
+    // Splits the runs in halves until each task has one
+    private final class ForecastTask extends RecursiveAction {
+        private final int from;
+        private final int to;
+
+        ForecastTask(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from == 1) {
+                runs[from].simulate();
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new ForecastTask(from, middle), new ForecastTask(middle, to));
+        }
+    }
+
+    private final EconomyState start;
+    private final double startSupply;
+    private final long accounts;
+    private final int days;
+    private final int ticksPerDay;
+    private final double noise;
+    private final long seed;
+    private final Run[] runs;
+
+    private InflationForecast(EconomyState start, double startSupply, long accounts, int days, int ticksPerDay, double noise,
+                              long seed, List<double[]> combinations) {
+        this.start = start;
+        this.startSupply = startSupply;
+        this.accounts = accounts;
+        this.days = days;
+        this.ticksPerDay = ticksPerDay;
+        this.noise = noise;
+        this.seed = seed;
+        this.runs = new Run[combinations.size()];
+        for (int i = 0; i < runs.length; i++) {
+            runs[i] = new Run(i, combinations.get(i));
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Path snapshotFile = null;
+        long accounts = 0;
+        int days = 30;
+        int ticksPerDay = 24;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int samples = 0;
+        double noise = 0.0;
+        long seed = 1L;
+        int top = 10;
+        Path csvFile = Paths.get("forecast.csv");
+        double[][] values = new double[Parameter.values().length][];
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                usage("Unrecognized argument: " + arg);
+                return;
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            try {
+                Parameter parameter = Parameter.byOption(name);
+                if (parameter != null) {
+                    values[parameter.ordinal()] = parseValues(value);
+                    continue;
+                }
+                switch (name) {
+                    case "snapshot":
+                        snapshotFile = Paths.get(value);
+                        break;
+                    case "accounts":
+                        accounts = Long.parseLong(value);
+                        break;
+                    case "days":
+                        days = Integer.parseInt(value);
+                        break;
+                    case "ticksPerDay":
+                        ticksPerDay = Integer.parseInt(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "samples":
+                        samples = Integer.parseInt(value);
+                        break;
+                    case "noise":
+                        noise = Double.parseDouble(value);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "top":
+                        top = Integer.parseInt(value);
+                        break;
+                    case "csv":
+                        csvFile = Paths.get(value);
+                        break;
+                    default:
+                        usage("Unknown option: " + name);
+                        return;
+                }
+            } catch (IllegalArgumentException e) {
+                usage("Invalid value for " + name + ": " + value);
+                return;
+            }
+        }
+        if (days < 1 || ticksPerDay < 1 || threads < 1 || samples < 0 || noise < 0 || top < 0 || accounts < 0) {
+            usage("days, ticksPerDay and threads must be at least 1, accounts, samples, noise and top not negative.");
+            return;
+        }
+
+        // Parameters without values keep the stored economy's, or the plugin's defaults
+        EconomyState start = EconomyEngine.defaultState();
+        double startSupply = 0.0;
+        if (snapshotFile != null) {
+            EconomyStorage storage = openStorage(snapshotFile);
+            if (storage == null) {
+                usage("Snapshot must be a " + BinaryEconomyStorage.TYPE + " (.dat) or " + SqliteEconomyStorage.TYPE
+                        + " (.db) economy file; convert a yaml economy with /monkeyland convert first.");
+                return;
+            }
+            try {
+                storage.open();
+                start = storage.loadState(start);
+                long stored = storage.sumBalances()[Currency.gold().getId()];
+                startSupply = AccountStore.toMajor(Math.round(stored * start.getInflationFactor(Currency.gold())));
+                if (accounts == 0) {
+                    long[] count = new long[1];
+                    storage.forEachAccount((playerId, balances) -> count[0]++);
+                    accounts = count[0];
+                }
+            } finally {
+                storage.close();
+            }
+        }
+        double[] defaults = new double[Parameter.values().length];
+        defaults[Parameter.STARTING_INFLATION_RATE.ordinal()] = start.getStartingInflationRate();
+        defaults[Parameter.MAX_SUPPLY.ordinal()] = start.getMaxGoldSupply();
+        defaults[Parameter.MINING.ordinal()] = DEFAULT_MINING_PER_HOUR;
+        defaults[Parameter.SPENDING.ordinal()] = DEFAULT_SPENDING_PER_HOUR;
+        defaults[Parameter.GROWTH.ordinal()] = DEFAULT_GROWTH_PER_DAY;
+        for (Parameter parameter : Parameter.values()) {
+            if (values[parameter.ordinal()] == null) {
+                values[parameter.ordinal()] = new double[]{defaults[parameter.ordinal()]};
+            }
+        }
+        for (double maxSupply : values[Parameter.MAX_SUPPLY.ordinal()]) {
+            if (!(maxSupply > 0)) {
+                usage("maxSupply must be positive.");
+                return;
+            }
+        }
+        if (accounts == 0) {
+            accounts = DEFAULT_ACCOUNTS;
+        }
+
+        List<double[]> combinations = samples > 0 ? sample(values, samples, seed) : grid(values);
+        if (combinations == null) {
+            usage("The sweep has more than " + MAX_RUNS + " runs; use fewer values or --samples.");
+            return;
+        }
+
+        InflationForecast forecast = new InflationForecast(start, startSupply, accounts, days, ticksPerDay, noise, seed, combinations);
+        System.out.printf("Forecasting %d runs of %d days from %.2f gold in %d accounts on %d threads...%n",
+                combinations.size(), days, startSupply, accounts, threads);
+        long startNanos = System.nanoTime();
+        forecast.run(threads);
+        System.out.printf("Done in %.2fs.%n", (System.nanoTime() - startNanos) / 1e9);
+
+        forecast.report(top);
+        forecast.writeCsv(csvFile);
+        System.out.println();
+        System.out.println("Trajectories written to " + csvFile.toAbsolutePath());
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        StringBuilder parameters = new StringBuilder();
+        for (Parameter parameter : Parameter.values()) {
+            parameters.append(" --").append(parameter.option).append("=VALUES");
+        }
+        System.err.println("Options: --snapshot=FILE --accounts=N --days=N --ticksPerDay=N --threads=N --samples=N --noise=SIGMA --seed=N --top=N --csv=FILE"
+                + parameters);
+        System.err.println("VALUES is a list like 0.001,0.002 or a range FROM:TO:COUNT of evenly spaced values.");
+        System.exit(2);
+    }
+
+    private static EconomyStorage openStorage(Path file) {
+        String name = file.getFileName().toString();
+        if (name.endsWith(".dat")) {
+            return new BinaryEconomyStorage(file);
+        }
+        if (name.endsWith(".db")) {
+            return new SqliteEconomyStorage(file);
+        }
+        return null;
+    }
+
+    // "a,b,c" or "from:to:count"
+    private static double[] parseValues(String text) {
+        String[] range = text.split(":");
+        if (range.length == 3) {
+            double from = Double.parseDouble(range[0]);
+            double to = Double.parseDouble(range[1]);
+            int count = Integer.parseInt(range[2]);
+            if (count < 1) {
+                throw new IllegalArgumentException("count must be at least 1");
+            }
+            double[] values = new double[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = count == 1 ? from : from + (to - from) * i / (count - 1);
+            }
+            return values;
+        }
+        String[] parts = text.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Double.parseDouble(parts[i].trim());
+        }
+        return values;
+    }
+
+    // Every combination of values; null if there are too many
+    private static List<double[]> grid(double[][] values) {
+        long count = 1;
+        for (double[] axis : values) {
+            count *= axis.length;
+            if (count > MAX_RUNS) {
+                return null;
+            }
+        }
+        List<double[]> combinations = new ArrayList<>((int) count);
+        int[] positions = new int[values.length];
+        for (long i = 0; i < count; i++) {
+            double[] combination = new double[values.length];
+            for (int axis = 0; axis < values.length; axis++) {
+                combination[axis] = values[axis][positions[axis]];
+            }
+            combinations.add(combination);
+            // Odometer: the last parameter changes fastest
+            for (int axis = values.length - 1; axis >= 0; axis--) {
+                if (++positions[axis] < values[axis].length) {
+                    break;
+                }
+                positions[axis] = 0;
+            }
+        }
+        return combinations;
+    }
+
+    // Runs with every parameter drawn uniformly between its smallest and largest value
+    private static List<double[]> sample(double[][] values, int samples, long seed) {
+        if (samples > MAX_RUNS) {
+            return null;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        List<double[]> combinations = new ArrayList<>(samples);
+        for (int i = 0; i < samples; i++) {
+            double[] combination = new double[values.length];
+            for (int axis = 0; axis < values.length; axis++) {
+                double min = Arrays.stream(values[axis]).min().getAsDouble();
+                double max = Arrays.stream(values[axis]).max().getAsDouble();
+                combination[axis] = min == max ? min : min + random.nextDouble() * (max - min);
+            }
+            combinations.add(combination);
+        }
+        return combinations;
+    }
+
+    private void run(int threads) {
+        if (runs.length == 0) {
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            pool.invoke(new ForecastTask(0, runs.length));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // The calmest runs: the smallest inflation rates over the last days
+    private void report(int top) {
+        Run[] ranked = runs.clone();
+        Arrays.sort(ranked, Comparator.comparingDouble(Run::calmness));
+        int shown = Math.min(top, ranked.length);
+        if (shown == 0) {
+            return;
+        }
+
+        System.out.println();
+        System.out.println("Calmest " + shown + " of " + runs.length + " runs (mean absolute inflation over the last "
+                + Math.min(CALM_WINDOW_DAYS, days) + " days), on day " + days + ":");
+        StringBuilder header = new StringBuilder(String.format("%6s", "run"));
+        for (Parameter parameter : Parameter.values()) {
+            header.append(String.format(" %14s", parameter.option.length() > 14 ? parameter.option.substring(0, 14) : parameter.option));
+        }
+        header.append(String.format(" %10s %12s %10s", "calmness", "gold supply", "inflation"));
+        for (Currency currency : Currency.values()) {
+            if (currency != Currency.gold()) {
+                header.append(String.format(" %12s", currency.name().toLowerCase() + " rate"));
+            }
+        }
+        System.out.println(header);
+        for (int i = 0; i < shown; i++) {
+            Run run = ranked[i];
+            double[] last = run.trajectory[days];
+            StringBuilder line = new StringBuilder(String.format("%6d", run.index));
+            for (double value : run.parameters) {
+                line.append(String.format(" %14.6g", value));
+            }
+            line.append(String.format(" %9.4f%% %12.2f %9.4f%%", run.calmness() * 100, last[0], last[1] * 100));
+            for (Currency currency : Currency.values()) {
+                if (currency != Currency.gold()) {
+                    line.append(String.format(" %12.6f", last[2 + currency.getId()]));
+                }
+            }
+            System.out.println(line);
+        }
+    }
+
+    // One row per run and day, the run's parameters repeated on each
+    private void writeCsv(Path csvFile) throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8))) {
+            StringBuilder header = new StringBuilder("run");
+            for (Parameter parameter : Parameter.values()) {
+                header.append(',').append(parameter.column);
+            }
+            header.append(",day,gold_supply,inflation_rate");
+            for (Currency currency : Currency.values()) {
+                header.append(',').append(currency.name().toLowerCase()).append("_rate");
+            }
+            out.println(header);
+            StringBuilder line = new StringBuilder();
+            for (Run run : runs) {
+                for (int day = 0; day < run.trajectory.length; day++) {
+                    line.setLength(0);
+                    line.append(run.index);
+                    for (double value : run.parameters) {
+                        line.append(',').append(value);
+                    }
+                    line.append(',').append(day);
+                    for (double value : run.trajectory[day]) {
+                        line.append(',').append(value);
+                    }
+                    out.println(line);
+                }
+            }
+        }
+    }
+}
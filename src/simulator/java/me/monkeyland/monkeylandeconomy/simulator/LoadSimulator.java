@@ -0,0 +1,370 @@
+package me.monkeyland.monkeylandeconomy.simulator;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.metrics.LatencyHistogram;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Headless load simulator for the {@link EconomyEngine}.
+ * <p>
+ * Drives synthetic players through mining rewards, gives and exchanges for a number of simulated
+ * days, one simulated hour at a time. Each hour every player performs its share of operations
+ * on a pool of worker threads, then the inflation tick runs, as the plugin does once an hour.
+ * Every operation is timed; at the end throughput and latency percentiles per operation are
+ * printed together with the daily supply and rate trajectory. Runs are reproducible for a given
+ * seed with {@code --threads=1}; with more threads the interleaving of gives varies.
+ * <p>
+ * Run with {@code ./gradlew simulate --args="--players=5000 --days=30 --csv=trajectory.csv"}.
+ */
+public final class LoadSimulator {
+
+    private enum Operation {
+        MINE,
+        GIVE,
+        EXCHANGE,
+        INFLATION
+    }
+
+    // Share of mining rewards that are gold ore (1 gold) rather than copper ore (5 copper)
+    private static final double GOLD_ORE_SHARE = 0.2;
+    private static final double GOLD_ORE_REWARD = 1.0;
+    private static final double COPPER_ORE_REWARD = 5.0;
+    // The simulators run on the built-in currencies
+    private static final Currency COPPER = Currency.valueOf("COPPER");
+
+    private static final int HOURS_PER_DAY = 24;
+
+    private final int players;
+    private final int days;
+    private final int threads;
+    private final double miningPerHour;
+    private final double givesPerHour;
+    private final double exchangesPerHour;
+    private final long seed;
+    private final Path csvFile;
+
+    private final EconomyEngine engine = new EconomyEngine(playerId -> null, null);
+    private final UUID[] playerIds;
+    private final LatencyHistogram[] latencies = new LatencyHistogram[Operation.values().length];
+    private final LongAdder[] rejected = new LongAdder[Operation.values().length];
+    private final List<double[]> trajectory = new ArrayList<>();
+    private long operationNanos;
+
+    private LoadSimulator(int players, int days, int threads, double miningPerHour, double givesPerHour, double exchangesPerHour,
+                          long seed, Path csvFile) {
+        this.players = players;
+        this.days = days;
+        this.threads = threads;
+        this.miningPerHour = miningPerHour;
+        this.givesPerHour = givesPerHour;
+        this.exchangesPerHour = exchangesPerHour;
+        this.seed = seed;
+        this.csvFile = csvFile;
+
+        this.playerIds = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = new UUID(seed, i);
+            // Synthetic players stay online for the whole run
+            engine.getLedger().pin(playerIds[i]);
+        }
+        for (Operation operation : Operation.values()) {
+            latencies[operation.ordinal()] = new LatencyHistogram();
+            rejected[operation.ordinal()] = new LongAdder();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = 2000;
+        int days = 7;
+        int threads = Runtime.getRuntime().availableProcessors();
+        double miningPerHour = 120;
+        double givesPerHour = 2;
+        double exchangesPerHour = 1;
+        long seed = 1L;
+        Path csvFile = null;
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                usage("Unrecognized argument: " + arg);
+                return;
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "players":
+                        players = Integer.parseInt(value);
+                        break;
+                    case "days":
+                        days = Integer.parseInt(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "mining":
+                        miningPerHour = Double.parseDouble(value);
+                        break;
+                    case "gives":
+                        givesPerHour = Double.parseDouble(value);
+                        break;
+                    case "exchanges":
+                        exchangesPerHour = Double.parseDouble(value);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    case "csv":
+                        csvFile = Paths.get(value);
+                        break;
+                    default:
+                        usage("Unknown option: " + name);
+                        return;
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid value for " + name + ": " + value);
+                return;
+            }
+        }
+        if (players < 2 || days < 1 || threads < 1 || miningPerHour < 0 || givesPerHour < 0 || exchangesPerHour < 0) {
+            usage("players must be at least 2, days and threads at least 1, rates not negative.");
+            return;
+        }
+
+        LoadSimulator simulator = new LoadSimulator(players, days, threads, miningPerHour, givesPerHour, exchangesPerHour, seed, csvFile);
+        simulator.run();
+        simulator.report();
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Options: --players=N --days=N --threads=N --mining=PER_HOUR --gives=PER_HOUR --exchanges=PER_HOUR --seed=N --csv=FILE");
+        System.exit(2);
+    }
+
+    private void run() throws InterruptedException, ExecutionException {
+        System.out.println("Simulating " + players + " players for " + days + " days on " + threads + " threads ("
+                + miningPerHour + " rewards, " + givesPerHour + " gives, " + exchangesPerHour + " exchanges per player and hour)...");
+
+        recordDay(0);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int hour = 0; hour < days * HOURS_PER_DAY; hour++) {
+                List<Callable<Void>> workers = new ArrayList<>(threads);
+                for (int worker = 0; worker < threads; worker++) {
+                    int first = worker;
+                    SplittableRandom random = new SplittableRandom(seed * 1_000_003L + (long) hour * threads + worker);
+                    workers.add(() -> {
+                        for (int player = first; player < players; player += threads) {
+                            simulatePlayerHour(player, random);
+                        }
+                        return null;
+                    });
+                }
+
+                long start = System.nanoTime();
+                for (Future<Void> future : executor.invokeAll(workers)) {
+                    future.get();
+                }
+                operationNanos += System.nanoTime() - start;
+
+                long tickStart = System.nanoTime();
+                engine.advanceInflation();
+                latencies[Operation.INFLATION.ordinal()].record(System.nanoTime() - tickStart);
+
+                if ((hour + 1) % HOURS_PER_DAY == 0) {
+                    recordDay((hour + 1) / HOURS_PER_DAY);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // One player's operations for one simulated hour, in random order
+    private void simulatePlayerHour(int player, SplittableRandom random) {
+        UUID playerId = playerIds[player];
+        int mining = occurrences(miningPerHour, random);
+        int gives = occurrences(givesPerHour, random);
+        int exchanges = occurrences(exchangesPerHour, random);
+        int remaining = mining + gives + exchanges;
+
+        while (remaining > 0) {
+            int pick = random.nextInt(remaining);
+            if (pick < mining) {
+                mine(playerId, random);
+                mining--;
+            } else if (pick < mining + gives) {
+                give(player, random);
+                gives--;
+            } else {
+                exchange(playerId, random);
+                exchanges--;
+            }
+            remaining--;
+        }
+    }
+
+    private void mine(UUID playerId, SplittableRandom random) {
+        boolean gold = random.nextDouble() < GOLD_ORE_SHARE;
+        long start = System.nanoTime();
+        Ledger.Result result = gold
+                ? engine.addBalance(playerId, Currency.gold(), GOLD_ORE_REWARD)
+                : engine.addBalance(playerId, COPPER, COPPER_ORE_REWARD);
+        finish(Operation.MINE, start, result);
+    }
+
+    // Gives a random share of one balance to another random player
+    private void give(int player, SplittableRandom random) {
+        int target = random.nextInt(players - 1);
+        if (target >= player) {
+            target++;
+        }
+        Currency currency = randomCurrency(random);
+        double amount = shareOf(engine.getBalance(playerIds[player], currency), random);
+        long start = System.nanoTime();
+        Ledger.Result result = engine.transfer(playerIds[player], playerIds[target], currency, amount);
+        finish(Operation.GIVE, start, result);
+    }
+
+    private void exchange(UUID playerId, SplittableRandom random) {
+        Currency fromCurrency = randomCurrency(random);
+        Currency toCurrency = Currency.byId((fromCurrency.getId() + 1 + random.nextInt(Currency.count() - 1)) % Currency.count());
+        double amount = shareOf(engine.getBalance(playerId, fromCurrency), random);
+        long start = System.nanoTime();
+        Ledger.Result result = engine.exchange(playerId, fromCurrency, toCurrency, amount).getResult();
+        finish(Operation.EXCHANGE, start, result);
+    }
+
+    private void finish(Operation operation, long start, Ledger.Result result) {
+        latencies[operation.ordinal()].record(System.nanoTime() - start);
+        if (result != Ledger.Result.SUCCESS) {
+            rejected[operation.ordinal()].increment();
+        }
+    }
+
+    // Whole number of events with the given mean; the fraction is rounded up at random
+    private static int occurrences(double mean, SplittableRandom random) {
+        int whole = (int) mean;
+        return whole + (random.nextDouble() < mean - whole ? 1 : 0);
+    }
+
+    // 5% to 25% of a balance, or a small fixed amount when it is empty so the rejection shows
+    private static double shareOf(double balance, SplittableRandom random) {
+        if (balance <= 0) {
+            return 1.0;
+        }
+        return balance * (0.05 + random.nextDouble() * 0.2);
+    }
+
+    private static Currency randomCurrency(SplittableRandom random) {
+        return Currency.byId(random.nextInt(Currency.count()));
+    }
+
+    // Day, circulating supply per currency, inflation rate, exchange rate per currency
+    private void recordDay(int day) {
+        int currencies = Currency.count();
+        EconomyState state = engine.getState();
+        double[] row = new double[2 + 2 * currencies];
+        row[0] = day;
+        for (Currency currency : Currency.values()) {
+            row[1 + currency.getId()] = engine.getCirculatingSupply(currency);
+            row[2 + currencies + currency.getId()] = state.getExchangeRate(currency);
+        }
+        row[1 + currencies] = state.getInflationRate();
+        trajectory.add(row);
+    }
+
+    private void report() throws IOException {
+        long operations = 0;
+        for (Operation operation : Operation.values()) {
+            if (operation != Operation.INFLATION) {
+                operations += latencies[operation.ordinal()].getCount();
+            }
+        }
+        double seconds = operationNanos / 1e9;
+        System.out.println();
+        System.out.printf("%d operations in %.2fs: %.0f ops/s%n", operations, seconds, seconds > 0 ? operations / seconds : 0.0);
+        System.out.println();
+        System.out.printf("%-10s %12s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "rejected", "mean us", "p50 us", "p99 us", "p99.9 us", "max us");
+        for (Operation operation : Operation.values()) {
+            LatencyHistogram histogram = latencies[operation.ordinal()];
+            System.out.printf("%-10s %12d %10d %10.2f %10.2f %10.2f %10.2f %10.2f%n", operation.name().toLowerCase(), histogram.getCount(),
+                    rejected[operation.ordinal()].sum(), histogram.getMean() / 1e3, histogram.getPercentile(50) / 1e3,
+                    histogram.getPercentile(99) / 1e3, histogram.getPercentile(99.9) / 1e3, histogram.getMax() / 1e3);
+        }
+
+        System.out.println();
+        StringBuilder header = new StringBuilder(String.format("%4s", "day"));
+        for (Currency currency : Currency.values()) {
+            header.append(String.format(" %14s", currency.name().toLowerCase() + " supply"));
+        }
+        header.append(String.format(" %10s", "inflation"));
+        for (Currency currency : Currency.values()) {
+            if (currency != Currency.gold()) {
+                header.append(String.format(" %12s", currency.name().toLowerCase() + " rate"));
+            }
+        }
+        System.out.println(header);
+        int currencies = Currency.count();
+        for (double[] row : trajectory) {
+            StringBuilder line = new StringBuilder(String.format("%4d", (int) row[0]));
+            for (int i = 0; i < currencies; i++) {
+                line.append(String.format(" %14.2f", row[1 + i]));
+            }
+            line.append(String.format(" %9.4f%%", row[1 + currencies] * 100));
+            for (Currency currency : Currency.values()) {
+                if (currency != Currency.gold()) {
+                    line.append(String.format(" %12.6f", row[2 + currencies + currency.getId()]));
+                }
+            }
+            System.out.println(line);
+        }
+
+        if (csvFile != null) {
+            writeCsv();
+            System.out.println();
+            System.out.println("Trajectory written to " + csvFile.toAbsolutePath());
+        }
+    }
+
+    private void writeCsv() throws IOException {
+        try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(csvFile, StandardCharsets.UTF_8))) {
+            StringBuilder header = new StringBuilder("day");
+            for (Currency currency : Currency.values()) {
+                header.append(',').append(currency.name().toLowerCase()).append("_supply");
+            }
+            header.append(",inflation_rate");
+            for (Currency currency : Currency.values()) {
+                header.append(',').append(currency.name().toLowerCase()).append("_rate");
+            }
+            out.println(header);
+            for (double[] row : trajectory) {
+                StringBuilder line = new StringBuilder(Integer.toString((int) row[0]));
+                for (int i = 1; i < row.length; i++) {
+                    line.append(',').append(row[i]);
+                }
+                out.println(line);
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package me.monkeyland.monkeylandeconomy.simulator;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
+import me.monkeyland.monkeylandeconomy.ledger.AccountStore;
+import me.monkeyland.monkeylandeconomy.ledger.Ledger;
+import me.monkeyland.monkeylandeconomy.metrics.LatencyHistogram;
+import me.monkeyland.monkeylandeconomy.replication.ReplicationPrimary;
+import me.monkeyland.monkeylandeconomy.replication.ReplicationReplica;
+import me.monkeyland.monkeylandeconomy.storage.EconomyState;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Logger;
+
+/**
+ * Headless check of ledger replication between two engines on loopback.
+ * <p>
+ * A primary and a replica run in one process, connected through the real socket transport.
+ * Worker threads on both nodes make rewards and gives at a fixed rate for a number of seconds;
+ * the replica's writes are forwarded to the primary. The replica's connection is dropped every
+ * few seconds so it has to catch up from its last sequence. Afterwards the replica must hold
+ * exactly the primary's balances, and the write latency per node and the replication lag are
+ * printed.
+ * <p>
+ * Run with {@code ./gradlew simulateReplication --args="--players=2000 --seconds=20 --rate=20000"}.
+ */
+public final class ReplicationSimulator {
+
+    private static final long REWARD = AccountStore.toMinor(1.0);
+    private static final long CONVERGE_TIMEOUT_MILLIS = 30_000;
+    private static final Currency COPPER = Currency.valueOf("COPPER");
+
+    private final int players;
+    private final int seconds;
+    private final int threads;
+    private final double rate;
+    private final long dropIntervalMillis;
+    private final long seed;
+
+    private final Logger logger = Logger.getLogger("ReplicationSimulator");
+    private final UUID[] playerIds;
+    private final LatencyHistogram primaryWrites = new LatencyHistogram();
+    private final LatencyHistogram replicaWrites = new LatencyHistogram();
+    private final LongAdder unavailable = new LongAdder();
+    private final LatencyHistogram lag = new LatencyHistogram();
+
+    private EconomyEngine primaryEngine;
+    private EconomyEngine replicaEngine;
+    private ReplicationPrimary primary;
+    private ReplicationReplica replica;
+
+    private ReplicationSimulator(int players, int seconds, int threads, double rate, long dropIntervalMillis, long seed) {
+        this.players = players;
+        this.seconds = seconds;
+        this.threads = threads;
+        this.rate = rate;
+        this.dropIntervalMillis = dropIntervalMillis;
+        this.seed = seed;
+        this.playerIds = new UUID[players];
+        SplittableRandom random = new SplittableRandom(seed);
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = new UUID(random.nextLong(), random.nextLong());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = 2000;
+        int seconds = 20;
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        double rate = 20000;
+        long dropIntervalMillis = 3000;
+        long seed = 1L;
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (!arg.startsWith("--") || separator < 0) {
+                usage("Unrecognized argument: " + arg);
+                return;
+            }
+            String name = arg.substring(2, separator);
+            String value = arg.substring(separator + 1);
+            try {
+                switch (name) {
+                    case "players":
+                        players = Integer.parseInt(value);
+                        break;
+                    case "seconds":
+                        seconds = Integer.parseInt(value);
+                        break;
+                    case "threads":
+                        threads = Integer.parseInt(value);
+                        break;
+                    case "rate":
+                        rate = Double.parseDouble(value);
+                        break;
+                    case "drop":
+                        dropIntervalMillis = Long.parseLong(value);
+                        break;
+                    case "seed":
+                        seed = Long.parseLong(value);
+                        break;
+                    default:
+                        usage("Unknown option: " + name);
+                        return;
+                }
+            } catch (NumberFormatException e) {
+                usage("Invalid value for " + name + ": " + value);
+                return;
+            }
+        }
+        if (players < 2 || seconds < 1 || threads < 1 || !(rate > 0) || dropIntervalMillis < 0) {
+            usage("players must be at least 2, seconds and threads at least 1, rate positive, drop not negative.");
+            return;
+        }
+
+        ReplicationSimulator simulator = new ReplicationSimulator(players, seconds, threads, rate, dropIntervalMillis, seed);
+        boolean converged;
+        try {
+            simulator.start();
+            simulator.run();
+            converged = simulator.verify();
+        } finally {
+            simulator.stop();
+        }
+        simulator.report();
+        if (!converged) {
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Options: --players=N --seconds=N --threads=N (per node) --rate=WRITES_PER_SECOND (per node) --drop=MILLIS (0 never) --seed=N");
+        System.exit(2);
+    }
+
+    private void start() throws Exception {
+        ReplicationPrimary[] publisher = new ReplicationPrimary[1];
+        primaryEngine = new EconomyEngine(playerId -> null, (playerId, currency, delta, newBalance) -> publisher[0].publish(playerId, currency, newBalance));
+        primary = new ReplicationPrimary(primaryEngine.getLedger(), primaryEngine::getState, visitor -> {
+            for (UUID playerId : primaryEngine.getAccounts().accountIds()) {
+                long[] balances = primaryEngine.getLedger().snapshotBalances(playerId);
+                if (balances != null) {
+                    visitor.visit(playerId, balances);
+                }
+            }
+        }, "127.0.0.1", 0, 1 << 16, 512, 2, logger);
+        publisher[0] = primary;
+        primary.start();
+
+        // Some history before the replica exists, so it starts with a snapshot
+        for (UUID playerId : playerIds) {
+            primaryEngine.getLedger().pin(playerId);
+            primaryEngine.getLedger().adjust(playerId, Currency.gold(), 10 * REWARD);
+        }
+
+        replicaEngine = new EconomyEngine(playerId -> null, null);
+        replica = new ReplicationReplica(new ReplicationReplica.Applier() {
+            @Override
+            public void applyBalance(UUID playerId, Currency currency, long stored) {
+                replicaEngine.restore(playerId, currency, stored);
+            }
+
+            @Override
+            public void applyState(EconomyState state) {
+                replicaEngine.setState(state);
+            }
+        }, "127.0.0.1", primary.getLocalPort(), 2000, logger);
+        replicaEngine.getLedger().setWriteForwarder(replica);
+        replica.start();
+
+        long deadline = System.currentTimeMillis() + CONVERGE_TIMEOUT_MILLIS;
+        while (!replica.isConnected()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("replica did not connect");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    private void run() throws Exception {
+        System.out.println("Replicating " + players + " players for " + seconds + "s, " + rate + " writes/s on " + threads + " threads per node"
+                + (dropIntervalMillis > 0 ? ", dropping the replica every " + dropIntervalMillis + "ms" : "") + "...");
+
+        AtomicBoolean stop = new AtomicBoolean();
+        ExecutorService executor = Executors.newFixedThreadPool(2 * threads);
+        List<Future<?>> workers = new ArrayList<>();
+        long intervalNanos = (long) (threads * 1e9 / rate);
+        for (int worker = 0; worker < 2 * threads; worker++) {
+            boolean onReplica = worker % 2 == 1;
+            SplittableRandom random = new SplittableRandom(seed * 1_000_003L + worker);
+            workers.add(executor.submit(() -> {
+                Ledger ledger = onReplica ? replicaEngine.getLedger() : primaryEngine.getLedger();
+                LatencyHistogram latency = onReplica ? replicaWrites : primaryWrites;
+                long next = System.nanoTime();
+                while (!stop.get()) {
+                    next += intervalNanos;
+                    long wait = next - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    UUID playerId = playerIds[random.nextInt(players)];
+                    long start = System.nanoTime();
+                    Ledger.Result result;
+                    if (random.nextInt(4) == 0) {
+                        UUID toId = playerIds[random.nextInt(players)];
+                        result = ledger.transfer(playerId, toId, Currency.gold(), 1 + random.nextLong(2 * REWARD));
+                    } else {
+                        result = ledger.adjust(playerId, random.nextBoolean() ? Currency.gold() : COPPER, REWARD);
+                    }
+                    latency.record(System.nanoTime() - start);
+                    if (result == Ledger.Result.UNAVAILABLE) {
+                        unavailable.increment();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long end = System.currentTimeMillis() + seconds * 1000L;
+        long nextDrop = System.currentTimeMillis() + dropIntervalMillis;
+        while (System.currentTimeMillis() < end) {
+            Thread.sleep(100);
+            lag.record(Math.max(0L, primary.getLastSequence() - replica.getAppliedSequence()));
+            if (dropIntervalMillis > 0 && System.currentTimeMillis() >= nextDrop) {
+                replica.reconnect();
+                nextDrop += dropIntervalMillis;
+            }
+        }
+        stop.set(true);
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+    }
+
+    // Waits for the replica to apply everything, then compares every account
+    private boolean verify() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + CONVERGE_TIMEOUT_MILLIS;
+        while (!replica.isConnected() || replica.getAppliedSequence() < primary.getLastSequence()) {
+            if (System.currentTimeMillis() > deadline) {
+                System.out.println("Replica stuck at sequence " + replica.getAppliedSequence() + " of " + primary.getLastSequence());
+                return false;
+            }
+            Thread.sleep(10);
+        }
+
+        int mismatches = 0;
+        for (UUID playerId : playerIds) {
+            long[] expected = primaryEngine.getLedger().snapshotBalances(playerId);
+            long[] actual = replicaEngine.getLedger().snapshotBalances(playerId);
+            if (!Arrays.equals(expected, actual)) {
+                if (mismatches++ < 5) {
+                    System.out.println("Mismatch for " + playerId + ": " + Arrays.toString(expected) + " vs " + Arrays.toString(actual));
+                }
+            }
+        }
+        for (Currency currency : Currency.values()) {
+            if (primaryEngine.getLedger().circulating(currency) != replicaEngine.getLedger().circulating(currency)) {
+                System.out.println("Circulating " + currency + " differs: " + primaryEngine.getCirculatingSupply(currency)
+                        + " vs " + replicaEngine.getCirculatingSupply(currency));
+                mismatches++;
+            }
+        }
+        System.out.println(mismatches == 0
+                ? "Replica converged on all " + players + " accounts at sequence " + replica.getAppliedSequence() + "."
+                : mismatches + " accounts or totals differ.");
+        return mismatches == 0;
+    }
+
+    private void stop() throws Exception {
+        if (replica != null) {
+            replica.close();
+        }
+        if (primary != null) {
+            primary.close();
+        }
+    }
+
+    private void report() {
+        System.out.println();
+        System.out.printf("%-10s %12s %10s %10s %10s %10s %10s%n", "writes", "count", "mean us", "p50 us", "p99 us", "p99.9 us", "max us");
+        print("primary", primaryWrites);
+        print("replica", replicaWrites);
+        System.out.println();
+        System.out.println(unavailable.sum() + " replica writes unavailable, lag p50 " + lag.getPercentile(50)
+                + " / p99 " + lag.getPercentile(99) + " / max " + lag.getMax() + " records.");
+    }
+
+    private static void print(String name, LatencyHistogram histogram) {
+        System.out.printf("%-10s %12d %10.2f %10.2f %10.2f %10.2f %10.2f%n", name, histogram.getCount(), histogram.getMean() / 1e3,
+                histogram.getPercentile(50) / 1e3, histogram.getPercentile(99) / 1e3, histogram.getPercentile(99.9) / 1e3,
+                histogram.getMax() / 1e3);
+    }
+}
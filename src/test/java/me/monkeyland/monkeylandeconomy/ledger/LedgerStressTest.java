@@ -0,0 +1,140 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers one ledger with transfers, exchanges, adjusts and withdrawals from many threads, then
+ * checks that no update was lost: every currency's circulating total matches both the sum of
+ * the successful operations and the sum of every account's balance.
+ */
+class LedgerStressTest {
+
+    private static final int THREADS = 8;
+    private static final int OPERATIONS_PER_THREAD = 50_000;
+    private static final int ACCOUNTS = 200;
+    private static final long STARTING_BALANCE = 1_000 * AccountStore.SCALE;
+
+    @BeforeAll
+    static void installCurrencies() {
+        Currency.install(Currency.defaults());
+    }
+
+    @Test
+    void conservesSupplyWithEveryAccountResident() throws Exception {
+        stress(Integer.MAX_VALUE);
+    }
+
+    @Test
+    void conservesSupplyWhileEvictingOfflineAccounts() throws Exception {
+        // The smallest LRU the ledger allows, so most operations load one account and evict another
+        stress(16);
+    }
+
+    private static void stress(int maxOfflineAccounts) throws Exception {
+        // Stands in for storage: evicted accounts are saved here and loaded back from here
+        Map<UUID, long[]> disk = new ConcurrentHashMap<>();
+        Ledger ledger = new Ledger(new AccountStore(), disk::get, null);
+        LongAdder evictions = new LongAdder();
+        ledger.setEvictionListener(playerId -> {
+            evictions.increment();
+            // Serialized like the write-behind flusher, so an older parked copy never lands last
+            synchronized (disk) {
+                long[] parked = ledger.parkedBalances(playerId);
+                if (parked != null) {
+                    disk.put(playerId, parked);
+                    ledger.markSaved(playerId, parked);
+                }
+            }
+        });
+        ledger.setMaxOfflineAccounts(maxOfflineAccounts);
+
+        Currency[] currencies = Currency.values();
+        LongAdder[] expected = new LongAdder[currencies.length];
+        for (Currency currency : currencies) {
+            expected[currency.getId()] = new LongAdder();
+        }
+
+        UUID[] accounts = new UUID[ACCOUNTS];
+        for (int i = 0; i < ACCOUNTS; i++) {
+            accounts[i] = new UUID(0L, i + 1L);
+            for (Currency currency : currencies) {
+                assertEquals(Ledger.Result.SUCCESS, ledger.adjust(accounts[i], currency, STARTING_BALANCE));
+                expected[currency.getId()].add(STARTING_BALANCE);
+            }
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> workers = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            SplittableRandom random = new SplittableRandom(t);
+            workers.add(executor.submit(() -> {
+                start.await();
+                for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                    UUID playerId = accounts[random.nextInt(ACCOUNTS)];
+                    Currency currency = currencies[random.nextInt(currencies.length)];
+                    long amount = 1 + random.nextLong(10 * AccountStore.SCALE);
+                    switch (random.nextInt(4)) {
+                        case 0 -> ledger.transfer(playerId, accounts[random.nextInt(ACCOUNTS)], currency, amount);
+                        case 1 -> {
+                            Currency other = currencies[random.nextInt(currencies.length)];
+                            long otherAmount = amount / 2;
+                            if (ledger.exchange(playerId, currency, amount, other, otherAmount) == Ledger.Result.SUCCESS) {
+                                expected[currency.getId()].add(-amount);
+                                expected[other.getId()].add(otherAmount);
+                            }
+                        }
+                        case 2 -> {
+                            if (ledger.adjust(playerId, currency, amount) == Ledger.Result.SUCCESS) {
+                                expected[currency.getId()].add(amount);
+                            }
+                        }
+                        default -> {
+                            if (ledger.withdraw(playerId, currency, amount) == Ledger.Result.SUCCESS) {
+                                expected[currency.getId()].add(-amount);
+                            }
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> worker : workers) {
+            worker.get();
+        }
+        executor.shutdown();
+
+        for (Currency currency : currencies) {
+            long sum = 0L;
+            for (UUID playerId : accounts) {
+                long balance = ledger.getBalance(playerId, currency);
+                assertTrue(balance >= 0, playerId + " went negative in " + currency);
+                sum += balance;
+            }
+            assertEquals(expected[currency.getId()].sum(), ledger.circulating(currency), "circulating " + currency);
+            assertEquals(ledger.circulating(currency), sum, "sum of balances " + currency);
+        }
+        if (maxOfflineAccounts < ACCOUNTS) {
+            assertTrue(evictions.sum() > OPERATIONS_PER_THREAD, "too few evictions: " + evictions.sum());
+            assertTrue(ledger.getResidentCount() <= maxOfflineAccounts, "resident accounts: " + ledger.getResidentCount());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package me.monkeyland.monkeylandeconomy.ledger;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class LedgerTest {
+
+    private static final UUID ALICE = new UUID(0L, 1L);
+    private static final UUID BOB = new UUID(0L, 2L);
+
+    @BeforeAll
+    static void installCurrencies() {
+        Currency.install(Currency.defaults());
+    }
+
+    @Test
+    void rejectsCreditsThatWouldOverflowABalance() {
+        Ledger ledger = new Ledger(new AccountStore(), playerId -> null, null);
+        Currency gold = Currency.gold();
+        Currency silver = Currency.find("SILVER");
+        long huge = AccountStore.toMinor(1e300);
+        assertEquals(Ledger.Result.SUCCESS, ledger.adjust(ALICE, gold, 5));
+        assertEquals(Ledger.Result.SUCCESS, ledger.adjust(ALICE, silver, 5));
+        assertEquals(Ledger.Result.SUCCESS, ledger.adjust(BOB, gold, huge));
+
+        assertEquals(Ledger.Result.EXCEEDS_MAX_SUPPLY, ledger.adjust(ALICE, gold, huge));
+        assertEquals(Ledger.Result.EXCEEDS_MAX_SUPPLY, ledger.transfer(ALICE, BOB, gold, 5));
+        assertEquals(Ledger.Result.EXCEEDS_MAX_SUPPLY, ledger.exchange(ALICE, silver, 1, gold, huge));
+        assertEquals(Ledger.Result.INVALID_AMOUNT, ledger.adjust(ALICE, gold, Long.MIN_VALUE));
+
+        assertEquals(5, ledger.getBalance(ALICE, gold));
+        assertEquals(5, ledger.getBalance(ALICE, silver));
+        assertEquals(huge, ledger.getBalance(BOB, gold));
+        assertEquals(huge + 5, ledger.circulating(gold));
+    }
+}
@@ -0,0 +1,84 @@
+package me.monkeyland.monkeylandeconomy.storage;
+
+import me.monkeyland.monkeylandeconomy.core.Currency;
+import me.monkeyland.monkeylandeconomy.core.EconomyEngine;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class BinaryEconomyStorageTest {
+
+    private static final UUID LEGACY = new UUID(0L, 0L);
+
+    private final int gold = Currency.gold().getId();
+
+    @BeforeAll
+    static void installCurrencies() {
+        Currency.install(Currency.defaults());
+    }
+
+    @Test
+    void keepsChangesAcrossCompactionsAndReopens() throws Exception {
+        Path directory = Files.createTempDirectory("binary-storage");
+        Path file = directory.resolve(BinarySnapshot.SNAPSHOT_FILE_NAME);
+        EconomyState state = EconomyEngine.defaultState();
+        // A snapshot from before generations is read as generation 0
+        BinarySnapshot.write(file, state, null, Map.of(LEGACY, balances(7)));
+
+        BinaryEconomyStorage storage = new BinaryEconomyStorage(file);
+        storage.open();
+        storage.saveState(storage.loadState(state));
+        long expected = 7;
+        // Enough batches for the delta log to be merged into new generations more than once
+        for (int batch = 0; batch < 4; batch++) {
+            Map<UUID, long[]> accounts = new HashMap<>();
+            for (int i = 1; i <= 65_536; i++) {
+                accounts.put(new UUID(batch + 1L, i), balances(i));
+                expected += i;
+            }
+            storage.upsertAccounts(accounts);
+        }
+        storage.upsertAccounts(Map.of(LEGACY, balances(100)));
+        expected += 93;
+        assertEquals(expected, storage.sumBalances()[gold]);
+        storage.close();
+
+        // A torn record at the end of the log is dropped on open
+        Path delta;
+        try (Stream<Path> files = Files.list(directory)) {
+            delta = files.filter(path -> path.toString().endsWith(".delta")).findFirst().orElseThrow();
+        }
+        Files.write(delta, new byte[] {0, 0, 0, 50, 1, 2}, StandardOpenOption.APPEND);
+
+        storage = new BinaryEconomyStorage(file);
+        storage.open();
+        long[] visited = new long[2];
+        storage.forEachAccount((playerId, balances) -> {
+            visited[0] += balances[gold];
+            visited[1]++;
+        });
+        assertEquals(expected, storage.sumBalances()[gold]);
+        assertEquals(expected, visited[0]);
+        assertEquals(4 * 65_536 + 1, visited[1]);
+        assertArrayEquals(balances(100), storage.loadAccount(LEGACY));
+        storage.close();
+        assertFalse(Files.exists(file), "legacy snapshot was not removed");
+    }
+
+    private static long[] balances(long gold) {
+        long[] balances = new long[Currency.count()];
+        balances[Currency.gold().getId()] = gold;
+        return balances;
+    }
+}